@@ -0,0 +1,128 @@
+package com.Pubudu.RoleAI.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Outbound HTTP clients. Gemini goes through a Reactor Netty WebClient, Pinecone through a
+ * RestTemplate on Apache httpclient5; both keep pooled keep-alive connections per host so
+ * calls reuse an established TLS session instead of handshaking every time.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${http.client.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    // Max gap between reads of a response (Gemini) / socket read timeout (Pinecone)
+    @Value("${http.client.read-timeout-ms:60000}")
+    private int readTimeoutMs;
+
+    // How long a caller may wait for a free pooled connection
+    @Value("${http.client.acquire-timeout-ms:5000}")
+    private int acquireTimeoutMs;
+
+    @Value("${http.client.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${http.client.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${http.client.idle-timeout-seconds:30}")
+    private int idleTimeoutSeconds;
+
+    @Value("${http.client.http2:true}")
+    private boolean http2;
+
+    @Value("${http.client.max-in-memory-bytes:16777216}")
+    private int maxInMemoryBytes;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider geminiConnectionProvider() {
+        return ConnectionProvider.builder("gemini")
+                .maxConnections(maxConnectionsPerRoute)
+                .pendingAcquireTimeout(Duration.ofMillis(acquireTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(idleTimeoutSeconds))
+                .maxLifeTime(Duration.ofMinutes(5))
+                .evictInBackground(Duration.ofSeconds(idleTimeoutSeconds))
+                .metrics(true) // reactor.netty.connection.provider.* gauges via Micrometer
+                .build();
+    }
+
+    @Bean
+    public WebClient geminiWebClient(ConnectionProvider geminiConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(geminiConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs))
+                .compress(true);
+        if (http2) {
+            // Negotiated via ALPN on https; plain-http endpoints (local stubs) stay on HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                // Default is 256KB, too small for long non-streamed replies
+                .codecs(c -> c.defaultCodecs().maxInMemorySize(maxInMemoryBytes))
+                .build();
+    }
+
+    @Bean
+    public PoolingHttpClientConnectionManager pineconeConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager cm = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        Gauge.builder("http.client.pool.leased", cm, m -> m.getTotalStats().getLeased())
+                .tag("client", "pinecone").register(meterRegistry);
+        Gauge.builder("http.client.pool.available", cm, m -> m.getTotalStats().getAvailable())
+                .tag("client", "pinecone").register(meterRegistry);
+        Gauge.builder("http.client.pool.pending", cm, m -> m.getTotalStats().getPending())
+                .tag("client", "pinecone").register(meterRegistry);
+        Gauge.builder("http.client.pool.max", cm, m -> m.getTotalStats().getMax())
+                .tag("client", "pinecone").register(meterRegistry);
+        return cm;
+    }
+
+    @Bean
+    public RestTemplate pineconeRestTemplate(PoolingHttpClientConnectionManager pineconeConnectionManager) {
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(pineconeConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(idleTimeoutSeconds))
+                .evictExpiredConnections()
+                .build(); // gzip: httpclient5 sends Accept-Encoding and decompresses transparently
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+}
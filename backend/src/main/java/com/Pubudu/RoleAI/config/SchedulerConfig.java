@@ -0,0 +1,30 @@
+package com.Pubudu.RoleAI.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// @Scheduled background work: generation job workers
+@Configuration
+@EnableScheduling
+public class SchedulerConfig {
+
+    // Keep this in line with the JDBC pool size (Hikari defaults to 10) so offloaded work never waits on connections
+    @Value("${chat.blocking.threads:10}")
+    private int blockingThreads;
+
+    @Value("${chat.blocking.queue-size:1000}")
+    private int blockingQueueSize;
+
+    /**
+     * Bounded scheduler for blocking work (JPA, key decryption, Pinecone RestTemplate)
+     * called from the reactive chat pipeline. Excess tasks queue instead of spawning threads.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler blockingScheduler() {
+        return Schedulers.newBoundedElastic(blockingThreads, blockingQueueSize, "chat-blocking");
+    }
+}
@@ -1,18 +1,34 @@
 package com.Pubudu.RoleAI.controller;
 
 import com.Pubudu.RoleAI.dto.RoleDTO;
+import com.Pubudu.RoleAI.entity.User;
 import com.Pubudu.RoleAI.service.ChatService;
-import com.Pubudu.RoleAI.service.ChatSessionService;
+import com.Pubudu.RoleAI.service.IdempotencyService;
+import com.Pubudu.RoleAI.service.LlmConcurrencyLimiter;
+import com.Pubudu.RoleAI.service.LlmResilience;
 import com.Pubudu.RoleAI.service.RoleService;
+import com.Pubudu.RoleAI.service.TokenUsageService;
+import com.Pubudu.RoleAI.util.BlockingCalls;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -27,55 +43,204 @@ public class ChatController {
     private RoleService roleService;
 
     @Autowired
-    private ChatSessionService chatSessionService;
+    private BlockingCalls blockingCalls;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Value("${chat.batch.max-roles:8}")
+    private int maxBatchRoles;
+
+    /**
+     * Clients may send an Idempotency-Key header: a retry with the same key within the window
+     * joins the original call or replays its reply instead of generating (and persisting) a second one.
+     */
     @PostMapping("/generate")
-    public ResponseEntity<?> generateReply(@RequestBody Map<String, Object> request) {
-        try {
-            Long roleId = Long.valueOf(request.get("roleId").toString());
-            String message = (String) request.get("message");
-            String model = (String) request.get("model");
-            Long modelConfigId = null;
-            if (request.get("modelConfigId") != null) {
-                modelConfigId = Long.valueOf(request.get("modelConfigId").toString());
-            }
-            String sessionId = null;
-            if (request.get("sessionId") != null) {
-                sessionId = request.get("sessionId").toString();
-            }
-
-            if (roleId == null || message == null) {
-                return ResponseEntity.badRequest().body(Map.of("error", "roleId and message are required"));
-            }
-
-        String msgPreview = message == null ? "" : (message.length() > 120 ? message.substring(0, 120) + "..." : message);
+    public Mono<ResponseEntity<Map<String, Object>>> generateReply(@RequestBody Map<String, Object> request,
+                                                                   @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Object roleIdRaw = request.get("roleId");
+        String message = (String) request.get("message");
+        if (roleIdRaw == null || message == null) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.<String, Object>of("error", "roleId and message are required")));
+        }
+        Long roleId = Long.valueOf(roleIdRaw.toString());
+        String model = (String) request.get("model");
+        Long modelConfigId = request.get("modelConfigId") != null ? Long.valueOf(request.get("modelConfigId").toString()) : null;
+        String sessionId = request.get("sessionId") != null ? request.get("sessionId").toString() : null;
+
+        String msgPreview = message.length() > 120 ? message.substring(0, 120) + "..." : message;
         logger.info("Incoming chat request -> roleId: {}, model: {}, messageLen: {}, message: {}",
-            roleId, model, message != null ? message.length() : 0, msgPreview);
-
-            Optional<RoleDTO> roleOpt = roleService.getRoleById(roleId);
-            if (roleOpt.isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Role not found"));
-            }
-
-            RoleDTO role = roleOpt.get();
-            String reply = chatService.generateReply(role, message, model, modelConfigId);
-
-            // Persist AI reply if sessionId provided
-            if (sessionId != null) {
-                try {
-                    chatSessionService.addMessage(sessionId, "ai", reply, role.getId());
-                } catch (Exception ex) {
-                    logger.warn("Failed to persist AI reply to session {}: {}", sessionId, ex.getMessage());
-                }
-            }
-
-            logger.info("Successfully generated reply");
-            return ResponseEntity.ok(Map.of("reply", reply));
-
-        } catch (Exception e) {
-            logger.error("Error generating reply: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Failed to generate reply: " + e.getMessage()));
+            roleId, model, message.length(), msgPreview);
+
+        String scope = currentUserScope();
+        String fingerprint = roleId + "|" + modelConfigId + "|" + model + "|" + sessionId + "|" + message;
+
+        // Role lookup and persistence are JPA calls: run them on the bounded blocking scheduler,
+        // the Gemini round trip itself holds no thread
+        return blockingCalls.call(() -> roleService.getRoleById(roleId))
+                .flatMap(roleOpt -> {
+                    if (roleOpt.isEmpty()) {
+                        return Mono.just(ResponseEntity.badRequest().<Map<String, Object>>body(Map.of("error", "Role not found")));
+                    }
+                    RoleDTO role = roleOpt.get();
+                    Mono<String> reply = idempotencyKey == null || idempotencyKey.isBlank()
+                            ? chatService.generateAndPersist(role, message, model, modelConfigId, sessionId)
+                            : idempotencyService.execute(scope, idempotencyKey, fingerprint,
+                                    () -> chatService.generateAndPersist(role, message, model, modelConfigId, sessionId));
+                    return reply
+                            .map(r -> {
+                                logger.info("Successfully generated reply");
+                                return ResponseEntity.ok(Map.<String, Object>of("reply", r));
+                            });
+                })
+                .onErrorResume(IdempotencyService.KeyReusedException.class, e ->
+                        Mono.just(ResponseEntity.unprocessableEntity().body(Map.<String, Object>of("error", e.getMessage()))))
+                .onErrorResume(LlmConcurrencyLimiter.LimiterRejectedException.class, e -> {
+                    logger.warn("Chat request shed: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                            .header("Retry-After", "5")
+                            .body(Map.<String, Object>of("error", e.getMessage())));
+                })
+                .onErrorResume(TokenUsageService.QuotaExceededException.class, e ->
+                        Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                                .body(Map.<String, Object>of("error", e.getMessage()))))
+                .onErrorResume(LlmResilience.CircuitOpenException.class, e ->
+                        Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header("Retry-After", "30")
+                                .body(Map.<String, Object>of("error", e.getMessage()))))
+                .onErrorResume(e -> {
+                    logger.error("Error generating reply: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(Map.<String, Object>of("error", "Failed to generate reply: " + e.getMessage())));
+                });
+    }
+
+    /**
+     * Streaming variant of /generate. Emits "delta" events as Gemini produces text,
+     * then a single "done" event with the full reply (or an "error" event).
+     * The concatenated reply is persisted to the session once the stream completes.
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> streamReply(@RequestBody Map<String, Object> request) {
+        Object roleIdRaw = request.get("roleId");
+        String message = (String) request.get("message");
+        if (roleIdRaw == null || message == null) {
+            return Flux.just(errorEvent("roleId and message are required"));
+        }
+        Long roleId = Long.valueOf(roleIdRaw.toString());
+        String model = (String) request.get("model");
+        Long modelConfigId = request.get("modelConfigId") != null ? Long.valueOf(request.get("modelConfigId").toString()) : null;
+        String sessionId = request.get("sessionId") != null ? request.get("sessionId").toString() : null;
+
+        logger.info("Incoming streaming chat request -> roleId: {}, model: {}, messageLen: {}", roleId, model, message.length());
+
+        return blockingCalls.call(() -> roleService.getRoleById(roleId))
+                .flatMapMany(roleOpt -> roleOpt
+                        .map(role -> streamEvents(role, message, model, modelConfigId, sessionId))
+                        .orElseGet(() -> Flux.just(errorEvent("Role not found"))))
+                .onErrorResume(e -> {
+                    logger.error("Error streaming reply: {}", e.getMessage(), e);
+                    return Flux.just(errorEvent("Failed to generate reply: " + e.getMessage()));
+                });
+    }
+
+    /**
+     * Ask several roles the same question in one request. Emits one "reply" (or "error") event per role,
+     * tagged with its roleId, in completion order, then a final "done" event.
+     * Body: { "message": "...", "roleIds": [1, 2, 3], "model": optional, "modelConfigId": optional }
+     */
+    @PostMapping(value = "/generate/batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> generateBatch(@RequestBody Map<String, Object> request) {
+        String message = (String) request.get("message");
+        if (message == null || !(request.get("roleIds") instanceof List<?> rawIds) || rawIds.isEmpty()) {
+            return Flux.just(errorEvent("message and a non-empty roleIds list are required"));
         }
+        Set<Long> unique = new LinkedHashSet<>();
+        try {
+            for (Object id : rawIds) unique.add(Long.valueOf(id.toString()));
+        } catch (NumberFormatException e) {
+            return Flux.just(errorEvent("roleIds must be numbers"));
+        }
+        if (unique.size() > maxBatchRoles) {
+            return Flux.just(errorEvent("At most " + maxBatchRoles + " roles per batch"));
+        }
+        List<Long> roleIds = new ArrayList<>(unique);
+        String model = (String) request.get("model");
+        Long modelConfigId = request.get("modelConfigId") != null ? Long.valueOf(request.get("modelConfigId").toString()) : null;
+
+        logger.info("Incoming batch chat request -> roles: {}, model: {}, messageLen: {}", roleIds, model, message.length());
+
+        // One query for all roles (ownership checked), then the replies as they complete
+        return blockingCalls.call(() -> roleService.getRolesByIds(roleIds))
+                .flatMapMany(roles -> {
+                    Set<Long> found = new LinkedHashSet<>();
+                    roles.forEach(r -> found.add(r.getId()));
+                    Flux<ServerSentEvent<Map<String, Object>>> missing = Flux.fromIterable(roleIds)
+                            .filter(id -> !found.contains(id))
+                            .map(id -> roleEvent("error", id, "error", "Role not found"));
+                    Flux<ServerSentEvent<Map<String, Object>>> replies = chatService.generateForRoles(roles, message, model, modelConfigId)
+                            .map(r -> r.error() == null
+                                    ? roleEvent("reply", r.roleId(), "reply", r.reply())
+                                    : roleEvent("error", r.roleId(), "error", "Failed to generate reply: " + r.error()));
+                    return missing.concatWith(replies);
+                })
+                .concatWith(Mono.fromSupplier(() -> ServerSentEvent.<Map<String, Object>>builder()
+                        .event("done")
+                        .data(Map.of("roles", roleIds.size()))
+                        .build()))
+                .onErrorResume(e -> {
+                    logger.error("Error generating batch replies: {}", e.getMessage(), e);
+                    return Flux.just(errorEvent("Failed to generate replies: " + e.getMessage()));
+                });
+    }
+
+    private Flux<ServerSentEvent<Map<String, Object>>> streamEvents(RoleDTO role, String message, String model,
+                                                                    Long modelConfigId, String sessionId) {
+        StringBuilder full = new StringBuilder();
+        Flux<ServerSentEvent<Map<String, Object>>> deltas = chatService.streamReply(role, message, model, modelConfigId, sessionId)
+                .doOnNext(full::append)
+                .map(text -> ServerSentEvent.<Map<String, Object>>builder()
+                        .event("delta")
+                        .data(Map.of("text", text))
+                        .build());
+
+        Mono<ServerSentEvent<Map<String, Object>>> done = Mono.defer(() -> {
+                    String reply = full.toString();
+                    logger.info("Successfully streamed reply ({} chars)", reply.length());
+                    return chatService.persistReply(role, sessionId, reply)
+                            .thenReturn(ServerSentEvent.<Map<String, Object>>builder()
+                                    .event("done")
+                                    .data(Map.of("reply", reply))
+                                    .build());
+                });
+
+        return deltas.concatWith(done);
+    }
+
+    // Idempotency keys are only meaningful per user
+    private String currentUserScope() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof User user) {
+            return String.valueOf(user.getId());
+        }
+        return auth != null ? auth.getName() : "anonymous";
+    }
+
+    private ServerSentEvent<Map<String, Object>> roleEvent(String event, Long roleId, String field, String value) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("roleId", roleId);
+        data.put(field, value);
+        return ServerSentEvent.<Map<String, Object>>builder()
+                .event(event)
+                .data(data)
+                .build();
+    }
+
+    private ServerSentEvent<Map<String, Object>> errorEvent(String error) {
+        return ServerSentEvent.<Map<String, Object>>builder()
+                .event("error")
+                .data(Map.of("error", error))
+                .build();
     }
-}
\ No newline at end of file
+}
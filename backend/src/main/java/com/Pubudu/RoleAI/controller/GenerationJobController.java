@@ -0,0 +1,184 @@
+package com.Pubudu.RoleAI.controller;
+
+import com.Pubudu.RoleAI.entity.GenerationJob;
+import com.Pubudu.RoleAI.entity.User;
+import com.Pubudu.RoleAI.service.GenerationJobService;
+import com.Pubudu.RoleAI.service.RoleService;
+import com.Pubudu.RoleAI.service.TokenUsageService;
+import com.Pubudu.RoleAI.util.BlockingCalls;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Asynchronous generation: submit a job and get its id right away, then poll it or subscribe to its events.
+ * The reply is also added to the session when one is given, like /api/chat/generate does.
+ */
+@RestController
+@RequestMapping("/api/chat/jobs")
+public class GenerationJobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerationJobController.class);
+
+    @Autowired
+    private GenerationJobService jobService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private BlockingCalls blockingCalls;
+
+    @Autowired
+    private TokenUsageService usageService;
+
+    @Value("${jobs.events.poll-interval-ms:1000}")
+    private long eventsPollIntervalMs;
+
+    @Value("${jobs.events.max-wait-ms:600000}")
+    private long eventsMaxWaitMs;
+
+    /**
+     * Body: { "roleId": 1, "message": "...", "model": optional, "modelConfigId": optional, "sessionId": optional,
+     *         "mode": "online" (default) | "batch" }
+     * Batch jobs go through the provider's batch API where there is one: cheaper, but may take hours.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Map<String, Object>>> submit(@RequestBody Map<String, Object> request) {
+        Long userId = currentUserId();
+        if (userId == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.<String, Object>of("error", "Unauthorized")));
+        }
+        Object roleIdRaw = request.get("roleId");
+        String message = (String) request.get("message");
+        if (roleIdRaw == null || message == null || message.isBlank()) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.<String, Object>of("error", "roleId and message are required")));
+        }
+        GenerationJob.Mode mode;
+        try {
+            mode = request.get("mode") == null ? GenerationJob.Mode.ONLINE
+                    : GenerationJob.Mode.valueOf(request.get("mode").toString().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.<String, Object>of("error", "mode must be online or batch")));
+        }
+        Long roleId = Long.valueOf(roleIdRaw.toString());
+        String model = (String) request.get("model");
+        Long modelConfigId = request.get("modelConfigId") != null ? Long.valueOf(request.get("modelConfigId").toString()) : null;
+        String sessionId = request.get("sessionId") != null ? request.get("sessionId").toString() : null;
+        try {
+            usageService.checkQuota(userId);
+        } catch (TokenUsageService.QuotaExceededException e) {
+            return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.<String, Object>of("error", e.getMessage())));
+        }
+
+        return blockingCalls.call(() -> roleService.getRoleById(roleId).map(role ->
+                        jobService.submit(userId, roleId, message, model, modelConfigId, sessionId, mode)))
+                .map(jobOpt -> jobOpt
+                        .map(job -> {
+                            logger.info("Queued {} generation job {} for role {}", mode, job.getId(), roleId);
+                            return ResponseEntity.status(HttpStatus.ACCEPTED).body(view(job));
+                        })
+                        .orElseGet(() -> ResponseEntity.badRequest().body(Map.<String, Object>of("error", "Role not found"))))
+                .onErrorResume(e -> {
+                    logger.error("Error queueing generation job: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(Map.<String, Object>of("error", "Failed to queue job: " + e.getMessage())));
+                });
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Map<String, Object>>> get(@PathVariable String id) {
+        Long userId = currentUserId();
+        if (userId == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.<String, Object>of("error", "Unauthorized")));
+        }
+        return blockingCalls.call(() -> jobService.getForUser(userId, id))
+                .map(jobOpt -> jobOpt
+                        .map(job -> ResponseEntity.ok(view(job)))
+                        .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.<String, Object>of("error", "Job not found"))));
+    }
+
+    /**
+     * Emits a "status" event whenever the job's status changes, then "done" (reply) or "error" once it finishes.
+     * Meant for online jobs; batch jobs can take hours and are better polled.
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> events(@PathVariable String id) {
+        Long userId = currentUserId();
+        if (userId == null) {
+            return Flux.just(event("error", Map.of("error", "Unauthorized")));
+        }
+        AtomicReference<GenerationJob.Status> last = new AtomicReference<>();
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(eventsPollIntervalMs))
+                .take(Duration.ofMillis(eventsMaxWaitMs))
+                .concatMap(tick -> blockingCalls.call(() -> jobService.getForUser(userId, id)))
+                .takeUntil(jobOpt -> jobOpt.isEmpty() || jobOpt.get().isFinished())
+                .concatMap(jobOpt -> {
+                    if (jobOpt.isEmpty()) {
+                        return Flux.just(event("error", Map.of("error", "Job not found")));
+                    }
+                    GenerationJob job = jobOpt.get();
+                    if (job.getStatus() == last.getAndSet(job.getStatus())) {
+                        return Flux.empty();
+                    }
+                    if (job.getStatus() == GenerationJob.Status.SUCCEEDED) {
+                        return Flux.just(event("done", view(job)));
+                    }
+                    if (job.getStatus() == GenerationJob.Status.FAILED) {
+                        return Flux.just(event("error", view(job)));
+                    }
+                    return Flux.just(event("status", view(job)));
+                })
+                .onErrorResume(e -> {
+                    logger.error("Error streaming job {} events: {}", id, e.getMessage(), e);
+                    return Flux.just(event("error", Map.of("error", "Failed to read job: " + e.getMessage())));
+                });
+    }
+
+    private Map<String, Object> view(GenerationJob job) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("jobId", job.getId());
+        m.put("status", job.getStatus().name());
+        m.put("mode", job.getMode().name());
+        m.put("roleId", job.getRoleId());
+        m.put("sessionId", job.getSessionId());
+        m.put("attempts", job.getAttempts());
+        m.put("createdAt", job.getCreatedAt());
+        m.put("finishedAt", job.getFinishedAt());
+        if (job.getReply() != null) m.put("reply", job.getReply());
+        if (job.getError() != null) m.put("error", job.getError());
+        return m;
+    }
+
+    private Long currentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        return null;
+    }
+
+    private ServerSentEvent<Map<String, Object>> event(String event, Map<String, Object> data) {
+        return ServerSentEvent.<Map<String, Object>>builder()
+                .event(event)
+                .data(data)
+                .build();
+    }
+}
@@ -2,6 +2,7 @@ package com.Pubudu.RoleAI.controller;
 
 import com.Pubudu.RoleAI.entity.ModelConfig;
 import com.Pubudu.RoleAI.service.ModelConfigService;
+import com.Pubudu.RoleAI.service.llm.LlmEndpointPolicy;
 import com.Pubudu.RoleAI.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -33,11 +34,17 @@ public class ModelConfigController {
         map.put("provider", mc.getProvider());
         map.put("modelId", mc.getModelId());
         map.put("label", mc.getLabel()); // may be null
+        map.put("baseUrl", mc.getBaseUrl()); // may be null
+        map.put("costPerMillionTokens", mc.getCostPerMillionTokens()); // may be null
         map.put("userId", mc.getUserId()); // may be null
         map.put("createdAt", mc.getCreatedAt());
         return map;
     }
 
+    private Double parseCost(String raw) {
+        return raw == null || raw.isBlank() ? null : Double.valueOf(raw.trim());
+    }
+
     @GetMapping
     public ResponseEntity<?> list(@RequestHeader(value = "Authorization", required = false) String auth) {
         Long uid = userIdFromAuth(auth);
@@ -64,8 +71,18 @@ public class ModelConfigController {
         if (modelId == null || apiKey == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "modelId and apiKey are required"));
         }
-        ModelConfig mc = modelConfigService.create(uid, provider, modelId, label, apiKey);
-        return ResponseEntity.ok(sanitize(mc));
+        Double cost;
+        try {
+            cost = parseCost(body.get("costPerMillionTokens"));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "costPerMillionTokens must be a number"));
+        }
+        try {
+            ModelConfig mc = modelConfigService.create(uid, provider, modelId, label, apiKey, body.get("baseUrl"), cost);
+            return ResponseEntity.ok(sanitize(mc));
+        } catch (LlmEndpointPolicy.EndpointNotAllowedException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @PatchMapping("/{id}")
@@ -86,14 +103,26 @@ public class ModelConfigController {
             return ResponseEntity.status(403).body(Map.of("error", "You can only update your own models"));
         }
         
-        ModelConfig mc = modelConfigService.update(
-                id,
-                body.get("provider"),
-                body.get("modelId"),
-                body.get("label"),
-                body.get("apiKey")
-        );
-        return ResponseEntity.ok(sanitize(mc));
+        Double cost;
+        try {
+            cost = parseCost(body.get("costPerMillionTokens"));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "costPerMillionTokens must be a number"));
+        }
+        try {
+            ModelConfig mc = modelConfigService.update(
+                    id,
+                    body.get("provider"),
+                    body.get("modelId"),
+                    body.get("label"),
+                    body.get("apiKey"),
+                    body.get("baseUrl"),
+                    cost
+            );
+            return ResponseEntity.ok(sanitize(mc));
+        } catch (LlmEndpointPolicy.EndpointNotAllowedException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @DeleteMapping("/{id}")
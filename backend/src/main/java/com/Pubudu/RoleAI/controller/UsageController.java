@@ -0,0 +1,65 @@
+package com.Pubudu.RoleAI.controller;
+
+import com.Pubudu.RoleAI.entity.TokenUsage;
+import com.Pubudu.RoleAI.entity.User;
+import com.Pubudu.RoleAI.repository.TokenUsageRepository;
+import com.Pubudu.RoleAI.service.TokenUsageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/usage")
+public class UsageController {
+
+    @Autowired
+    private TokenUsageService usageService;
+
+    @Autowired
+    private TokenUsageRepository usageRepository;
+
+    /**
+     * Today's token usage of the current user. "tokensUsed" is live; the per role / ModelConfig
+     * breakdown is as of the last flush.
+     */
+    @GetMapping("/today")
+    public ResponseEntity<?> today() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof User user)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+        }
+        LocalDate day = LocalDate.now();
+        long used = usageService.tokensToday(user.getId());
+        long quota = usageService.dailyQuota(user.getId());
+
+        List<TokenUsage> rows = usageRepository.findByUserIdAndUsageDateOrderByModelConfigIdAscRoleIdAsc(user.getId(), day);
+        List<Map<String, Object>> breakdown = rows.stream().map(u -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("roleId", u.getRoleId() == 0 ? null : u.getRoleId());
+            m.put("modelConfigId", u.getModelConfigId() == 0 ? null : u.getModelConfigId());
+            m.put("promptTokens", u.getPromptTokens());
+            m.put("outputTokens", u.getOutputTokens());
+            m.put("cachedTokens", u.getCachedTokens());
+            m.put("calls", u.getCalls());
+            return m;
+        }).toList();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("date", day.toString());
+        body.put("tokensUsed", used);
+        body.put("dailyQuota", quota > 0 ? quota : null);
+        body.put("remaining", quota > 0 ? Math.max(0, quota - used) : null);
+        body.put("breakdown", breakdown);
+        return ResponseEntity.ok(body);
+    }
+}
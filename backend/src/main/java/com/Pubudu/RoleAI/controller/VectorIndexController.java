@@ -0,0 +1,92 @@
+package com.Pubudu.RoleAI.controller;
+
+import com.Pubudu.RoleAI.entity.User;
+import com.Pubudu.RoleAI.service.VectorReindexService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Admin endpoints for rebuilding the role vectors (embedding model or dimension change). Only users whose
+ * email is listed in admin.emails may call them.
+ */
+@RestController
+@RequestMapping("/api/admin/vector-index")
+public class VectorIndexController {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexController.class);
+
+    // Comma-separated; empty = nobody
+    @Value("${admin.emails:}")
+    private String adminEmails;
+
+    @Autowired
+    private VectorReindexService reindexService;
+
+    // Read generation, generation being built and the latest job's progress
+    @GetMapping
+    public ResponseEntity<?> status() {
+        return asAdmin(() -> ResponseEntity.ok(reindexService.status()));
+    }
+
+    // Start building the next generation; reads switch to it when it completes
+    @PostMapping("/reindex")
+    public ResponseEntity<?> reindex() {
+        return asAdmin(() -> {
+            reindexService.start();
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reindexService.status());
+        });
+    }
+
+    @PostMapping("/reindex/cancel")
+    public ResponseEntity<?> cancel() {
+        return asAdmin(() -> {
+            reindexService.cancel();
+            return ResponseEntity.ok(reindexService.status());
+        });
+    }
+
+    // Continue a failed or cancelled job from where it stopped
+    @PostMapping("/reindex/resume")
+    public ResponseEntity<?> resume() {
+        return asAdmin(() -> {
+            reindexService.resume();
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reindexService.status());
+        });
+    }
+
+    private ResponseEntity<?> asAdmin(Supplier<ResponseEntity<?>> action) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof User user)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+        }
+        Set<String> admins = Arrays.stream(adminEmails.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .map(String::toLowerCase)
+                .collect(Collectors.toSet());
+        if (user.getEmail() == null || !admins.contains(user.getEmail().toLowerCase())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Admin only"));
+        }
+        try {
+            return action.get();
+        } catch (VectorReindexService.ReindexException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Vector index admin call failed: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+}
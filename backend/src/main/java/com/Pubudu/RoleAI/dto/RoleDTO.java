@@ -5,6 +5,7 @@ public class RoleDTO {
     private String name;
     private String description;
     private Long userId;
+    private Boolean responseCacheEnabled;
 
     // Default constructor
     public RoleDTO() {}
@@ -54,4 +55,12 @@ public class RoleDTO {
     public void setUserId(Long userId) {
         this.userId = userId;
     }
+
+    public Boolean getResponseCacheEnabled() {
+        return responseCacheEnabled;
+    }
+
+    public void setResponseCacheEnabled(Boolean responseCacheEnabled) {
+        this.responseCacheEnabled = responseCacheEnabled;
+    }
 }
\ No newline at end of file
@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages_v2")
+@Table(name = "chat_messages_v2",
+        indexes = @Index(name = "idx_chat_messages_v2_session_created", columnList = "session_id, created_at"))
 public class ChatMessage {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
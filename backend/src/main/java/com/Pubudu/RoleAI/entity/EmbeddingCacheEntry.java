@@ -0,0 +1,48 @@
+package com.Pubudu.RoleAI.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Persistent tier of EmbeddingCache: one vector per SHA-256 of (provider, model, dimension, purpose, text)
+@Entity
+@Table(name = "embedding_cache")
+public class EmbeddingCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey; // hex SHA-256
+
+    @Column(name = "provider", nullable = false, length = 32)
+    private String provider;
+
+    @Column(name = "model", nullable = false, length = 128)
+    private String model;
+
+    @Column(name = "dimension", nullable = false)
+    private int dimension;
+
+    // float32 little-endian
+    @Column(name = "vector", nullable = false)
+    private byte[] vector;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public String getCacheKey() { return cacheKey; }
+    public void setCacheKey(String cacheKey) { this.cacheKey = cacheKey; }
+
+    public String getProvider() { return provider; }
+    public void setProvider(String provider) { this.provider = provider; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public int getDimension() { return dimension; }
+    public void setDimension(int dimension) { this.dimension = dimension; }
+
+    public byte[] getVector() { return vector; }
+    public void setVector(byte[] vector) { this.vector = vector; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,134 @@
+package com.Pubudu.RoleAI.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "generation_jobs",
+        indexes = {
+                @Index(name = "idx_generation_jobs_claim", columnList = "mode, status, next_run_at"),
+                @Index(name = "idx_generation_jobs_batch", columnList = "batch_name")
+        })
+public class GenerationJob {
+
+    public enum Status { QUEUED, RUNNING, BATCH_SUBMITTED, SUCCEEDED, FAILED }
+
+    // ONLINE jobs are generated by the worker pool one by one; BATCH jobs go through the provider's batch API
+    public enum Mode { ONLINE, BATCH }
+
+    @Id
+    @Column(length = 36)
+    private String id; // UUID
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "role_id", nullable = false)
+    private Long roleId;
+
+    @Column(name = "session_id", length = 16)
+    private String sessionId; // optional: reply is added to this session
+
+    @Column(name = "model_config_id")
+    private Long modelConfigId;
+
+    @Column(name = "model")
+    private String model;
+
+    @Column(name = "message", nullable = false, columnDefinition = "TEXT")
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "mode", length = 16, nullable = false)
+    private Mode mode = Mode.ONLINE;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16, nullable = false)
+    private Status status = Status.QUEUED;
+
+    @Column(name = "reply", columnDefinition = "TEXT")
+    private String reply;
+
+    @Column(name = "error", length = 2000)
+    private String error;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "batch_name")
+    private String batchName; // provider batch handle while BATCH_SUBMITTED
+
+    @Column(name = "locked_by", length = 64)
+    private String lockedBy;
+
+    // Lease: a RUNNING job whose lease ran out (node died) is picked up again
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "next_run_at", nullable = false)
+    private LocalDateTime nextRunAt = LocalDateTime.now();
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public Long getRoleId() { return roleId; }
+    public void setRoleId(Long roleId) { this.roleId = roleId; }
+
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public Long getModelConfigId() { return modelConfigId; }
+    public void setModelConfigId(Long modelConfigId) { this.modelConfigId = modelConfigId; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public Mode getMode() { return mode; }
+    public void setMode(Mode mode) { this.mode = mode; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public String getReply() { return reply; }
+    public void setReply(String reply) { this.reply = reply; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public String getBatchName() { return batchName; }
+    public void setBatchName(String batchName) { this.batchName = batchName; }
+
+    public String getLockedBy() { return lockedBy; }
+    public void setLockedBy(String lockedBy) { this.lockedBy = lockedBy; }
+
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public LocalDateTime getNextRunAt() { return nextRunAt; }
+    public void setNextRunAt(LocalDateTime nextRunAt) { this.nextRunAt = nextRunAt; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+}
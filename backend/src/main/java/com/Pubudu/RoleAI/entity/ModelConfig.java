@@ -20,6 +20,12 @@ public class ModelConfig {
     @Column
     private String label; // optional display name
 
+    @Column(length = 1024)
+    private String baseUrl; // optional API root for OPENAI-compatible providers
+
+    @Column
+    private Double costPerMillionTokens; // optional, used when routing between configs
+
     @Column
     private Long userId; // owner; nullable if global
 
@@ -41,6 +47,12 @@ public class ModelConfig {
     public String getLabel() { return label; }
     public void setLabel(String label) { this.label = label; }
 
+    public String getBaseUrl() { return baseUrl; }
+    public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
+
+    public Double getCostPerMillionTokens() { return costPerMillionTokens; }
+    public void setCostPerMillionTokens(Double costPerMillionTokens) { this.costPerMillionTokens = costPerMillionTokens; }
+
     public Long getUserId() { return userId; }
     public void setUserId(Long userId) { this.userId = userId; }
 
@@ -0,0 +1,116 @@
+package com.Pubudu.RoleAI.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// One rebuild of every role vector into a new generation of namespaces; the newest COMPLETED job of a store is what reads use
+@Entity
+@Table(name = "vector_reindex_jobs",
+        // Two nodes starting a reindex at once can't both create the same generation
+        uniqueConstraints = @UniqueConstraint(name = "uk_vector_reindex_generation", columnNames = {"store_id", "generation"}),
+        indexes = @Index(name = "idx_vector_reindex_store", columnList = "store_id, status, generation"))
+public class ReindexJob {
+
+    public enum Status { RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "store_id", nullable = false, length = 32)
+    private String storeId;
+
+    @Column(name = "generation", nullable = false)
+    private int generation;
+
+    // Embedding identity the generation is built with; nodes configured differently don't touch it
+    @Column(name = "provider", nullable = false, length = 32)
+    private String provider;
+
+    @Column(name = "model", nullable = false, length = 128)
+    private String model;
+
+    @Column(name = "dimension", nullable = false)
+    private int dimension;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16, nullable = false)
+    private Status status = Status.RUNNING;
+
+    // Keyset position: every role with a smaller or equal id is written
+    @Column(name = "cursor_role_id", nullable = false)
+    private long cursorRoleId;
+
+    @Column(name = "roles_written", nullable = false)
+    private long rolesWritten;
+
+    @Column(name = "roles_total", nullable = false)
+    private long rolesTotal; // estimate taken at start, for progress
+
+    @Column(name = "error", length = 2000)
+    private String error;
+
+    @Column(name = "locked_by", length = 64)
+    private String lockedBy;
+
+    // Lease, renewed at every checkpoint: a RUNNING job whose lease ran out (node died) is resumed elsewhere
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getStoreId() { return storeId; }
+    public void setStoreId(String storeId) { this.storeId = storeId; }
+
+    public int getGeneration() { return generation; }
+    public void setGeneration(int generation) { this.generation = generation; }
+
+    public String getProvider() { return provider; }
+    public void setProvider(String provider) { this.provider = provider; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public int getDimension() { return dimension; }
+    public void setDimension(int dimension) { this.dimension = dimension; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public long getCursorRoleId() { return cursorRoleId; }
+    public void setCursorRoleId(long cursorRoleId) { this.cursorRoleId = cursorRoleId; }
+
+    public long getRolesWritten() { return rolesWritten; }
+    public void setRolesWritten(long rolesWritten) { this.rolesWritten = rolesWritten; }
+
+    public long getRolesTotal() { return rolesTotal; }
+    public void setRolesTotal(long rolesTotal) { this.rolesTotal = rolesTotal; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public String getLockedBy() { return lockedBy; }
+    public void setLockedBy(String lockedBy) { this.lockedBy = lockedBy; }
+
+    public LocalDateTime getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(LocalDateTime lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
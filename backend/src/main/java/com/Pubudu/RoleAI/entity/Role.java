@@ -20,6 +20,13 @@ public class Role {
     @Column(name = "user_id")
     private Long userId;
 
+    // Null (existing rows) means enabled; false opts this role out of the LLM response cache
+    @Column(name = "response_cache_enabled")
+    private Boolean responseCacheEnabled;
+
+    // roles.embedding (pgvector) is deliberately not mapped: PgVectorStore owns it, so loading a role never
+    // pulls its vector and saving one never overwrites it
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -73,6 +80,14 @@ public class Role {
         this.userId = userId;
     }
 
+    public Boolean getResponseCacheEnabled() {
+        return responseCacheEnabled;
+    }
+
+    public void setResponseCacheEnabled(Boolean responseCacheEnabled) {
+        this.responseCacheEnabled = responseCacheEnabled;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
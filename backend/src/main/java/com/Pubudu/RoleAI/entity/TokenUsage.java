@@ -0,0 +1,76 @@
+package com.Pubudu.RoleAI.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Daily token totals per user, role and ModelConfig; rows are upserted in batches by TokenUsageService
+@Entity
+@Table(name = "token_usage",
+        uniqueConstraints = @UniqueConstraint(name = "uk_token_usage_day_user_role_config",
+                columnNames = {"usage_date", "user_id", "role_id", "model_config_id"}),
+        indexes = @Index(name = "idx_token_usage_user_day", columnList = "user_id, usage_date"))
+public class TokenUsage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "usage_date", nullable = false)
+    private LocalDate usageDate;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // 0 when unknown: part of the unique key, so never null
+    @Column(name = "role_id", nullable = false)
+    private Long roleId;
+
+    @Column(name = "model_config_id", nullable = false)
+    private Long modelConfigId;
+
+    @Column(name = "prompt_tokens", nullable = false)
+    private long promptTokens;
+
+    @Column(name = "output_tokens", nullable = false)
+    private long outputTokens;
+
+    @Column(name = "cached_tokens", nullable = false)
+    private long cachedTokens;
+
+    @Column(name = "calls", nullable = false)
+    private long calls;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public LocalDate getUsageDate() { return usageDate; }
+    public void setUsageDate(LocalDate usageDate) { this.usageDate = usageDate; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public Long getRoleId() { return roleId; }
+    public void setRoleId(Long roleId) { this.roleId = roleId; }
+
+    public Long getModelConfigId() { return modelConfigId; }
+    public void setModelConfigId(Long modelConfigId) { this.modelConfigId = modelConfigId; }
+
+    public long getPromptTokens() { return promptTokens; }
+    public void setPromptTokens(long promptTokens) { this.promptTokens = promptTokens; }
+
+    public long getOutputTokens() { return outputTokens; }
+    public void setOutputTokens(long outputTokens) { this.outputTokens = outputTokens; }
+
+    public long getCachedTokens() { return cachedTokens; }
+    public void setCachedTokens(long cachedTokens) { this.cachedTokens = cachedTokens; }
+
+    public long getCalls() { return calls; }
+    public void setCalls(long calls) { this.calls = calls; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
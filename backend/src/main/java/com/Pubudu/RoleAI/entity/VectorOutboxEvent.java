@@ -0,0 +1,66 @@
+package com.Pubudu.RoleAI.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// "Role changed, sync its vector": written in the role's transaction, consumed by VectorOutboxService
+@Entity
+@Table(name = "vector_outbox",
+        indexes = {
+                @Index(name = "idx_vector_outbox_role", columnList = "role_id, id"),
+                @Index(name = "idx_vector_outbox_due", columnList = "next_attempt_at")
+        })
+public class VectorOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "role_id", nullable = false)
+    private Long roleId;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    // Due time; a claim pushes it out by the lease, so an event whose flusher died is picked up again
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    @Column(name = "last_error", length = 2000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public VectorOutboxEvent() {
+    }
+
+    public VectorOutboxEvent(Long userId, Long roleId) {
+        this.userId = userId;
+        this.roleId = roleId;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public Long getRoleId() { return roleId; }
+    public void setRoleId(Long roleId) { this.roleId = roleId; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
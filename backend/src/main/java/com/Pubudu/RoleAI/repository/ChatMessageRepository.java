@@ -1,11 +1,14 @@
 package com.Pubudu.RoleAI.repository;
 
 import com.Pubudu.RoleAI.entity.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     List<ChatMessage> findBySessionIdOrderByCreatedAtAsc(String sessionId);
+    // Newest first, bounded by the page size - used to build the prompt history window
+    List<ChatMessage> findBySessionIdOrderByCreatedAtDescIdDesc(String sessionId, Pageable pageable);
     void deleteBySessionId(String sessionId);
 }
@@ -0,0 +1,26 @@
+package com.Pubudu.RoleAI.repository;
+
+import com.Pubudu.RoleAI.entity.EmbeddingCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface EmbeddingCacheRepository extends JpaRepository<EmbeddingCacheEntry, String> {
+
+    // Content-addressed, so a row that already exists holds the same vector. Plain SQL rather than ON CONFLICT
+    // so it runs on H2 too; a node inserting the same key concurrently still makes this fail with a duplicate key
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO embedding_cache (cache_key, provider, model, dimension, vector, created_at) " +
+            "SELECT :key, :provider, :model, :dimension, :vector, :createdAt " +
+            "WHERE NOT EXISTS (SELECT 1 FROM embedding_cache WHERE cache_key = :key)", nativeQuery = true)
+    int insertIfAbsent(@Param("key") String key, @Param("provider") String provider, @Param("model") String model,
+                       @Param("dimension") int dimension, @Param("vector") byte[] vector,
+                       @Param("createdAt") LocalDateTime createdAt);
+}
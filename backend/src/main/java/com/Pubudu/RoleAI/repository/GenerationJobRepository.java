@@ -0,0 +1,37 @@
+package com.Pubudu.RoleAI.repository;
+
+import com.Pubudu.RoleAI.entity.GenerationJob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GenerationJobRepository extends JpaRepository<GenerationJob, String> {
+
+    // Due jobs of a mode, plus RUNNING ones whose lease expired; rows locked by another node are skipped
+    @Query(value = "SELECT * FROM generation_jobs " +
+            "WHERE mode = :mode AND ((status = 'QUEUED' AND next_run_at <= :now) " +
+            "OR (status = 'RUNNING' AND locked_until < :now)) " +
+            "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<GenerationJob> lockClaimable(@Param("mode") String mode, @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Submitted provider batches not being polled by another node right now
+    @Query(value = "SELECT * FROM generation_jobs " +
+            "WHERE status = 'BATCH_SUBMITTED' AND (locked_until IS NULL OR locked_until < :now) " +
+            "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<GenerationJob> lockSubmittedBatches(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    List<GenerationJob> findByBatchName(String batchName);
+
+    // SELECT ... FOR UPDATE: the lease check and the write that follows it can't interleave with a reclaim
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM GenerationJob j WHERE j.id = :id")
+    Optional<GenerationJob> lockById(@Param("id") String id);
+}
@@ -0,0 +1,27 @@
+package com.Pubudu.RoleAI.repository;
+
+import com.Pubudu.RoleAI.entity.ReindexJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReindexJobRepository extends JpaRepository<ReindexJob, Long> {
+
+    // Generation reads use
+    Optional<ReindexJob> findFirstByStoreIdAndStatusOrderByGenerationDesc(String storeId, ReindexJob.Status status);
+
+    Optional<ReindexJob> findFirstByStoreIdOrderByGenerationDesc(String storeId);
+
+    Optional<ReindexJob> findByStoreIdAndGeneration(String storeId, int generation);
+
+    // A RUNNING job nobody holds a lease on (its node died); skipped if another node is claiming it right now
+    @Query(value = "SELECT * FROM vector_reindex_jobs WHERE store_id = :storeId AND status = 'RUNNING' " +
+            "AND (locked_until IS NULL OR locked_until < :now) LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<ReindexJob> lockAbandoned(@Param("storeId") String storeId, @Param("now") LocalDateTime now);
+}
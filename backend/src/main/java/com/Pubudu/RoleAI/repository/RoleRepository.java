@@ -1,9 +1,8 @@
 package com.Pubudu.RoleAI.repository;
 
 import com.Pubudu.RoleAI.entity.Role;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -20,9 +19,10 @@ public interface RoleRepository extends JpaRepository<Role, Long> {
     // Find roles by user ID and name
     List<Role> findByUserIdAndNameContainingIgnoreCase(Long userId, String name);
     
-    // Vector similarity search - find similar roles based on embedding
-    @Query(value = "SELECT * FROM roles WHERE user_id = :userId ORDER BY embedding <-> CAST(:queryEmbedding AS vector) LIMIT :limit", nativeQuery = true)
-    List<Role> findSimilarRoles(@Param("userId") Long userId, @Param("queryEmbedding") String queryEmbedding, @Param("limit") int limit);
+    // Vector similarity search over roles.embedding lives in PgVectorStore (vector.store=pgvector)
+    
+    // Keyset pagination over all roles (id > last seen id, no OFFSET), for jobs that walk the whole table
+    List<Role> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
     
     // Find all roles for a user ordered by creation date
     List<Role> findByUserIdOrderByCreatedAtDesc(Long userId);
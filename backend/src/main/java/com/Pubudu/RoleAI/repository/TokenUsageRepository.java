@@ -0,0 +1,33 @@
+package com.Pubudu.RoleAI.repository;
+
+import com.Pubudu.RoleAI.entity.TokenUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TokenUsageRepository extends JpaRepository<TokenUsage, Long> {
+
+    // Add a delta to an existing day's row; 0 when the row doesn't exist yet (plain JPQL, so it runs on any database)
+    @Modifying
+    @Query("UPDATE TokenUsage u SET u.promptTokens = u.promptTokens + :prompt, u.outputTokens = u.outputTokens + :output, " +
+            "u.cachedTokens = u.cachedTokens + :cached, u.calls = u.calls + :calls, u.updatedAt = :now " +
+            "WHERE u.usageDate = :day AND u.userId = :userId AND u.roleId = :roleId AND u.modelConfigId = :configId")
+    int addUsage(@Param("day") LocalDate day, @Param("userId") Long userId, @Param("roleId") Long roleId,
+                 @Param("configId") Long configId, @Param("prompt") long prompt, @Param("output") long output,
+                 @Param("cached") long cached, @Param("calls") long calls, @Param("now") LocalDateTime now);
+
+    // [userId, prompt + output tokens] for the given users on one day, across all nodes
+    @Query("SELECT u.userId, SUM(u.promptTokens + u.outputTokens) FROM TokenUsage u " +
+            "WHERE u.usageDate = :day AND u.userId IN :userIds GROUP BY u.userId")
+    List<Object[]> totalsForDay(@Param("day") LocalDate day, @Param("userIds") Collection<Long> userIds);
+
+    List<TokenUsage> findByUserIdAndUsageDateOrderByModelConfigIdAscRoleIdAsc(Long userId, LocalDate usageDate);
+}
@@ -0,0 +1,34 @@
+package com.Pubudu.RoleAI.repository;
+
+import com.Pubudu.RoleAI.entity.VectorOutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface VectorOutboxRepository extends JpaRepository<VectorOutboxEvent, Long> {
+
+    // Oldest event of each role, when due. Later events of a role wait until it is done, and a role with any
+    // leased (or backing off) event is left alone: ids are assigned at insert, so an event with a lower id can
+    // commit after a higher one was claimed and must not start a second flusher on that role. Rows locked by
+    // another node are skipped
+    @Query(value = "SELECT * FROM vector_outbox v WHERE v.next_attempt_at <= :now " +
+            "AND NOT EXISTS (SELECT 1 FROM vector_outbox e WHERE e.role_id = v.role_id " +
+            "AND (e.id < v.id OR e.next_attempt_at > :now)) " +
+            "ORDER BY v.id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<VectorOutboxEvent> lockDueHeads(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // [roleId, event id] of every event of the given roles visible now
+    @Query("SELECT e.roleId, e.id FROM VectorOutboxEvent e WHERE e.roleId IN :roleIds")
+    List<Object[]> findEventIds(@Param("roleIds") Collection<Long> roleIds);
+
+    @Modifying
+    @Query("DELETE FROM VectorOutboxEvent e WHERE e.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -1,21 +1,32 @@
 package com.Pubudu.RoleAI.service;
 
 import com.Pubudu.RoleAI.dto.RoleDTO;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.Pubudu.RoleAI.entity.ModelConfig;
+import com.Pubudu.RoleAI.service.llm.LlmBatchResult;
+import com.Pubudu.RoleAI.service.llm.LlmEndpointPolicy;
+import com.Pubudu.RoleAI.service.llm.LlmProvider;
+import com.Pubudu.RoleAI.service.llm.LlmReply;
+import com.Pubudu.RoleAI.service.llm.LlmRequest;
+import com.Pubudu.RoleAI.service.llm.LlmRouter;
+import com.Pubudu.RoleAI.util.BlockingCalls;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
-import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class ChatService {
@@ -25,39 +36,381 @@ public class ChatService {
     @Value("${gemini.api.key:}") // default to empty if not provided
     private String geminiApiKey;
 
-    @Value("${gemini.api.url:https://generativelanguage.googleapis.com/v1beta/models/}")
-    private String geminiApiUrl;
+    // Overall deadline for a non-streaming reply, and the slice of it RAG retrieval may use
+    @Value("${chat.request-budget-ms:110000}")
+    private long requestBudgetMs;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final WebClient webClient = WebClient.create();
+    @Value("${chat.retrieval-budget-ms:1500}")
+    private long retrievalBudgetMs;
+
+    // Pick among the user's ModelConfigs when a request doesn't name one
+    @Value("${llm.router.enabled:true}")
+    private boolean routingEnabled;
 
     @Autowired
     private EmbeddingService embeddingService;
 
     @Autowired
-    private PineconeService pineconeService;
+    private RoleVectorService roleVectorService;
 
     @Autowired
     private ModelConfigService modelConfigService;
 
+    @Autowired
+    private BlockingCalls blockingCalls;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private ConversationHistoryService historyService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private LlmConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private LlmResilience resilience;
+
+    @Autowired
+    private List<LlmProvider> providers;
+
+    @Autowired
+    private LlmRouter router;
+
+    @Autowired
+    private LlmEndpointPolicy endpointPolicy;
+
+    @Autowired
+    private TokenUsageService usageService;
+
+    @Value("${chat.batch.max-concurrency:8}")
+    private int batchConcurrency;
+
+    // Identical generate requests currently waiting on the LLM (single-flight)
+    private final Map<String, Mono<String>> inFlight = new ConcurrentHashMap<>();
+
     public String generateReply(RoleDTO role, String userMessage, String model, Long modelConfigId) {
-        // Require modelConfigId - API key must come from database
+        return generateReplyAsync(role, userMessage, model, modelConfigId, null).block();
+    }
+
+    /**
+     * Non-blocking variant of generateReply. Config lookup and RAG retrieval run on the
+     * bounded blocking scheduler; the LLM call itself never holds a thread while waiting.
+     * With a sessionId, the most recent turns of that session are sent as conversation history.
+     */
+    public Mono<String> generateReplyAsync(RoleDTO role, String userMessage, String model, Long modelConfigId, String sessionId) {
+        return generateForJob(role, userMessage, model, modelConfigId, sessionId)
+                .onErrorResume(ModelConfigException.class, e -> Mono.just(e.getMessage()));
+    }
+
+    /**
+     * generateReplyAsync for background jobs: configuration problems fail with ModelConfigException
+     * instead of coming back as "Error: ..." reply text, so the job can be marked failed.
+     */
+    public Mono<String> generateForJob(RoleDTO role, String userMessage, String model, Long modelConfigId, String sessionId) {
+        return loadHistory(role, sessionId, userMessage).flatMap(history -> {
+            String historyKey = historyKey(history);
+            Optional<String> cached = responseCache.lookup(role, modelConfigId, model, historyKey, userMessage);
+            if (cached.isPresent()) {
+                logger.info("Serving cached reply for role {} / ModelConfig {}", role.getId(), modelConfigId);
+                return Mono.just(cached.get());
+            }
+            return prepare(role, userMessage, history, model, modelConfigId)
+                    .flatMap(prepared -> invoke(role, prepared, model, modelConfigId, historyKey, userMessage));
+        });
+    }
+
+    /**
+     * Everything an offline (provider batch) job needs, resolved now: provider, key, model, history and RAG
+     * context. The call itself is made later by the provider's batch API.
+     */
+    public Mono<OfflineRequest> prepareOffline(RoleDTO role, String userMessage, String model, Long modelConfigId, String sessionId) {
+        return loadHistory(role, sessionId, userMessage)
+                .flatMap(history -> prepare(role, userMessage, history, model, modelConfigId))
+                .map(prepared -> new OfflineRequest(prepared.provider(), prepared.request()));
+    }
+
+    /**
+     * Status of a provider batch submitted with the given ModelConfig.
+     */
+    public Mono<LlmBatchResult> pollBatch(Long userId, Long modelConfigId, String model, String batchName) {
         if (modelConfigId == null) {
-            logger.error("No modelConfigId provided - API key must be configured in database");
-            return "Error: No model configuration selected. Please add a Model with API key in settings.";
+            return Mono.error(new ModelConfigException("Error: Batch has no model configuration."));
+        }
+        return blockingCalls.call(() -> resolveTarget(userId, null, null, model, modelConfigId))
+                .flatMap(target -> target.provider().pollBatch(batchName, target.apiKey()));
+    }
+
+    /**
+     * Ask several roles the same question at once. The model config is resolved once and RAG retrieval
+     * (embedding + vector search over the user's namespace) runs once for the whole batch; the provider
+     * calls then run concurrently, still subject to the per-key limiter. Replies are emitted as each
+     * role finishes, so the batch takes about as long as its slowest role. Nothing is persisted.
+     */
+    public Flux<RoleReply> generateForRoles(List<RoleDTO> roles, String userMessage, String model, Long modelConfigId) {
+        if (roles.isEmpty()) {
+            return Flux.empty();
+        }
+        RoleDTO first = roles.get(0);
+        long deadline = System.currentTimeMillis() + requestBudgetMs;
+        Mono<Target> target = blockingCalls.call(() -> resolveTarget(first.getUserId(), first, userMessage, model, modelConfigId)).cache();
+        Mono<String> context = retrieveContext(first, userMessage, deadline).cache();
+
+        Flux<RoleReply> replies = Flux.fromIterable(roles).flatMap(role -> {
+            Mono<String> reply = responseCache.lookup(role, modelConfigId, model, "-", userMessage)
+                    .map(Mono::just)
+                    .orElseGet(() -> Mono.zip(target, context)
+                            .map(t -> new PreparedRequest(t.getT1().provider(),
+                                    toRequest(role, t.getT1(), t.getT2(), List.of(), userMessage), deadline))
+                            .flatMap(prepared -> invoke(role, prepared, model, modelConfigId, "-", userMessage)));
+            return reply
+                    .onErrorResume(ModelConfigException.class, e -> Mono.just(e.getMessage()))
+                    .map(r -> new RoleReply(role.getId(), r, null))
+                    .onErrorResume(e -> {
+                        logger.warn("Batch reply failed for role {}: {}", role.getId(), e.getMessage());
+                        return Mono.just(new RoleReply(role.getId(), null, e.getMessage()));
+                    });
+        }, batchConcurrency);
+        return Mono.fromRunnable(() -> usageService.checkQuota(first.getUserId())).thenMany(replies);
+    }
+
+    /**
+     * Generate a reply and persist it to the session (when given) exactly once for concurrent identical
+     * requests: a double submit of the same message to the same role and session while the first call is
+     * still running joins that call instead of hitting the LLM again.
+     */
+    public Mono<String> generateAndPersist(RoleDTO role, String userMessage, String model, Long modelConfigId, String sessionId) {
+        String flightKey = role.getId() + "|" + sessionId + "|" + modelConfigId + "|" + model + "|" + userMessage;
+        return inFlight.computeIfAbsent(flightKey, k -> {
+            AtomicReference<Mono<String>> flight = new AtomicReference<>();
+            flight.set(generateReplyAsync(role, userMessage, model, modelConfigId, sessionId)
+                    .flatMap(reply -> persistReply(role, sessionId, reply).thenReturn(reply))
+                    // Leave the map before the waiters see the outcome (doFinally runs after), so a retry
+                    // right after a failure makes a new call; only this flight's entry, never a newer one
+                    .doOnTerminate(() -> inFlight.remove(k, flight.get()))
+                    .cache());
+            return flight.get();
+        });
+    }
+
+    /**
+     * Persist an AI reply to the session, if one is given. Failures are logged, never surfaced:
+     * the caller still gets the reply.
+     */
+    public Mono<Void> persistReply(RoleDTO role, String sessionId, String reply) {
+        if (sessionId == null) {
+            return Mono.empty();
         }
+        // Persist on behalf of the role owner (already verified as the current user)
+        return blockingCalls.call(() -> chatSessionService.addMessageForUser(role.getUserId(), sessionId, "ai", reply, role.getId()))
+                .doOnError(ex -> logger.warn("Failed to persist AI reply to session {}: {}", sessionId, ex.getMessage()))
+                .onErrorResume(ex -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Stream the reply as text deltas from the config's provider.
+     * Configuration problems are emitted as a single delta carrying the same
+     * "Error: ..." text generateReply would return, so callers can treat both paths alike.
+     */
+    public Flux<String> streamReply(RoleDTO role, String userMessage, String model, Long modelConfigId, String sessionId) {
+        return loadHistory(role, sessionId, userMessage).flatMapMany(history -> {
+            String historyKey = historyKey(history);
+            Optional<String> cached = responseCache.lookup(role, modelConfigId, model, historyKey, userMessage);
+            if (cached.isPresent()) {
+                logger.info("Serving cached reply for role {} / ModelConfig {}", role.getId(), modelConfigId);
+                return Flux.just(cached.get());
+            }
+            return prepare(role, userMessage, history, model, modelConfigId)
+                    .flatMapMany(prepared -> {
+                        LlmProvider provider = prepared.provider();
+                        LlmRequest request = prepared.request();
+                        long started = System.currentTimeMillis();
+                        AtomicBoolean first = new AtomicBoolean(true);
+                        StringBuilder full = new StringBuilder();
+                        return resilience.withRetryMany(() -> concurrencyLimiter.withPermitMany(request.configId(), role.getUserId(),
+                                        () -> provider.stream(request)), prepared.deadline())
+                                .doOnNext(delta -> {
+                                    // Routing cares about time to first token for streams
+                                    if (first.compareAndSet(true, false)) {
+                                        router.record(request.configId(), System.currentTimeMillis() - started, true);
+                                    }
+                                    full.append(delta);
+                                })
+                                .doOnError(e -> {
+                                    if (first.get() && !isShed(e)) router.record(request.configId(), System.currentTimeMillis() - started, false);
+                                })
+                                .doOnComplete(() -> {
+                                    // Streams don't report usage: account an estimate
+                                    String reply = full.toString();
+                                    usageService.record(role.getUserId(), role.getId(), request.configId(),
+                                            estimatePromptTokens(request), historyService.estimateTokens(reply), 0);
+                                    responseCache.store(role, modelConfigId, model, historyKey, userMessage, reply);
+                                });
+                    })
+                    .onErrorResume(ModelConfigException.class, e -> Flux.just(e.getMessage()));
+        });
+    }
+
+    /**
+     * One provider call with retries, hedging and the per-key limit, feeding the router and the response cache.
+     */
+    private Mono<String> invoke(RoleDTO role, PreparedRequest prepared, String model, Long modelConfigId,
+                                String historyKey, String userMessage) {
+        LlmProvider provider = prepared.provider();
+        LlmRequest request = prepared.request();
+        long started = System.currentTimeMillis();
+        // Each attempt (and hedge) takes its own permit, so backoff sleeps don't hold one;
+        // time spent queued behind the per-key limit counts against the deadline
+        return resilience.withRetry(() -> resilience.hedged(provider.primaryEndpoint(request),
+                        () -> concurrencyLimiter.withPermit(request.configId(), role.getUserId(),
+                                () -> provider.generate(request))), prepared.deadline())
+                .timeout(Duration.ofMillis(remaining(prepared.deadline())))
+                .doOnSuccess(r -> {
+                    router.record(request.configId(), System.currentTimeMillis() - started, true);
+                    recordUsage(role, request, r);
+                })
+                .doOnError(e -> {
+                    if (!isShed(e)) router.record(request.configId(), System.currentTimeMillis() - started, false);
+                })
+                .map(this::extractReply)
+                .doOnNext(reply -> responseCache.store(role, modelConfigId, model, historyKey, userMessage, reply))
+                .onErrorMap(e -> !isShed(e), e -> new RuntimeException("Failed to generate reply", e));
+    }
 
-        String apiKeyToUse = null;
+    // Recent session turns within the history token budget (one indexed query on the blocking scheduler)
+    private Mono<List<Map<String, Object>>> loadHistory(RoleDTO role, String sessionId, String userMessage) {
+        if (sessionId == null) {
+            return Mono.just(List.of());
+        }
+        return blockingCalls.call(() -> historyService.recentContents(role.getUserId(), sessionId, userMessage))
+                .onErrorResume(e -> {
+                    logger.warn("Conversation history skipped for session {}: {}", sessionId, e.getMessage());
+                    return Mono.just(List.of());
+                });
+    }
+
+    // Replies only match in the cache when the conversation leading up to them is the same
+    private String historyKey(List<Map<String, Object>> history) {
+        if (history.isEmpty()) return "-";
+        // A digest, not hashCode(): two conversations colliding would get each other's replies
+        List<String> parts = new ArrayList<>();
+        for (Map<String, Object> turn : history) {
+            parts.add(String.valueOf(turn.get("role")));
+            StringBuilder text = new StringBuilder();
+            if (turn.get("parts") instanceof List<?> turnParts) {
+                for (Object part : turnParts) {
+                    if (part instanceof Map<?, ?> map && map.get("text") != null) text.append(map.get("text"));
+                }
+            }
+            parts.add(text.toString());
+        }
+        return ResponseCache.digest(parts);
+    }
+
+    /**
+     * Resolve the ModelConfig (DB + key decryption) and the RAG context (embedding + vector search) in parallel
+     * on the blocking scheduler. Retrieval is best-effort: it gets its own slice of the request budget
+     * and is abandoned (empty context) rather than delaying the LLM call past it.
+     */
+    private Mono<PreparedRequest> prepare(RoleDTO role, String userMessage, List<Map<String, Object>> history,
+                                          String model, Long modelConfigId) {
+        long deadline = System.currentTimeMillis() + requestBudgetMs;
+
+        Mono<Target> target = blockingCalls.call(() -> {
+            usageService.checkQuota(role.getUserId());
+            return resolveTarget(role.getUserId(), role, userMessage, model, modelConfigId);
+        });
+
+        // Generate embedding for the user's message (and role name for better intent)
+        Mono<String> context = retrieveContext(role, role.getName() + ": " + userMessage, deadline);
+
+        return Mono.zip(target, context)
+                .map(t -> new PreparedRequest(t.getT1().provider(),
+                        toRequest(role, t.getT1(), t.getT2(), history, userMessage), deadline));
+    }
+
+    // Best-effort RAG context within its slice of the request budget; empty when it fails or runs late
+    private Mono<String> retrieveContext(RoleDTO role, String query, long deadline) {
+        return blockingCalls.call(() -> buildContextFromVectors(role.getUserId(), query))
+                .timeout(Duration.ofMillis(Math.min(retrievalBudgetMs, remaining(deadline))))
+                .onErrorResume(e -> {
+                    logger.warn("Vector context skipped for role {}: {}", role.getId(),
+                            e instanceof TimeoutException ? "exceeded " + retrievalBudgetMs + "ms retrieval budget" : e.getMessage());
+                    return Mono.just("");
+                });
+    }
+
+    private LlmRequest toRequest(RoleDTO role, Target target, String context, List<Map<String, Object>> history, String userMessage) {
+        return new LlmRequest(target.configId(), target.apiKey(), target.model(), target.baseUrl(),
+                role, roleSystemText(role), context, history, userMessage);
+    }
+
+    // Load shedding (limiter queue full/timed out, circuit open, quota used up) reaches the caller as is so it can answer 429/503
+    private boolean isShed(Throwable e) {
+        return e instanceof LlmConcurrencyLimiter.LimiterRejectedException || e instanceof LlmResilience.CircuitOpenException
+                || e instanceof TokenUsageService.QuotaExceededException;
+    }
+
+    // Provider-reported token counts, or a local estimate when the provider reported none
+    private void recordUsage(RoleDTO role, LlmRequest request, LlmReply reply) {
+        boolean reported = reply.promptTokens() > 0 || reply.outputTokens() > 0;
+        usageService.record(role.getUserId(), role.getId(), request.configId(),
+                reported ? reply.promptTokens() : estimatePromptTokens(request),
+                reported ? reply.outputTokens() : historyService.estimateTokens(reply.text()),
+                reply.cachedTokens());
+    }
+
+    private int estimatePromptTokens(LlmRequest request) {
+        int tokens = historyService.estimateTokens(request.systemText()) + historyService.estimateTokens(request.context())
+                + historyService.estimateTokens(request.userMessage());
+        for (Map<String, Object> turn : request.history()) {
+            tokens += historyService.estimateTokens(String.valueOf(turn.get("parts"))) + 4;
+        }
+        return tokens;
+    }
+
+    private long remaining(long deadline) {
+        return Math.max(1, deadline - System.currentTimeMillis());
+    }
+
+    private String extractReply(LlmReply reply) {
+        logger.debug("LLM reply: {} chars, finishReason={}, promptTokens={}, outputTokens={}",
+                reply.text().length(), reply.finishReason(), reply.promptTokens(), reply.outputTokens());
+        if (reply.text().isEmpty()) {
+            throw new RuntimeException("No content in LLM response" + (reply.finishReason() != null ? " (" + reply.finishReason() + ")" : ""));
+        }
+        return reply.text();
+    }
+
+    // userId: whose request this is; an explicit modelConfigId must be one of theirs (or shared, without owner)
+    private Target resolveTarget(Long userId, RoleDTO role, String userMessage, String model, Long modelConfigId) {
+        String apiKeyToUse;
         String modelToUse = (model == null || model.isBlank()) ? "gemini-2.5-pro" : model;
-        
+        ModelConfig mc;
+
         try {
-            var opt = modelConfigService.get(modelConfigId);
-            if (opt.isEmpty()) {
-                logger.error("ModelConfig {} not found in database", modelConfigId);
-                return "Error: Model configuration not found. Please check your settings.";
+            if (modelConfigId == null) {
+                mc = routeForUser(role, userMessage);
+            } else {
+                var opt = modelConfigService.get(modelConfigId);
+                if (opt.isEmpty()) {
+                    logger.error("ModelConfig {} not found in database", modelConfigId);
+                    throw new ModelConfigException("Error: Model configuration not found. Please check your settings.");
+                }
+                mc = opt.get();
+                if (mc.getUserId() != null && !mc.getUserId().equals(userId)) {
+                    // Same answer as a missing config: don't reveal other users' config ids
+                    logger.warn("User {} asked for ModelConfig {} owned by user {}", userId, modelConfigId, mc.getUserId());
+                    throw new ModelConfigException("Error: Model configuration not found. Please check your settings.");
+                }
             }
-            
-            var mc = opt.get();
+            // Also covers configs saved before base URLs were checked
+            endpointPolicy.check(mc.getBaseUrl());
+
             apiKeyToUse = modelConfigService.getApiKeyPlain(mc);
             if (mc.getModelId() != null && !mc.getModelId().isBlank()) {
                 modelToUse = mc.getModelId();
@@ -65,155 +418,62 @@ public class ChatService {
             logger.info("Using ModelConfig {} -> provider={} model={} apiKeyPrefix={}",
                 mc.getId(), mc.getProvider(), modelToUse,
                 apiKeyToUse != null && apiKeyToUse.length() > 6 ? apiKeyToUse.substring(0,6) + "***" : "null/empty");
-                
+
+        } catch (ModelConfigException e) {
+            throw e;
+        } catch (LlmEndpointPolicy.EndpointNotAllowedException e) {
+            throw new ModelConfigException("Error: " + e.getMessage() + ". Please update the model settings.");
         } catch (Exception e) {
             logger.error("Failed to load model config {}: {}", modelConfigId, e.getMessage(), e);
-            return "Error: Failed to load model configuration: " + e.getMessage();
+            throw new ModelConfigException("Error: Failed to load model configuration: " + e.getMessage());
         }
-        
+
         if (apiKeyToUse == null || apiKeyToUse.isEmpty()) {
-            logger.error("API key is null or empty for ModelConfig {}", modelConfigId);
-            return "Error: API key not configured for this model. Please update the model settings.";
+            logger.error("API key is null or empty for ModelConfig {}", mc.getId());
+            throw new ModelConfigException("Error: API key not configured for this model. Please update the model settings.");
         }
-        
-        try {
-            // Build retrieval-augmented context from Pinecone (best-effort)
-            String context = buildContextFromVectors(role, userMessage);
-
-            // System prompt includes role description and retrieved context
-            StringJoiner systemText = new StringJoiner("\n\n");
-            systemText.add("You are a helpful assistant acting as the following role.");
-            systemText.add("Role: " + role.getName());
-            systemText.add("Role description: " + safe(role.getDescription()));
-            if (!context.isBlank()) {
-                systemText.add("Relevant role context (from vector DB):\n" + context);
-            }
+        return new Target(providerFor(mc.getProvider()), mc.getId(), apiKeyToUse, modelToUse, mc.getBaseUrl());
+    }
 
-            Map<String, Object> systemInstruction = Map.of(
-                "role", "system",
-                "parts", new Object[]{Map.of("text", systemText.toString())}
-            );
-
-            Map<String, Object> userContent = Map.of(
-                "role", "user",
-                "parts", new Object[]{Map.of("text", userMessage)}
-            );
-
-            Map<String, Object> requestBody = Map.of(
-                // Gemini REST expects snake_case: system_instruction
-                "system_instruction", systemInstruction,
-                "contents", new Object[]{userContent}
-            );
-
-            String jsonBody = objectMapper.writeValueAsString(requestBody);
-            // Log a compact version of the request body (truncate to 2k)
-            String preview = jsonBody.length() > 2048 ? jsonBody.substring(0, 2048) + "..." : jsonBody;
-            logger.debug("Gemini request body (truncated): {}", preview);
-
-            // Prepare bases and model variants to try (v1beta/v1 and with/without -latest)
-            String primaryBase = trimTrailingSlash(geminiApiUrl);
-            String fallbackBase = primaryBase.contains("v1beta/models")
-                    ? primaryBase.replace("v1beta/models", "v1/models")
-                    : primaryBase.replace("v1/models", "v1beta/models");
-
-            String baseModel = modelToUse;
-            String withLatest = modelToUse != null && modelToUse.endsWith("-latest") ? modelToUse : modelToUse + "-latest";
-            String withoutLatest = modelToUse != null && modelToUse.endsWith("-latest") ? modelToUse.substring(0, modelToUse.length() - 7) : modelToUse;
-
-            java.util.LinkedHashSet<String> modelVariants = new java.util.LinkedHashSet<>();
-            modelVariants.add(baseModel);
-            modelVariants.add(withoutLatest);
-            modelVariants.add(withLatest);
-
-            java.util.LinkedHashSet<String> baseVariants = new java.util.LinkedHashSet<>();
-            baseVariants.add(primaryBase);
-            baseVariants.add(fallbackBase);
-
-            String responseBody = null;
-            WebClientResponseException lastHttpEx = null;
-            Exception lastEx = null;
-            outer:
-            for (String b : baseVariants) {
-                for (String mv : modelVariants) {
-                    String url = UriComponentsBuilder
-                            .fromUriString(b + "/" + mv + ":generateContent")
-                            .queryParam("key", apiKeyToUse)
-                            .toUriString();
-                    logger.info("Calling Gemini URL: {}", maskApiKey(url));
-                    try {
-                        responseBody = webClient.post()
-                                .uri(url)
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .accept(MediaType.APPLICATION_JSON)
-                                .bodyValue(jsonBody)
-                                .retrieve()
-                                .bodyToMono(String.class)
-                                .block();
-                        break outer; // success
-                    } catch (WebClientResponseException.NotFound nf) {
-                        lastHttpEx = nf; // try next variant
-                        logger.warn("Gemini returned 404 for URL: {} -- trying next variant", maskApiKey(url));
-                    } catch (WebClientResponseException wex) {
-                        lastHttpEx = wex;
-                        logger.error("Gemini HTTP error: status={} body={}", wex.getStatusCode().value(), wex.getResponseBodyAsString());
-                        break outer; // other HTTP errors - stop early
-                    } catch (Exception ex) {
-                        lastEx = ex;
-                        logger.error("Gemini call failed: {}", ex.getMessage());
-                        break outer; // unexpected failure
-                    }
-                }
-            }
-            if (responseBody == null) {
-                if (lastHttpEx != null) throw lastHttpEx;
-                if (lastEx != null) throw lastEx;
-                throw new RuntimeException("Gemini call failed with no response");
-            }
-            // Parse response
-            logger.debug("Gemini raw response (truncated): {}", responseBody != null && responseBody.length() > 2048 ? responseBody.substring(0, 2048) + "..." : responseBody);
-            JsonNode jsonResponse = objectMapper.readTree(responseBody);
-            JsonNode candidates = jsonResponse.get("candidates");
-            if (candidates != null && candidates.size() > 0) {
-                JsonNode content = candidates.get(0).get("content");
-                if (content != null) {
-                    JsonNode parts = content.get("parts");
-                    if (parts != null && parts.size() > 0) {
-                        return parts.get(0).get("text").asText();
-                    }
-                }
-            }
-            throw new RuntimeException("No content in Gemini response");
+    // No config selected: let the router pick one of the user's own configs
+    private ModelConfig routeForUser(RoleDTO role, String userMessage) {
+        List<ModelConfig> configs = routingEnabled && role.getUserId() != null
+                ? modelConfigService.listForUser(role.getUserId())
+                : List.of();
+        if (configs.isEmpty()) {
+            // API key must come from database
+            logger.error("No modelConfigId provided and no ModelConfig to route to - API key must be configured in database");
+            throw new ModelConfigException("Error: No model configuration selected. Please add a Model with API key in settings.");
+        }
+        int promptTokens = historyService.estimateTokens(roleSystemText(role)) + historyService.estimateTokens(userMessage);
+        return router.choose(configs, promptTokens);
+    }
 
-        } catch (Exception e) {
-            if (e instanceof org.springframework.web.reactive.function.client.WebClientResponseException wex) {
-                int status = wex.getStatusCode().value();
-                String errorBody = wex.getResponseBodyAsString();
-                logger.error("Gemini API error: status={} body={}", status, errorBody);
-                
-                if (status == 403) {
-                    logger.error("GEMINI API KEY ERROR: 403 Forbidden - Check your API key permissions and billing");
-                    logger.error("Current API key starts with: {}", apiKeyToUse != null && apiKeyToUse.length() > 10 
-                        ? apiKeyToUse.substring(0, 10) + "..." : "null/empty");
-                }
-            } else {
-                logger.error("Error calling Gemini API", e);
-            }
-            throw new RuntimeException("Failed to generate reply", e);
+    private LlmProvider providerFor(String providerId) {
+        String id = providerId == null || providerId.isBlank() ? "GEMINI" : providerId.trim();
+        for (LlmProvider provider : providers) {
+            if (provider.id().equalsIgnoreCase(id)) return provider;
         }
+        throw new ModelConfigException("Error: Unsupported model provider '" + id + "'. Please update the model settings.");
     }
 
-    private String buildContextFromVectors(RoleDTO role, String userMessage) {
-        try {
-            // Generate embedding for the user's message (and role name for better intent)
-            String query = role.getName() + ": " + userMessage;
-            double[] queryEmbedding = embeddingService.generateEmbeddingArray(query);
+    // Static part of the system prompt: depends only on the role, so providers may cache it (Gemini context cache)
+    private String roleSystemText(RoleDTO role) {
+        StringJoiner systemText = new StringJoiner("\n\n");
+        systemText.add("You are a helpful assistant acting as the following role.");
+        systemText.add("Role: " + role.getName());
+        systemText.add("Role description: " + safe(role.getDescription()));
+        return systemText.toString();
+    }
 
-            Long userId = role.getUserId();
+    private String buildContextFromVectors(Long userId, String query) {
+        try {
             if (userId == null) {
                 return ""; // cannot scope to namespace without user
             }
+            float[] queryEmbedding = embeddingService.embed(query);
 
-            List<Map<String, Object>> matches = pineconeService.searchSimilarRoles(userId, queryEmbedding, 5);
+            List<Map<String, Object>> matches = roleVectorService.searchSimilarRoles(userId, queryEmbedding, 5);
             if (matches == null || matches.isEmpty()) return "";
 
             StringBuilder sb = new StringBuilder();
@@ -237,19 +497,21 @@ public class ChatService {
         return s == null ? "" : s;
     }
 
-    private String maskApiKey(String url) {
-        if (url == null) return null;
-        int idx = url.indexOf("key=");
-        if (idx == -1) return url;
-        int start = idx + 4;
-        int end = url.indexOf('&', start);
-        String key = end == -1 ? url.substring(start) : url.substring(start, end);
-        String masked = key.length() <= 4 ? "****" : key.substring(0, 2) + "****" + key.substring(key.length() - 2);
-        return url.replace(key, masked);
-    }
+    // Provider, API key and effective model id resolved from a ModelConfig
+    private record Target(LlmProvider provider, Long configId, String apiKey, String model, String baseUrl) {}
+
+    private record PreparedRequest(LlmProvider provider, LlmRequest request, long deadline) {}
 
-    private String trimTrailingSlash(String s) {
-        if (s == null) return null;
-        return s.endsWith("/") ? s.substring(0, s.length() - 1) : s;
+    // One role's outcome in a batch: either reply or error is set
+    public record RoleReply(Long roleId, String reply, String error) {}
+
+    // A request resolved for submission through a provider's batch API
+    public record OfflineRequest(LlmProvider provider, LlmRequest request) {}
+
+    // Carries the user-facing "Error: ..." text for configuration problems
+    public static class ModelConfigException extends RuntimeException {
+        ModelConfigException(String message) {
+            super(message);
+        }
     }
 }
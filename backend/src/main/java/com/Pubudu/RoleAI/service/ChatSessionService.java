@@ -62,11 +62,16 @@ public class ChatSessionService {
 
     @Transactional
     public ChatMessage addMessage(String sessionId, String sender, String content, Long roleId) {
-        ChatSession s = ensureOwned(sessionId);
-        User user = getCurrentUser();
+        return addMessageForUser(getCurrentUser().getId(), sessionId, sender, content, roleId);
+    }
+
+    // Same as addMessage, for callers running off the request thread (no SecurityContext available)
+    @Transactional
+    public ChatMessage addMessageForUser(Long userId, String sessionId, String sender, String content, Long roleId) {
+        ChatSession s = ensureOwnedBy(userId, sessionId);
         ChatMessage m = new ChatMessage();
         m.setSessionId(sessionId);
-        m.setUserId(user.getId());
+        m.setUserId(userId);
         m.setSender(sender);
         m.setContent(content);
         if (roleId != null) m.setRoleId(roleId);
@@ -92,9 +97,12 @@ public class ChatSessionService {
     }
 
     private ChatSession ensureOwned(String sessionId) {
-        User user = getCurrentUser();
+        return ensureOwnedBy(getCurrentUser().getId(), sessionId);
+    }
+
+    private ChatSession ensureOwnedBy(Long userId, String sessionId) {
         Optional<ChatSession> opt = sessionRepository.findById(sessionId);
-        if (opt.isEmpty() || !opt.get().getUserId().equals(user.getId())) {
+        if (opt.isEmpty() || !opt.get().getUserId().equals(userId)) {
             throw new RuntimeException("Session not found or not owned by user");
         }
         return opt.get();
@@ -0,0 +1,109 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.ChatMessage;
+import com.Pubudu.RoleAI.entity.ChatSession;
+import com.Pubudu.RoleAI.repository.ChatMessageRepository;
+import com.Pubudu.RoleAI.repository.ChatSessionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Builds the multi-turn "contents" history for a Gemini request from a chat session.
+ * Only the newest messages that fit chat.history.max-tokens are included, so prompt size
+ * (and with it latency and cost) stays flat however long the session gets.
+ */
+@Service
+public class ConversationHistoryService {
+
+    @Autowired
+    private ChatSessionRepository sessionRepository;
+
+    @Autowired
+    private ChatMessageRepository messageRepository;
+
+    @Value("${chat.history.max-tokens:2000}")
+    private int maxTokens;
+
+    // Upper bound on rows read per request, whatever their size
+    @Value("${chat.history.max-messages:40}")
+    private int maxMessages;
+
+    /**
+     * Previous turns of the session as Gemini contents (oldest first), excluding the message being answered.
+     * Returns an empty list if the session does not exist or is not owned by the user.
+     */
+    public List<Map<String, Object>> recentContents(Long userId, String sessionId, String currentMessage) {
+        if (userId == null || sessionId == null || maxTokens <= 0) return Collections.emptyList();
+        Optional<ChatSession> session = sessionRepository.findById(sessionId);
+        if (session.isEmpty() || !session.get().getUserId().equals(userId)) return Collections.emptyList();
+
+        List<ChatMessage> newestFirst = messageRepository.findBySessionIdOrderByCreatedAtDescIdDesc(
+                sessionId, PageRequest.of(0, maxMessages + 1));
+
+        int start = 0;
+        // The frontend stores the user's message before asking for a reply; don't send it twice
+        if (!newestFirst.isEmpty()) {
+            ChatMessage newest = newestFirst.get(0);
+            if ("user".equalsIgnoreCase(newest.getSender()) && newest.getContent().equals(currentMessage)) {
+                start = 1;
+            }
+        }
+
+        List<ChatMessage> window = new ArrayList<>();
+        int used = 0;
+        for (int i = start; i < newestFirst.size() && window.size() < maxMessages; i++) {
+            ChatMessage m = newestFirst.get(i);
+            int cost = estimateTokens(m.getContent()) + 4; // per-turn role/formatting overhead
+            if (used + cost > maxTokens) break;
+            used += cost;
+            window.add(m);
+        }
+        Collections.reverse(window);
+
+        // Gemini expects alternating user/model turns: merge consecutive messages from the same side
+        List<Map<String, Object>> contents = new ArrayList<>();
+        String lastRole = null;
+        StringBuilder text = new StringBuilder();
+        for (ChatMessage m : window) {
+            String role = "ai".equalsIgnoreCase(m.getSender()) ? "model" : "user";
+            if (lastRole != null && !role.equals(lastRole)) {
+                contents.add(turn(lastRole, text.toString()));
+                text.setLength(0);
+            }
+            if (text.length() > 0) text.append("\n\n");
+            text.append(m.getContent());
+            lastRole = role;
+        }
+        if (lastRole != null) contents.add(turn(lastRole, text.toString()));
+
+        // The current message is sent as a user turn, so history must not end on one
+        if (!contents.isEmpty() && "user".equals(contents.get(contents.size() - 1).get("role"))) {
+            contents.remove(contents.size() - 1);
+        }
+        return contents;
+    }
+
+    /**
+     * Cheap local token estimate (~4 characters per token for English text), good enough for budgeting.
+     */
+    public int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        return (text.length() + 3) / 4;
+    }
+
+    private Map<String, Object> turn(String role, String text) {
+        Map<String, Object> turn = new LinkedHashMap<>();
+        turn.put("role", role);
+        turn.put("parts", List.of(Map.of("text", text)));
+        return turn;
+    }
+}
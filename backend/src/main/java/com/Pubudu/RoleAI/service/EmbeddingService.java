@@ -1,92 +1,124 @@
 package com.Pubudu.RoleAI.service;
 
+import com.Pubudu.RoleAI.service.embedding.EmbeddingCache;
+import com.Pubudu.RoleAI.service.embedding.EmbeddingProvider;
+import com.Pubudu.RoleAI.util.vector.VectorMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-// import org.springframework.web.client.RestTemplate;
-// import org.springframework.http.HttpEntity;
-// import org.springframework.http.HttpHeaders;
-// import org.springframework.http.HttpMethod;
-// import org.springframework.http.ResponseEntity;
-// import com.fasterxml.jackson.databind.JsonNode;
-// import com.fasterxml.jackson.databind.ObjectMapper;
-
-import java.util.Arrays;
-// import java.util.Map;
-// import java.util.HashMap;
+
+import java.util.List;
 
 @Service
 public class EmbeddingService {
 
-    public EmbeddingService() {
-        // this.restTemplate = new RestTemplate();
-        // this.objectMapper = new ObjectMapper();
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingService.class);
+
+    private final EmbeddingProvider provider;
+    private final EmbeddingCache cache;
+
+    public EmbeddingService(List<EmbeddingProvider> providers, EmbeddingCache cache,
+                            @Value("${embedding.provider:lexical}") String providerId,
+                            @Value("${pinecone.index.dimension:1024}") int indexDimension) {
+        this.cache = cache;
+        this.provider = providers.stream()
+                .filter(p -> p.id().equalsIgnoreCase(providerId.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown embedding.provider '" + providerId + "'"));
+        if (provider.dimension() != indexDimension) {
+            throw new IllegalStateException("Embedding provider " + provider.id() + " produces " + provider.dimension()
+                    + " dimensions, pinecone.index.dimension is " + indexDimension);
+        }
+        logger.info("Embedding with provider {} (model {}, {} dimensions)", provider.id(), provider.model(), provider.dimension());
     }
 
     /**
-     * Generate vector embedding for text using OpenAI's text-embedding-ada-002 model
-     * For now, returns a mock embedding. Replace with actual OpenAI API call when ready.
+     * Embed a search query or chat message. Vectors stay float[] end to end (Pinecone stores float32 anyway);
+     * nothing on this path goes through a String. Returned arrays may be shared through the cache: don't modify them.
      */
-    public String generateEmbedding(String text) {
-        // Mock implementation - replace with actual OpenAI API call
-        return generateMockEmbedding(text);
+    public float[] embed(String text) {
+        return cache.get(provider, EmbeddingProvider.Purpose.QUERY, text);
     }
 
     /**
-     * Generate vector embedding as double array
+     * Embed text that is stored and searched for (role name + description).
      */
-    public double[] generateEmbeddingArray(String text) {
-        String embeddingString = generateEmbedding(text);
-        return parseEmbedding(embeddingString);
+    public float[] embedDocument(String text) {
+        return cache.get(provider, EmbeddingProvider.Purpose.DOCUMENT, text);
+    }
+
+    public List<float[]> embedDocuments(List<String> texts) {
+        return cache.getAll(provider, EmbeddingProvider.Purpose.DOCUMENT, texts);
+    }
+
+    public String providerId() {
+        return provider.id();
+    }
+
+    public String model() {
+        return provider.model();
+    }
+
+    public int dimension() {
+        return provider.dimension();
     }
 
     /**
-     * Generate mock embedding for development/testing
+     * Generate an embedding in its storage form (comma-separated, pgvector-compatible without the brackets).
      */
-    private String generateMockEmbedding(String text) {
-    // Generate a simple hash-based mock embedding (1024 dimensions to match llama-text-embed-v2)
-        int hash = text.hashCode();
-    double[] embedding = new double[1024];
-        
-        // Use hash to generate deterministic but varied values
-        java.util.Random random = new java.util.Random(hash);
-        for (int i = 0; i < embedding.length; i++) {
-            embedding[i] = random.nextGaussian() * 0.1; // Small random values
-        }
-        
-        // Convert to comma-separated string for storage
-        return Arrays.toString(embedding).replaceAll("[\\[\\]\\s]", "");
+    public String generateEmbedding(String text) {
+        return toStorageString(embedDocument(text));
     }
 
-
     public double calculateSimilarity(String embedding1, String embedding2) {
         try {
-            double[] vec1 = parseEmbedding(embedding1);
-            double[] vec2 = parseEmbedding(embedding2);
-            
-            double dotProduct = 0.0;
-            double normA = 0.0;
-            double normB = 0.0;
-            
-            for (int i = 0; i < vec1.length; i++) {
-                dotProduct += vec1[i] * vec2[i];
-                normA += vec1[i] * vec1[i];
-                normB += vec2[i] * vec2[i];
-            }
-            
-            return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
+            return cosine(parseEmbedding(embedding1), parseEmbedding(embedding2));
         } catch (Exception e) {
             return 0.0; // Return 0 similarity if calculation fails
         }
     }
 
     /**
-     * Parse embedding string to double array
+     * Cosine similarity; 0 for vectors of different length or zero norm. SIMD when available, see VectorMath.
+     */
+    public static double cosine(float[] a, float[] b) {
+        return VectorMath.cosine(a, b);
+    }
+
+    /**
+     * Storage serialization: comma-separated values, no brackets or spaces.
+     */
+    public static String toStorageString(float[] embedding) {
+        StringBuilder sb = new StringBuilder(embedding.length * 12);
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(embedding[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parse the storage form back into a vector. Tolerates surrounding brackets and spaces (pgvector text output).
      */
-    public double[] parseEmbedding(String embedding) {
-        String[] parts = embedding.split(",");
-        double[] result = new double[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            result[i] = Double.parseDouble(parts[i].trim());
+    public static float[] parseEmbedding(String embedding) {
+        int start = 0, end = embedding.length();
+        while (start < end && (embedding.charAt(start) == '[' || Character.isWhitespace(embedding.charAt(start)))) start++;
+        while (end > start && (embedding.charAt(end - 1) == ']' || Character.isWhitespace(embedding.charAt(end - 1)))) end--;
+        if (start == end) return new float[0];
+
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (embedding.charAt(i) == ',') count++;
+        }
+        float[] result = new float[count];
+        int from = start;
+        for (int n = 0; n < count; n++) {
+            int comma = embedding.indexOf(',', from);
+            int to = comma < 0 || comma > end ? end : comma;
+            result[n] = Float.parseFloat(embedding.substring(from, to).trim());
+            from = to + 1;
         }
         return result;
     }
-}
\ No newline at end of file
+}
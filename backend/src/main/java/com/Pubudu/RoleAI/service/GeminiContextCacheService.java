@@ -0,0 +1,215 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.dto.RoleDTO;
+import com.Pubudu.RoleAI.util.BlockingCalls;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gemini explicit context caching (cachedContents) for role system prompts.
+ *
+ * Long role descriptions are uploaded once per (role version, ModelConfig, model) and referenced by name
+ * from generateContent, so they are not re-sent (and re-billed at full rate) on every message.
+ * Creation happens in the background: the message that triggers it is sent uncached, later ones use the cache.
+ * Entries are refreshed shortly before they expire and deleted when the role is updated or deleted.
+ */
+@Service
+public class GeminiContextCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiContextCacheService.class);
+
+    @Value("${gemini.api.url:https://generativelanguage.googleapis.com/v1beta/models/}")
+    private String geminiApiUrl;
+
+    @Value("${gemini.context-cache.enabled:true}")
+    private boolean enabled;
+
+    // Gemini rejects caches below a model-specific minimum size; don't bother with small prompts
+    @Value("${gemini.context-cache.min-tokens:4096}")
+    private int minTokens;
+
+    @Value("${gemini.context-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${gemini.context-cache.refresh-margin-seconds:300}")
+    private long refreshMarginSeconds;
+
+    // After a failed create, wait this long before trying again for the same role/config/model
+    @Value("${gemini.context-cache.retry-after-seconds:600}")
+    private long retryAfterSeconds;
+
+    @Autowired
+    @Qualifier("geminiWebClient")
+    private WebClient webClient;
+
+    @Autowired
+    private ModelConfigService modelConfigService;
+
+    @Autowired
+    private ConversationHistoryService historyService;
+
+    @Autowired
+    private BlockingCalls blockingCalls;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // "roleId|configId|model" -> cache entry
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> failedUntil = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Name of a live cachedContents entry holding this role's system prompt, if one exists.
+     * Starts creating (or refreshing) the entry in the background when needed.
+     */
+    public Optional<String> cachedContentFor(RoleDTO role, Long configId, String apiKey, String model, String systemText) {
+        if (!enabled || role.getId() == null || historyService.estimateTokens(systemText) < minTokens) {
+            return Optional.empty();
+        }
+        String key = key(role.getId(), configId, model);
+        String fingerprint = fingerprint(role);
+        long now = System.currentTimeMillis();
+
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.fingerprint().equals(fingerprint) && entry.expiresAt() > now) {
+                if (entry.expiresAt() - now < refreshMarginSeconds * 1000 && inFlight.add(key)) {
+                    refresh(key, entry, apiKey);
+                }
+                return Optional.of(entry.name());
+            }
+            // Role changed since the entry was made, or it expired
+            if (entries.remove(key, entry) && !entry.fingerprint().equals(fingerprint)) {
+                deleteRemote(entry.name(), apiKey);
+            }
+        }
+
+        Long retryAt = failedUntil.get(key);
+        if (retryAt != null && retryAt > now) return Optional.empty();
+
+        if (inFlight.add(key)) {
+            create(key, fingerprint, configId, apiKey, model, systemText);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Forget an entry that Gemini no longer accepts (e.g. expired or deleted server-side).
+     */
+    public void evict(Long roleId, Long configId, String model) {
+        entries.remove(key(roleId, configId, model));
+    }
+
+    /**
+     * Drop every cache entry for a role, locally and on Gemini. Called on role update/delete.
+     */
+    public void dropRole(Long roleId) {
+        if (roleId == null) return;
+        String prefix = roleId + "|";
+        for (String key : entries.keySet()) {
+            if (!key.startsWith(prefix)) continue;
+            CacheEntry entry = entries.remove(key);
+            if (entry == null) continue;
+            // Deleting needs the owner's API key: decrypt it off the caller's thread
+            blockingCalls.call(() -> modelConfigService.get(entry.configId()).map(modelConfigService::getApiKeyPlain).orElse(""))
+                    .filter(apiKey -> !apiKey.isEmpty())
+                    .subscribe(apiKey -> deleteRemote(entry.name(), apiKey),
+                            err -> logger.warn("Could not delete context cache {}: {}", entry.name(), err.getMessage()));
+        }
+        failedUntil.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    private void create(String key, String fingerprint, Long configId, String apiKey, String model, String systemText) {
+        Map<String, Object> body = Map.of(
+                "model", "models/" + model,
+                "systemInstruction", Map.of("parts", List.of(Map.of("text", systemText))),
+                "ttl", ttlSeconds + "s"
+        );
+        webClient.post()
+                .uri(apiUrl("cachedContents", apiKey, null))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(this::readName)
+                .doFinally(signal -> inFlight.remove(key))
+                .subscribe(name -> {
+                    entries.put(key, new CacheEntry(name, fingerprint, configId, expiry()));
+                    failedUntil.remove(key);
+                    logger.info("Created Gemini context cache {} for {}", name, key);
+                }, err -> {
+                    failedUntil.put(key, System.currentTimeMillis() + retryAfterSeconds * 1000);
+                    logger.warn("Gemini context cache create failed for {}: {}", key, err.getMessage());
+                });
+    }
+
+    private void refresh(String key, CacheEntry entry, String apiKey) {
+        webClient.patch()
+                .uri(apiUrl(entry.name(), apiKey, "ttl"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("ttl", ttlSeconds + "s"))
+                .retrieve()
+                .toBodilessEntity()
+                .doFinally(signal -> inFlight.remove(key))
+                .subscribe(ok -> entries.replace(key, entry, new CacheEntry(entry.name(), entry.fingerprint(), entry.configId(), expiry())),
+                        err -> logger.warn("Gemini context cache refresh failed for {}: {}", entry.name(), err.getMessage()));
+    }
+
+    private void deleteRemote(String name, String apiKey) {
+        webClient.delete()
+                .uri(apiUrl(name, apiKey, null))
+                .retrieve()
+                .toBodilessEntity()
+                .subscribe(ok -> logger.info("Deleted Gemini context cache {}", name),
+                        err -> logger.warn("Gemini context cache delete failed for {}: {}", name, err.getMessage()));
+    }
+
+    private String readName(String responseBody) {
+        try {
+            JsonNode json = objectMapper.readTree(responseBody);
+            String name = json.path("name").asText("");
+            if (name.isEmpty()) throw new IllegalStateException("no name in cachedContents response");
+            return name;
+        } catch (Exception e) {
+            throw new RuntimeException("Unparseable cachedContents response", e);
+        }
+    }
+
+    // cachedContents lives next to models/ under the same API version root
+    private String apiUrl(String path, String apiKey, String updateMask) {
+        String base = geminiApiUrl.endsWith("/") ? geminiApiUrl.substring(0, geminiApiUrl.length() - 1) : geminiApiUrl;
+        String root = base.endsWith("/models") ? base.substring(0, base.length() - "/models".length()) : base;
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(root + "/" + path);
+        if (updateMask != null) builder.queryParam("updateMask", updateMask);
+        return builder.queryParam("key", apiKey).toUriString();
+    }
+
+    private long expiry() {
+        return System.currentTimeMillis() + ttlSeconds * 1000;
+    }
+
+    private String key(Long roleId, Long configId, String model) {
+        return roleId + "|" + configId + "|" + model;
+    }
+
+    private String fingerprint(RoleDTO role) {
+        return ResponseCache.digest(List.of(String.valueOf(role.getName()), String.valueOf(role.getDescription())));
+    }
+
+    private record CacheEntry(String name, String fingerprint, Long configId, long expiresAt) {}
+}
@@ -0,0 +1,97 @@
+package com.Pubudu.RoleAI.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which Gemini endpoint (API base + model variant, e.g. ".../v1beta/models/gemini-2.5-pro")
+ * answered for a ModelConfig, and which variants returned 404, so the variant walk in ChatService
+ * only happens once per TTL instead of on every message.
+ */
+@Component
+public class GeminiEndpointResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiEndpointResolver.class);
+
+    @Value("${gemini.endpoint-cache.ttl-seconds:1800}")
+    private long ttlSeconds;
+
+    @Value("${gemini.endpoint-cache.negative-ttl-seconds:600}")
+    private long negativeTtlSeconds;
+
+    // "configId|model" -> endpoint that last succeeded
+    private final Map<String, CachedEndpoint> resolved = new ConcurrentHashMap<>();
+    // "configId|model|endpoint" -> expiry of a known 404
+    private final Map<String, Long> notFound = new ConcurrentHashMap<>();
+
+    /**
+     * Order the candidate endpoints for this config/model: the cached working endpoint first,
+     * then the remaining candidates, skipping variants known to 404. Never returns an empty list.
+     */
+    public List<String> order(Long configId, String model, List<String> candidates) {
+        long now = System.currentTimeMillis();
+        String key = key(configId, model);
+
+        List<String> ordered = new ArrayList<>(candidates.size());
+        CachedEndpoint cached = resolved.get(key);
+        if (cached != null) {
+            if (cached.expiresAt() > now && candidates.contains(cached.endpoint())) {
+                ordered.add(cached.endpoint());
+            } else {
+                resolved.remove(key, cached);
+            }
+        }
+
+        for (String endpoint : candidates) {
+            if (ordered.contains(endpoint)) continue;
+            Long expiry = notFound.get(key + "|" + endpoint);
+            if (expiry != null) {
+                if (expiry > now) continue;
+                notFound.remove(key + "|" + endpoint, expiry);
+            }
+            ordered.add(endpoint);
+        }
+        // Every variant is negatively cached: probe them all again rather than failing without a call
+        return ordered.isEmpty() ? candidates : ordered;
+    }
+
+    public void markSuccess(Long configId, String model, String endpoint) {
+        String key = key(configId, model);
+        CachedEndpoint previous = resolved.put(key, new CachedEndpoint(endpoint, System.currentTimeMillis() + ttlSeconds * 1000));
+        if (previous == null || !previous.endpoint().equals(endpoint)) {
+            logger.info("Resolved Gemini endpoint for {} -> {}", key, endpoint);
+        }
+        notFound.remove(key + "|" + endpoint);
+    }
+
+    public void markNotFound(Long configId, String model, String endpoint) {
+        String key = key(configId, model);
+        notFound.put(key + "|" + endpoint, System.currentTimeMillis() + negativeTtlSeconds * 1000);
+        CachedEndpoint cached = resolved.get(key);
+        if (cached != null && cached.endpoint().equals(endpoint)) {
+            resolved.remove(key, cached);
+        }
+    }
+
+    /**
+     * Drop everything cached for a ModelConfig (called when its model or provider changes, or it is deleted).
+     */
+    public void invalidate(Long configId) {
+        String prefix = configId + "|";
+        resolved.keySet().removeIf(k -> k.startsWith(prefix));
+        notFound.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    private String key(Long configId, String model) {
+        return configId + "|" + model;
+    }
+
+    private record CachedEndpoint(String endpoint, long expiresAt) {}
+}
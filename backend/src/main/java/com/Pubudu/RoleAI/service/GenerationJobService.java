@@ -0,0 +1,207 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.GenerationJob;
+import com.Pubudu.RoleAI.entity.GenerationJob.Mode;
+import com.Pubudu.RoleAI.entity.GenerationJob.Status;
+import com.Pubudu.RoleAI.repository.ChatSessionRepository;
+import com.Pubudu.RoleAI.repository.GenerationJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Durable queue of generation jobs in the generation_jobs table. Workers on any node claim due jobs with
+ * SELECT ... FOR UPDATE SKIP LOCKED and hold a lease while generating; a job whose lease runs out
+ * (node crashed or restarted) is claimed again, up to jobs.max-attempts. Failures are retried with
+ * exponential backoff. Only the worker holding a job's lease may complete or fail it.
+ */
+@Service
+public class GenerationJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerationJobService.class);
+
+    @Autowired
+    private GenerationJobRepository jobRepository;
+
+    @Autowired
+    private ChatSessionRepository sessionRepository;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Value("${jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    // Must outlast one generation (chat.request-budget-ms) or a slow job is picked up twice
+    @Value("${jobs.lease-ms:180000}")
+    private long leaseMs;
+
+    @Value("${jobs.retry.base-delay-ms:5000}")
+    private long retryBaseDelayMs;
+
+    // Wait between two status checks of a submitted provider batch
+    @Value("${jobs.batch.poll-interval-ms:60000}")
+    private long batchPollIntervalMs;
+
+    @Transactional
+    public GenerationJob submit(Long userId, Long roleId, String message, String model, Long modelConfigId,
+                                String sessionId, Mode mode) {
+        GenerationJob job = new GenerationJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setUserId(userId);
+        job.setRoleId(roleId);
+        job.setMessage(message);
+        job.setModel(model);
+        job.setModelConfigId(modelConfigId);
+        job.setSessionId(sessionId);
+        job.setMode(mode);
+        return jobRepository.save(job);
+    }
+
+    public Optional<GenerationJob> getForUser(Long userId, String jobId) {
+        return jobRepository.findById(jobId).filter(j -> j.getUserId().equals(userId));
+    }
+
+    /**
+     * Claim up to limit due jobs of the given mode for this worker. Rows another node has locked are
+     * skipped rather than waited on, so concurrent workers never block each other or take the same job.
+     */
+    @Transactional
+    public List<GenerationJob> claim(Mode mode, int limit, String workerId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<GenerationJob> claimed = new ArrayList<>();
+        for (GenerationJob job : jobRepository.lockClaimable(mode.name(), now, limit)) {
+            if (job.getStatus() == Status.RUNNING) {
+                if (job.getAttempts() >= maxAttempts) {
+                    // Lost its worker on every attempt: likely the job itself takes the node down
+                    logger.warn("Job {} lost its lease on all {} attempt(s), last held by {}; failing it",
+                            job.getId(), job.getAttempts(), job.getLockedBy());
+                    job.setStatus(Status.FAILED);
+                    job.setError("Worker lease expired on all " + job.getAttempts() + " attempt(s)");
+                    finish(job);
+                    continue;
+                }
+                logger.warn("Reclaiming job {} after expired lease held by {}", job.getId(), job.getLockedBy());
+            }
+            job.setStatus(Status.RUNNING);
+            job.setLockedBy(workerId);
+            job.setLockedUntil(now.plus(Duration.ofMillis(leaseMs)));
+            job.setAttempts(job.getAttempts() + 1);
+            claimed.add(job);
+        }
+        return jobRepository.saveAll(claimed);
+    }
+
+    /**
+     * Claim submitted provider batches that are due for a status check; the lease doubles as the
+     * time of the next check.
+     */
+    @Transactional
+    public List<GenerationJob> claimSubmitted(int limit, String workerId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<GenerationJob> jobs = jobRepository.lockSubmittedBatches(now, limit);
+        for (GenerationJob job : jobs) {
+            job.setLockedBy(workerId);
+            job.setLockedUntil(now.plus(Duration.ofMillis(batchPollIntervalMs)));
+        }
+        return jobRepository.saveAll(jobs);
+    }
+
+    /**
+     * Record the reply and add it to the job's session (if any) in the same transaction, so a reply
+     * is never added twice for one job. Ignored unless workerId still holds the job's lease.
+     */
+    @Transactional
+    public void complete(String jobId, String workerId, String reply) {
+        GenerationJob job = lockIfHeld(jobId, workerId);
+        if (job == null) return;
+        String sessionId = job.getSessionId();
+        if (sessionId != null) {
+            boolean owned = sessionRepository.findById(sessionId).map(s -> job.getUserId().equals(s.getUserId())).orElse(false);
+            if (owned) {
+                chatSessionService.addMessageForUser(job.getUserId(), sessionId, "ai", reply, job.getRoleId());
+            } else {
+                logger.warn("Session {} of job {} is gone; reply kept on the job only", sessionId, jobId);
+            }
+        }
+        job.setStatus(Status.SUCCEEDED);
+        job.setReply(reply);
+        job.setError(null);
+        finish(job);
+    }
+
+    /**
+     * Retryable failures go back to the queue with exponential backoff until jobs.max-attempts;
+     * everything else fails the job for good. Ignored unless workerId still holds the job's lease.
+     */
+    @Transactional
+    public void fail(String jobId, String workerId, String error, boolean retryable) {
+        GenerationJob job = lockIfHeld(jobId, workerId);
+        if (job == null) return;
+        job.setError(truncate(error));
+        if (retryable && job.getAttempts() < maxAttempts) {
+            long delay = retryBaseDelayMs << Math.min(job.getAttempts() - 1, 10);
+            job.setStatus(Status.QUEUED);
+            job.setNextRunAt(LocalDateTime.now().plus(Duration.ofMillis(delay)));
+            job.setLockedBy(null);
+            job.setLockedUntil(null);
+            jobRepository.save(job);
+            logger.info("Job {} attempt {} failed, retrying in {}ms: {}", jobId, job.getAttempts(), delay, error);
+            return;
+        }
+        job.setStatus(Status.FAILED);
+        finish(job);
+        logger.warn("Job {} failed after {} attempt(s): {}", jobId, job.getAttempts(), error);
+    }
+
+    // Batch accepted by the provider: poll it from now on (resolved config recorded so polling uses the same key)
+    @Transactional
+    public void markSubmitted(List<String> jobIds, String batchName, Long modelConfigId) {
+        List<GenerationJob> jobs = jobRepository.findAllById(jobIds);
+        LocalDateTime nextCheck = LocalDateTime.now().plus(Duration.ofMillis(batchPollIntervalMs));
+        for (GenerationJob job : jobs) {
+            job.setStatus(Status.BATCH_SUBMITTED);
+            job.setBatchName(batchName);
+            job.setModelConfigId(modelConfigId);
+            job.setLockedBy(null);
+            job.setLockedUntil(nextCheck);
+        }
+        jobRepository.saveAll(jobs);
+    }
+
+    // The job, row-locked, if workerId still holds it; null when its lease went to another worker (or it finished)
+    private GenerationJob lockIfHeld(String jobId, String workerId) {
+        GenerationJob job = jobRepository.lockById(jobId).orElse(null);
+        if (job == null) return null;
+        boolean held = (job.getStatus() == Status.RUNNING || job.getStatus() == Status.BATCH_SUBMITTED)
+                && workerId.equals(job.getLockedBy());
+        if (!held) {
+            logger.warn("Worker {} no longer holds job {} (status {}, held by {}); result dropped",
+                    workerId, jobId, job.getStatus(), job.getLockedBy());
+            return null;
+        }
+        return job;
+    }
+
+    private void finish(GenerationJob job) {
+        job.setFinishedAt(LocalDateTime.now());
+        job.setLockedBy(null);
+        job.setLockedUntil(null);
+        jobRepository.save(job);
+    }
+
+    private String truncate(String s) {
+        if (s == null) return null;
+        return s.length() > 2000 ? s.substring(0, 2000) : s;
+    }
+}
@@ -0,0 +1,237 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.dto.RoleDTO;
+import com.Pubudu.RoleAI.entity.GenerationJob;
+import com.Pubudu.RoleAI.entity.GenerationJob.Mode;
+import com.Pubudu.RoleAI.service.llm.LlmBatchResult;
+import com.Pubudu.RoleAI.service.llm.LlmReply;
+import com.Pubudu.RoleAI.util.BlockingCalls;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs generation jobs in the background. Online jobs: each poll claims as many due jobs as there are free
+ * worker slots (jobs.worker.concurrency per node) and generates them through ChatService, so they share the
+ * limiter, retries and routing of interactive chat. Batch jobs: claimed ones are prepared, grouped per
+ * ModelConfig and model and submitted through the provider's batch API; submitted batches are polled until done.
+ */
+@Service
+public class GenerationJobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenerationJobWorker.class);
+
+    @Value("${jobs.worker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jobs.worker.concurrency:4}")
+    private int concurrency;
+
+    @Value("${jobs.batch.max-size:100}")
+    private int batchMaxSize;
+
+    @Autowired
+    private GenerationJobService jobService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private BlockingCalls blockingCalls;
+
+    @Autowired
+    private TokenUsageService usageService;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final String workerId = workerId();
+
+    @Scheduled(fixedDelayString = "${jobs.worker.poll-interval-ms:1000}")
+    public void pollOnline() {
+        if (!enabled) return;
+        int free = concurrency - running.get();
+        if (free <= 0) return;
+        List<GenerationJob> jobs;
+        try {
+            jobs = jobService.claim(Mode.ONLINE, free, workerId);
+        } catch (Exception e) {
+            logger.warn("Claiming generation jobs failed: {}", e.getMessage());
+            return;
+        }
+        for (GenerationJob job : jobs) {
+            running.incrementAndGet();
+            runOnline(job)
+                    .doFinally(signal -> running.decrementAndGet())
+                    .subscribe();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.batch.submit-interval-ms:60000}")
+    public void submitBatches() {
+        if (!enabled) return;
+        List<GenerationJob> jobs;
+        try {
+            jobs = jobService.claim(Mode.BATCH, batchMaxSize, workerId);
+        } catch (Exception e) {
+            logger.warn("Claiming batch jobs failed: {}", e.getMessage());
+            return;
+        }
+        if (jobs.isEmpty()) return;
+
+        // Prepare every job (config, history, RAG context), then one provider batch per resolved config + model
+        Flux.fromIterable(jobs)
+                .flatMap(job -> role(job)
+                        .flatMap(role -> chatService.prepareOffline(role, job.getMessage(), job.getModel(),
+                                job.getModelConfigId(), job.getSessionId()))
+                        .map(offline -> Map.entry(job, offline))
+                        .onErrorResume(e -> failJob(job, e).then(Mono.empty())), concurrency)
+                .collectList()
+                .flatMapMany(prepared -> {
+                    Map<String, List<Map.Entry<GenerationJob, ChatService.OfflineRequest>>> groups = new LinkedHashMap<>();
+                    for (var entry : prepared) {
+                        var request = entry.getValue().request();
+                        groups.computeIfAbsent(request.configId() + "|" + request.model(), k -> new ArrayList<>()).add(entry);
+                    }
+                    return Flux.fromIterable(groups.values());
+                })
+                .concatMap(this::submitGroup)
+                .subscribe();
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.batch.poll-interval-ms:60000}")
+    public void pollBatches() {
+        if (!enabled) return;
+        List<GenerationJob> jobs;
+        try {
+            jobs = jobService.claimSubmitted(batchMaxSize * 10, workerId);
+        } catch (Exception e) {
+            logger.warn("Claiming submitted batches failed: {}", e.getMessage());
+            return;
+        }
+        Map<String, List<GenerationJob>> byBatch = new LinkedHashMap<>();
+        for (GenerationJob job : jobs) {
+            byBatch.computeIfAbsent(job.getBatchName(), k -> new ArrayList<>()).add(job);
+        }
+        Flux.fromIterable(byBatch.entrySet())
+                .concatMap(e -> pollBatch(e.getKey(), e.getValue()))
+                .subscribe();
+    }
+
+    private Mono<Void> runOnline(GenerationJob job) {
+        return role(job)
+                .flatMap(role -> chatService.generateForJob(role, job.getMessage(), job.getModel(),
+                        job.getModelConfigId(), job.getSessionId()))
+                .flatMap(reply -> blockingCalls.call(() -> {
+                    jobService.complete(job.getId(), workerId, reply);
+                    return true;
+                }))
+                .doOnSuccess(ok -> logger.info("Job {} completed", job.getId()))
+                .then()
+                .onErrorResume(e -> failJob(job, e));
+    }
+
+    // Jobs for providers without a batch API are simply generated online
+    private Mono<Void> submitGroup(List<Map.Entry<GenerationJob, ChatService.OfflineRequest>> group) {
+        ChatService.OfflineRequest first = group.get(0).getValue();
+        if (!first.provider().supportsBatch()) {
+            return Flux.fromIterable(group).flatMap(entry -> runOnline(entry.getKey()), concurrency).then();
+        }
+        List<String> keys = group.stream().map(entry -> entry.getKey().getId()).toList();
+        return first.provider().submitBatch(group.stream().map(entry -> entry.getValue().request()).toList(), keys)
+                .flatMap(batchName -> blockingCalls.call(() -> {
+                    jobService.markSubmitted(keys, batchName, first.request().configId());
+                    return batchName;
+                }))
+                .doOnSuccess(batchName -> logger.info("Submitted {} job(s) as provider batch {}", keys.size(), batchName))
+                .then()
+                .onErrorResume(e -> Flux.fromIterable(group).concatMap(entry -> failJob(entry.getKey(), e)).then());
+    }
+
+    private Mono<Void> pollBatch(String batchName, List<GenerationJob> jobs) {
+        GenerationJob first = jobs.get(0);
+        return chatService.pollBatch(first.getUserId(), first.getModelConfigId(), first.getModel(), batchName)
+                .flatMap(result -> result.done() ? finishBatch(batchName, jobs, result) : Mono.empty())
+                .onErrorResume(e -> {
+                    // Transient: the lease set on claim already schedules the next check
+                    logger.warn("Polling batch {} failed: {}", batchName, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Void> finishBatch(String batchName, List<GenerationJob> jobs, LlmBatchResult result) {
+        logger.info("Provider batch {} done: {} replies, {} errors", batchName, result.replies().size(), result.errors().size());
+        return blockingCalls.call(() -> {
+            for (GenerationJob job : jobs) {
+                LlmReply reply = result.replies().get(job.getId());
+                try {
+                    if (reply != null) {
+                        usageService.record(job.getUserId(), job.getRoleId(), job.getModelConfigId(),
+                                reply.promptTokens(), reply.outputTokens(), reply.cachedTokens());
+                    }
+                    if (reply != null && !reply.text().isEmpty()) {
+                        jobService.complete(job.getId(), workerId, reply.text());
+                    } else {
+                        String error = result.errors().getOrDefault(job.getId(),
+                                result.error() != null ? result.error()
+                                        : reply != null ? "No content in LLM response (" + reply.finishReason() + ")"
+                                        : "No result for this job in the batch");
+                        jobService.fail(job.getId(), workerId, error, false);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Recording batch result for job {} failed: {}", job.getId(), e.getMessage());
+                }
+            }
+            return true;
+        }).then();
+    }
+
+    private Mono<RoleDTO> role(GenerationJob job) {
+        return blockingCalls.call(() -> roleService.getRoleForUser(job.getUserId(), job.getRoleId()))
+                .flatMap(opt -> opt.map(Mono::just)
+                        .orElseGet(() -> Mono.error(new ChatService.ModelConfigException("Error: Role not found"))));
+    }
+
+    // Configuration problems (missing role, config or key) and a used-up quota won't fix themselves soon: fail without retrying
+    private Mono<Void> failJob(GenerationJob job, Throwable e) {
+        boolean retryable = !(e instanceof ChatService.ModelConfigException || e instanceof TokenUsageService.QuotaExceededException);
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        if (e.getCause() != null && e.getCause().getMessage() != null && !(e instanceof ChatService.ModelConfigException)) {
+            message = message + ": " + e.getCause().getMessage();
+        }
+        String error = message;
+        return blockingCalls.call(() -> {
+                    jobService.fail(job.getId(), workerId, error, retryable);
+                    return true;
+                })
+                .doOnError(ex -> logger.error("Could not record failure of job {}: {}", job.getId(), ex.getMessage()))
+                .onErrorResume(ex -> Mono.empty())
+                .then();
+    }
+
+    private static String workerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,95 @@
+package com.Pubudu.RoleAI.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the outcome of requests sent with an Idempotency-Key for a short window.
+ * A repeat with the same key joins the in-flight call or replays its result instead of running it again.
+ * Failures are not remembered, so a client can retry a failed request with the same key.
+ * At most chat.idempotency.max-entries keys are kept: past that the oldest are forgotten first.
+ */
+@Service
+public class IdempotencyService {
+
+    @Value("${chat.idempotency.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${chat.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    // "scope|key" -> remembered call
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long lastPurge = System.currentTimeMillis();
+
+    /**
+     * Run work once per (scope, key) within the TTL. The fingerprint identifies the request payload:
+     * reusing a key for a different payload fails with KeyReusedException.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> execute(String scope, String key, String fingerprint, Supplier<Mono<T>> work) {
+        purgeIfDue();
+        String mapKey = scope + "|" + key;
+        long now = System.currentTimeMillis();
+
+        Entry entry = entries.compute(mapKey, (k, existing) -> {
+            if (existing != null && existing.expiresAt > now) return existing;
+            Entry[] created = new Entry[1];
+            Mono<Object> shared = ((Mono<Object>) work.get())
+                    // Don't replay failures; only drop this entry, not a newer one that replaced it after expiry
+                    .doOnError(e -> entries.remove(k, created[0]))
+                    .cache();
+            created[0] = new Entry(fingerprint, shared, now + ttlSeconds * 1000);
+            return created[0];
+        });
+
+        if (!entry.fingerprint.equals(fingerprint)) {
+            return Mono.error(new KeyReusedException("Idempotency-Key was already used for a different request"));
+        }
+        return (Mono<T>) entry.result;
+    }
+
+    private void purgeIfDue() {
+        long now = System.currentTimeMillis();
+        if (entries.size() < maxEntries && now - lastPurge < 30_000) return;
+        synchronized (this) {
+            if (entries.size() < maxEntries && now - lastPurge < 30_000) return; // another thread just purged
+            lastPurge = now;
+            entries.values().removeIf(e -> e.expiresAt <= now);
+            // Still full of live keys: drop the oldest down to 90% of the cap, so the next full scan is
+            // a tenth of the cap of requests away rather than on every request
+            if (entries.size() >= maxEntries) {
+                int excess = entries.size() - maxEntries * 9 / 10;
+                entries.entrySet().stream()
+                        .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                        .limit(excess)
+                        .toList()
+                        .forEach(e -> entries.remove(e.getKey(), e.getValue()));
+            }
+        }
+    }
+
+    public static class KeyReusedException extends RuntimeException {
+        public KeyReusedException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final Mono<Object> result;
+        final long expiresAt;
+
+        Entry(String fingerprint, Mono<Object> result, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
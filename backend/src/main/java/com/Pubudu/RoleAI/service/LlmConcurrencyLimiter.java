@@ -0,0 +1,267 @@
+package com.Pubudu.RoleAI.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limit per ModelConfig (i.e. per provider API key and its quota).
+ *
+ * The limit follows AIMD: it grows by ~1 per limit's worth of successful calls, is halved on a 429, and
+ * is trimmed when latency climbs well above the observed baseline (a sign the key is being throttled).
+ * Calls over the limit wait in a queue that is served round-robin across users, so one heavy user cannot
+ * starve the others sharing a key; a call that waits longer than chat.limiter.max-wait-ms is rejected.
+ */
+@Service
+public class LlmConcurrencyLimiter {
+
+    @Value("${chat.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.limiter.initial-limit:8}")
+    private int initialLimit;
+
+    @Value("${chat.limiter.min-limit:1}")
+    private int minLimit;
+
+    @Value("${chat.limiter.max-limit:64}")
+    private int maxLimit;
+
+    @Value("${chat.limiter.max-queue:200}")
+    private int maxQueue;
+
+    @Value("${chat.limiter.max-wait-ms:20000}")
+    private long maxWaitMs;
+
+    // Latency above baseline * this factor counts as congestion
+    @Value("${chat.limiter.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter rejected;
+    private final Map<Long, KeyLimiter> limiters = new ConcurrentHashMap<>();
+
+    public LlmConcurrencyLimiter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.rejected = Counter.builder("chat.limiter.rejected").register(meterRegistry);
+    }
+
+    /**
+     * Run a single-response call once a permit for this key is available.
+     */
+    public <T> Mono<T> withPermit(Long key, Long userId, Supplier<Mono<T>> call) {
+        if (!enabled || key == null) return Mono.defer(call);
+        KeyLimiter limiter = limiter(key);
+        return limiter.acquire(userId).flatMap(permit -> Mono.defer(call)
+                .doOnSuccess(v -> permit.firstResponse())
+                .doOnError(permit::failed)
+                .doFinally(signal -> limiter.release(permit, signal)));
+    }
+
+    /**
+     * Run a streaming call holding a permit until the stream ends; latency is measured to the first element.
+     */
+    public <T> Flux<T> withPermitMany(Long key, Long userId, Supplier<Flux<T>> call) {
+        if (!enabled || key == null) return Flux.defer(call);
+        KeyLimiter limiter = limiter(key);
+        return limiter.acquire(userId).flatMapMany(permit -> Flux.defer(call)
+                .doOnNext(v -> permit.firstResponse())
+                .doOnError(permit::failed)
+                .doFinally(signal -> limiter.release(permit, signal)));
+    }
+
+    // The limiter for one key; package-private so tests can drive release() directly
+    KeyLimiter limiter(Long key) {
+        return limiters.computeIfAbsent(key, this::newLimiter);
+    }
+
+    private KeyLimiter newLimiter(Long key) {
+        KeyLimiter limiter = new KeyLimiter(Math.max(minLimit, Math.min(maxLimit, initialLimit)));
+        String tag = String.valueOf(key);
+        Gauge.builder("chat.limiter.limit", limiter, l -> l.limit).tag("modelConfig", tag).register(meterRegistry);
+        Gauge.builder("chat.limiter.in_flight", limiter, KeyLimiter::inFlight).tag("modelConfig", tag).register(meterRegistry);
+        Gauge.builder("chat.limiter.queue_depth", limiter, KeyLimiter::queued).tag("modelConfig", tag).register(meterRegistry);
+        return limiter;
+    }
+
+    public static class LimiterRejectedException extends RuntimeException {
+        public LimiterRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    final class KeyLimiter {
+        private volatile double limit;
+        private int inFlight;
+        private int queued;
+        // userId -> waiters; iteration order is the round-robin order
+        private final LinkedHashMap<Long, ArrayDeque<Waiter>> queues = new LinkedHashMap<>();
+        // Smoothed "fast" latency used as the no-congestion baseline
+        private double baselineMs = -1;
+
+        KeyLimiter(int initial) {
+            this.limit = initial;
+        }
+
+        double limit() {
+            return limit;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized int queued() {
+            return queued;
+        }
+
+        Mono<Permit> acquire(Long userId) {
+            return Mono.<Permit>create(sink -> {
+                        Waiter waiter = new Waiter(userId, sink);
+                        Permit immediate = null;
+                        boolean full = false;
+                        synchronized (this) {
+                            if (queued == 0 && inFlight < (int) limit) {
+                                inFlight++;
+                                immediate = new Permit();
+                            } else if (queued >= maxQueue) {
+                                full = true;
+                            } else {
+                                queues.computeIfAbsent(userId, u -> new ArrayDeque<>()).add(waiter);
+                                queued++;
+                            }
+                        }
+                        if (immediate != null) {
+                            sink.success(immediate);
+                        } else if (full) {
+                            rejected.increment();
+                            sink.error(new LimiterRejectedException("Too many requests queued for this model; try again shortly"));
+                        } else {
+                            sink.onCancel(() -> cancel(waiter));
+                        }
+                    })
+                    .timeout(Duration.ofMillis(maxWaitMs), Mono.error(() -> {
+                        rejected.increment();
+                        return new LimiterRejectedException("Timed out waiting for model capacity; try again shortly");
+                    }))
+                    // A permit granted just as the waiter gave up is handed back instead of leaking
+                    .doOnDiscard(Permit.class, p -> release(p, SignalType.CANCEL));
+        }
+
+        void release(Permit permit, SignalType signal) {
+            if (!permit.released.compareAndSet(false, true)) return;
+            List<Waiter> toGrant;
+            synchronized (this) {
+                inFlight--;
+                adapt(permit, signal);
+                toGrant = dispatch();
+            }
+            for (Waiter w : toGrant) {
+                w.sink.success(new Permit());
+            }
+        }
+
+        private void cancel(Waiter waiter) {
+            synchronized (this) {
+                ArrayDeque<Waiter> q = queues.get(waiter.userId);
+                if (q != null && q.remove(waiter)) {
+                    queued--;
+                    if (q.isEmpty()) queues.remove(waiter.userId);
+                }
+            }
+        }
+
+        // Caller holds the lock
+        private void adapt(Permit permit, SignalType signal) {
+            if (permit.rateLimited) {
+                limit = Math.max(minLimit, limit / 2);
+                return;
+            }
+            if (signal != SignalType.ON_COMPLETE || permit.firstResponseAt == 0) {
+                return; // cancelled or failed for other reasons: no signal about capacity
+            }
+            double latency = permit.firstResponseAt - permit.startedAt;
+            if (baselineMs < 0 || latency < baselineMs) {
+                baselineMs = latency;
+            } else {
+                baselineMs = baselineMs * 0.95 + latency * 0.05; // drift so the baseline can recover
+            }
+            if (latency > baselineMs * latencyTolerance) {
+                limit = Math.max(minLimit, limit * 0.9);
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        // Caller holds the lock: hand free permits to waiters, one user at a time
+        private List<Waiter> dispatch() {
+            List<Waiter> granted = new ArrayList<>();
+            while (queued > 0 && inFlight < (int) limit) {
+                Iterator<Map.Entry<Long, ArrayDeque<Waiter>>> it = queues.entrySet().iterator();
+                Map.Entry<Long, ArrayDeque<Waiter>> next = it.next();
+                Long userId = next.getKey();
+                ArrayDeque<Waiter> q = next.getValue();
+                Waiter w = q.poll();
+                it.remove();
+                if (!q.isEmpty()) queues.put(userId, q); // back of the line
+                queued--;
+                inFlight++;
+                granted.add(w);
+            }
+            return granted;
+        }
+    }
+
+    private static final class Waiter {
+        final Long userId;
+        final MonoSink<Permit> sink;
+
+        Waiter(Long userId, MonoSink<Permit> sink) {
+            this.userId = userId;
+            this.sink = sink;
+        }
+    }
+
+    static final class Permit {
+        final long startedAt;
+        volatile long firstResponseAt;
+        volatile boolean rateLimited;
+        final AtomicBoolean released = new AtomicBoolean();
+
+        Permit() {
+            this(System.currentTimeMillis());
+        }
+
+        Permit(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void firstResponse() {
+            if (firstResponseAt == 0) firstResponseAt = System.currentTimeMillis();
+        }
+
+        void failed(Throwable e) {
+            if (e instanceof WebClientResponseException wex && wex.getStatusCode().value() == 429) {
+                rateLimited = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.util.LatencyWindow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resilience around LLM HTTP calls:
+ * - retries of transient failures (429, 5xx, I/O) with full-jitter exponential backoff, honouring
+ *   Retry-After / Gemini's RetryInfo delay and never sleeping past the request deadline;
+ * - a circuit breaker per endpoint that fails fast after repeated provider failures and lets a
+ *   single trial call through once the cool-down has passed;
+ * - optional hedging: when a call runs past the endpoint's recent p95 latency, a second identical
+ *   call is started and whichever answers first wins.
+ */
+@Service
+public class LlmResilience {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmResilience.class);
+
+    // google.rpc.RetryInfo in Gemini 429 bodies, e.g. "retryDelay": "17s"
+    private static final Pattern RETRY_DELAY = Pattern.compile("\"retryDelay\"\\s*:\\s*\"(\\d+(?:\\.\\d+)?)s\"");
+
+    @Value("${chat.resilience.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${chat.resilience.retry.base-delay-ms:500}")
+    private long baseDelayMs;
+
+    @Value("${chat.resilience.retry.max-delay-ms:8000}")
+    private long maxDelayMs;
+
+    @Value("${chat.resilience.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${chat.resilience.breaker.open-ms:30000}")
+    private long openMs;
+
+    @Value("${chat.resilience.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    // Never hedge sooner than this, and only once enough latencies have been seen to trust the p95
+    @Value("${chat.resilience.hedge.min-delay-ms:2000}")
+    private long hedgeMinDelayMs;
+
+    @Value("${chat.resilience.hedge.min-samples:20}")
+    private int hedgeMinSamples;
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final Counter retries;
+    private final Counter hedges;
+    private final Counter shortCircuited;
+
+    public LlmResilience(MeterRegistry meterRegistry) {
+        this.retries = Counter.builder("chat.resilience.retries").register(meterRegistry);
+        this.hedges = Counter.builder("chat.resilience.hedges").register(meterRegistry);
+        this.shortCircuited = Counter.builder("chat.resilience.short_circuited").register(meterRegistry);
+    }
+
+    /**
+     * Run one HTTP call to endpoint through that endpoint's circuit breaker, recording its latency.
+     */
+    public <T> Mono<T> guard(String endpoint, Mono<T> call) {
+        Breaker breaker = breakers.computeIfAbsent(endpoint, e -> new Breaker());
+        return Mono.defer(() -> {
+            if (!breaker.tryPass()) {
+                shortCircuited.increment();
+                return Mono.error(new CircuitOpenException("Model provider is unavailable; try again shortly"));
+            }
+            long start = now();
+            return call
+                    .doOnSuccess(v -> {
+                        breaker.onSuccess();
+                        latencies.computeIfAbsent(endpoint, e -> new LatencyWindow(200)).record(now() - start);
+                    })
+                    .doOnError(e -> breaker.onError(isProviderFailure(e)))
+                    .doOnCancel(breaker::release);
+        });
+    }
+
+    /**
+     * Streaming counterpart of guard: the stream counts as a success once it completes.
+     */
+    public <T> Flux<T> guardMany(String endpoint, Flux<T> call) {
+        Breaker breaker = breakers.computeIfAbsent(endpoint, e -> new Breaker());
+        return Flux.defer(() -> {
+            if (!breaker.tryPass()) {
+                shortCircuited.increment();
+                return Flux.error(new CircuitOpenException("Model provider is unavailable; try again shortly"));
+            }
+            return call
+                    .doOnComplete(breaker::onSuccess)
+                    .doOnError(e -> breaker.onError(isProviderFailure(e)))
+                    .doOnCancel(breaker::release);
+        });
+    }
+
+    /**
+     * Re-subscribe to call on transient failures until it succeeds, attempts run out or the next
+     * wait would overrun deadline (epoch millis).
+     */
+    public <T> Mono<T> withRetry(Supplier<Mono<T>> call, long deadline) {
+        return Mono.defer(call).retryWhen(retrySpec(deadline, null));
+    }
+
+    /**
+     * Retry for streams: only while nothing has been emitted yet, since deltas already sent cannot be taken back.
+     */
+    public <T> Flux<T> withRetryMany(Supplier<Flux<T>> call, long deadline) {
+        AtomicBoolean emitted = new AtomicBoolean();
+        return Flux.defer(call)
+                .doOnNext(v -> emitted.set(true))
+                .retryWhen(retrySpec(deadline, emitted));
+    }
+
+    /**
+     * Hedge call against the recent p95 latency of endpoint: if the first attempt is still running by then,
+     * start a second one and take whichever succeeds first. A failure of the first attempt is returned as is.
+     */
+    public <T> Mono<T> hedged(String endpoint, Supplier<Mono<T>> call) {
+        if (!hedgeEnabled) return Mono.defer(call);
+        LatencyWindow window = latencies.get(endpoint);
+        long p95 = window == null ? -1 : window.p95(hedgeMinSamples);
+        Breaker breaker = breakers.get(endpoint);
+        if (p95 < 0 || (breaker != null && !breaker.isClosed())) return Mono.defer(call);
+
+        long delay = Math.max(hedgeMinDelayMs, p95);
+        Mono<T> hedge = Mono.delay(Duration.ofMillis(delay))
+                .doOnNext(t -> hedges.increment())
+                .then(Mono.defer(call))
+                .onErrorResume(e -> Mono.never()); // a failed hedge just leaves the first attempt running
+        return Mono.firstWithSignal(Mono.defer(call), hedge);
+    }
+
+    private Retry retrySpec(long deadline, AtomicBoolean emitted) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable e = signal.failure();
+            long attempt = signal.totalRetries() + 1;
+            if (!isRetryable(e) || attempt >= maxAttempts || (emitted != null && emitted.get())) {
+                return Mono.error(e);
+            }
+            long delay = retryAfterMs(e);
+            if (delay < 0) {
+                long cap = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+                delay = ThreadLocalRandom.current().nextLong(cap + 1); // full jitter
+            }
+            if (now() + delay >= deadline) {
+                return Mono.error(e);
+            }
+            retries.increment();
+            logger.warn("Retrying LLM call in {}ms (attempt {} of {}): {}", delay, attempt + 1, maxAttempts, e.getMessage());
+            return Mono.delay(Duration.ofMillis(delay));
+        }));
+    }
+
+    private boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException wex) {
+            int status = wex.getStatusCode().value();
+            return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+        }
+        return e instanceof WebClientRequestException;
+    }
+
+    // Failures that say the provider (not this request or this key's quota) is in trouble
+    private boolean isProviderFailure(Throwable e) {
+        if (e instanceof WebClientResponseException wex) {
+            return wex.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException;
+    }
+
+    // Server-requested wait in ms, or -1 when none was given
+    private long retryAfterMs(Throwable e) {
+        if (!(e instanceof WebClientResponseException wex)) return -1;
+        String header = wex.getHeaders().getFirst("Retry-After");
+        if (header != null && !header.isBlank()) {
+            try {
+                return Long.parseLong(header.trim()) * 1000;
+            } catch (NumberFormatException ignored) {
+                try {
+                    ZonedDateTime at = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return Math.max(0, at.toInstant().toEpochMilli() - now());
+                } catch (Exception ignoredToo) {
+                    // fall through to the body
+                }
+            }
+        }
+        Matcher m = RETRY_DELAY.matcher(wex.getResponseBodyAsString());
+        if (m.find()) {
+            return (long) (Double.parseDouble(m.group(1)) * 1000);
+        }
+        return -1;
+    }
+
+    // Reactor's clock rather than System.currentTimeMillis(), so tests can run it under virtual time
+    private static long now() {
+        return Schedulers.parallel().now(TimeUnit.MILLISECONDS);
+    }
+
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    private final class Breaker {
+        private int consecutiveFailures;
+        private long openUntil; // 0 = closed
+        private boolean trialInFlight;
+
+        synchronized boolean isClosed() {
+            return openUntil == 0;
+        }
+
+        synchronized boolean tryPass() {
+            if (openUntil == 0) return true;
+            if (now() < openUntil || trialInFlight) return false;
+            trialInFlight = true; // half-open: one trial call decides
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            openUntil = 0;
+            trialInFlight = false;
+        }
+
+        synchronized void onError(boolean providerFailure) {
+            if (!providerFailure) {
+                trialInFlight = false;
+                return;
+            }
+            consecutiveFailures++;
+            if (trialInFlight || consecutiveFailures >= failureThreshold) {
+                if (openUntil == 0) logger.warn("Circuit opened after {} consecutive provider failures", consecutiveFailures);
+                openUntil = now() + openMs;
+            }
+            trialInFlight = false;
+        }
+
+        synchronized void release() {
+            trialInFlight = false;
+        }
+    }
+}
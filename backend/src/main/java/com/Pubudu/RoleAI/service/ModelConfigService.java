@@ -2,6 +2,8 @@ package com.Pubudu.RoleAI.service;
 
 import com.Pubudu.RoleAI.entity.ModelConfig;
 import com.Pubudu.RoleAI.repository.ModelConfigRepository;
+import com.Pubudu.RoleAI.service.llm.LlmEndpointPolicy;
+import com.Pubudu.RoleAI.service.llm.LlmRouter;
 import com.Pubudu.RoleAI.util.CryptoUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -17,12 +19,25 @@ public class ModelConfigService {
     @Autowired
     private CryptoUtil cryptoUtil;
 
-    public ModelConfig create(Long userId, String provider, String modelId, String label, String apiKeyPlain) {
+    @Autowired
+    private GeminiEndpointResolver endpointResolver;
+
+    @Autowired
+    private LlmRouter router;
+
+    @Autowired
+    private LlmEndpointPolicy endpointPolicy;
+
+    public ModelConfig create(Long userId, String provider, String modelId, String label, String apiKeyPlain,
+                              String baseUrl, Double costPerMillionTokens) {
+        endpointPolicy.check(baseUrl);
         ModelConfig mc = new ModelConfig();
         mc.setUserId(userId);
         mc.setProvider(provider);
         mc.setModelId(modelId);
         mc.setLabel(label);
+        mc.setBaseUrl(baseUrl);
+        mc.setCostPerMillionTokens(costPerMillionTokens);
         mc.setEncryptedApiKey(cryptoUtil.encrypt(apiKeyPlain));
         return repository.save(mc);
     }
@@ -37,17 +52,31 @@ public class ModelConfigService {
 
     public void delete(Long id) {
         repository.deleteById(id);
+        endpointResolver.invalidate(id);
+        router.forget(id);
     }
 
-    public ModelConfig update(Long id, String provider, String modelId, String label, String apiKeyPlain) {
+    public ModelConfig update(Long id, String provider, String modelId, String label, String apiKeyPlain,
+                              String baseUrl, Double costPerMillionTokens) {
+        endpointPolicy.check(baseUrl);
         ModelConfig mc = repository.findById(id).orElseThrow();
+        boolean targetChanged = (provider != null && !provider.equals(mc.getProvider()))
+                || (modelId != null && !modelId.equals(mc.getModelId()))
+                || (baseUrl != null && !baseUrl.equals(mc.getBaseUrl()));
         if (provider != null) mc.setProvider(provider);
         if (modelId != null) mc.setModelId(modelId);
         if (label != null) mc.setLabel(label);
+        if (baseUrl != null) mc.setBaseUrl(baseUrl.isBlank() ? null : baseUrl);
+        if (costPerMillionTokens != null) mc.setCostPerMillionTokens(costPerMillionTokens);
         if (apiKeyPlain != null && !apiKeyPlain.isBlank()) {
             mc.setEncryptedApiKey(cryptoUtil.encrypt(apiKeyPlain));
         }
-        return repository.save(mc);
+        ModelConfig saved = repository.save(mc);
+        if (targetChanged) {
+            endpointResolver.invalidate(id);
+            router.forget(id); // stats describe the old target
+        }
+        return saved;
     }
 
     public String getApiKeyPlain(ModelConfig mc) {
@@ -0,0 +1,109 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.service.vector.PgVectorStore;
+import com.Pubudu.RoleAI.service.vector.VectorRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embeds roles that have no vector in roles.embedding (vector.store=pgvector): roles created before the switch
+ * to pgvector, or before the column was recreated for a new dimension. New and edited roles get their vector in
+ * their own transaction, so this only ever has old rows to fill.
+ *
+ * Walks the roles WHERE embedding IS NULL by id (keyset pages of vector.pgvector.backfill.batch-size), one
+ * embedding call per page, and writes with fillMissing, which skips rows that got a vector in the meantime. That
+ * guard also makes nodes running the backfill at the same time harmless: the worst case is a page embedded twice.
+ */
+@Service
+@ConditionalOnProperty(name = "vector.store", havingValue = "pgvector")
+public class PgVectorBackfillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PgVectorBackfillService.class);
+
+    @Value("${vector.pgvector.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vector.pgvector.backfill.batch-size:256}")
+    private int batchSize;
+
+    private final PgVectorStore store;
+    private final RoleRepository roleRepository;
+    private final EmbeddingService embeddingService;
+    private final RoleVectorService roleVectorService;
+    private final Counter backfilled;
+
+    public PgVectorBackfillService(PgVectorStore store, RoleRepository roleRepository, EmbeddingService embeddingService,
+                                   RoleVectorService roleVectorService, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.roleRepository = roleRepository;
+        this.embeddingService = embeddingService;
+        this.roleVectorService = roleVectorService;
+        this.backfilled = Counter.builder("vector.pgvector.backfilled").register(meterRegistry);
+    }
+
+    // Soon after startup, then now and again in case a run was cut short
+    @Scheduled(initialDelayString = "${vector.pgvector.backfill.initial-delay-ms:10000}",
+            fixedDelayString = "${vector.pgvector.backfill.interval-ms:600000}")
+    public void scheduledBackfill() {
+        if (!enabled) return;
+        try {
+            backfill();
+        } catch (Exception e) {
+            logger.warn("pgvector backfill failed, retrying at the next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Fill in every role without a vector; returns how many were filled.
+     */
+    public synchronized int backfill() {
+        RoleVectorService.Generation generation = roleVectorService.activeGeneration();
+        if (!generation.builtWith(embeddingService)) {
+            // Vectors of this model next to the stored ones of another would not be comparable
+            logger.warn("pgvector backfill skipped: stored vectors were embedded with {}/{}, this node embeds with {}/{}",
+                    generation.provider(), generation.model(), embeddingService.providerId(), embeddingService.model());
+            return 0;
+        }
+        long cursor = 0;
+        int filled = 0;
+        while (true) {
+            List<Long> ids = store.rolesWithoutVector(cursor, batchSize);
+            if (ids.isEmpty()) break;
+            cursor = ids.get(ids.size() - 1);
+            List<Role> roles = roleRepository.findAllById(ids); // minus any deleted since the scan
+            if (roles.isEmpty()) continue;
+
+            List<float[]> vectors = embeddingService.embedDocuments(roles.stream()
+                    .map(r -> RoleVectorService.embeddingText(r.getName(), r.getDescription()))
+                    .toList());
+            Map<Long, List<VectorRecord>> byUser = new LinkedHashMap<>();
+            for (int i = 0; i < roles.size(); i++) {
+                Role role = roles.get(i);
+                byUser.computeIfAbsent(role.getUserId(), k -> new ArrayList<>()).add(RoleVectorService.roleRecord(
+                        role.getId(), role.getUserId(), role.getName(), role.getDescription(), vectors.get(i)));
+            }
+            for (Map.Entry<Long, List<VectorRecord>> user : byUser.entrySet()) {
+                int count = store.fillMissing(RoleVectorService.namespace(generation.number(), user.getKey()), user.getValue());
+                filled += count;
+                backfilled.increment(count);
+            }
+        }
+        if (filled > 0) {
+            logger.info("pgvector backfill filled {} role vectors", filled);
+        }
+        return filled;
+    }
+}
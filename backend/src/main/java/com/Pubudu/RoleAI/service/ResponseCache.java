@@ -0,0 +1,224 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.dto.RoleDTO;
+import com.Pubudu.RoleAI.util.vector.Int8Quantizer;
+import com.Pubudu.RoleAI.util.vector.Int8Vector;
+import com.Pubudu.RoleAI.util.vector.VectorMath;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory cache of LLM replies in front of ChatService.
+ *
+ * Entries are keyed by (roleId, role fingerprint, modelConfigId, model, history key, normalized message). The role
+ * fingerprint is a SHA-256 of name + description, so editing a role naturally stops old replies from matching.
+ * When chat.response-cache.similarity-threshold is set, a miss falls back to the most similar cached
+ * message for the same role/model (cosine over EmbeddingService vectors, kept as int8).
+ *
+ * Eviction is LRU bounded by an approximate byte budget, plus a TTL checked on read.
+ */
+@Component
+public class ResponseCache {
+
+    @Value("${chat.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.response-cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Value("${chat.response-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    // 0 disables the embedding-similarity lookup
+    @Value("${chat.response-cache.similarity-threshold:0}")
+    private double similarityThreshold;
+
+    // Message vectors are only compared against a threshold: int8 is plenty and takes a quarter of the memory
+    private static final Int8Quantizer QUANTIZER = Int8Quantizer.perVector();
+
+    private final EmbeddingService embeddingService;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // partition (everything but the message) -> its entries, so similarity lookups only scan one role/model
+    // without disturbing the LRU order of the main map
+    private final Map<String, Map<String, Entry>> partitions = new HashMap<>();
+    private long bytes;
+
+    private final Counter exactHits;
+    private final Counter semanticHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ResponseCache(EmbeddingService embeddingService, MeterRegistry meterRegistry) {
+        this.embeddingService = embeddingService;
+        this.exactHits = Counter.builder("chat.response_cache.hits").tag("match", "exact").register(meterRegistry);
+        this.semanticHits = Counter.builder("chat.response_cache.hits").tag("match", "semantic").register(meterRegistry);
+        this.misses = Counter.builder("chat.response_cache.misses").register(meterRegistry);
+        this.evictions = Counter.builder("chat.response_cache.evictions").register(meterRegistry);
+        Gauge.builder("chat.response_cache.bytes", this, c -> c.currentBytes()).register(meterRegistry);
+        Gauge.builder("chat.response_cache.entries", this, c -> c.size()).register(meterRegistry);
+    }
+
+    public Optional<String> lookup(RoleDTO role, Long modelConfigId, String model, String historyKey, String message) {
+        if (!cacheable(role, message)) return Optional.empty();
+
+        String partition = partition(role, modelConfigId, model, historyKey);
+        String normalized = normalize(message);
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            Entry hit = entries.get(partition + "|" + normalized);
+            if (hit != null) {
+                if (hit.expiresAt > now) {
+                    exactHits.increment();
+                    return Optional.of(hit.reply);
+                }
+                remove(partition + "|" + normalized);
+            }
+        }
+
+        if (similarityThreshold > 0) {
+            float[] query = embeddingService.embed(normalized);
+            float queryNorm = VectorMath.norm(query);
+            synchronized (this) {
+                Map<String, Entry> candidates = partitions.get(partition);
+                Entry best = null;
+                double bestScore = similarityThreshold;
+                if (candidates != null) {
+                    for (Entry candidate : candidates.values()) {
+                        if (candidate.embedding == null || candidate.expiresAt <= now) continue;
+                        double score = candidate.embedding.cosine(query, queryNorm);
+                        if (score >= bestScore) {
+                            bestScore = score;
+                            best = candidate;
+                        }
+                    }
+                }
+                if (best != null) {
+                    entries.get(best.key); // only the winner counts as an access
+                    semanticHits.increment();
+                    return Optional.of(best.reply);
+                }
+            }
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void store(RoleDTO role, Long modelConfigId, String model, String historyKey, String message, String reply) {
+        if (!cacheable(role, message) || reply == null || reply.isBlank()) return;
+
+        String partition = partition(role, modelConfigId, model, historyKey);
+        String normalized = normalize(message);
+        Int8Vector embedding = similarityThreshold > 0 ? QUANTIZER.quantize(embeddingService.embed(normalized)) : null;
+        String key = partition + "|" + normalized;
+        Entry entry = new Entry(key, partition, reply, embedding, System.currentTimeMillis() + ttlSeconds * 1000);
+        if (entry.bytes > maxBytes) return;
+
+        synchronized (this) {
+            remove(key);
+            entries.put(key, entry);
+            partitions.computeIfAbsent(partition, p -> new HashMap<>()).put(key, entry);
+            bytes += entry.bytes;
+
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                unindex(eldest);
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized long currentBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) unindex(old);
+    }
+
+    private void unindex(Entry entry) {
+        bytes -= entry.bytes;
+        Map<String, Entry> siblings = partitions.get(entry.partition);
+        if (siblings != null) {
+            siblings.remove(entry.key);
+            if (siblings.isEmpty()) partitions.remove(entry.partition);
+        }
+    }
+
+    private boolean cacheable(RoleDTO role, String message) {
+        return enabled
+                && role != null && role.getId() != null
+                && !Boolean.FALSE.equals(role.getResponseCacheEnabled())
+                && message != null && !message.isBlank();
+    }
+
+    private String partition(RoleDTO role, Long modelConfigId, String model, String historyKey) {
+        String fingerprint = digest(List.of(String.valueOf(role.getName()), String.valueOf(role.getDescription())));
+        return role.getId() + "|" + fingerprint + "|" + modelConfigId + "|" + model + "|" + historyKey;
+    }
+
+    // SHA-256 over the parts, each length-prefixed so ("ab", "c") and ("a", "bc") differ
+    static String digest(List<String> parts) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                sha.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+                sha.update(bytes);
+            }
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JDK ships SHA-256
+        }
+    }
+
+    // Case/whitespace-insensitive so trivially different phrasings share an entry
+    private String normalize(String message) {
+        return message.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    private static final class Entry {
+        final String key;
+        final String partition;
+        final String reply;
+        final Int8Vector embedding;
+        final long expiresAt;
+        final long bytes;
+
+        Entry(String key, String partition, String reply, Int8Vector embedding, long expiresAt) {
+            this.key = key;
+            this.partition = partition;
+            this.reply = reply;
+            this.embedding = embedding;
+            this.expiresAt = expiresAt;
+            // Rough heap estimate: UTF-16 chars, vector payload, fixed object/map overhead
+            this.bytes = 2L * (key.length() + reply.length())
+                    + (embedding != null ? embedding.bytes() : 0)
+                    + 128;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.Pubudu.RoleAI.entity.Role;
 import com.Pubudu.RoleAI.entity.User;
 import com.Pubudu.RoleAI.repository.RoleRepository;
 import com.Pubudu.RoleAI.repository.UserRepository;
+import com.Pubudu.RoleAI.service.vector.VectorStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +19,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Objects;
 
 @Service
 public class RoleService {
@@ -34,7 +36,13 @@ public class RoleService {
     private EmbeddingService embeddingService;
 
     @Autowired
-    private PineconeService pineconeService;
+    private RoleVectorService roleVectorService;
+
+    @Autowired
+    private VectorOutboxService vectorOutboxService;
+
+    @Autowired
+    private GeminiContextCacheService contextCacheService;
 
     // Get current authenticated user
     private User getCurrentUser() {
@@ -58,7 +66,9 @@ public class RoleService {
 
     // Convert Role entity to DTO
     private RoleDTO convertToDTO(Role role) {
-        return new RoleDTO(role.getId(), role.getName(), role.getDescription(), role.getUserId());
+        RoleDTO dto = new RoleDTO(role.getId(), role.getName(), role.getDescription(), role.getUserId());
+        dto.setResponseCacheEnabled(role.getResponseCacheEnabled());
+        return dto;
     }
 
     // Convert DTO to Role entity
@@ -66,6 +76,7 @@ public class RoleService {
         Role role = new Role();
         role.setName(roleDTO.getName());
         role.setDescription(roleDTO.getDescription());
+        role.setResponseCacheEnabled(roleDTO.getResponseCacheEnabled());
         return role;
     }
 
@@ -87,6 +98,22 @@ public class RoleService {
         return Optional.empty();
     }
 
+    // Same as getRoleById, for callers running off the request thread (no SecurityContext available)
+    public Optional<RoleDTO> getRoleForUser(Long userId, Long roleId) {
+        return roleRepository.findById(roleId)
+                .filter(r -> r.getUserId().equals(userId))
+                .map(this::convertToDTO);
+    }
+
+    // Get several roles of the current user in one query, in the requested order; ids not owned are left out
+    public List<RoleDTO> getRolesByIds(List<Long> roleIds) {
+        User currentUser = getCurrentUser();
+        Map<Long, Role> byId = roleRepository.findAllById(roleIds).stream()
+                .filter(r -> r.getUserId().equals(currentUser.getId()))
+                .collect(Collectors.toMap(Role::getId, r -> r));
+        return roleIds.stream().map(byId::get).filter(Objects::nonNull).map(this::convertToDTO).collect(Collectors.toList());
+    }
+
     // Create new role
     @Transactional
     public RoleDTO createRole(RoleDTO roleDTO) {
@@ -99,23 +126,7 @@ public class RoleService {
         Role savedRole = roleRepository.save(role);
         logger.info("Role saved to database with ID: {}", savedRole.getId());
         
-        // Generate embedding and store in Pinecone
-        try {
-            String embeddingText = roleDTO.getName() + " " + roleDTO.getDescription();
-            double[] embedding = embeddingService.generateEmbeddingArray(embeddingText);
-            boolean pineconeSuccess = pineconeService.upsertRoleEmbedding(
-                savedRole.getId(),
-                currentUser.getId(),
-                savedRole.getName(),
-                savedRole.getDescription(),
-                embedding
-            );
-            if (!pineconeSuccess) {
-                logger.warn("Failed to store embedding in Pinecone for role ID: {}", savedRole.getId());
-            }
-        } catch (Exception e) {
-            logger.error("Failed to generate or store embedding for role ID: {}", savedRole.getId(), e);
-        }
+        syncRoleVector(savedRole);
         
         return convertToDTO(savedRole);
     }
@@ -129,33 +140,24 @@ public class RoleService {
         
         if (existingRole.isPresent() && existingRole.get().getUserId().equals(currentUser.getId())) {
             Role role = existingRole.get();
+            boolean textChanged = !Objects.equals(role.getName(), roleDTO.getName())
+                    || !Objects.equals(role.getDescription(), roleDTO.getDescription());
             role.setName(roleDTO.getName());
             role.setDescription(roleDTO.getDescription());
+            if (roleDTO.getResponseCacheEnabled() != null) {
+                role.setResponseCacheEnabled(roleDTO.getResponseCacheEnabled());
+            }
             
             // Save updated role to database
             Role updatedRole = roleRepository.save(role);
             logger.info("Role updated in database with ID: {}", updatedRole.getId());
-            
-            // Update embedding in Pinecone
-            try {
-                String embeddingText = roleDTO.getName() + " " + roleDTO.getDescription();
-                double[] embedding = embeddingService.generateEmbeddingArray(embeddingText);
-                
-                boolean pineconeSuccess = pineconeService.upsertRoleEmbedding(
-                    updatedRole.getId(),
-                    currentUser.getId(),
-                    updatedRole.getName(),
-                    updatedRole.getDescription(),
-                    embedding
-                );
-                
-                if (!pineconeSuccess) {
-                    logger.warn("Failed to update embedding in Pinecone for role ID: {}", updatedRole.getId());
-                }
-            } catch (Exception e) {
-                logger.error("Failed to update embedding for role ID: {}", updatedRole.getId(), e);
+            contextCacheService.dropRole(updatedRole.getId());
+            if (!textChanged) {
+                return Optional.of(convertToDTO(updatedRole)); // stored vector is still current
             }
             
+            syncRoleVector(updatedRole);
+            
             return Optional.of(convertToDTO(updatedRole));
         }
         return Optional.empty();
@@ -167,24 +169,61 @@ public class RoleService {
         User currentUser = getCurrentUser();
         
         if (roleRepository.existsByIdAndUserId(roleId, currentUser.getId())) {
-            // Delete from Pinecone first
-            try {
-                boolean pineconeSuccess = pineconeService.deleteRoleEmbedding(roleId, currentUser.getId());
-                if (!pineconeSuccess) {
-                    logger.warn("Failed to delete embedding from Pinecone for role ID: {}", roleId);
-                }
-            } catch (Exception e) {
-                logger.error("Error deleting embedding from Pinecone for role ID: {}", roleId, e);
-            }
+            // Outbox event or (transactional store) vector delete, committed with the row delete
+            removeRoleVector(currentUser.getId(), roleId);
             
             // Delete from database
             roleRepository.deleteByIdAndUserId(roleId, currentUser.getId());
             logger.info("Role deleted from database with ID: {}", roleId);
+            contextCacheService.dropRole(roleId);
             return true;
         }
         return false;
     }
 
+    // Bring the role's vector up to date: queued for VectorOutboxService, or written right here when
+    // the store is transactional (or write-behind is off)
+    private void syncRoleVector(Role role) {
+        if (vectorOutboxService.writeBehind()) {
+            vectorOutboxService.enqueue(role.getUserId(), role.getId());
+            return;
+        }
+        try {
+            float[] embedding = embeddingService.embedDocument(RoleVectorService.embeddingText(role.getName(), role.getDescription()));
+            boolean stored = roleVectorService.upsertRoleEmbedding(
+                role.getId(),
+                role.getUserId(),
+                role.getName(),
+                role.getDescription(),
+                embedding
+            );
+            if (!stored) {
+                logger.warn("Failed to store embedding in vector store for role ID: {}", role.getId());
+            }
+        } catch (VectorStore.VectorStoreException e) {
+            throw e; // transactional store: roll the role write back with it
+        } catch (Exception e) {
+            logger.error("Failed to generate or store embedding for role ID: {}", role.getId(), e);
+        }
+    }
+
+    private void removeRoleVector(Long userId, Long roleId) {
+        if (vectorOutboxService.writeBehind()) {
+            vectorOutboxService.enqueue(userId, roleId);
+            return;
+        }
+        try {
+            boolean deleted = roleVectorService.deleteRoleEmbedding(roleId, userId);
+            if (!deleted) {
+                logger.warn("Failed to delete embedding from vector store for role ID: {}", roleId);
+            }
+        } catch (VectorStore.VectorStoreException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error deleting embedding from vector store for role ID: {}", roleId, e);
+        }
+    }
+
     // Search roles by name
     public List<RoleDTO> searchRoles(String query) {
         User currentUser = getCurrentUser();
@@ -196,16 +235,16 @@ public class RoleService {
     public List<RoleDTO> findSimilarRoles(String description, int limit) {
         User currentUser = getCurrentUser();
         try {
-            double[] queryEmbedding = embeddingService.generateEmbeddingArray(description);
+            float[] queryEmbedding = embeddingService.embed(description);
             
-            // Search using Pinecone
-            List<Map<String, Object>> similarRoles = pineconeService.searchSimilarRoles(
+            // Search the vector store
+            List<Map<String, Object>> similarRoles = roleVectorService.searchSimilarRoles(
                 currentUser.getId(), 
                 queryEmbedding, 
                 limit
             );
             
-            // Convert Pinecone results to RoleDTO
+            // Convert vector matches to RoleDTO
             List<RoleDTO> results = new ArrayList<>();
             for (Map<String, Object> result : similarRoles) {
                 String roleIdStr = (String) result.get("id");
@@ -218,23 +257,23 @@ public class RoleService {
                 results.add(roleDTO);
             }
             
-            logger.info("Found {} similar roles using Pinecone for user {}", results.size(), currentUser.getId());
+            logger.info("Found {} similar roles by vector search for user {}", results.size(), currentUser.getId());
             return results;
         } catch (Exception e) {
-            // If Pinecone search fails, fall back to database search
-            logger.error("Pinecone search failed, falling back to name search for user {}", currentUser.getId(), e);
+            // If vector search fails, fall back to database search
+            logger.error("Vector search failed, falling back to name search for user {}", currentUser.getId(), e);
             return searchRoles(description);
         }
     }
 
-    // Check if Pinecone is ready for use
-    public boolean isPineconeReady() {
-        return pineconeService.isIndexReady();
+    // Check if the vector store is ready for use
+    public boolean isVectorStoreReady() {
+        return roleVectorService.isIndexReady();
     }
 
-    // Get Pinecone index statistics
-    public Map<String, Object> getPineconeStats() {
-        return pineconeService.getIndexStats();
+    // Get vector store statistics
+    public Map<String, Object> getVectorStoreStats() {
+        return roleVectorService.getIndexStats();
     }
 
 }
\ No newline at end of file
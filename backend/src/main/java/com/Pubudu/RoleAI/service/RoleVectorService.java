@@ -0,0 +1,252 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.ReindexJob;
+import com.Pubudu.RoleAI.repository.ReindexJobRepository;
+import com.Pubudu.RoleAI.service.vector.VectorMatch;
+import com.Pubudu.RoleAI.service.vector.VectorRecord;
+import com.Pubudu.RoleAI.service.vector.VectorStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Role embeddings in the configured VectorStore (vector.store): one namespace per user ("user_<id>"),
+ * one vector per role ("role_<id>") with the role's name and description as metadata.
+ *
+ * Namespaces come in generations. Generation 0 is the plain "user_<id>" set; each reindex
+ * (VectorReindexService) builds the next one ("g<n>_user_<id>") next to it. Reads use the newest completed
+ * generation. Writes go to it and to the generation being built, but only to generations embedded with the
+ * same provider, model and dimension as this node, so nodes with an old and a new embedding config can run
+ * side by side. The state lives in vector_reindex_jobs and is re-read every vector.reindex.state-refresh-ms.
+ * Generation 0 gets its row (COMPLETED, with the embedding config of the node) the first time a node finds
+ * none for its store.
+ */
+@Service
+public class RoleVectorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleVectorService.class);
+
+    private static final Map<String, String> ROLE_FILTER = Map.of("type", "role");
+
+    /**
+     * One complete set of role vectors and the embedding config it was built with.
+     */
+    public record Generation(int number, String provider, String model, int dimension) {
+
+        static Generation of(ReindexJob job) {
+            return new Generation(job.getGeneration(), job.getProvider(), job.getModel(), job.getDimension());
+        }
+
+        public boolean builtWith(EmbeddingService embeddings) {
+            return provider.equals(embeddings.providerId()) && model.equals(embeddings.model())
+                    && dimension == embeddings.dimension();
+        }
+    }
+
+    private final VectorStore store;
+    private final ReindexJobRepository reindexJobRepository;
+    private final EmbeddingService embeddingService;
+
+    private volatile Generation active; // reads
+    private volatile Generation building; // reindex in progress, or null
+    private volatile int mismatchLogged = -1;
+
+    public RoleVectorService(List<VectorStore> stores, @Value("${vector.store:pinecone}") String storeId,
+                             ReindexJobRepository reindexJobRepository, EmbeddingService embeddingService) {
+        this.store = stores.stream()
+                .filter(s -> s.id().equalsIgnoreCase(storeId.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown vector.store '" + storeId + "'"));
+        this.reindexJobRepository = reindexJobRepository;
+        this.embeddingService = embeddingService;
+        logger.info("Role vectors in {} store", store.id());
+    }
+
+    public static String namespace(int generation, Long userId) {
+        return generation == 0 ? "user_" + userId : "g" + generation + "_user_" + userId;
+    }
+
+    public static String vectorId(Long roleId) {
+        return "role_" + roleId;
+    }
+
+    // What a role's vector is computed from
+    public static String embeddingText(String roleName, String description) {
+        return roleName + " " + description;
+    }
+
+    public static VectorRecord roleRecord(Long roleId, Long userId, String roleName, String description, float[] embedding) {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("userId", userId.toString());
+        metadata.put("roleName", roleName);
+        metadata.put("description", description);
+        metadata.put("type", "role");
+        return new VectorRecord(vectorId(roleId), embedding, metadata);
+    }
+
+    public VectorStore store() {
+        return store;
+    }
+
+    public Generation activeGeneration() {
+        return active;
+    }
+
+    public Generation buildingGeneration() {
+        return building;
+    }
+
+    @PostConstruct
+    void loadGenerations() {
+        refreshGenerations();
+        if (active == null) {
+            // Without knowing what the stored vectors were embedded with, neither reads nor writes are safe
+            throw new IllegalStateException("Could not read the vector generations of the " + store.id() + " store");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${vector.reindex.state-refresh-ms:5000}")
+    public void refreshGenerations() {
+        try {
+            Generation current = reindexJobRepository
+                    .findFirstByStoreIdAndStatusOrderByGenerationDesc(store.id(), ReindexJob.Status.COMPLETED)
+                    .map(Generation::of)
+                    .orElseGet(this::recordOriginal);
+            building = reindexJobRepository.findFirstByStoreIdOrderByGenerationDesc(store.id())
+                    .filter(job -> job.getStatus() == ReindexJob.Status.RUNNING)
+                    .map(Generation::of)
+                    .orElse(null);
+            if (active != null && current.number() != active.number()) {
+                logger.info("Role vector reads switched from generation {} to {}", active.number(), current.number());
+            }
+            active = current;
+        } catch (Exception e) {
+            logger.warn("Reading vector generations failed, keeping generation {}: {}",
+                    active == null ? null : active.number(), e.getMessage());
+        }
+    }
+
+    // Generation 0 predates reindexing: it is taken to be built with the config of the first node that finds it unrecorded
+    private Generation recordOriginal() {
+        ReindexJob original = new ReindexJob();
+        original.setStoreId(store.id());
+        original.setGeneration(0);
+        original.setProvider(embeddingService.providerId());
+        original.setModel(embeddingService.model());
+        original.setDimension(embeddingService.dimension());
+        original.setStatus(ReindexJob.Status.COMPLETED);
+        original.setFinishedAt(LocalDateTime.now());
+        try {
+            reindexJobRepository.save(original);
+        } catch (DataIntegrityViolationException e) {
+            // Another node recorded it first; its config is the one that counts
+            return reindexJobRepository.findByStoreIdAndGeneration(store.id(), 0)
+                    .map(Generation::of)
+                    .orElseThrow(() -> e);
+        }
+        logger.info("Recorded generation 0 of the {} store as {}/{} ({} dimensions)", store.id(),
+                original.getProvider(), original.getModel(), original.getDimension());
+        return Generation.of(original);
+    }
+
+    /**
+     * Write role vectors of one user to every generation this node writes to; throws on the first failure.
+     */
+    public void writeRoles(Long userId, List<VectorRecord> upserts, List<String> deleteIds) {
+        List<Generation> targets = new ArrayList<>(2);
+        Generation current = active;
+        Generation next = building;
+        if (current.builtWith(embeddingService)) targets.add(current);
+        if (next != null && next.builtWith(embeddingService)) targets.add(next);
+        for (Generation generation : targets) {
+            String namespace = namespace(generation.number(), userId);
+            if (!upserts.isEmpty()) store.upsert(namespace, upserts);
+            if (!deleteIds.isEmpty()) store.delete(namespace, deleteIds);
+        }
+    }
+
+    /**
+     * Upsert a role embedding. Failures are logged and reported as false, except for a transactional
+     * store, where they are thrown so the role write rolls back with them.
+     */
+    public boolean upsertRoleEmbedding(Long roleId, Long userId, String roleName, String description, float[] embedding) {
+        try {
+            writeRoles(userId, List.of(roleRecord(roleId, userId, roleName, description, embedding)), List.of());
+            logger.info("Successfully upserted role embedding for role ID: {}", roleId);
+            return true;
+        } catch (Exception e) {
+            if (store.transactional()) throw e; // the caller's transaction is already broken
+            logger.error("Error upserting role embedding for role ID: {}", roleId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Search for similar roles using vector similarity
+     */
+    public List<Map<String, Object>> searchSimilarRoles(Long userId, float[] queryEmbedding, int topK) {
+        Generation generation = active;
+        if (!generation.builtWith(embeddingService)) {
+            // Query vectors from another model would be compared against these: nothing until a reindex completes
+            if (mismatchLogged != generation.number()) {
+                mismatchLogged = generation.number();
+                logger.warn("Vector generation {} was embedded with {}/{}, this node embeds with {}/{}; similarity search is off until a reindex completes",
+                        generation.number(), generation.provider(), generation.model(), embeddingService.providerId(), embeddingService.model());
+            }
+            return Collections.emptyList();
+        }
+        try {
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (VectorMatch match : store.query(namespace(generation.number(), userId), queryEmbedding, topK, ROLE_FILTER)) {
+                Map<String, Object> result = new HashMap<>();
+                result.put("id", match.id());
+                result.put("score", (double) match.score());
+                result.put("roleName", match.metadata().getOrDefault("roleName", ""));
+                result.put("description", match.metadata().getOrDefault("description", ""));
+                result.put("userId", match.metadata().getOrDefault("userId", ""));
+                results.add(result);
+            }
+            logger.info("Found {} similar roles for user {}", results.size(), userId);
+            return results;
+        } catch (Exception e) {
+            logger.error("Error searching similar roles for user: {}", userId, e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Delete a role embedding
+     */
+    public boolean deleteRoleEmbedding(Long roleId, Long userId) {
+        try {
+            writeRoles(userId, List.of(), List.of(vectorId(roleId)));
+            logger.info("Successfully deleted role embedding for role ID: {}", roleId);
+            return true;
+        } catch (Exception e) {
+            if (store.transactional()) throw e;
+            logger.error("Error deleting role embedding for role ID: {}", roleId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Check if the vector store is reachable
+     */
+    public boolean isIndexReady() {
+        return store.isReady();
+    }
+
+    /**
+     * Get index statistics
+     */
+    public Map<String, Object> getIndexStats() {
+        return store.stats();
+    }
+}
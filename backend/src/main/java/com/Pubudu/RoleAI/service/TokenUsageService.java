@@ -0,0 +1,284 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.TokenUsage;
+import com.Pubudu.RoleAI.repository.TokenUsageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token accounting and per-user daily quotas, kept off the database on the chat path.
+ *
+ * Every LLM call adds its token counts to in-memory LongAdders, one set per (day, user, role, ModelConfig)
+ * and one running daily total per user. A scheduled flush upserts what was added since the last flush into
+ * token_usage in one transaction and reloads each active user's daily total from the table, which also
+ * picks up what other nodes flushed. Counters are never reset: a flush records how far it got, so adds
+ * racing with a flush are simply carried to the next one.
+ *
+ * Quotas are checked against the in-memory view (DB total at the last flush plus local usage since), so
+ * across nodes they are enforced with up to one flush interval of lag.
+ */
+@Service
+public class TokenUsageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenUsageService.class);
+
+    // prompt + output tokens per user and day; 0 = unlimited
+    @Value("${usage.quota.daily-tokens:0}")
+    private long defaultDailyQuota;
+
+    // Per-user exceptions as userId:tokens pairs, e.g. "12:2000000,15:0" (0 = unlimited)
+    @Value("${usage.quota.overrides:}")
+    private String quotaOverrides;
+
+    private final TokenUsageRepository usageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter promptTokens;
+    private final Counter outputTokens;
+    private final Counter cachedTokens;
+    private final Counter quotaRejected;
+
+    private final Map<UsageKey, Counters> counters = new ConcurrentHashMap<>();
+    private final Map<Long, UserDay> userDays = new ConcurrentHashMap<>();
+    private volatile Map<Long, Long> overrides;
+
+    @Autowired
+    public TokenUsageService(TokenUsageRepository usageRepository, PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) {
+        this.usageRepository = usageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.promptTokens = Counter.builder("chat.tokens").tag("type", "prompt").register(meterRegistry);
+        this.outputTokens = Counter.builder("chat.tokens").tag("type", "output").register(meterRegistry);
+        this.cachedTokens = Counter.builder("chat.tokens").tag("type", "cached").register(meterRegistry);
+        this.quotaRejected = Counter.builder("chat.usage.quota_rejected").register(meterRegistry);
+    }
+
+    /**
+     * Account one call. Memory only; safe to call from any thread.
+     */
+    public void record(Long userId, Long roleId, Long modelConfigId, long prompt, long output, long cached) {
+        if (userId == null) return;
+        LocalDate day = LocalDate.now();
+        UsageKey key = new UsageKey(day, userId, roleId == null ? 0L : roleId, modelConfigId == null ? 0L : modelConfigId);
+        Counters c = counters.computeIfAbsent(key, k -> new Counters());
+        c.prompt.add(prompt);
+        c.output.add(output);
+        c.cached.add(cached);
+        c.calls.increment();
+        userDay(userId, day).local.add(prompt + output);
+
+        promptTokens.increment(prompt);
+        outputTokens.increment(output);
+        cachedTokens.increment(cached);
+    }
+
+    /**
+     * Throws QuotaExceededException when the user has used up today's token quota.
+     */
+    public void checkQuota(Long userId) {
+        if (userId == null) return;
+        long quota = dailyQuota(userId);
+        // Registers the user, so the next flush loads their total even before their first call here
+        long used = tokensToday(userId);
+        if (quota > 0 && used >= quota) {
+            quotaRejected.increment();
+            long secondsLeft = Duration.between(LocalDateTime.now(), LocalDate.now().plusDays(1).atStartOfDay()).getSeconds();
+            throw new QuotaExceededException("Daily token quota of " + quota + " reached; it resets at midnight", Math.max(1, secondsLeft));
+        }
+    }
+
+    // prompt + output tokens today as far as this node knows
+    public long tokensToday(Long userId) {
+        UserDay d = userDay(userId, LocalDate.now());
+        Baseline b = d.baseline;
+        return b.total + (d.local.sum() - b.localAtLoad);
+    }
+
+    // 0 = unlimited
+    public long dailyQuota(Long userId) {
+        return overrides().getOrDefault(userId, defaultDailyQuota);
+    }
+
+    @Scheduled(fixedDelayString = "${usage.flush-interval-ms:30000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Token usage flush failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        scheduledFlush();
+    }
+
+    /**
+     * Write everything counted since the last flush in one transaction, then refresh users' daily totals.
+     */
+    public synchronized void flush() {
+        LocalDate day = LocalDate.now();
+        userDays.entrySet().removeIf(e -> !e.getValue().day.equals(day));
+        // Local totals taken before the writes: the reloaded DB totals then include at least this much
+        Map<Long, Long> localAtLoad = new HashMap<>();
+        userDays.forEach((userId, d) -> localAtLoad.put(userId, d.local.sum()));
+
+        List<Delta> deltas = new ArrayList<>();
+        counters.forEach((key, c) -> {
+            // The adders are read one after another, so a record() racing this read may be counted in some and
+            // not yet in others: any counter that moved is a delta, or its remainder would never be written
+            Delta d = new Delta(key, c, c.prompt.sum(), c.output.sum(), c.cached.sum(), c.calls.sum());
+            if (d.prompt > c.flushedPrompt || d.output > c.flushedOutput || d.cached > c.flushedCached
+                    || d.calls > c.flushedCalls) {
+                deltas.add(d);
+            }
+        });
+
+        if (!deltas.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Delta d : deltas) {
+                    Counters c = d.counters;
+                    long prompt = d.prompt - c.flushedPrompt;
+                    long output = d.output - c.flushedOutput;
+                    long cached = d.cached - c.flushedCached;
+                    long calls = d.calls - c.flushedCalls;
+                    int updated = usageRepository.addUsage(d.key.day(), d.key.userId(), d.key.roleId(),
+                            d.key.modelConfigId(), prompt, output, cached, calls, now);
+                    if (updated == 0) {
+                        // First flush of this key anywhere. If another node inserts it at the same moment, the unique
+                        // key fails this transaction and the whole flush is retried, now as an update
+                        usageRepository.save(newRow(d.key, prompt, output, cached, calls, now));
+                    }
+                }
+            });
+            // Committed: only now move the watermarks, so a failed flush is retried in full next time
+            for (Delta d : deltas) {
+                d.counters.flushedPrompt = d.prompt;
+                d.counters.flushedOutput = d.output;
+                d.counters.flushedCached = d.cached;
+                d.counters.flushedCalls = d.calls;
+            }
+            logger.debug("Flushed token usage for {} key(s)", deltas.size());
+        }
+        // Past days are done once fully flushed
+        counters.entrySet().removeIf(e -> !e.getKey().day().equals(day) && e.getValue().fullyFlushed());
+
+        if (!localAtLoad.isEmpty()) {
+            Map<Long, Long> totals = new HashMap<>();
+            for (Object[] row : usageRepository.totalsForDay(day, localAtLoad.keySet())) {
+                totals.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+            localAtLoad.forEach((userId, local) -> {
+                UserDay d = userDays.get(userId);
+                if (d != null && d.day.equals(day)) {
+                    d.baseline = new Baseline(totals.getOrDefault(userId, 0L), local);
+                }
+            });
+        }
+    }
+
+    private TokenUsage newRow(UsageKey key, long prompt, long output, long cached, long calls, LocalDateTime now) {
+        TokenUsage row = new TokenUsage();
+        row.setUsageDate(key.day());
+        row.setUserId(key.userId());
+        row.setRoleId(key.roleId());
+        row.setModelConfigId(key.modelConfigId());
+        row.setPromptTokens(prompt);
+        row.setOutputTokens(output);
+        row.setCachedTokens(cached);
+        row.setCalls(calls);
+        row.setUpdatedAt(now);
+        return row;
+    }
+
+    private UserDay userDay(Long userId, LocalDate day) {
+        UserDay d = userDays.get(userId);
+        if (d != null && d.day.equals(day)) return d;
+        return userDays.compute(userId, (k, existing) -> existing != null && existing.day.equals(day) ? existing : new UserDay(day));
+    }
+
+    private Map<Long, Long> overrides() {
+        Map<Long, Long> parsed = overrides;
+        if (parsed == null) {
+            parsed = new HashMap<>();
+            if (quotaOverrides != null && !quotaOverrides.isBlank()) {
+                for (String pair : quotaOverrides.split(",")) {
+                    String[] kv = pair.trim().split(":");
+                    try {
+                        parsed.put(Long.valueOf(kv[0].trim()), Long.valueOf(kv[1].trim()));
+                    } catch (RuntimeException e) {
+                        logger.warn("Ignoring malformed usage.quota.overrides entry '{}'", pair);
+                    }
+                }
+            }
+            overrides = parsed;
+        }
+        return parsed;
+    }
+
+    public static class QuotaExceededException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        public QuotaExceededException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private record UsageKey(LocalDate day, Long userId, Long roleId, Long modelConfigId) {}
+
+    private record Delta(UsageKey key, Counters counters, long prompt, long output, long cached, long calls) {}
+
+    // DB total at the last load and the local counter value it already includes
+    private record Baseline(long total, long localAtLoad) {}
+
+    private static final class Counters {
+        final LongAdder prompt = new LongAdder();
+        final LongAdder output = new LongAdder();
+        final LongAdder cached = new LongAdder();
+        final LongAdder calls = new LongAdder();
+        // Written by flush() only (synchronized)
+        long flushedPrompt;
+        long flushedOutput;
+        long flushedCached;
+        long flushedCalls;
+
+        boolean fullyFlushed() {
+            return flushedPrompt == prompt.sum() && flushedOutput == output.sum()
+                    && flushedCached == cached.sum() && flushedCalls == calls.sum();
+        }
+    }
+
+    private static final class UserDay {
+        final LocalDate day;
+        final LongAdder local = new LongAdder();
+        volatile Baseline baseline = new Baseline(0, 0);
+
+        UserDay(LocalDate day) {
+            this.day = day;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.entity.VectorOutboxEvent;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.repository.VectorOutboxRepository;
+import com.Pubudu.RoleAI.service.vector.VectorRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind for role vectors (transactional outbox).
+ *
+ * A role create, update or delete only adds a vector_outbox row in its own transaction, so role writes
+ * never wait on embedding or the vector store, and a change is never lost to a failed call. The flusher
+ * claims the oldest event of each role that has one, then syncs the role to its current state: the role
+ * text is embedded and upserted, or the vector deleted if the role is gone. Because it reads the role at
+ * flush time, every event of that role visible before that read is covered by the same write and removed
+ * with it, so repeated edits collapse into one upsert. Events are removed by id, never by range: ids are
+ * assigned at insert, not commit, so a lower id can still commit after the read and must stay queued. Writes are batched per namespace; a failed namespace is
+ * retried with exponential backoff.
+ *
+ * Not used for transactional stores (pgvector), which are written inside the role's transaction instead.
+ */
+@Service
+public class VectorOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorOutboxService.class);
+
+    @Value("${vector.outbox.enabled:true}")
+    private boolean enabled;
+
+    // Heads (roles) per flush round
+    @Value("${vector.outbox.batch-size:500}")
+    private int batchSize;
+
+    // Must outlast one flush round or a slow round's roles are synced twice
+    @Value("${vector.outbox.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${vector.outbox.retry.base-delay-ms:2000}")
+    private long retryBaseDelayMs;
+
+    @Value("${vector.outbox.retry.max-delay-ms:300000}")
+    private long retryMaxDelayMs;
+
+    private final VectorOutboxRepository outboxRepository;
+    private final RoleRepository roleRepository;
+    private final EmbeddingService embeddingService;
+    private final RoleVectorService roleVectorService;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter eventsConsumed;
+    private final Counter upserts;
+    private final Counter deletes;
+    private final Counter failures;
+    private final AtomicLong pending = new AtomicLong();
+
+    @Autowired
+    public VectorOutboxService(VectorOutboxRepository outboxRepository, RoleRepository roleRepository,
+                               EmbeddingService embeddingService, RoleVectorService roleVectorService,
+                               PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.roleRepository = roleRepository;
+        this.embeddingService = embeddingService;
+        this.roleVectorService = roleVectorService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // events vs. upserts + deletes shows how much coalescing saves
+        this.eventsConsumed = Counter.builder("vector.outbox.events").register(meterRegistry);
+        this.upserts = Counter.builder("vector.outbox.writes").tag("op", "upsert").register(meterRegistry);
+        this.deletes = Counter.builder("vector.outbox.writes").tag("op", "delete").register(meterRegistry);
+        this.failures = Counter.builder("vector.outbox.failures").register(meterRegistry);
+        Gauge.builder("vector.outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+    }
+
+    /**
+     * Role changes go through the outbox (false: written inline, in the role's transaction).
+     */
+    public boolean writeBehind() {
+        return enabled && !roleVectorService.store().transactional();
+    }
+
+    /**
+     * Record that a role's vector needs syncing. Joins the caller's transaction.
+     */
+    public void enqueue(Long userId, Long roleId) {
+        outboxRepository.save(new VectorOutboxEvent(userId, roleId));
+    }
+
+    @Scheduled(fixedDelayString = "${vector.outbox.flush-interval-ms:1000}")
+    public void flush() {
+        if (!writeBehind()) return;
+        try {
+            // Keep going while rounds come back full, so a burst drains in one tick
+            while (flushRound() == batchSize) {
+                // next round
+            }
+            pending.set(outboxRepository.count());
+        } catch (Exception e) {
+            logger.warn("Vector outbox flush failed: {}", e.getMessage());
+        }
+    }
+
+    private int flushRound() {
+        LocalDateTime now = LocalDateTime.now();
+        List<VectorOutboxEvent> heads = transactionTemplate.execute(status -> {
+            List<VectorOutboxEvent> locked = outboxRepository.lockDueHeads(now, batchSize);
+            LocalDateTime leaseEnd = now.plus(Duration.ofMillis(leaseMs));
+            locked.forEach(e -> e.setNextAttemptAt(leaseEnd));
+            return outboxRepository.saveAll(locked);
+        });
+        if (heads == null || heads.isEmpty()) return 0;
+        // A reindex that started before this point sees these roles' current state on its own; one that
+        // starts after it is written to from here on
+        roleVectorService.refreshGenerations();
+
+        // Events per role read before the roles: the state read below includes every one of them
+        Map<Long, List<Long>> eventIds = new HashMap<>();
+        for (Object[] row : outboxRepository.findEventIds(heads.stream().map(VectorOutboxEvent::getRoleId).toList())) {
+            eventIds.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((Long) row[1]);
+        }
+        Map<Long, Role> roles = roleRepository.findAllById(heads.stream().map(VectorOutboxEvent::getRoleId).toList()).stream()
+                .collect(Collectors.toMap(Role::getId, Function.identity()));
+
+        Map<Long, List<VectorOutboxEvent>> byUser = new LinkedHashMap<>();
+        for (VectorOutboxEvent head : heads) {
+            byUser.computeIfAbsent(head.getUserId(), k -> new ArrayList<>()).add(head);
+        }
+
+        // One embedding call for every role that still exists
+        List<Role> live = heads.stream()
+                .map(h -> roles.get(h.getRoleId()))
+                .filter(Objects::nonNull)
+                .toList();
+        Map<Long, float[]> vectors = Map.of();
+        String embedError = null;
+        try {
+            vectors = embed(live);
+        } catch (Exception e) {
+            embedError = "Embedding failed: " + e.getMessage();
+        }
+
+        for (Map.Entry<Long, List<VectorOutboxEvent>> group : byUser.entrySet()) {
+            Long userId = group.getKey();
+            List<VectorRecord> toUpsert = new ArrayList<>();
+            List<String> toDelete = new ArrayList<>();
+            List<VectorOutboxEvent> done = new ArrayList<>();
+            List<VectorOutboxEvent> failed = new ArrayList<>();
+            for (VectorOutboxEvent head : group.getValue()) {
+                Role role = roles.get(head.getRoleId());
+                if (role == null || !role.getUserId().equals(head.getUserId())) {
+                    toDelete.add(RoleVectorService.vectorId(head.getRoleId()));
+                    done.add(head);
+                } else if (vectors.containsKey(role.getId())) {
+                    toUpsert.add(RoleVectorService.roleRecord(role.getId(), role.getUserId(), role.getName(),
+                            role.getDescription(), vectors.get(role.getId())));
+                    done.add(head);
+                } else {
+                    failed.add(head);
+                }
+            }
+            String error = embedError;
+            if (!done.isEmpty()) {
+                try {
+                    roleVectorService.writeRoles(userId, toUpsert, toDelete);
+                    complete(done, eventIds);
+                    upserts.increment(toUpsert.size());
+                    deletes.increment(toDelete.size());
+                } catch (Exception e) {
+                    // Writes are idempotent, so retrying the whole namespace is safe
+                    failed.addAll(done);
+                    error = "Vector store write for user " + userId + " failed: " + e.getMessage();
+                }
+            }
+            if (!failed.isEmpty()) retryLater(failed, error);
+        }
+        return heads.size();
+    }
+
+    private Map<Long, float[]> embed(List<Role> roles) {
+        Map<Long, float[]> vectors = new HashMap<>();
+        if (roles.isEmpty()) return vectors;
+        List<float[]> embedded = embeddingService.embedDocuments(roles.stream()
+                .map(r -> RoleVectorService.embeddingText(r.getName(), r.getDescription()))
+                .toList());
+        for (int i = 0; i < roles.size(); i++) {
+            vectors.put(roles.get(i).getId(), embedded.get(i));
+        }
+        return vectors;
+    }
+
+    private void complete(List<VectorOutboxEvent> done, Map<Long, List<Long>> eventIds) {
+        List<Long> ids = new ArrayList<>();
+        for (VectorOutboxEvent head : done) {
+            ids.addAll(eventIds.getOrDefault(head.getRoleId(), List.of(head.getId())));
+        }
+        Integer removed = transactionTemplate.execute(status -> outboxRepository.deleteByIds(ids));
+        eventsConsumed.increment(removed == null ? 0 : removed);
+    }
+
+    private void retryLater(List<VectorOutboxEvent> heads, String error) {
+        failures.increment(heads.size());
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (VectorOutboxEvent head : outboxRepository.findAllById(heads.stream().map(VectorOutboxEvent::getId).toList())) {
+                int attempts = head.getAttempts() + 1;
+                long delay = Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(attempts - 1, 20));
+                head.setAttempts(attempts);
+                head.setNextAttemptAt(now.plus(Duration.ofMillis(delay)));
+                head.setLastError(error != null && error.length() > 2000 ? error.substring(0, 2000) : error);
+                outboxRepository.save(head);
+            }
+        });
+        logger.warn("Vector sync of {} role(s) failed, retrying with backoff: {}", heads.size(), error);
+    }
+}
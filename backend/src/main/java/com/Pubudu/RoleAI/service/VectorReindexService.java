@@ -0,0 +1,420 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.ReindexJob;
+import com.Pubudu.RoleAI.entity.ReindexJob.Status;
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.repository.ReindexJobRepository;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.service.vector.VectorRecord;
+import com.Pubudu.RoleAI.service.vector.VectorStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds every role vector into a new generation of namespaces (see RoleVectorService) while the current
+ * one keeps serving reads, then switches reads over in one row update.
+ *
+ * The job walks roles by id (keyset pages of vector.reindex.batch-size) through embed + upsert, with up to
+ * vector.reindex.parallelism batches in flight. Pages are only read when a batch slot frees up, so a slow
+ * embedder or store throttles the scan instead of piling up roles in memory. Batches complete in id order
+ * and each one advances the cursor stored on the job row: a job whose node dies resumes from its last
+ * cursor on any node with the same embedding config once its lease runs out.
+ *
+ * Role changes during the rebuild are written to both generations by the outbox. A batch re-reads its roles
+ * after writing them and fixes any that changed in the meantime, which covers the window before every node
+ * has noticed the new generation.
+ */
+@Service
+public class VectorReindexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorReindexService.class);
+
+    public static class ReindexException extends RuntimeException {
+        public ReindexException(String message) {
+            super(message);
+        }
+    }
+
+    // Thrown at a checkpoint when the job was cancelled or another node took it over
+    private static class Stopped extends RuntimeException {
+        Stopped(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private record Batch(long lastRoleId, int roles) {}
+
+    @Value("${vector.reindex.batch-size:256}")
+    private int batchSize;
+
+    // Must outlast one batch with its retries; renewed at every checkpoint
+    @Value("${vector.reindex.lease-ms:120000}")
+    private long leaseMs;
+
+    @Value("${vector.reindex.max-retries:5}")
+    private int maxRetries;
+
+    private final ReindexJobRepository jobRepository;
+    private final RoleRepository roleRepository;
+    private final EmbeddingService embeddingService;
+    private final RoleVectorService roleVectorService;
+    private final TransactionTemplate transactionTemplate;
+    private final int parallelism;
+    private final Scheduler workers;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "vector-reindex");
+        t.setDaemon(true);
+        return t;
+    });
+    private final String workerId = workerId();
+
+    private final Counter rolesWritten;
+    private final Counter rolesFixed;
+    private final Timer batchTimer;
+    private final AtomicReference<ReindexJob> current = new AtomicReference<>(); // job running on this node
+    private final AtomicLong runStartedNanos = new AtomicLong();
+    private final AtomicLong runWritten = new AtomicLong();
+
+    @Autowired
+    public VectorReindexService(ReindexJobRepository jobRepository, RoleRepository roleRepository,
+                                EmbeddingService embeddingService, RoleVectorService roleVectorService,
+                                PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                @Value("${vector.reindex.parallelism:4}") int parallelism) {
+        this.jobRepository = jobRepository;
+        this.roleRepository = roleRepository;
+        this.embeddingService = embeddingService;
+        this.roleVectorService = roleVectorService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.parallelism = Math.max(1, parallelism);
+        // Own threads (batches plus the page reader), so a reindex never competes with chat for the blocking scheduler
+        this.workers = Schedulers.newBoundedElastic(this.parallelism + 1, 10_000, "vector-reindex-worker");
+
+        // Throughput is the rate of vector.reindex.roles
+        this.rolesWritten = Counter.builder("vector.reindex.roles").register(meterRegistry);
+        this.rolesFixed = Counter.builder("vector.reindex.roles.fixed").register(meterRegistry);
+        this.batchTimer = Timer.builder("vector.reindex.batch").register(meterRegistry);
+        Gauge.builder("vector.reindex.progress", current, ref -> {
+            ReindexJob job = ref.get();
+            return job == null || job.getRolesTotal() == 0 ? 0 : Math.min(1.0, (double) job.getRolesWritten() / job.getRolesTotal());
+        }).register(meterRegistry);
+        Gauge.builder("vector.reindex.cursor", current, ref -> ref.get() == null ? 0 : ref.get().getCursorRoleId())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start building the next generation with this node's embedding config, and run it here.
+     */
+    public ReindexJob start() {
+        VectorStore store = roleVectorService.store();
+        if (current.get() != null) {
+            throw new ReindexException("A reindex is already running on this node");
+        }
+        if (store.transactional()) {
+            throw new ReindexException("The " + store.id() + " store keeps vectors on the role rows; it has no namespaces "
+                    + "to build a new generation in. Roles without a vector are filled in by the pgvector backfill");
+        }
+        ReindexJob job;
+        try {
+            job = transactionTemplate.execute(status -> {
+                ReindexJob latest = jobRepository.findFirstByStoreIdOrderByGenerationDesc(store.id()).orElse(null);
+                if (latest != null && latest.getStatus() == Status.RUNNING) {
+                    throw new ReindexException("Reindex " + latest.getId() + " (generation " + latest.getGeneration() + ") is still running");
+                }
+                ReindexJob next = new ReindexJob();
+                next.setStoreId(store.id());
+                next.setGeneration(latest == null ? 1 : latest.getGeneration() + 1);
+                next.setProvider(embeddingService.providerId());
+                next.setModel(embeddingService.model());
+                next.setDimension(embeddingService.dimension());
+                next.setRolesTotal(roleRepository.count());
+                next.setLockedBy(workerId);
+                next.setLockedUntil(LocalDateTime.now().plus(Duration.ofMillis(leaseMs)));
+                return jobRepository.save(next);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new ReindexException("Another reindex was started at the same time");
+        }
+        logger.info("Reindex {} started: generation {} with {}/{} ({} dimensions), ~{} roles", job.getId(), job.getGeneration(),
+                job.getProvider(), job.getModel(), job.getDimension(), job.getRolesTotal());
+        roleVectorService.refreshGenerations(); // write to the new generation from now on
+        launch(job);
+        return job;
+    }
+
+    /**
+     * Stop the running job at its next checkpoint. Reads stay on the current generation.
+     */
+    public ReindexJob cancel() {
+        return transactionTemplate.execute(status -> {
+            ReindexJob job = latest().filter(j -> j.getStatus() == Status.RUNNING)
+                    .orElseThrow(() -> new ReindexException("No reindex is running"));
+            job.setStatus(Status.CANCELLED);
+            job.setFinishedAt(LocalDateTime.now());
+            job.setLockedBy(null);
+            job.setLockedUntil(null);
+            return jobRepository.save(job);
+        });
+    }
+
+    /**
+     * Put a failed or cancelled job back to RUNNING from its cursor; the next resume check picks it up.
+     */
+    public ReindexJob resume() {
+        return transactionTemplate.execute(status -> {
+            ReindexJob job = latest().filter(j -> j.getStatus() == Status.FAILED || j.getStatus() == Status.CANCELLED)
+                    .orElseThrow(() -> new ReindexException("The latest reindex is not failed or cancelled"));
+            job.setStatus(Status.RUNNING);
+            job.setError(null);
+            job.setFinishedAt(null);
+            job.setLockedUntil(null);
+            job.setUpdatedAt(LocalDateTime.now());
+            return jobRepository.save(job);
+        });
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("store", roleVectorService.store().id());
+        body.put("readGeneration", roleVectorService.activeGeneration().number());
+        RoleVectorService.Generation building = roleVectorService.buildingGeneration();
+        body.put("buildingGeneration", building == null ? null : building.number());
+        latest().ifPresent(job -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", job.getId());
+            m.put("generation", job.getGeneration());
+            m.put("status", job.getStatus().name());
+            m.put("provider", job.getProvider());
+            m.put("model", job.getModel());
+            m.put("dimension", job.getDimension());
+            m.put("cursorRoleId", job.getCursorRoleId());
+            m.put("rolesWritten", job.getRolesWritten());
+            m.put("rolesTotal", job.getRolesTotal());
+            m.put("progress", job.getRolesTotal() == 0 ? null : Math.min(1.0, (double) job.getRolesWritten() / job.getRolesTotal()));
+            m.put("lockedBy", job.getLockedBy());
+            m.put("createdAt", job.getCreatedAt());
+            m.put("updatedAt", job.getUpdatedAt());
+            m.put("finishedAt", job.getFinishedAt());
+            if (job.getError() != null) m.put("error", job.getError());
+            ReindexJob local = current.get();
+            if (local != null && local.getId().equals(job.getId())) {
+                double seconds = (System.nanoTime() - runStartedNanos.get()) / 1e9;
+                m.put("rolesPerSecond", seconds > 0 ? Math.round(runWritten.get() / seconds) : null);
+            }
+            body.put("job", m);
+        });
+        return body;
+    }
+
+    /**
+     * Resume a RUNNING job whose node stopped renewing its lease.
+     */
+    @Scheduled(fixedDelayString = "${vector.reindex.resume-check-ms:30000}")
+    public void resumeAbandoned() {
+        if (current.get() != null || roleVectorService.store().transactional()) return;
+        ReindexJob job;
+        try {
+            job = transactionTemplate.execute(status -> {
+                List<ReindexJob> abandoned = jobRepository.lockAbandoned(roleVectorService.store().id(), LocalDateTime.now());
+                if (abandoned.isEmpty()) return null;
+                ReindexJob found = abandoned.get(0);
+                // Vectors of one generation must all come from the same model: leave it to a node configured like the job
+                if (!RoleVectorService.Generation.of(found).builtWith(embeddingService)) return null;
+                if (found.getLockedBy() != null) {
+                    logger.warn("Resuming reindex {} after expired lease held by {}", found.getId(), found.getLockedBy());
+                }
+                found.setLockedBy(workerId);
+                found.setLockedUntil(LocalDateTime.now().plus(Duration.ofMillis(leaseMs)));
+                return jobRepository.save(found);
+            });
+        } catch (Exception e) {
+            logger.warn("Checking for abandoned reindex jobs failed: {}", e.getMessage());
+            return;
+        }
+        if (job != null) {
+            roleVectorService.refreshGenerations();
+            launch(job);
+        }
+    }
+
+    private Optional<ReindexJob> latest() {
+        return jobRepository.findFirstByStoreIdOrderByGenerationDesc(roleVectorService.store().id());
+    }
+
+    private void launch(ReindexJob job) {
+        if (!current.compareAndSet(null, job)) {
+            throw new ReindexException("A reindex is already running on this node");
+        }
+        runner.execute(() -> {
+            try {
+                run(job);
+            } finally {
+                current.set(null);
+            }
+        });
+    }
+
+    private void run(ReindexJob job) {
+        runStartedNanos.set(System.nanoTime());
+        runWritten.set(0);
+        long[] cursor = {job.getCursorRoleId()};
+        logger.info("Reindex {} running from role id {}", job.getId(), cursor[0]);
+        try {
+            // generate() is pulled: a page is only read when flatMapSequential has a free slot for it
+            Flux.<List<Role>>generate(sink -> {
+                        List<Role> page = roleRepository.findByIdGreaterThanOrderByIdAsc(cursor[0], Limit.of(batchSize));
+                        if (page.isEmpty()) {
+                            sink.complete();
+                            return;
+                        }
+                        cursor[0] = page.get(page.size() - 1).getId();
+                        sink.next(page);
+                    })
+                    .subscribeOn(workers)
+                    .flatMapSequential(page -> Mono.fromCallable(() -> writeBatch(job.getGeneration(), page))
+                            .subscribeOn(workers)
+                            .retryWhen(Retry.backoff(maxRetries, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))),
+                            parallelism, 1)
+                    // In id order, so the stored cursor never passes a batch that is not written yet
+                    .doOnNext(batch -> checkpoint(job, batch))
+                    .blockLast();
+            complete(job);
+        } catch (Stopped e) {
+            logger.info("Reindex {} stopped: {}", job.getId(), e.getMessage());
+        } catch (Exception e) {
+            Throwable cause = Exceptions.isRetryExhausted(e) && e.getCause() != null ? e.getCause() : e;
+            logger.error("Reindex {} failed at role id {}: {}", job.getId(), job.getCursorRoleId(), cause.getMessage(), cause);
+            finish(job, Status.FAILED, cause.getMessage());
+        }
+    }
+
+    private Batch writeBatch(int generation, List<Role> roles) {
+        long start = System.nanoTime();
+        write(generation, roles);
+
+        // Re-read: a role that changed or went away while this batch was in flight must not keep the old vector
+        Map<Long, Role> now = roleRepository.findAllById(roles.stream().map(Role::getId).toList()).stream()
+                .collect(Collectors.toMap(Role::getId, Function.identity()));
+        List<Role> changed = new ArrayList<>();
+        Map<Long, List<String>> gone = new LinkedHashMap<>();
+        for (Role role : roles) {
+            Role fresh = now.get(role.getId());
+            if (fresh == null) {
+                gone.computeIfAbsent(role.getUserId(), k -> new ArrayList<>()).add(RoleVectorService.vectorId(role.getId()));
+            } else if (!Objects.equals(fresh.getName(), role.getName()) || !Objects.equals(fresh.getDescription(), role.getDescription())) {
+                changed.add(fresh);
+            }
+        }
+        if (!changed.isEmpty()) write(generation, changed);
+        gone.forEach((userId, ids) -> roleVectorService.store().delete(RoleVectorService.namespace(generation, userId), ids));
+        rolesFixed.increment(changed.size() + gone.values().stream().mapToInt(List::size).sum());
+
+        batchTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        return new Batch(roles.get(roles.size() - 1).getId(), roles.size());
+    }
+
+    // One embedding call for the batch, then one upsert per user namespace
+    private void write(int generation, List<Role> roles) {
+        List<float[]> vectors = embeddingService.embedDocuments(roles.stream()
+                .map(r -> RoleVectorService.embeddingText(r.getName(), r.getDescription()))
+                .toList());
+        Map<Long, List<VectorRecord>> byUser = new LinkedHashMap<>();
+        for (int i = 0; i < roles.size(); i++) {
+            Role role = roles.get(i);
+            byUser.computeIfAbsent(role.getUserId(), k -> new ArrayList<>()).add(RoleVectorService.roleRecord(
+                    role.getId(), role.getUserId(), role.getName(), role.getDescription(), vectors.get(i)));
+        }
+        byUser.forEach((userId, records) -> roleVectorService.store().upsert(RoleVectorService.namespace(generation, userId), records));
+    }
+
+    // Advance the cursor and renew the lease, unless the job was cancelled or taken over meanwhile
+    private void checkpoint(ReindexJob job, Batch batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            ReindexJob row = jobRepository.findById(job.getId()).orElseThrow(() -> new Stopped("job row is gone"));
+            if (row.getStatus() != Status.RUNNING) throw new Stopped("status is " + row.getStatus());
+            if (!workerId.equals(row.getLockedBy())) throw new Stopped("taken over by " + row.getLockedBy());
+            row.setCursorRoleId(batch.lastRoleId());
+            row.setRolesWritten(row.getRolesWritten() + batch.roles());
+            row.setLockedUntil(LocalDateTime.now().plus(Duration.ofMillis(leaseMs)));
+            row.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(row);
+            job.setCursorRoleId(row.getCursorRoleId());
+            job.setRolesWritten(row.getRolesWritten());
+        });
+        rolesWritten.increment(batch.roles());
+        runWritten.addAndGet(batch.roles());
+    }
+
+    // The switch: once this row says COMPLETED, every node reads the new generation at its next refresh
+    private void complete(ReindexJob job) {
+        finish(job, Status.COMPLETED, null);
+        roleVectorService.refreshGenerations();
+        logger.info("Reindex {} completed: {} roles written, reads now use generation {}", job.getId(), job.getRolesWritten(), job.getGeneration());
+    }
+
+    private void finish(ReindexJob job, Status status, String error) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            ReindexJob row = jobRepository.findById(job.getId()).orElse(null);
+            if (row == null || row.getStatus() != Status.RUNNING || !workerId.equals(row.getLockedBy())) return;
+            row.setStatus(status);
+            row.setError(error != null && error.length() > 2000 ? error.substring(0, 2000) : error);
+            row.setFinishedAt(LocalDateTime.now());
+            row.setUpdatedAt(LocalDateTime.now());
+            row.setLockedBy(null);
+            row.setLockedUntil(null);
+            jobRepository.save(row);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // The lease runs out and another node (or this one after restart) resumes from the last checkpoint
+        runner.shutdownNow();
+        workers.dispose();
+    }
+
+    private static String workerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
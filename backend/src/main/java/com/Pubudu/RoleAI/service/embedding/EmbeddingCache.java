@@ -0,0 +1,246 @@
+package com.Pubudu.RoleAI.service.embedding;
+
+import com.Pubudu.RoleAI.entity.EmbeddingCacheEntry;
+import com.Pubudu.RoleAI.repository.EmbeddingCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-addressed cache in front of the embedding provider: the key is a SHA-256 of (provider, model,
+ * dimension, purpose, text), so an entry can never be stale, only unused. Unchanged role texts, retried
+ * messages and repeated prompts are embedded once.
+ *
+ * Two tiers: an LRU map bounded by an approximate byte budget, and optionally the embedding_cache table so
+ * vectors survive restarts and are shared between nodes. The table is only consulted for remote providers;
+ * the in-process embedder is faster than a database round trip. Only DOCUMENT vectors (role texts, which are
+ * re-embedded on every reindex) go to the table: QUERY texts are chat messages that rarely repeat after the
+ * memory tier forgets them, and keeping them would grow the table without bound. Table writes happen in the
+ * background and are dropped when the writer falls behind (it is a cache).
+ */
+@Component
+public class EmbeddingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${embedding.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${embedding.cache.db.enabled:false}")
+    private boolean dbEnabled;
+
+    private final EmbeddingCacheRepository repository;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, float[]> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(10_000), Thread.ofPlatform().daemon().name("embedding-cache-writer").factory(),
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    private final Counter memoryHits;
+    private final Counter dbHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public EmbeddingCache(EmbeddingCacheRepository repository, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.memoryHits = Counter.builder("embedding.cache.hits").tag("tier", "memory").register(meterRegistry);
+        this.dbHits = Counter.builder("embedding.cache.hits").tag("tier", "db").register(meterRegistry);
+        this.misses = Counter.builder("embedding.cache.misses").register(meterRegistry);
+        this.evictions = Counter.builder("embedding.cache.evictions").register(meterRegistry);
+        Gauge.builder("embedding.cache.hit_ratio", this, c -> c.hitRatio()).register(meterRegistry);
+        Gauge.builder("embedding.cache.bytes", this, c -> c.currentBytes()).register(meterRegistry);
+        Gauge.builder("embedding.cache.entries", this, c -> c.size()).register(meterRegistry);
+    }
+
+    /**
+     * The vector for text, computed by the provider only when neither tier has it.
+     */
+    public float[] get(EmbeddingProvider provider, EmbeddingProvider.Purpose purpose, String text) {
+        if (!enabled) return provider.embed(text, purpose);
+        return getAll(provider, purpose, List.of(text)).get(0);
+    }
+
+    /**
+     * Vectors for texts, in order; the misses go to the provider as one embedAll call.
+     */
+    public List<float[]> getAll(EmbeddingProvider provider, EmbeddingProvider.Purpose purpose, List<String> texts) {
+        if (!enabled) return provider.embedAll(texts, purpose);
+
+        List<String> keys = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            keys.add(key(provider, purpose, text));
+        }
+        float[][] result = new float[texts.size()][];
+        List<Integer> missing = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < keys.size(); i++) {
+                result[i] = memory.get(keys.get(i));
+                if (result[i] == null) missing.add(i);
+            }
+        }
+        memoryHits.increment(texts.size() - missing.size());
+        if (missing.isEmpty()) return List.of(result);
+
+        boolean persistent = dbEnabled && !provider.local() && purpose == EmbeddingProvider.Purpose.DOCUMENT;
+        if (persistent) {
+            missing = fillFromDb(keys, result, missing);
+            if (missing.isEmpty()) return List.of(result);
+        }
+
+        misses.increment(missing.size());
+        // A text repeated in the request is embedded once
+        Map<String, List<Integer>> byKey = new LinkedHashMap<>();
+        for (int i : missing) {
+            byKey.computeIfAbsent(keys.get(i), k -> new ArrayList<>()).add(i);
+        }
+        List<String> toEmbed = new ArrayList<>(byKey.size());
+        for (List<Integer> indexes : byKey.values()) {
+            toEmbed.add(texts.get(indexes.get(0)));
+        }
+        // A single text goes through embed(), where a remote provider can batch it with other requests' texts
+        List<float[]> computed = toEmbed.size() == 1
+                ? List.of(provider.embed(toEmbed.get(0), purpose))
+                : provider.embedAll(toEmbed, purpose);
+        int m = 0;
+        for (Map.Entry<String, List<Integer>> entry : byKey.entrySet()) {
+            float[] vector = computed.get(m++);
+            for (int i : entry.getValue()) {
+                result[i] = vector;
+            }
+            put(entry.getKey(), vector);
+            if (persistent) persist(entry.getKey(), provider, vector);
+        }
+        return List.of(result);
+    }
+
+    // Looks the missing keys up in the table, promotes hits to memory; returns what is still missing
+    private List<Integer> fillFromDb(List<String> keys, float[][] result, List<Integer> missing) {
+        Map<String, List<Integer>> byKey = new HashMap<>();
+        for (int i : missing) {
+            byKey.computeIfAbsent(keys.get(i), k -> new ArrayList<>()).add(i);
+        }
+        try {
+            for (EmbeddingCacheEntry entry : repository.findAllById(byKey.keySet())) {
+                List<Integer> indexes = byKey.remove(entry.getCacheKey());
+                if (indexes == null) continue;
+                float[] vector = fromBytes(entry.getVector());
+                for (int i : indexes) {
+                    result[i] = vector;
+                }
+                put(entry.getCacheKey(), vector);
+                dbHits.increment(indexes.size());
+            }
+        } catch (Exception e) {
+            logger.warn("Embedding cache lookup failed, embedding instead: {}", e.getMessage());
+        }
+        List<Integer> stillMissing = new ArrayList<>();
+        byKey.values().forEach(stillMissing::addAll);
+        stillMissing.sort(null);
+        return stillMissing;
+    }
+
+    private void persist(String key, EmbeddingProvider provider, float[] vector) {
+        writer.execute(() -> {
+            try {
+                repository.insertIfAbsent(key, provider.id(), provider.model(), vector.length, toBytes(vector), LocalDateTime.now());
+            } catch (DataIntegrityViolationException e) {
+                logger.debug("Embedding {} was persisted concurrently", key); // same content, nothing lost
+            } catch (Exception e) {
+                logger.warn("Could not persist embedding {}: {}", key, e.getMessage());
+            }
+        });
+    }
+
+    private synchronized void put(String key, float[] vector) {
+        long size = entryBytes(vector);
+        if (size > maxBytes) return;
+        float[] old = memory.put(key, vector);
+        if (old != null) bytes -= entryBytes(old);
+        bytes += size;
+
+        Iterator<float[]> it = memory.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= entryBytes(it.next());
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized long currentBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    public double hitRatio() {
+        double hits = memoryHits.count() + dbHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // Rough heap estimate: vector payload, 64-char key, fixed object/map overhead
+    private static long entryBytes(float[] vector) {
+        return 4L * vector.length + 2L * 64 + 96;
+    }
+
+    static String key(EmbeddingProvider provider, EmbeddingProvider.Purpose purpose, String text) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            String prefix = provider.id() + '\0' + provider.model() + '\0' + provider.dimension() + '\0' + purpose + '\0';
+            sha.update(prefix.getBytes(StandardCharsets.UTF_8));
+            sha.update((text == null ? "" : text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JDK ships SHA-256
+        }
+    }
+
+    static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 * vector.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    static float[] fromBytes(byte[] bytes) {
+        float[] vector = new float[bytes.length / 4];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
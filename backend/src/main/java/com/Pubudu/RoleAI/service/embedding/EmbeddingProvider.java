@@ -0,0 +1,48 @@
+package com.Pubudu.RoleAI.service.embedding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One text embedding backend, picked by embedding.provider. Vectors must have the index dimension
+ * (pinecone.index.dimension) so they can be stored next to each other and compared.
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Asymmetric models embed search queries and the documents they are matched against differently.
+     */
+    enum Purpose { QUERY, DOCUMENT }
+
+    /**
+     * embedding.provider value this implementation serves, e.g. "lexical" (matched case-insensitively).
+     */
+    String id();
+
+    /**
+     * Model name; part of what identifies a vector (vectors of different models are not comparable).
+     */
+    String model();
+
+    int dimension();
+
+    /**
+     * Computed in process: cheaper than any lookup that leaves the JVM, so only the memory cache tier is used.
+     */
+    default boolean local() {
+        return false;
+    }
+
+    float[] embed(String text, Purpose purpose);
+
+    /**
+     * Embed several texts, in order. Remote providers send them in as few calls as the backend allows.
+     */
+    default List<float[]> embedAll(List<String> texts, Purpose purpose) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text, purpose));
+        }
+        return vectors;
+    }
+}
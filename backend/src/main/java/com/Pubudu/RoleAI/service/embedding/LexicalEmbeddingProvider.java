@@ -0,0 +1,173 @@
+package com.Pubudu.RoleAI.service.embedding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-process embedder, no network: hashed bag of words, word bigrams and character trigrams with TF-IDF
+ * weighting, projected to the index dimension with the signed hashing trick and scaled to unit length.
+ *
+ * Texts that share words (or word stems, through the character trigrams, which also absorb typos) get a high
+ * cosine; texts with nothing in common score ~0. IDF comes from a fixed background ranking of common
+ * English words rather than from our own corpus, so a text always maps to the same vector and stored
+ * vectors never go stale as roles are added. Words outside the list count as rare (full weight).
+ */
+@Component
+public class LexicalEmbeddingProvider implements EmbeddingProvider {
+
+    // Bump when the features or weights change: vectors of different versions are not comparable
+    public static final String MODEL = "hashed-ngram-tfidf-v2";
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 0.5f;
+    // Norm of all trigrams of a word together, so long words don't outweigh short ones
+    private static final float CHAR_WEIGHT = 0.5f;
+    private static final int CHAR_GRAM = 3;
+
+    private static final long WORD_SEED = 0x9E3779B97F4A7C15L;
+    private static final long BIGRAM_SEED = 0xC2B2AE3D27D4EB4FL;
+    private static final long CHAR_SEED = 0x165667B19E3779F9L;
+
+    // Most frequent English words, most frequent first; idf falls with rank as under Zipf's law
+    private static final String[] COMMON_WORDS = {
+            "the", "of", "and", "to", "a", "in", "is", "you", "that", "it", "he", "was", "for", "on", "are",
+            "as", "with", "his", "they", "i", "at", "be", "this", "have", "from", "or", "one", "had", "by",
+            "but", "not", "what", "all", "were", "we", "when", "your", "can", "said", "there", "use", "an",
+            "each", "which", "she", "do", "how", "their", "if", "will", "up", "other", "about", "out", "many",
+            "then", "them", "these", "so", "some", "her", "would", "make", "like", "him", "into", "time", "has",
+            "look", "two", "more", "go", "see", "no", "way", "could", "my", "than", "been", "call", "who",
+            "its", "now", "find", "long", "down", "day", "did", "get", "come", "made", "may", "part", "me",
+            "should", "our", "any", "just", "also", "very", "here", "where", "why", "us", "am", "does", "being",
+            "those", "such", "only", "over", "most", "after", "own", "same", "too", "both", "through", "before",
+            "while", "because", "off", "again", "few", "further", "once", "under", "until", "against", "between",
+            "during", "above", "below", "itself", "yourself", "ourselves", "themselves", "don",
+            "please", "thanks", "hi", "hello", "want", "need", "know", "think", "tell", "give", "help"
+    };
+    private static final int UNSEEN_RANK = 5000;
+    private static final Map<String, Float> IDF = new HashMap<>();
+
+    static {
+        double max = Math.log(2 + UNSEEN_RANK);
+        for (int rank = COMMON_WORDS.length - 1; rank >= 0; rank--) {
+            IDF.put(COMMON_WORDS[rank], (float) (Math.log(2 + rank) / max));
+        }
+    }
+
+    private final int dimension;
+
+    public LexicalEmbeddingProvider(@Value("${pinecone.index.dimension:1024}") int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public String id() {
+        return "lexical";
+    }
+
+    @Override
+    public String model() {
+        return MODEL;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public boolean local() {
+        return true;
+    }
+
+    @Override
+    public float[] embed(String text, Purpose purpose) {
+        float[] v = new float[dimension];
+        if (text == null || text.isEmpty()) return v;
+        String s = text.toLowerCase(Locale.ROOT);
+        int n = s.length();
+        int i = 0;
+        int prevStart = -1, prevEnd = -1;
+        float prevIdf = 0;
+        while (i < n) {
+            while (i < n && !isWordChar(s.charAt(i))) i++;
+            int start = i;
+            while (i < n && isWordChar(s.charAt(i))) i++;
+            if (start == i) break;
+
+            float idf = IDF.getOrDefault(s.substring(start, i), 1.0f);
+            add(v, mix(hash(WORD_SEED, s, start, i)), WORD_WEIGHT * idf);
+            if (prevStart >= 0) {
+                long h = hash(BIGRAM_SEED, s, prevStart, prevEnd);
+                h = hash(h ^ ' ', s, start, i);
+                add(v, mix(h), BIGRAM_WEIGHT * Math.min(prevIdf, idf));
+            }
+            addCharGrams(v, s, start, i, idf);
+
+            prevStart = start;
+            prevEnd = i;
+            prevIdf = idf;
+        }
+
+        // Unit length, so cosine is a plain dot product
+        double norm = 0;
+        for (float x : v) {
+            norm += (double) x * x;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int k = 0; k < v.length; k++) {
+                v[k] *= scale;
+            }
+        }
+        return v;
+    }
+
+    // Trigrams of the word padded with boundary markers: "cat" -> "^ca", "cat", "at$"
+    private void addCharGrams(float[] v, String s, int start, int end, float idf) {
+        int padded = end - start + 2;
+        int grams = Math.max(1, padded - CHAR_GRAM + 1);
+        // Split by length rather than by count: a word sharing only its stem still scores noticeably
+        float weight = (float) (CHAR_WEIGHT * idf / Math.sqrt(grams));
+        for (int g = 0; g < grams; g++) {
+            long h = CHAR_SEED;
+            for (int j = g; j < g + CHAR_GRAM && j < padded; j++) {
+                char c = j == 0 ? '^' : j == padded - 1 ? '$' : s.charAt(start + j - 1);
+                h = (h ^ c) * 0x100000001B3L;
+            }
+            add(v, mix(h), weight);
+        }
+    }
+
+    // Signed hashing trick: the sign bit keeps colliding features from only ever adding up
+    private void add(float[] v, long hash, float weight) {
+        int bucket = (int) Long.remainderUnsigned(hash >>> 1, dimension);
+        v[bucket] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    // FNV-1a over s[start, end)
+    private static long hash(long seed, String s, int start, int end) {
+        long h = seed;
+        for (int i = start; i < end; i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    // MurmurHash3 finalizer: FNV's low bits are weak, bucket and sign need well-mixed ones
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
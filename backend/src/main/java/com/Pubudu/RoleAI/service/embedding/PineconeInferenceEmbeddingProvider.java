@@ -0,0 +1,245 @@
+package com.Pubudu.RoleAI.service.embedding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pinecone hosted inference (POST /embed, e.g. llama-text-embed-v2), reusing the pooled Pinecone RestTemplate
+ * and API key. Single embed() calls from concurrent requests are micro-batched: a collector waits up to
+ * linger-ms for more texts and sends up to max-batch of them in one call, so N concurrent chat messages cost
+ * one round trip instead of N. embedAll() (bulk work) bypasses the collector and sends full batches directly.
+ */
+@Component
+public class PineconeInferenceEmbeddingProvider implements EmbeddingProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(PineconeInferenceEmbeddingProvider.class);
+
+    @Value("${pinecone.api.key:}")
+    private String apiKey;
+
+    @Value("${embedding.remote.url:https://api.pinecone.io/embed}")
+    private String url;
+
+    @Value("${embedding.remote.model:llama-text-embed-v2}")
+    private String model;
+
+    @Value("${pinecone.index.dimension:1024}")
+    private int dimension;
+
+    // Texts per /embed call (llama-text-embed-v2 accepts up to 96)
+    @Value("${embedding.remote.max-batch:96}")
+    private int maxBatch;
+
+    // How long the first text of a batch waits for company
+    @Value("${embedding.remote.linger-ms:5}")
+    private long lingerMs;
+
+    @Value("${embedding.remote.concurrency:4}")
+    private int concurrency;
+
+    @Value("${embedding.remote.timeout-ms:10000}")
+    private long timeoutMs;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DistributionSummary batchSizes;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private Thread collector;
+    private ExecutorService senders;
+
+    public PineconeInferenceEmbeddingProvider(@Qualifier("pineconeRestTemplate") RestTemplate restTemplate,
+                                              MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.batchSizes = DistributionSummary.builder("embedding.remote.batch.size")
+                .description("Texts per remote embedding call").register(meterRegistry);
+    }
+
+    public static class EmbeddingException extends RuntimeException {
+        public EmbeddingException(String message) {
+            super(message);
+        }
+
+        public EmbeddingException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private record Pending(String text, Purpose purpose, CompletableFuture<float[]> result) {}
+
+    @Override
+    public String id() {
+        return "pinecone";
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text, Purpose purpose) {
+        ensureStarted();
+        Pending pending = new Pending(text, purpose, new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            return pending.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            throw new EmbeddingException("Embedding failed", cause);
+        } catch (TimeoutException e) {
+            throw new EmbeddingException("Embedding timed out after " + timeoutMs + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EmbeddingException("Interrupted while waiting for embedding", e);
+        }
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts, Purpose purpose) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (int from = 0; from < texts.size(); from += maxBatch) {
+            vectors.addAll(call(texts.subList(from, Math.min(texts.size(), from + maxBatch)), purpose));
+        }
+        return vectors;
+    }
+
+    // Collector and sender threads only exist once this provider is actually used
+    private synchronized void ensureStarted() {
+        if (collector != null) return;
+        senders = Executors.newFixedThreadPool(concurrency, Thread.ofPlatform().daemon().name("embedding-send-", 0).factory());
+        collector = Thread.ofPlatform().daemon().name("embedding-batcher").start(this::collect);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (collector == null) return;
+        collector.interrupt();
+        senders.shutdown();
+        Pending p;
+        while ((p = queue.poll()) != null) {
+            p.result().completeExceptionally(new EmbeddingException("Embedding provider shut down"));
+        }
+    }
+
+    private void collect() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Pending> batch = new ArrayList<>();
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < maxBatch) {
+                    long left = deadline - System.nanoTime();
+                    Pending next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                // One call per input type; the model embeds queries and documents differently
+                Map<Purpose, List<Pending>> byPurpose = new EnumMap<>(Purpose.class);
+                for (Pending p : batch) {
+                    byPurpose.computeIfAbsent(p.purpose(), k -> new ArrayList<>()).add(p);
+                }
+                for (Map.Entry<Purpose, List<Pending>> group : byPurpose.entrySet()) {
+                    senders.execute(() -> send(group.getKey(), group.getValue()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(Purpose purpose, List<Pending> batch) {
+        try {
+            List<float[]> vectors = call(batch.stream().map(Pending::text).toList(), purpose);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(vectors.get(i));
+            }
+        } catch (RuntimeException e) {
+            for (Pending p : batch) {
+                p.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    private List<float[]> call(List<String> texts, Purpose purpose) {
+        if (texts.isEmpty()) return List.of();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Api-Key", apiKey);
+        headers.set("X-Pinecone-API-Version", "2025-04");
+
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("input_type", purpose == Purpose.QUERY ? "query" : "passage");
+        parameters.put("truncate", "END");
+        parameters.put("dimension", dimension);
+        List<Map<String, String>> inputs = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            inputs.add(Map.of("text", text == null ? "" : text));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", model);
+        body.put("parameters", parameters);
+        body.put("inputs", inputs);
+
+        batchSizes.record(texts.size());
+        try {
+            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(body, headers), String.class);
+            JsonNode data = objectMapper.readTree(response.getBody()).path("data");
+            if (data.size() != texts.size()) {
+                throw new EmbeddingException("Expected " + texts.size() + " embeddings, got " + data.size());
+            }
+            List<float[]> vectors = new ArrayList<>(texts.size());
+            for (JsonNode item : data) {
+                JsonNode values = item.path("values");
+                if (values.size() != dimension) {
+                    throw new EmbeddingException("Model " + model + " returned " + values.size()
+                            + " dimensions, index expects " + dimension);
+                }
+                float[] vector = new float[dimension];
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = (float) values.get(i).asDouble();
+                }
+                vectors.add(vector);
+            }
+            return vectors;
+        } catch (EmbeddingException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.warn("Embedding call with {} texts failed: {}", texts.size(), e.getMessage());
+            throw new EmbeddingException("Embedding call failed: " + e.getMessage(), e);
+        }
+    }
+}
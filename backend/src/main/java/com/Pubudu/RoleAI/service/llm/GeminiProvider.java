@@ -0,0 +1,412 @@
+package com.Pubudu.RoleAI.service.llm;
+
+import com.Pubudu.RoleAI.service.GeminiContextCacheService;
+import com.Pubudu.RoleAI.service.GeminiEndpointResolver;
+import com.Pubudu.RoleAI.service.LlmResilience;
+import com.Pubudu.RoleAI.util.GeminiResponseParser;
+import com.Pubudu.RoleAI.util.GeminiResponseParser.GeminiReply;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Google Gemini (generativelanguage REST API): generateContent / streamGenerateContent with the
+ * endpoint-variant walk, explicit context caching of the role prompt and streaming response parsing,
+ * plus batchGenerateContent for offline jobs.
+ */
+@Component
+public class GeminiProvider implements LlmProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiProvider.class);
+
+    @Value("${gemini.api.url:https://generativelanguage.googleapis.com/v1beta/models/}")
+    private String geminiApiUrl;
+
+    @Value("${http.client.max-in-memory-bytes:16777216}")
+    private int maxResponseBytes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    @Qualifier("geminiWebClient")
+    private WebClient webClient;
+
+    @Autowired
+    private GeminiEndpointResolver endpointResolver;
+
+    @Autowired
+    private GeminiContextCacheService contextCache;
+
+    @Autowired
+    private LlmResilience resilience;
+
+    @Autowired
+    private GeminiResponseParser responseParser;
+
+    @Override
+    public String id() {
+        return "GEMINI";
+    }
+
+    @Override
+    public Mono<LlmReply> generate(LlmRequest request) {
+        return Mono.defer(() -> {
+            String cachedContent = cachedContentFor(request);
+            String jsonBody = buildRequestJson(request, cachedContent);
+            return callFrom(request, endpoints(request), 0, jsonBody)
+                    .map(this::toReply)
+                    .doOnError(e -> onError(request, cachedContent, e));
+        });
+    }
+
+    @Override
+    public Flux<String> stream(LlmRequest request) {
+        return Flux.defer(() -> {
+            String cachedContent = cachedContentFor(request);
+            String jsonBody = buildRequestJson(request, cachedContent);
+            return streamFrom(request, endpoints(request), 0, jsonBody)
+                    .doOnError(e -> onError(request, cachedContent, e));
+        });
+    }
+
+    @Override
+    public String primaryEndpoint(LlmRequest request) {
+        return endpoints(request).get(0);
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return true;
+    }
+
+    /**
+     * batchGenerateContent with inlined requests. The role prompt is sent in full rather than through the
+     * context cache: a batch may take hours to run, longer than a cache entry lives.
+     */
+    @Override
+    public Mono<String> submitBatch(List<LlmRequest> requests, List<String> keys) {
+        return Mono.defer(() -> {
+            LlmRequest first = requests.get(0);
+            List<Map<String, Object>> inlined = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                inlined.add(Map.of(
+                    "request", buildRequestBody(requests.get(i), null),
+                    "metadata", Map.of("key", keys.get(i))
+                ));
+            }
+            Map<String, Object> batch = Map.of("batch", Map.of(
+                "displayName", "roleai-" + keys.get(0),
+                "inputConfig", Map.of("requests", Map.of("requests", inlined))
+            ));
+            String endpoint = endpoints(first).get(0);
+            String url = buildUrl(endpoint, "batchGenerateContent", null, first.apiKey());
+            logger.info("Submitting Gemini batch of {} requests: {}", requests.size(), maskApiKey(url));
+            return resilience.guard(endpoint, webClient.post()
+                            .uri(url)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.APPLICATION_JSON)
+                            .bodyValue(toJson(batch))
+                            .retrieve()
+                            .bodyToMono(String.class))
+                    .map(this::batchName)
+                    .doOnError(e -> logFailure(e, first.apiKey()));
+        });
+    }
+
+    @Override
+    public Mono<LlmBatchResult> pollBatch(String batchName, String apiKey) {
+        String root = trimTrailingSlash(geminiApiUrl);
+        if (root.endsWith("/models")) root = root.substring(0, root.length() - "/models".length());
+        String url = UriComponentsBuilder.fromUriString(root + "/" + batchName).queryParam("key", apiKey).toUriString();
+        return webClient.get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(this::toBatchResult)
+                .doOnError(e -> logFailure(e, apiKey));
+    }
+
+    private String batchName(String operationJson) {
+        try {
+            JsonNode op = objectMapper.readTree(operationJson);
+            String name = op.path("name").asText("");
+            if (name.isEmpty()) {
+                throw new RuntimeException("Gemini batch response carries no batch name");
+            }
+            return name;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Unparseable Gemini batch response", e);
+        }
+    }
+
+    // Long-running operation: done flag, then either error or response.inlinedResponses (same order, keys in metadata)
+    private LlmBatchResult toBatchResult(String operationJson) {
+        JsonNode op;
+        try {
+            op = objectMapper.readTree(operationJson);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Unparseable Gemini batch status", e);
+        }
+        if (!op.path("done").asBoolean(false)) {
+            return LlmBatchResult.pending();
+        }
+        if (op.hasNonNull("error")) {
+            return new LlmBatchResult(true, Map.of(), Map.of(), op.path("error").path("message").asText("Batch failed"));
+        }
+        JsonNode inlined = op.path("response").path("inlinedResponses");
+        if (inlined.isObject()) inlined = inlined.path("inlinedResponses");
+
+        Map<String, LlmReply> replies = new LinkedHashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (JsonNode item : inlined) {
+            String key = item.path("metadata").path("key").asText("");
+            if (key.isEmpty()) continue;
+            if (item.hasNonNull("error")) {
+                errors.put(key, item.path("error").path("message").asText("Request failed"));
+            } else {
+                try {
+                    replies.put(key, toReply(responseParser.parse(item.path("response").toString())));
+                } catch (Exception e) {
+                    errors.put(key, "Unparseable response: " + e.getMessage());
+                }
+            }
+        }
+        String state = op.path("metadata").path("state").asText("");
+        String error = replies.isEmpty() && errors.isEmpty() ? "Batch ended without results" + (state.isEmpty() ? "" : " (" + state + ")") : null;
+        return new LlmBatchResult(true, replies, errors, error);
+    }
+
+    private String cachedContentFor(LlmRequest request) {
+        return contextCache.cachedContentFor(request.role(), request.configId(), request.apiKey(),
+                request.model(), request.systemText()).orElse(null);
+    }
+
+    private List<String> endpoints(LlmRequest request) {
+        return endpointResolver.order(request.configId(), request.model(), candidateEndpoints(request.model()));
+    }
+
+    private Mono<GeminiReply> callFrom(LlmRequest request, List<String> endpoints, int index, String jsonBody) {
+        String endpoint = endpoints.get(index);
+        String url = buildUrl(endpoint, "generateContent", null, request.apiKey());
+        logger.info("Calling Gemini URL: {}", maskApiKey(url));
+        return resilience.guard(endpoint, webClient.post()
+                        .uri(url)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .bodyValue(jsonBody)
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class)
+                        .as(buffers -> DataBufferUtils.join(buffers, maxResponseBytes)))
+                // Parsed straight from the pooled network buffer; the body is never turned into a String
+                .map(responseParser::parse)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .doOnSuccess(body -> endpointResolver.markSuccess(request.configId(), request.model(), endpoint))
+                .onErrorResume(WebClientResponseException.NotFound.class, nf -> {
+                    endpointResolver.markNotFound(request.configId(), request.model(), endpoint);
+                    if (index + 1 >= endpoints.size()) {
+                        return Mono.error(nf);
+                    }
+                    logger.warn("Gemini returned 404 for URL: {} -- trying next variant", maskApiKey(url));
+                    return callFrom(request, endpoints, index + 1, jsonBody);
+                });
+    }
+
+    private Flux<String> streamFrom(LlmRequest request, List<String> endpoints, int index, String jsonBody) {
+        String endpoint = endpoints.get(index);
+        String url = buildUrl(endpoint, "streamGenerateContent", "sse", request.apiKey());
+        logger.info("Streaming from Gemini URL: {}", maskApiKey(url));
+        return resilience.guardMany(endpoint, webClient.post()
+                        .uri(url)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .bodyValue(jsonBody)
+                        .retrieve()
+                        .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                        .mapNotNull(ServerSentEvent::data)
+                        .concatMapIterable(this::extractTextParts))
+                .doOnComplete(() -> endpointResolver.markSuccess(request.configId(), request.model(), endpoint))
+                .onErrorResume(WebClientResponseException.NotFound.class, nf -> {
+                    endpointResolver.markNotFound(request.configId(), request.model(), endpoint);
+                    if (index + 1 >= endpoints.size()) {
+                        return Flux.error(nf);
+                    }
+                    logger.warn("Gemini returned 404 for URL: {} -- trying next variant", maskApiKey(url));
+                    return streamFrom(request, endpoints, index + 1, jsonBody);
+                });
+    }
+
+    private LlmReply toReply(GeminiReply reply) {
+        GeminiResponseParser.Usage usage = reply.usage();
+        String finishReason = reply.blockReason() != null ? reply.blockReason() : reply.finishReason();
+        return usage == null
+                ? new LlmReply(reply.text(), finishReason, 0, 0, 0)
+                : new LlmReply(reply.text(), finishReason, usage.promptTokens(), usage.candidatesTokens(), usage.cachedTokens());
+    }
+
+    /**
+     * Text of one streamed GenerateContentResponse chunk (all its text parts, concatenated).
+     */
+    private List<String> extractTextParts(String chunkJson) {
+        try {
+            String text = responseParser.parse(chunkJson).text();
+            return text.isEmpty() ? List.of() : List.of(text);
+        } catch (Exception e) {
+            logger.warn("Skipping unparseable Gemini stream chunk: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private String buildRequestJson(LlmRequest request, String cachedContent) {
+        String jsonBody = toJson(buildRequestBody(request, cachedContent));
+        // Log a compact version of the request body (truncate to 2k)
+        String preview = jsonBody.length() > 2048 ? jsonBody.substring(0, 2048) + "..." : jsonBody;
+        logger.debug("Gemini request body (truncated): {}", preview);
+        return jsonBody;
+    }
+
+    private Map<String, Object> buildRequestBody(LlmRequest request, String cachedContent) {
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        String context = request.context();
+        String userText = request.userMessage();
+        if (cachedContent != null) {
+            // The role prompt is already in the cache (which owns the system instruction);
+            // per-message retrieved context rides along with the user's turn instead
+            requestBody.put("cachedContent", cachedContent);
+            if (!context.isBlank()) {
+                userText = "Relevant role context (from vector DB):\n" + context + "\n\n" + userText;
+            }
+        } else {
+            // System prompt includes role description and retrieved context
+            StringJoiner systemText = new StringJoiner("\n\n");
+            systemText.add(request.systemText());
+            if (!context.isBlank()) {
+                systemText.add("Relevant role context (from vector DB):\n" + context);
+            }
+            // Gemini REST expects snake_case: system_instruction
+            requestBody.put("system_instruction", Map.of(
+                "role", "system",
+                "parts", new Object[]{Map.of("text", systemText.toString())}
+            ));
+        }
+
+        Map<String, Object> userContent = Map.of(
+            "role", "user",
+            "parts", new Object[]{Map.of("text", userText)}
+        );
+
+        List<Object> contents = new ArrayList<>(request.history());
+        contents.add(userContent);
+        requestBody.put("contents", contents);
+        return requestBody;
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize Gemini request", e);
+        }
+    }
+
+    /**
+     * Endpoints (base + model variant) to try, in order (v1beta/v1 and with/without -latest).
+     * GeminiEndpointResolver reorders/prunes this list from what earlier calls learned.
+     */
+    private List<String> candidateEndpoints(String modelToUse) {
+        String primaryBase = trimTrailingSlash(geminiApiUrl);
+        String fallbackBase = primaryBase.contains("v1beta/models")
+                ? primaryBase.replace("v1beta/models", "v1/models")
+                : primaryBase.replace("v1/models", "v1beta/models");
+
+        String withLatest = modelToUse.endsWith("-latest") ? modelToUse : modelToUse + "-latest";
+        String withoutLatest = modelToUse.endsWith("-latest") ? modelToUse.substring(0, modelToUse.length() - 7) : modelToUse;
+
+        LinkedHashSet<String> modelVariants = new LinkedHashSet<>();
+        modelVariants.add(modelToUse);
+        modelVariants.add(withoutLatest);
+        modelVariants.add(withLatest);
+
+        LinkedHashSet<String> baseVariants = new LinkedHashSet<>();
+        baseVariants.add(primaryBase);
+        baseVariants.add(fallbackBase);
+
+        List<String> endpoints = new ArrayList<>();
+        for (String b : baseVariants) {
+            for (String mv : modelVariants) {
+                endpoints.add(b + "/" + mv);
+            }
+        }
+        return endpoints;
+    }
+
+    private String buildUrl(String endpoint, String method, String alt, String apiKey) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(endpoint + ":" + method);
+        if (alt != null) builder.queryParam("alt", alt);
+        return builder.queryParam("key", apiKey).toUriString();
+    }
+
+    private void onError(LlmRequest request, String cachedContent, Throwable e) {
+        logFailure(e, request.apiKey());
+        // A 4xx (other than rate limiting) on a cached request usually means the cache entry is gone
+        if (cachedContent != null && e instanceof WebClientResponseException wex
+                && wex.getStatusCode().is4xxClientError() && wex.getStatusCode().value() != 429) {
+            contextCache.evict(request.role().getId(), request.configId(), request.model());
+        }
+    }
+
+    private void logFailure(Throwable e, String apiKeyToUse) {
+        if (e instanceof WebClientResponseException wex) {
+            int status = wex.getStatusCode().value();
+            String errorBody = wex.getResponseBodyAsString();
+            logger.error("Gemini API error: status={} body={}", status, errorBody);
+
+            if (status == 403) {
+                logger.error("GEMINI API KEY ERROR: 403 Forbidden - Check your API key permissions and billing");
+                logger.error("Current API key starts with: {}", apiKeyToUse != null && apiKeyToUse.length() > 10
+                    ? apiKeyToUse.substring(0, 10) + "..." : "null/empty");
+            }
+        } else if (!(e instanceof LlmResilience.CircuitOpenException)) {
+            logger.error("Error calling Gemini API", e);
+        }
+    }
+
+    private String maskApiKey(String url) {
+        if (url == null) return null;
+        int idx = url.indexOf("key=");
+        if (idx == -1) return url;
+        int start = idx + 4;
+        int end = url.indexOf('&', start);
+        String key = end == -1 ? url.substring(start) : url.substring(start, end);
+        String masked = key.length() <= 4 ? "****" : key.substring(0, 2) + "****" + key.substring(key.length() - 2);
+        return url.replace(key, masked);
+    }
+
+    private String trimTrailingSlash(String s) {
+        if (s == null) return null;
+        return s.endsWith("/") ? s.substring(0, s.length() - 1) : s;
+    }
+}
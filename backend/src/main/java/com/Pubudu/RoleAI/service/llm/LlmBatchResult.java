@@ -0,0 +1,14 @@
+package com.Pubudu.RoleAI.service.llm;
+
+import java.util.Map;
+
+/**
+ * State of a provider batch. While done is false the maps are empty. Once done, replies and errors are
+ * keyed by the keys given at submission; error is set when the batch as a whole failed, expired or was cancelled.
+ */
+public record LlmBatchResult(boolean done, Map<String, LlmReply> replies, Map<String, String> errors, String error) {
+
+    public static LlmBatchResult pending() {
+        return new LlmBatchResult(false, Map.of(), Map.of(), null);
+    }
+}
@@ -0,0 +1,99 @@
+package com.Pubudu.RoleAI.service.llm;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Decides which base URLs a ModelConfig may point at. The server sends the user's API key to that URL and
+ * reports what comes back, so without a check any user could make it call into its own network (loopback,
+ * cloud metadata at 169.254.169.254, private ranges).
+ *
+ * Hosts listed in llm.openai.allowed-hosts (the operator's own vLLM/Ollama servers) are trusted as they
+ * are, http included. Any other URL must be https and every address its host resolves to must be public.
+ */
+@Component
+public class LlmEndpointPolicy {
+
+    private final Set<String> allowedHosts;
+
+    public LlmEndpointPolicy(@Value("${llm.openai.allowed-hosts:}") String allowedHosts) {
+        this.allowedHosts = Arrays.stream(allowedHosts.split(","))
+                .map(String::trim)
+                .filter(h -> !h.isEmpty())
+                .map(h -> h.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Throws EndpointNotAllowedException unless baseUrl may be called. Blank means the provider default.
+     */
+    public void check(String baseUrl) {
+        if (baseUrl == null || baseUrl.isBlank()) return;
+        URI uri;
+        try {
+            uri = new URI(baseUrl.trim());
+        } catch (URISyntaxException e) {
+            throw new EndpointNotAllowedException("Base URL is not a valid URL");
+        }
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost();
+        if (host == null || !(scheme.equals("https") || scheme.equals("http"))) {
+            throw new EndpointNotAllowedException("Base URL must be an http(s) URL with a host");
+        }
+        if (uri.getUserInfo() != null) {
+            throw new EndpointNotAllowedException("Base URL must not contain credentials");
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.startsWith("[") && host.endsWith("]")) host = host.substring(1, host.length() - 1);
+        if (allowedHosts.contains(host)) return;
+
+        if (!scheme.equals("https")) {
+            throw new EndpointNotAllowedException("Base URL must use https");
+        }
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new EndpointNotAllowedException("Base URL host " + host + " does not resolve");
+        }
+        for (InetAddress address : addresses) {
+            if (!isPublic(address)) {
+                throw new EndpointNotAllowedException("Base URL host " + host + " resolves to a non-public address");
+            }
+        }
+    }
+
+    static boolean isPublic(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] b = address.getAddress();
+        if (address instanceof Inet6Address) {
+            return (b[0] & 0xfe) != 0xfc; // fc00::/7 unique local
+        }
+        int first = b[0] & 0xff;
+        int second = b[1] & 0xff;
+        // 0.0.0.0/8, 100.64.0.0/10 (carrier-grade NAT), 198.18.0.0/15 (benchmarking), 240.0.0.0/4 (reserved)
+        return first != 0
+                && !(first == 100 && second >= 64 && second < 128)
+                && !(first == 198 && (second == 18 || second == 19))
+                && first < 240;
+    }
+
+    public static class EndpointNotAllowedException extends RuntimeException {
+        public EndpointNotAllowedException(String message) {
+            super(message);
+        }
+    }
+}
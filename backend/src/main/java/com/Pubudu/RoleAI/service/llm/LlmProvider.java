@@ -0,0 +1,52 @@
+package com.Pubudu.RoleAI.service.llm;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * One LLM backend, picked by ModelConfig.provider. Implementations turn an LlmRequest into the backend's
+ * wire format and make the HTTP call(s); retries, concurrency limits and routing are applied by ChatService.
+ */
+public interface LlmProvider {
+
+    /**
+     * ModelConfig.provider value this implementation serves, e.g. "GEMINI" (matched case-insensitively).
+     */
+    String id();
+
+    /**
+     * Generate a complete reply.
+     */
+    Mono<LlmReply> generate(LlmRequest request);
+
+    /**
+     * Generate a reply as text deltas.
+     */
+    Flux<String> stream(LlmRequest request);
+
+    /**
+     * Endpoint the next call for this request is expected to hit; keys latency stats for hedging.
+     */
+    String primaryEndpoint(LlmRequest request);
+
+    /**
+     * Whether this provider has an asynchronous (discounted) batch API. Jobs for providers without one run online.
+     */
+    default boolean supportsBatch() {
+        return false;
+    }
+
+    /**
+     * Submit requests (same config and model) as one provider batch; keys are echoed back in the result.
+     * Emits the provider's batch name to poll.
+     */
+    default Mono<String> submitBatch(List<LlmRequest> requests, List<String> keys) {
+        return Mono.error(new UnsupportedOperationException("Provider " + id() + " has no batch API"));
+    }
+
+    default Mono<LlmBatchResult> pollBatch(String batchName, String apiKey) {
+        return Mono.error(new UnsupportedOperationException("Provider " + id() + " has no batch API"));
+    }
+}
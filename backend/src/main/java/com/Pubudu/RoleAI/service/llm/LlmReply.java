@@ -0,0 +1,8 @@
+package com.Pubudu.RoleAI.service.llm;
+
+/**
+ * A complete reply. finishReason is the provider's own value (e.g. STOP, MAX_TOKENS, SAFETY, length);
+ * token counts are 0 when the provider did not report them.
+ */
+public record LlmReply(String text, String finishReason, int promptTokens, int outputTokens, int cachedTokens) {
+}
@@ -0,0 +1,24 @@
+package com.Pubudu.RoleAI.service.llm;
+
+import com.Pubudu.RoleAI.dto.RoleDTO;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A provider-neutral generation request.
+ *
+ * systemText is the static role prompt and context the per-message retrieved context (may be empty),
+ * kept apart so providers can cache the former. history holds earlier turns as
+ * {"role": "user"|"model", "parts": [{"text": ...}]}.
+ */
+public record LlmRequest(Long configId,
+                         String apiKey,
+                         String model,
+                         String baseUrl,
+                         RoleDTO role,
+                         String systemText,
+                         String context,
+                         List<Map<String, Object>> history,
+                         String userMessage) {
+}
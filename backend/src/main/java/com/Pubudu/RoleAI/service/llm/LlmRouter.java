@@ -0,0 +1,118 @@
+package com.Pubudu.RoleAI.service.llm;
+
+import com.Pubudu.RoleAI.entity.ModelConfig;
+import com.Pubudu.RoleAI.util.LatencyWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks one of a user's ModelConfigs when a chat request doesn't name one.
+ *
+ * Each config is scored from what recent calls measured: latency (p50 for short prompts, p95 otherwise),
+ * error rate and expected cost of the call. Lower is better; a config with no samples yet is scored as
+ * fast as the best measured one so it gets tried, and a small share of requests explores at random to
+ * keep the numbers fresh. Short, cheap prompts therefore land on whichever model is currently fastest,
+ * while long ones also weigh price.
+ */
+@Service
+public class LlmRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmRouter.class);
+
+    @Value("${llm.router.short-prompt-tokens:300}")
+    private int shortPromptTokens;
+
+    // Assumed output size when estimating what a call will cost
+    @Value("${llm.router.expected-output-tokens:500}")
+    private int expectedOutputTokens;
+
+    // Seconds of latency one unit of error rate (100% failures) is worth
+    @Value("${llm.router.error-weight:30}")
+    private double errorWeight;
+
+    // Seconds of latency one dollar of expected cost is worth
+    @Value("${llm.router.cost-weight:1000}")
+    private double costWeight;
+
+    @Value("${llm.router.explore-ratio:0.05}")
+    private double exploreRatio;
+
+    @Value("${llm.router.min-samples:5}")
+    private int minSamples;
+
+    private final Map<Long, Stats> stats = new ConcurrentHashMap<>();
+
+    public ModelConfig choose(List<ModelConfig> configs, int promptTokens) {
+        if (configs.size() == 1) return configs.get(0);
+        if (ThreadLocalRandom.current().nextDouble() < exploreRatio) {
+            return configs.get(ThreadLocalRandom.current().nextInt(configs.size()));
+        }
+
+        boolean shortPrompt = promptTokens <= shortPromptTokens;
+        double bestMeasured = Double.MAX_VALUE;
+        for (ModelConfig mc : configs) {
+            double latency = latencySeconds(mc.getId(), shortPrompt);
+            if (latency >= 0) bestMeasured = Math.min(bestMeasured, latency);
+        }
+        if (bestMeasured == Double.MAX_VALUE) bestMeasured = 0;
+
+        ModelConfig best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (ModelConfig mc : configs) {
+            double latency = latencySeconds(mc.getId(), shortPrompt);
+            Stats s = stats.get(mc.getId());
+            double errorRate = s == null ? 0 : s.errorRate();
+            double cost = mc.getCostPerMillionTokens() == null ? 0
+                    : mc.getCostPerMillionTokens() * (promptTokens + expectedOutputTokens) / 1_000_000.0;
+            double score = (latency >= 0 ? latency : bestMeasured) + errorWeight * errorRate + costWeight * cost;
+            if (score < bestScore) {
+                bestScore = score;
+                best = mc;
+            }
+        }
+        logger.debug("Routed {}-token prompt to ModelConfig {} (score {})", promptTokens, best.getId(), bestScore);
+        return best;
+    }
+
+    /**
+     * Feed back the outcome of a call made with configId.
+     */
+    public void record(Long configId, long latencyMs, boolean success) {
+        if (configId == null) return;
+        Stats s = stats.computeIfAbsent(configId, id -> new Stats());
+        if (success) s.latencies.record(latencyMs);
+        s.recordOutcome(success);
+    }
+
+    public void forget(Long configId) {
+        stats.remove(configId);
+    }
+
+    // -1 when there are too few samples to say
+    private double latencySeconds(Long configId, boolean shortPrompt) {
+        Stats s = stats.get(configId);
+        if (s == null) return -1;
+        long ms = shortPrompt ? s.latencies.p50(minSamples) : s.latencies.p95(minSamples);
+        return ms < 0 ? -1 : ms / 1000.0;
+    }
+
+    private static final class Stats {
+        final LatencyWindow latencies = new LatencyWindow(100);
+        private double errorRate; // EWMA over recent calls
+
+        synchronized void recordOutcome(boolean success) {
+            errorRate = errorRate * 0.9 + (success ? 0 : 0.1);
+        }
+
+        synchronized double errorRate() {
+            return errorRate;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.Pubudu.RoleAI.service.llm;
+
+import com.Pubudu.RoleAI.service.LlmResilience;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OpenAI Chat Completions and the many servers that speak the same API (vLLM, Ollama, LM Studio, Groq...).
+ * ModelConfig.baseUrl selects the server; it defaults to api.openai.com.
+ */
+@Component
+public class OpenAiCompatibleProvider implements LlmProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenAiCompatibleProvider.class);
+
+    @Value("${openai.api.url:https://api.openai.com/v1}")
+    private String defaultBaseUrl;
+
+    @Value("${http.client.max-in-memory-bytes:16777216}")
+    private int maxResponseBytes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    @Qualifier("geminiWebClient") // the shared pooled client; nothing in it is Gemini specific
+    private WebClient webClient;
+
+    @Autowired
+    private LlmResilience resilience;
+
+    @Override
+    public String id() {
+        return "OPENAI";
+    }
+
+    @Override
+    public Mono<LlmReply> generate(LlmRequest request) {
+        String endpoint = primaryEndpoint(request);
+        logger.info("Calling chat completions at {}", endpoint);
+        return resilience.guard(endpoint, webClient.post()
+                        .uri(endpoint)
+                        .headers(h -> h.setBearerAuth(request.apiKey()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .bodyValue(buildBody(request, false))
+                        .retrieve()
+                        .bodyToFlux(DataBuffer.class)
+                        .as(buffers -> DataBufferUtils.join(buffers, maxResponseBytes)))
+                .map(this::readReply)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .doOnError(this::logFailure);
+    }
+
+    @Override
+    public Flux<String> stream(LlmRequest request) {
+        String endpoint = primaryEndpoint(request);
+        logger.info("Streaming chat completions from {}", endpoint);
+        return resilience.guardMany(endpoint, webClient.post()
+                        .uri(endpoint)
+                        .headers(h -> h.setBearerAuth(request.apiKey()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .bodyValue(buildBody(request, true))
+                        .retrieve()
+                        .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                        .mapNotNull(ServerSentEvent::data)
+                        .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                        .concatMapIterable(this::extractDelta))
+                .doOnError(this::logFailure);
+    }
+
+    @Override
+    public String primaryEndpoint(LlmRequest request) {
+        String base = request.baseUrl() != null && !request.baseUrl().isBlank() ? request.baseUrl() : defaultBaseUrl;
+        if (base.endsWith("/")) base = base.substring(0, base.length() - 1);
+        return base + "/chat/completions";
+    }
+
+    private Map<String, Object> buildBody(LlmRequest request, boolean stream) {
+        String systemText = request.context().isBlank()
+                ? request.systemText()
+                : request.systemText() + "\n\nRelevant role context (from vector DB):\n" + request.context();
+
+        List<Map<String, Object>> messages = new ArrayList<>();
+        messages.add(Map.of("role", "system", "content", systemText));
+        for (Map<String, Object> turn : request.history()) {
+            String role = "model".equals(turn.get("role")) ? "assistant" : "user";
+            messages.add(Map.of("role", role, "content", turnText(turn)));
+        }
+        messages.add(Map.of("role", "user", "content", request.userMessage()));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", request.model());
+        body.put("messages", messages);
+        if (stream) body.put("stream", true);
+        return body;
+    }
+
+    // History turns carry Gemini-style parts; chat completions wants one content string
+    private String turnText(Map<String, Object> turn) {
+        StringBuilder sb = new StringBuilder();
+        if (turn.get("parts") instanceof List<?> parts) {
+            for (Object part : parts) {
+                if (part instanceof Map<?, ?> p && p.get("text") != null) sb.append(p.get("text"));
+            }
+        }
+        return sb.toString();
+    }
+
+    private LlmReply readReply(DataBuffer body) {
+        try (InputStream in = body.asInputStream(true)) {
+            JsonNode json = objectMapper.readTree(in);
+            JsonNode choice = json.path("choices").path(0);
+            JsonNode usage = json.path("usage");
+            return new LlmReply(
+                    choice.path("message").path("content").asText(""),
+                    choice.path("finish_reason").asText(null),
+                    usage.path("prompt_tokens").asInt(0),
+                    usage.path("completion_tokens").asInt(0),
+                    usage.path("prompt_tokens_details").path("cached_tokens").asInt(0));
+        } catch (Exception e) {
+            throw new RuntimeException("Unparseable chat completions response", e);
+        }
+    }
+
+    private List<String> extractDelta(String chunkJson) {
+        try {
+            String text = objectMapper.readTree(chunkJson).path("choices").path(0).path("delta").path("content").asText("");
+            return text.isEmpty() ? List.of() : List.of(text);
+        } catch (Exception e) {
+            logger.warn("Skipping unparseable chat completions chunk: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void logFailure(Throwable e) {
+        if (e instanceof WebClientResponseException wex) {
+            logger.error("Chat completions API error: status={} body={}", wex.getStatusCode().value(), wex.getResponseBodyAsString());
+        } else if (!(e instanceof LlmResilience.CircuitOpenException)) {
+            logger.error("Error calling chat completions API", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.Pubudu.RoleAI.service.llm;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Local deterministic provider for development and load testing: no network, no key checks.
+ * The same request always yields the same reply, after a fixed simulated latency.
+ */
+@Component
+public class StubLlmProvider implements LlmProvider {
+
+    @Value("${llm.stub.latency-ms:50}")
+    private long latencyMs;
+
+    @Override
+    public String id() {
+        return "STUB";
+    }
+
+    @Override
+    public Mono<LlmReply> generate(LlmRequest request) {
+        String text = replyFor(request);
+        return Mono.just(new LlmReply(text, "STOP", estimateTokens(request), estimateTokens(text), 0))
+                .delayElement(Duration.ofMillis(latencyMs));
+    }
+
+    @Override
+    public Flux<String> stream(LlmRequest request) {
+        String[] words = replyFor(request).split("(?<= )");
+        long perWord = Math.max(1, latencyMs / words.length);
+        return Flux.fromArray(words).delayElements(Duration.ofMillis(perWord));
+    }
+
+    @Override
+    public String primaryEndpoint(LlmRequest request) {
+        return "stub:" + request.model();
+    }
+
+    private String replyFor(LlmRequest request) {
+        String roleName = request.role() != null ? request.role().getName() : "assistant";
+        int hash = (request.model() + "|" + request.systemText() + "|" + request.userMessage()).hashCode();
+        return "[" + roleName + "] You said: " + request.userMessage() + " (stub " + Integer.toHexString(hash) + ")";
+    }
+
+    private int estimateTokens(LlmRequest request) {
+        return estimateTokens(request.systemText()) + estimateTokens(request.context()) + estimateTokens(request.userMessage());
+    }
+
+    private int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+}
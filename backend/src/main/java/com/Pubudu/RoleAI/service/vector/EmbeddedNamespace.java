@@ -0,0 +1,467 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import com.Pubudu.RoleAI.util.vector.VectorMath;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One namespace of EmbeddedVectorStore.
+ *
+ * Storage: vectors go into slots of a memory-mapped file ({name}.{generation}.vec, float32 rows after a
+ * 16-byte header), ids and metadata into an append-only JSON-lines log ({name}.log) whose first line names
+ * the .vec file. A slot is never rewritten: an upsert takes a fresh slot and retires the old one, so a crash
+ * mid-write can only leave an unreferenced slot behind. When retired slots outnumber live ones the namespace
+ * compacts into a new generation; the log is swapped in with an atomic rename, which is the commit point.
+ * A copy of the live vectors is kept on the heap for scoring.
+ *
+ * Search: exact brute force over live slots, or an HNSW graph once the namespace reaches the configured size.
+ */
+final class EmbeddedNamespace implements Closeable {
+
+    private static final int MAGIC = 0x52564543; // "RVEC"
+    private static final int HEADER_BYTES = 16;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String name;
+    private final Path dir;
+    private final int dimension;
+    private final EmbeddedVectorStore.Settings settings;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int generation;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int capacity; // slots the current mapping holds
+    private BufferedWriter log;
+
+    // Per slot; retired slots keep their vector while a graph may still route through them
+    private float[][] vectors = new float[16][];
+    private String[] ids = new String[16];
+    private Map<String, String>[] metadata = newMetadataArray(16);
+    private final BitSet live = new BitSet();
+    private int slots;
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private HnswGraph graph;
+
+    EmbeddedNamespace(String name, Path dir, int dimension, EmbeddedVectorStore.Settings settings) {
+        this.name = name;
+        this.dir = dir;
+        this.dimension = dimension;
+        this.settings = settings;
+        try {
+            Files.createDirectories(dir);
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open vector namespace " + name + " in " + dir, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String>[] newMetadataArray(int size) {
+        return new Map[size];
+    }
+
+    // ---------------------------------------------------------------- operations
+
+    void upsert(List<VectorRecord> records) {
+        lock.writeLock().lock();
+        try {
+            for (VectorRecord record : records) {
+                if (record.values().length != dimension) {
+                    throw new VectorStore.VectorStoreException("Vector " + record.id() + " has " + record.values().length
+                            + " dimensions, namespace " + name + " expects " + dimension);
+                }
+                float[] v = unit(record.values());
+                Map<String, String> md = new HashMap<>();
+                if (record.metadata() != null) {
+                    record.metadata().forEach((k, val) -> {
+                        if (val != null) md.put(k, val);
+                    });
+                }
+                int slot = slots++;
+                ensureCapacity(slot + 1);
+                writeVector(slot, v);
+                place(slot, record.id(), v, md);
+                appendLog(putLine(slot, record.id(), md));
+            }
+            log.flush();
+            afterWrite();
+        } catch (IOException e) {
+            throw new VectorStore.VectorStoreException("Write to vector namespace " + name + " failed", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(List<String> deleteIds) {
+        lock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (String id : deleteIds) {
+                Integer slot = slotById.remove(id);
+                if (slot == null) continue;
+                retire(slot);
+                ObjectNode line = MAPPER.createObjectNode().put("op", "del").put("id", id);
+                appendLog(line);
+                changed = true;
+            }
+            if (changed) {
+                log.flush();
+                afterWrite();
+            }
+        } catch (IOException e) {
+            throw new VectorStore.VectorStoreException("Delete in vector namespace " + name + " failed", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<VectorMatch> query(float[] vector, int topK, Map<String, String> filter) {
+        if (vector.length != dimension || topK <= 0) return List.of();
+        float[] q = unit(vector);
+        lock.readLock().lock();
+        try {
+            List<VectorMatch> results = new ArrayList<>();
+            if (graph != null) {
+                for (HnswGraph.Candidate c : graph.search(q, topK, Math.max(settings.efSearch(), topK),
+                        slot -> live.get(slot) && matches(slot, filter))) {
+                    results.add(match(c.node(), c.score()));
+                }
+                // A selective filter can starve the beam; the exact scan is the fallback
+                if (results.size() >= topK || results.size() == live.cardinality()) return results;
+                results.clear();
+            }
+            PriorityQueue<HnswGraph.Candidate> best = new PriorityQueue<>(topK + 1, (a, b) -> Float.compare(a.score(), b.score()));
+            for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+                if (!matches(slot, filter)) continue;
+                float score = VectorMath.dot(q, vectors[slot]);
+                if (best.size() < topK || score > best.peek().score()) {
+                    best.add(new HnswGraph.Candidate(slot, score));
+                    if (best.size() > topK) best.poll();
+                }
+            }
+            while (!best.isEmpty()) {
+                HnswGraph.Candidate c = best.poll();
+                results.add(match(c.node(), c.score()));
+            }
+            Collections.reverse(results);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean indexed() {
+        return graph != null;
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (mapped != null) mapped.force();
+            if (log != null) log.close();
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- in-memory state
+
+    private void place(int slot, String id, float[] v, Map<String, String> md) {
+        ensureArrays(slot + 1);
+        Integer previous = slotById.put(id, slot);
+        if (previous != null) retire(previous);
+        vectors[slot] = v;
+        ids[slot] = id;
+        metadata[slot] = md;
+        live.set(slot);
+        if (graph != null) graph.insert(slot);
+    }
+
+    private void retire(int slot) {
+        live.clear(slot);
+        metadata[slot] = null;
+        if (graph == null) vectors[slot] = null;
+    }
+
+    private void afterWrite() throws IOException {
+        int liveCount = live.cardinality();
+        if (slots - liveCount > Math.max(liveCount, settings.compactMinRetired())) {
+            compact();
+        } else if (graph == null && liveCount >= settings.hnswThreshold()) {
+            buildGraph();
+        }
+    }
+
+    private void buildGraph() {
+        graph = new HnswGraph(settings.hnswM(), settings.hnswEfConstruction(), slot -> vectors[slot]);
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            graph.insert(slot);
+        }
+    }
+
+    private boolean matches(int slot, Map<String, String> filter) {
+        if (filter == null || filter.isEmpty()) return true;
+        Map<String, String> md = metadata[slot];
+        for (Map.Entry<String, String> e : filter.entrySet()) {
+            if (!e.getValue().equals(md.get(e.getKey()))) return false;
+        }
+        return true;
+    }
+
+    private VectorMatch match(int slot, float score) {
+        return new VectorMatch(ids[slot], score, metadata[slot]);
+    }
+
+    private void ensureArrays(int size) {
+        if (size <= vectors.length) return;
+        int n = Math.max(size, vectors.length * 2);
+        vectors = Arrays.copyOf(vectors, n);
+        ids = Arrays.copyOf(ids, n);
+        metadata = Arrays.copyOf(metadata, n);
+    }
+
+    // Stored unit length, so the dot product is the cosine similarity
+    private static float[] unit(float[] v) {
+        float norm = VectorMath.norm(v);
+        float[] copy = new float[v.length];
+        if (norm == 0) return copy;
+        for (int i = 0; i < v.length; i++) {
+            copy[i] = v[i] / norm;
+        }
+        return copy;
+    }
+
+    // ---------------------------------------------------------------- files
+
+    private Path logPath() {
+        return dir.resolve(name + ".log");
+    }
+
+    private Path vecPath(int gen) {
+        return dir.resolve(name + "." + gen + ".vec");
+    }
+
+    private void load() throws IOException {
+        Path logPath = logPath();
+        byte[] bytes = Files.exists(logPath) ? Files.readAllBytes(logPath) : new byte[0];
+        // Complete lines only: whatever follows the last newline is a write torn by a crash
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                lines.add(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        if (lines.isEmpty()) {
+            openGeneration(0, true);
+            writeFreshLog(0);
+            return;
+        }
+
+        JsonNode header = MAPPER.readTree(lines.get(0));
+        if (header.path("dimension").asInt() != dimension) {
+            throw new IOException("Namespace " + name + " was written with dimension " + header.path("dimension").asInt()
+                    + ", index dimension is " + dimension + "; reindex into a fresh directory");
+        }
+        openGeneration(header.path("generation").asInt(), false);
+        FloatBuffer floats = floatView();
+        long validBytes = lines.get(0).getBytes(StandardCharsets.UTF_8).length + 1;
+        for (int i = 1; i < lines.size(); i++) {
+            String text = lines.get(i);
+            JsonNode line = null;
+            if (!text.isBlank()) {
+                try {
+                    line = MAPPER.readTree(text);
+                } catch (IOException e) {
+                    break; // unreadable: a crash tore the write, everything before it is intact
+                }
+                if ("put".equals(line.path("op").asText()) && line.path("slot").asInt() >= capacity) break;
+            }
+            validBytes += text.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (line == null) continue;
+            if ("put".equals(line.path("op").asText())) {
+                int slot = line.path("slot").asInt();
+                float[] v = new float[dimension];
+                floats.get(slot * dimension, v);
+                Map<String, String> md = new HashMap<>();
+                line.path("metadata").fields().forEachRemaining(e -> md.put(e.getKey(), e.getValue().asText()));
+                place(slot, line.path("id").asText(), v, md);
+                slots = Math.max(slots, slot + 1);
+            } else if ("del".equals(line.path("op").asText())) {
+                Integer slot = slotById.remove(line.path("id").asText());
+                if (slot != null) retire(slot);
+            }
+        }
+        if (validBytes < bytes.length) {
+            // Cut the torn tail off, or the next append would be glued to it and lost on the next load
+            try (FileChannel file = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                file.truncate(validBytes);
+            }
+        }
+        deleteOtherGenerations();
+        log = Files.newBufferedWriter(logPath, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        afterWrite();
+        if (graph == null && live.cardinality() >= settings.hnswThreshold()) buildGraph();
+    }
+
+    private void openGeneration(int gen, boolean fresh) throws IOException {
+        generation = gen;
+        channel = FileChannel.open(vecPath(gen), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int existing = (int) Math.max(0, (channel.size() - HEADER_BYTES) / (4L * dimension));
+        map(Math.max(existing, 64));
+        if (fresh) {
+            mapped.putInt(0, MAGIC).putInt(4, dimension).putInt(8, 1).putInt(12, 0);
+        } else if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != dimension) {
+            throw new IOException(vecPath(gen) + " is not a vector file of dimension " + dimension);
+        }
+    }
+
+    private void map(int slotCapacity) throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 4L * dimension * slotCapacity);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = slotCapacity;
+    }
+
+    private FloatBuffer floatView() {
+        return mapped.slice(HEADER_BYTES, mapped.capacity() - HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    // Grows the file by doubling; mapping past the end extends it
+    private void ensureCapacity(int needed) throws IOException {
+        if (needed <= capacity) return;
+        mapped.force();
+        map(Math.max(needed, capacity * 2));
+    }
+
+    private void writeVector(int slot, float[] v) {
+        floatView().put(slot * dimension, v);
+    }
+
+    private ObjectNode putLine(int slot, String id, Map<String, String> md) {
+        ObjectNode line = MAPPER.createObjectNode().put("op", "put").put("slot", slot).put("id", id);
+        ObjectNode mdNode = line.putObject("metadata");
+        md.forEach(mdNode::put);
+        return line;
+    }
+
+    private void appendLog(ObjectNode line) throws IOException {
+        log.write(MAPPER.writeValueAsString(line));
+        log.write('\n');
+    }
+
+    private void writeFreshLog(int gen) throws IOException {
+        Path tmp = dir.resolve(name + ".log.tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(MAPPER.writeValueAsString(header(gen)));
+            writer.write('\n');
+        }
+        Files.move(tmp, logPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log = Files.newBufferedWriter(logPath(), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    private ObjectNode header(int gen) {
+        return MAPPER.createObjectNode().put("op", "open").put("generation", gen).put("dimension", dimension);
+    }
+
+    /**
+     * Rewrites live slots densely into the next generation and rebuilds the graph.
+     */
+    private void compact() throws IOException {
+        int next = generation + 1;
+        Path tmpLog = dir.resolve(name + ".log.tmp");
+        int[] order = live.stream().toArray();
+        try (FileChannel out = FileChannel.open(vecPath(next), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+             BufferedWriter writer = Files.newBufferedWriter(tmpLog, StandardCharsets.UTF_8)) {
+            int cap = Math.max(64, order.length);
+            MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 4L * dimension * cap);
+            target.order(ByteOrder.LITTLE_ENDIAN);
+            target.putInt(0, MAGIC).putInt(4, dimension).putInt(8, 1).putInt(12, 0);
+            FloatBuffer floats = target.slice(HEADER_BYTES, target.capacity() - HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            writer.write(MAPPER.writeValueAsString(header(next)));
+            writer.write('\n');
+            for (int i = 0; i < order.length; i++) {
+                floats.put(i * dimension, vectors[order[i]]);
+                writer.write(MAPPER.writeValueAsString(putLine(i, ids[order[i]], metadata[order[i]])));
+                writer.write('\n');
+            }
+            target.force();
+        }
+        log.close();
+        // Commit point: from here on a restart opens the new generation
+        Files.move(tmpLog, logPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+
+        float[][] oldVectors = vectors;
+        String[] oldIds = ids;
+        Map<String, String>[] oldMetadata = metadata;
+        vectors = new float[Math.max(16, order.length)][];
+        ids = new String[vectors.length];
+        metadata = newMetadataArray(vectors.length);
+        live.clear();
+        slotById.clear();
+        graph = null;
+        for (int i = 0; i < order.length; i++) {
+            vectors[i] = oldVectors[order[i]];
+            ids[i] = oldIds[order[i]];
+            metadata[i] = oldMetadata[order[i]];
+            live.set(i);
+            slotById.put(ids[i], i);
+        }
+        slots = order.length;
+
+        openGeneration(next, false);
+        log = Files.newBufferedWriter(logPath(), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        deleteOtherGenerations();
+        if (order.length >= settings.hnswThreshold()) buildGraph();
+    }
+
+    private void deleteOtherGenerations() throws IOException {
+        String keep = vecPath(generation).getFileName().toString();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, name + ".*.vec")) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().equals(keep)) Files.deleteIfExists(file);
+            }
+        }
+    }
+}
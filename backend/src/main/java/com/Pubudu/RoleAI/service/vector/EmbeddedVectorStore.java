@@ -0,0 +1,126 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process vector store: one EmbeddedNamespace per namespace under vector.embedded.dir, opened on first use.
+ * Exact SIMD search for small namespaces, HNSW past vector.embedded.hnsw-threshold vectors. Meant for a single
+ * backend instance; the files are not safe to share between processes.
+ */
+@Component
+public class EmbeddedVectorStore implements VectorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedVectorStore.class);
+
+    record Settings(int hnswThreshold, int hnswM, int hnswEfConstruction, int efSearch, int compactMinRetired) {}
+
+    private final Path dir;
+    private final int dimension;
+    private final Settings settings;
+    private final Map<String, EmbeddedNamespace> namespaces = new ConcurrentHashMap<>();
+
+    public EmbeddedVectorStore(@Value("${vector.embedded.dir:./data/vectors}") String dir,
+                               @Value("${pinecone.index.dimension:1024}") int dimension,
+                               @Value("${vector.embedded.hnsw-threshold:5000}") int hnswThreshold,
+                               @Value("${vector.embedded.hnsw.m:16}") int hnswM,
+                               @Value("${vector.embedded.hnsw.ef-construction:100}") int efConstruction,
+                               @Value("${vector.embedded.hnsw.ef-search:64}") int efSearch) {
+        this.dir = Paths.get(dir);
+        this.dimension = dimension;
+        this.settings = new Settings(hnswThreshold, hnswM, efConstruction, efSearch, 1024);
+    }
+
+    @Override
+    public String id() {
+        return "embedded";
+    }
+
+    @Override
+    public void upsert(String namespace, List<VectorRecord> records) {
+        if (records.isEmpty()) return;
+        namespace(namespace).upsert(records);
+    }
+
+    @Override
+    public void delete(String namespace, List<String> ids) {
+        if (ids.isEmpty()) return;
+        namespace(namespace).delete(ids);
+    }
+
+    @Override
+    public List<VectorMatch> query(String namespace, float[] vector, int topK, Map<String, String> filter) {
+        return namespace(namespace).query(vector, topK, filter);
+    }
+
+    @Override
+    public boolean isReady() {
+        return Files.isDirectory(dir) || dir.toFile().mkdirs();
+    }
+
+    /**
+     * Same shape as Pinecone's describe_index_stats, for the namespaces opened so far plus any on disk.
+     */
+    @Override
+    public Map<String, Object> stats() {
+        openExisting();
+        Map<String, Object> perNamespace = new HashMap<>();
+        long total = 0;
+        for (Map.Entry<String, EmbeddedNamespace> e : namespaces.entrySet()) {
+            int count = e.getValue().size();
+            total += count;
+            perNamespace.put(e.getKey(), Map.of("vectorCount", count, "hnsw", e.getValue().indexed()));
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("dimension", dimension);
+        stats.put("totalVectorCount", total);
+        stats.put("namespaces", perNamespace);
+        return stats;
+    }
+
+    private EmbeddedNamespace namespace(String namespace) {
+        return namespaces.computeIfAbsent(fileName(namespace), name -> {
+            long start = System.nanoTime();
+            EmbeddedNamespace ns = new EmbeddedNamespace(name, dir, dimension, settings);
+            logger.info("Opened vector namespace {} ({} vectors) in {} ms", name, ns.size(), (System.nanoTime() - start) / 1_000_000);
+            return ns;
+        });
+    }
+
+    private void openExisting() {
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(dir, "*.log")) {
+            for (Path log : logs) {
+                String file = log.getFileName().toString();
+                namespace(file.substring(0, file.length() - ".log".length()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Namespaces become file names
+    private static String fileName(String namespace) {
+        return namespace.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    @PreDestroy
+    public void close() {
+        namespaces.values().forEach(EmbeddedNamespace::close);
+        namespaces.clear();
+    }
+}
@@ -0,0 +1,182 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import com.Pubudu.RoleAI.util.vector.VectorMath;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph (Malkov & Yashunin) over unit vectors, scored by dot product.
+ * Nodes are the namespace's storage slots; removed slots stay in the graph as waypoints and are filtered
+ * out of results, until the namespace compacts and rebuilds the graph. Not thread-safe: inserts need the
+ * namespace's write lock, searches its read lock.
+ */
+final class HnswGraph {
+
+    record Candidate(int node, float score) {}
+
+    private static final Comparator<Candidate> BEST_FIRST = (a, b) -> Float.compare(b.score, a.score);
+    private static final Comparator<Candidate> WORST_FIRST = (a, b) -> Float.compare(a.score, b.score);
+
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final IntFunction<float[]> vectors;
+    private final Random random = new Random(42);
+
+    // node -> level -> neighbour list, element 0 holding the count
+    private int[][][] links = new int[64][][];
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(int m, int efConstruction, IntFunction<float[]> vectors) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = vectors;
+    }
+
+    // Level 0 holds everything and gets twice the links, as in the paper
+    private int maxLinks(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    void insert(int node) {
+        float[] v = vectors.apply(node);
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        if (node >= links.length) {
+            int[][][] grown = new int[Math.max(node + 1, links.length * 2)][][];
+            System.arraycopy(links, 0, grown, 0, links.length);
+            links = grown;
+        }
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedy(v, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = searchLayer(v, ep, efConstruction, l);
+            // Closest m candidates; the paper's diversity heuristic buys little on text embeddings
+            for (int i = 0; i < Math.min(m, found.size()); i++) {
+                int neighbour = found.get(i).node;
+                link(node, neighbour, l);
+                link(neighbour, node, l);
+            }
+            ep = found.get(0).node;
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Up to k accepted nodes, best first.
+     */
+    List<Candidate> search(float[] query, int k, int ef, IntPredicate accept) {
+        List<Candidate> results = new ArrayList<>();
+        if (entryPoint < 0) return results;
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedy(query, ep, l);
+        }
+        for (Candidate c : searchLayer(query, ep, Math.max(ef, k), 0)) {
+            if (!accept.test(c.node)) continue;
+            results.add(c);
+            if (results.size() == k) break;
+        }
+        return results;
+    }
+
+    private int greedy(float[] query, int ep, int level) {
+        float best = score(query, ep);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] list = links[ep][level];
+            for (int i = 1; i <= list[0]; i++) {
+                float s = score(query, list[i]);
+                if (s > best) {
+                    best = s;
+                    ep = list[i];
+                    improved = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    // Best-first beam search on one level; returns up to ef nodes, best first
+    private List<Candidate> searchLayer(float[] query, int ep, int ef, int level) {
+        BitSet visited = new BitSet();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+        Candidate start = new Candidate(ep, score(query, ep));
+        visited.set(ep);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.score < results.peek().score) break;
+            int[][] nodeLinks = links[current.node];
+            if (level >= nodeLinks.length) continue;
+            int[] list = nodeLinks[level];
+            for (int i = 1; i <= list[0]; i++) {
+                int n = list[i];
+                if (visited.get(n)) continue;
+                visited.set(n);
+                float s = score(query, n);
+                if (results.size() < ef || s > results.peek().score) {
+                    Candidate c = new Candidate(n, s);
+                    candidates.add(c);
+                    results.add(c);
+                    if (results.size() > ef) results.poll();
+                }
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    // Adds to's id to from's list on a level; a full list keeps its maxLinks closest entries
+    private void link(int from, int to, int level) {
+        int[] list = links[from][level];
+        int cap = maxLinks(level);
+        if (list[0] < cap) {
+            list[++list[0]] = to;
+            return;
+        }
+        float[] v = vectors.apply(from);
+        int worst = -1;
+        float worstScore = score(v, to);
+        for (int i = 1; i <= list[0]; i++) {
+            float s = score(v, list[i]);
+            if (s < worstScore) {
+                worstScore = s;
+                worst = i;
+            }
+        }
+        if (worst > 0) list[worst] = to;
+    }
+
+    private float score(float[] query, int node) {
+        return VectorMath.dot(query, vectors.apply(node));
+    }
+}
@@ -0,0 +1,293 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Role vectors in a pgvector column of the roles table itself (roles.embedding, cosine distance).
+ *
+ * Namespaces and ids follow RoleVectorService ("user_<id>", "role_<id>"): a namespace is a user_id, a record
+ * is a role row, and metadata comes from the row rather than being stored twice. Writes are plain UPDATEs on
+ * the JDBC connection of the caller's transaction, so a role and its vector commit or roll back together.
+ * Vectors are bound as float4[] parameters, which the driver sends in binary, and cast to vector in SQL.
+ *
+ * Only created with vector.store=pgvector. On startup it creates the extension, the column (with the index
+ * dimension) and the ANN index (vector.pgvector.index: hnsw, ivfflat or none) if they are missing. Roles
+ * that predate the column get their vectors from PgVectorBackfillService.
+ */
+@Component
+@ConditionalOnProperty(name = "vector.store", havingValue = "pgvector")
+@DependsOn("entityManagerFactory") // roles table must exist (ddl-auto) before the column is added
+public class PgVectorStore implements VectorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PgVectorStore.class);
+
+    private static final String NAMESPACE_PREFIX = "user_";
+    private static final String ID_PREFIX = "role_";
+
+    @Value("${pinecone.index.dimension:1024}")
+    private int dimension;
+
+    @Value("${vector.pgvector.index:hnsw}")
+    private String indexType;
+
+    @Value("${vector.pgvector.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${vector.pgvector.hnsw.ef-construction:64}")
+    private int hnswEfConstruction;
+
+    @Value("${vector.pgvector.hnsw.ef-search:40}")
+    private int hnswEfSearch;
+
+    // ivfflat centroids come from the rows present at CREATE INDEX; build it after the roles are loaded
+    @Value("${vector.pgvector.ivfflat.lists:100}")
+    private int ivfflatLists;
+
+    @Value("${vector.pgvector.ivfflat.probes:10}")
+    private int ivfflatProbes;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private boolean iterativeScan; // pgvector 0.8+: keep scanning the index until the user_id filter is satisfied
+
+    public PgVectorStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void createSchema() {
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("ALTER TABLE roles ADD COLUMN IF NOT EXISTS embedding vector(" + dimension + ")");
+        Integer columnDimension = jdbcTemplate.queryForObject(
+                "SELECT atttypmod FROM pg_attribute WHERE attrelid = 'roles'::regclass AND attname = 'embedding'", Integer.class);
+        if (columnDimension == null || columnDimension != dimension) {
+            throw new IllegalStateException("roles.embedding has dimension " + columnDimension + " but pinecone.index.dimension is "
+                    + dimension + "; drop the column (and its index) to recreate it, then reindex the roles");
+        }
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS roles_user_id_idx ON roles (user_id)");
+        switch (indexType.trim().toLowerCase()) {
+            case "hnsw" -> jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS roles_embedding_hnsw_idx ON roles USING hnsw (embedding vector_cosine_ops)"
+                    + " WITH (m = " + hnswM + ", ef_construction = " + hnswEfConstruction + ")");
+            case "ivfflat" -> jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS roles_embedding_ivfflat_idx ON roles USING ivfflat (embedding vector_cosine_ops)"
+                    + " WITH (lists = " + ivfflatLists + ")");
+            case "none" -> { }
+            default -> throw new IllegalStateException("Unknown vector.pgvector.index '" + indexType + "' (hnsw, ivfflat or none)");
+        }
+
+        String version = jdbcTemplate.queryForObject("SELECT extversion FROM pg_extension WHERE extname = 'vector'", String.class);
+        iterativeScan = atLeast(version, 0, 8);
+        logger.info("pgvector {} ready: roles.embedding vector({}), {} index", version, dimension, indexType);
+    }
+
+    private static boolean atLeast(String version, int major, int minor) {
+        String[] parts = version.split("\\.");
+        int ma = Integer.parseInt(parts[0]);
+        int mi = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        return ma > major || (ma == major && mi >= minor);
+    }
+
+    @Override
+    public String id() {
+        return "pgvector";
+    }
+
+    @Override
+    public boolean transactional() {
+        return true;
+    }
+
+    @Override
+    public void upsert(String namespace, List<VectorRecord> records) {
+        try {
+            int[] updated = jdbcTemplate.batchUpdate("UPDATE roles SET embedding = CAST(? AS vector) WHERE id = ? AND user_id = ?",
+                    updateArgs(namespace, records));
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    logger.warn("No role row for vector {} in {}; skipped", records.get(i).id(), namespace);
+                }
+            }
+        } catch (DataAccessException e) {
+            throw new VectorStoreException("pgvector upsert into " + namespace + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ids of roles without a vector, after afterRoleId in id order: keyset pages for PgVectorBackfillService.
+     */
+    public List<Long> rolesWithoutVector(long afterRoleId, int limit) {
+        try {
+            return jdbcTemplate.queryForList("SELECT id FROM roles WHERE embedding IS NULL AND id > ? ORDER BY id LIMIT ?",
+                    Long.class, afterRoleId, limit);
+        } catch (DataAccessException e) {
+            throw new VectorStoreException("pgvector scan for roles without vectors failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Upsert that only fills rows still without a vector. A row that got one meanwhile was written in the role's
+     * own transaction, from text at least as new as the caller's, and is left alone. Returns the rows filled.
+     */
+    public int fillMissing(String namespace, List<VectorRecord> records) {
+        try {
+            int[] updated = jdbcTemplate.batchUpdate("UPDATE roles SET embedding = CAST(? AS vector) WHERE id = ? AND user_id = ? AND embedding IS NULL",
+                    updateArgs(namespace, records));
+            int filled = 0;
+            for (int count : updated) {
+                filled += Math.max(0, count);
+            }
+            return filled;
+        } catch (DataAccessException e) {
+            throw new VectorStoreException("pgvector backfill in " + namespace + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private List<Object[]> updateArgs(String namespace, List<VectorRecord> records) {
+        long userId = userId(namespace);
+        List<Object[]> args = new ArrayList<>(records.size());
+        for (VectorRecord record : records) {
+            if (record.values().length != dimension) {
+                throw new VectorStoreException("Vector " + record.id() + " has " + record.values().length
+                        + " dimensions, roles.embedding has " + dimension);
+            }
+            args.add(new Object[]{record.values(), roleId(record.id()), userId});
+        }
+        return args;
+    }
+
+    @Override
+    public void delete(String namespace, List<String> ids) {
+        long userId = userId(namespace);
+        List<Object[]> args = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            args.add(new Object[]{roleId(id), userId});
+        }
+        try {
+            jdbcTemplate.batchUpdate("UPDATE roles SET embedding = NULL WHERE id = ? AND user_id = ?", args);
+        } catch (DataAccessException e) {
+            throw new VectorStoreException("pgvector delete in " + namespace + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<VectorMatch> query(String namespace, float[] vector, int topK, Map<String, String> filter) {
+        long userId = userId(namespace);
+        StringBuilder sql = new StringBuilder("SELECT id, name, description, embedding <=> CAST(? AS vector) AS distance"
+                + " FROM roles WHERE user_id = ? AND embedding IS NOT NULL");
+        List<Object> args = new ArrayList<>(List.of(vector, userId));
+        for (Map.Entry<String, String> e : filter.entrySet()) {
+            switch (e.getKey()) {
+                case "type" -> {
+                    if (!"role".equals(e.getValue())) return List.of(); // every row here is a role
+                }
+                case "userId" -> {
+                    if (!String.valueOf(userId).equals(e.getValue())) return List.of();
+                }
+                case "roleName" -> {
+                    sql.append(" AND name = ?");
+                    args.add(e.getValue());
+                }
+                case "description" -> {
+                    sql.append(" AND description = ?");
+                    args.add(e.getValue());
+                }
+                default -> throw new VectorStoreException("pgvector store cannot filter on '" + e.getKey() + "'");
+            }
+        }
+        sql.append(" ORDER BY distance LIMIT ?");
+        args.add(topK);
+
+        try {
+            List<VectorMatch> matches = transactionTemplate.execute(status -> {
+                // SET LOCAL only lasts until the end of this (or the caller's) transaction
+                if ("hnsw".equalsIgnoreCase(indexType)) {
+                    jdbcTemplate.execute("SET LOCAL hnsw.ef_search = " + Math.max(hnswEfSearch, topK));
+                    if (iterativeScan) jdbcTemplate.execute("SET LOCAL hnsw.iterative_scan = relaxed_order");
+                } else if ("ivfflat".equalsIgnoreCase(indexType)) {
+                    jdbcTemplate.execute("SET LOCAL ivfflat.probes = " + ivfflatProbes);
+                    if (iterativeScan) jdbcTemplate.execute("SET LOCAL ivfflat.iterative_scan = relaxed_order");
+                }
+                return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+                    Map<String, String> metadata = new HashMap<>();
+                    metadata.put("userId", String.valueOf(userId));
+                    metadata.put("roleName", rs.getString("name"));
+                    metadata.put("description", rs.getString("description") == null ? "" : rs.getString("description"));
+                    metadata.put("type", "role");
+                    return new VectorMatch(ID_PREFIX + rs.getLong("id"), (float) (1 - rs.getDouble("distance")), metadata);
+                }, args.toArray());
+            });
+            // relaxed_order may return near-ties slightly out of order
+            matches.sort(Comparator.comparingDouble(VectorMatch::score).reversed());
+            return matches;
+        } catch (DataAccessException e) {
+            throw new VectorStoreException("pgvector query in " + namespace + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        try {
+            Integer columns = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_attribute WHERE attrelid = 'roles'::regclass AND attname = 'embedding'", Integer.class);
+            return columns != null && columns == 1;
+        } catch (Exception e) {
+            logger.error("Error checking pgvector column", e);
+            return false;
+        }
+    }
+
+    /**
+     * Same shape as Pinecone's describe_index_stats.
+     */
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> namespaces = new HashMap<>();
+        long[] total = {0};
+        jdbcTemplate.query("SELECT user_id, count(embedding) AS vectors FROM roles WHERE embedding IS NOT NULL GROUP BY user_id", rs -> {
+            long count = rs.getLong("vectors");
+            total[0] += count;
+            namespaces.put(NAMESPACE_PREFIX + rs.getLong("user_id"), Map.of("vectorCount", count));
+        });
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("dimension", dimension);
+        stats.put("index", indexType);
+        stats.put("totalVectorCount", total[0]);
+        stats.put("namespaces", namespaces);
+        return stats;
+    }
+
+    private static long userId(String namespace) {
+        return parseId(namespace, NAMESPACE_PREFIX, "namespace");
+    }
+
+    private static long roleId(String id) {
+        return parseId(id, ID_PREFIX, "vector id");
+    }
+
+    private static long parseId(String value, String prefix, String what) {
+        if (value != null && value.startsWith(prefix)) {
+            try {
+                return Long.parseLong(value.substring(prefix.length()));
+            } catch (NumberFormatException ignored) {
+                // reported below
+            }
+        }
+        throw new VectorStoreException("pgvector store expects " + what + " '" + prefix + "<id>', got '" + value + "'");
+    }
+}
@@ -0,0 +1,165 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+
+/**
+ * Pinecone serverless index over its REST data plane API.
+ */
+@Component
+public class PineconeVectorStore implements VectorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PineconeVectorStore.class);
+
+    // Pinecone's limits are 1000 ids per delete and 2MB per upsert request (~100 vectors of 1024 floats + metadata)
+    private static final int UPSERT_BATCH = 100;
+    private static final int DELETE_BATCH = 1000;
+
+    @Value("${pinecone.api.key:}")
+    private String apiKey;
+
+    // Full serverless index host, e.g. https://xxxx.svc....pinecone.io
+    @Value("${pinecone.host:}")
+    private String host;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+
+    public PineconeVectorStore(@Qualifier("pineconeRestTemplate") RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = new ObjectMapper();
+    }
+
+    @Override
+    public String id() {
+        return "pinecone";
+    }
+
+    /**
+     * Get the base URL for Pinecone API calls
+     */
+    private String getBaseUrl() {
+        // Ensure no trailing slash
+        if (host.endsWith("/")) {
+            return host.substring(0, host.length() - 1);
+        }
+        return host;
+    }
+
+    /**
+     * Create HTTP headers with authentication
+     */
+    private HttpHeaders createHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Api-Key", apiKey);
+        return headers;
+    }
+
+    @Override
+    public void upsert(String namespace, List<VectorRecord> records) {
+        for (int from = 0; from < records.size(); from += UPSERT_BATCH) {
+            List<Map<String, Object>> vectors = new ArrayList<>();
+            for (VectorRecord record : records.subList(from, Math.min(records.size(), from + UPSERT_BATCH))) {
+                Map<String, Object> vector = new HashMap<>();
+                vector.put("id", record.id());
+                vector.put("values", record.values());
+                vector.put("metadata", record.metadata());
+                vectors.add(vector);
+            }
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("vectors", vectors);
+            requestBody.put("namespace", namespace);
+            post("/vectors/upsert", requestBody);
+        }
+    }
+
+    @Override
+    public void delete(String namespace, List<String> ids) {
+        for (int from = 0; from < ids.size(); from += DELETE_BATCH) {
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("ids", ids.subList(from, Math.min(ids.size(), from + DELETE_BATCH)));
+            requestBody.put("namespace", namespace);
+            post("/vectors/delete", requestBody);
+        }
+    }
+
+    @Override
+    public List<VectorMatch> query(String namespace, float[] vector, int topK, Map<String, String> filter) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("vector", vector);
+        requestBody.put("topK", topK);
+        requestBody.put("includeMetadata", true);
+        requestBody.put("includeValues", false);
+        requestBody.put("namespace", namespace);
+        if (!filter.isEmpty()) {
+            Map<String, Object> pineconeFilter = new HashMap<>();
+            filter.forEach((key, value) -> pineconeFilter.put(key, Map.of("$eq", value)));
+            requestBody.put("filter", pineconeFilter);
+        }
+
+        JsonNode matches = post("/query", requestBody).get("matches");
+        List<VectorMatch> results = new ArrayList<>();
+        if (matches != null && matches.isArray()) {
+            for (JsonNode match : matches) {
+                Map<String, String> metadata = new HashMap<>();
+                JsonNode md = match.get("metadata");
+                if (md != null) {
+                    md.fields().forEachRemaining(e -> metadata.put(e.getKey(), e.getValue().asText()));
+                }
+                results.add(new VectorMatch(match.get("id").asText(), (float) match.get("score").asDouble(), metadata));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public boolean isReady() {
+        try {
+            post("/describe_index_stats", Map.of());
+            logger.info("Pinecone index is ready and accessible");
+            return true;
+        } catch (Exception e) {
+            logger.error("Error checking Pinecone index status", e);
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stats = objectMapper.convertValue(post("/describe_index_stats", Map.of()), Map.class);
+            logger.info("Retrieved Pinecone index stats: {}", stats);
+            return stats;
+        } catch (Exception e) {
+            logger.error("Error getting Pinecone index stats", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private JsonNode post(String path, Map<String, ?> requestBody) {
+        try {
+            HttpEntity<Map<String, ?>> entity = new HttpEntity<>(requestBody, createHeaders());
+            ResponseEntity<String> response = restTemplate.exchange(getBaseUrl() + path, HttpMethod.POST, entity, String.class);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new VectorStoreException("Pinecone " + path + " returned " + response.getStatusCode() + ": " + response.getBody());
+            }
+            String body = response.getBody();
+            return body == null || body.isBlank() ? objectMapper.createObjectNode() : objectMapper.readTree(body);
+        } catch (VectorStoreException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new VectorStoreException("Pinecone " + path + " failed: " + e.getMessage(), e);
+        }
+    }
+}
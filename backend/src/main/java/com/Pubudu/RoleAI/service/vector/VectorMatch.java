@@ -0,0 +1,5 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import java.util.Map;
+
+public record VectorMatch(String id, float score, Map<String, String> metadata) {}
@@ -0,0 +1,5 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import java.util.Map;
+
+public record VectorRecord(String id, float[] values, Map<String, String> metadata) {}
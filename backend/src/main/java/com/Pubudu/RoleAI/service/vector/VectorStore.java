@@ -0,0 +1,50 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where embedding vectors live and are searched, picked by vector.store. Vectors are grouped in namespaces
+ * (one per user, "user_<id>"); every query is scoped to one namespace. Scores are cosine similarities.
+ */
+public interface VectorStore {
+
+    class VectorStoreException extends RuntimeException {
+        public VectorStoreException(String message) {
+            super(message);
+        }
+
+        public VectorStoreException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * vector.store value this implementation serves, e.g. "pinecone" (matched case-insensitively).
+     */
+    String id();
+
+    /**
+     * Writes join the caller's database transaction: a failed write must fail (and roll back) the caller
+     * instead of being logged and skipped.
+     */
+    default boolean transactional() {
+        return false;
+    }
+
+    /**
+     * Insert or replace records by id.
+     */
+    void upsert(String namespace, List<VectorRecord> records);
+
+    void delete(String namespace, List<String> ids);
+
+    /**
+     * Up to topK records, most similar first, whose metadata has every key/value pair of filter (may be empty).
+     */
+    List<VectorMatch> query(String namespace, float[] vector, int topK, Map<String, String> filter);
+
+    boolean isReady();
+
+    Map<String, Object> stats();
+}
@@ -0,0 +1,29 @@
+package com.Pubudu.RoleAI.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.Callable;
+
+@Component
+public class BlockingCalls {
+
+    @Autowired
+    @Qualifier("blockingScheduler")
+    private Scheduler blockingScheduler;
+
+    /**
+     * Wrap a blocking call so it runs on the bounded blocking scheduler.
+     * The caller's SecurityContext is captured now, so services relying on
+     * SecurityContextHolder (e.g. RoleService.getRoleById) keep working off the request thread.
+     */
+    public <T> Mono<T> call(Callable<T> task) {
+        Callable<T> withContext = new DelegatingSecurityContextCallable<>(task, SecurityContextHolder.getContext());
+        return Mono.fromCallable(withContext).subscribeOn(blockingScheduler);
+    }
+}
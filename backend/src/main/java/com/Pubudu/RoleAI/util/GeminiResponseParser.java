@@ -0,0 +1,194 @@
+package com.Pubudu.RoleAI.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming (token-level) reader for Gemini GenerateContentResponse JSON.
+ *
+ * Only the first candidate is read: its text parts are concatenated (thought parts skipped), and its
+ * finishReason, promptFeedback.blockReason and usageMetadata are captured. Everything else is skipped
+ * without building a tree, and the body is read straight from the network buffer.
+ */
+@Component
+public class GeminiResponseParser {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Parse a full response body. The buffer is released whether or not parsing succeeds.
+     */
+    public GeminiReply parse(DataBuffer body) {
+        try (InputStream in = body.asInputStream(true); JsonParser p = jsonFactory.createParser(in)) {
+            return read(p);
+        } catch (IOException e) {
+            throw new RuntimeException("Unparseable Gemini response", e);
+        }
+    }
+
+    /**
+     * Parse one chunk of a streamed response (an SSE data payload).
+     */
+    public GeminiReply parse(String json) {
+        try (JsonParser p = jsonFactory.createParser(json)) {
+            return read(p);
+        } catch (IOException e) {
+            throw new RuntimeException("Unparseable Gemini response", e);
+        }
+    }
+
+    private GeminiReply read(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object");
+        }
+        TextCollector text = new TextCollector();
+        String finishReason = null;
+        String blockReason = null;
+        Usage usage = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            switch (field) {
+                case "candidates" -> finishReason = readCandidates(p, text);
+                case "usageMetadata" -> usage = readUsage(p);
+                case "promptFeedback" -> blockReason = readBlockReason(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new GeminiReply(text.result(), finishReason, blockReason, usage);
+    }
+
+    // Returns the first candidate's finishReason; its text goes into text
+    private String readCandidates(JsonParser p, TextCollector text) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        String finishReason = null;
+        boolean first = true;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (!first || p.currentToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            first = false;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+                if ("content".equals(field)) {
+                    readContent(p, text);
+                } else if ("finishReason".equals(field)) {
+                    finishReason = p.getValueAsString();
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        return finishReason;
+    }
+
+    private void readContent(JsonParser p, TextCollector text) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if (!"parts".equals(field) || p.currentToken() != JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                if (p.currentToken() != JsonToken.START_OBJECT) {
+                    p.skipChildren();
+                    continue;
+                }
+                String partText = null;
+                boolean thought = false;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String partField = p.getCurrentName();
+                    p.nextToken();
+                    if ("text".equals(partField)) {
+                        partText = p.getValueAsString();
+                    } else if ("thought".equals(partField)) {
+                        thought = p.getValueAsBoolean();
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                if (partText != null && !thought) text.add(partText);
+            }
+        }
+    }
+
+    private Usage readUsage(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        int prompt = 0, candidates = 0, total = 0, cached = 0;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            switch (field) {
+                case "promptTokenCount" -> prompt = p.getValueAsInt();
+                case "candidatesTokenCount" -> candidates = p.getValueAsInt();
+                case "totalTokenCount" -> total = p.getValueAsInt();
+                case "cachedContentTokenCount" -> cached = p.getValueAsInt();
+                default -> p.skipChildren();
+            }
+        }
+        return new Usage(prompt, candidates, total, cached);
+    }
+
+    private String readBlockReason(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        String blockReason = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.getCurrentName();
+            p.nextToken();
+            if ("blockReason".equals(field)) {
+                blockReason = p.getValueAsString();
+            } else {
+                p.skipChildren();
+            }
+        }
+        return blockReason;
+    }
+
+    // Most replies are a single part: keep that String as is and only copy when there are several
+    private static final class TextCollector {
+        private String single;
+        private StringBuilder joined;
+
+        void add(String part) {
+            if (joined != null) {
+                joined.append(part);
+            } else if (single == null) {
+                single = part;
+            } else {
+                joined = new StringBuilder(single.length() + part.length()).append(single).append(part);
+                single = null;
+            }
+        }
+
+        String result() {
+            if (joined != null) return joined.toString();
+            return single != null ? single : "";
+        }
+    }
+
+    public record Usage(int promptTokens, int candidatesTokens, int totalTokens, int cachedTokens) {}
+
+    public record GeminiReply(String text, String finishReason, String blockReason, Usage usage) {}
+}
@@ -0,0 +1,45 @@
+package com.Pubudu.RoleAI.util;
+
+import java.util.Arrays;
+
+/**
+ * The most recent latency samples (ms) for one target, with p50/p95 recomputed every few samples
+ * rather than on every read.
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int count;
+    private int next;
+    private long p50 = -1;
+    private long p95 = -1;
+
+    public LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long ms) {
+        samples[next] = ms;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+        if (count < 10 || next % 10 == 0) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            p50 = sorted[(int) Math.ceil(count * 0.50) - 1];
+            p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    // -1 until at least minSamples have been recorded
+    public synchronized long p50(int minSamples) {
+        return count >= minSamples ? p50 : -1;
+    }
+
+    public synchronized long p95(int minSamples) {
+        return count >= minSamples ? p95 : -1;
+    }
+}
@@ -0,0 +1,61 @@
+package com.Pubudu.RoleAI.util.vector;
+
+/**
+ * A float vector stored as IEEE 754 half precision: 2 bytes per dimension, ~3 significant digits, no calibration.
+ * Unit-length embedding components (|x| well above 6e-5) keep a relative error below 0.05%.
+ */
+public final class Float16Vector {
+
+    private final short[] bits;
+
+    private Float16Vector(short[] bits) {
+        this.bits = bits;
+    }
+
+    public static Float16Vector of(float[] v) {
+        short[] bits = new short[v.length];
+        for (int i = 0; i < v.length; i++) {
+            bits[i] = Float.floatToFloat16(v[i]);
+        }
+        return new Float16Vector(bits);
+    }
+
+    /**
+     * Rebuild from stored half-precision bits.
+     */
+    public static Float16Vector ofBits(short[] bits) {
+        return new Float16Vector(bits);
+    }
+
+    public int dimension() {
+        return bits.length;
+    }
+
+    public short[] bits() {
+        return bits;
+    }
+
+    // Decoded on the fly; Float.float16ToFloat is an intrinsic on CPUs with F16C
+    public float dot(float[] query) {
+        if (query.length != bits.length) {
+            throw new IllegalArgumentException("Vector dimensions differ: " + query.length + " vs " + bits.length);
+        }
+        float sum = 0f;
+        for (int i = 0; i < bits.length; i++) {
+            sum += query[i] * Float.float16ToFloat(bits[i]);
+        }
+        return sum;
+    }
+
+    public float[] decode() {
+        float[] v = new float[bits.length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = Float.float16ToFloat(bits[i]);
+        }
+        return v;
+    }
+
+    public long bytes() {
+        return 2L * bits.length;
+    }
+}
@@ -0,0 +1,74 @@
+package com.Pubudu.RoleAI.util.vector;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Symmetric int8 quantization: x -> round(x / scale) clamped to [-127, 127], scale = clip / 127.
+ *
+ * perVector() uses each vector's own max |x| as the clip, which is lossless at the extremes and needs no
+ * training data. calibrate() derives one clip from a sample of vectors at a quantile of |x|: a few outlier
+ * components are clipped, and in exchange every other component gets finer steps.
+ */
+public final class Int8Quantizer {
+
+    // 0: per-vector max |x|
+    private final float clip;
+
+    private Int8Quantizer(float clip) {
+        this.clip = clip;
+    }
+
+    public static Int8Quantizer perVector() {
+        return new Int8Quantizer(0f);
+    }
+
+    public static Int8Quantizer withClip(float clip) {
+        if (!(clip > 0)) throw new IllegalArgumentException("clip must be positive: " + clip);
+        return new Int8Quantizer(clip);
+    }
+
+    /**
+     * Clip at the given quantile (e.g. 0.999) of |x| over all components of the sample.
+     */
+    public static Int8Quantizer calibrate(Collection<float[]> sample, double quantile) {
+        if (quantile <= 0 || quantile > 1) throw new IllegalArgumentException("quantile must be in (0, 1]: " + quantile);
+        int total = 0;
+        for (float[] v : sample) {
+            total += v.length;
+        }
+        if (total == 0) return perVector();
+        float[] magnitudes = new float[total];
+        int n = 0;
+        for (float[] v : sample) {
+            for (float x : v) {
+                magnitudes[n++] = Math.abs(x);
+            }
+        }
+        Arrays.sort(magnitudes);
+        float clip = magnitudes[Math.min(total - 1, (int) Math.ceil(quantile * total) - 1)];
+        return clip > 0 ? new Int8Quantizer(clip) : perVector();
+    }
+
+    public float clip() {
+        return clip;
+    }
+
+    public Int8Vector quantize(float[] v) {
+        float c = clip;
+        if (c == 0) {
+            for (float x : v) {
+                c = Math.max(c, Math.abs(x));
+            }
+        }
+        if (c == 0) return Int8Vector.of(new byte[v.length], 0f);
+        float scale = c / 127f;
+        float inverse = 127f / c;
+        byte[] codes = new byte[v.length];
+        for (int i = 0; i < v.length; i++) {
+            int q = Math.round(v[i] * inverse);
+            codes[i] = (byte) Math.max(-127, Math.min(127, q));
+        }
+        return Int8Vector.of(codes, scale);
+    }
+}
@@ -0,0 +1,75 @@
+package com.Pubudu.RoleAI.util.vector;
+
+/**
+ * A float vector stored as int8 codes times one scale factor: 1 byte per dimension instead of 4.
+ * Built by Int8Quantizer; scores against float queries (asymmetric) or other int8 vectors.
+ */
+public final class Int8Vector {
+
+    private final byte[] codes;
+    private final float scale;
+    private final float norm;
+
+    private Int8Vector(byte[] codes, float scale) {
+        this.codes = codes;
+        this.scale = scale;
+        this.norm = scale * (float) Math.sqrt(VectorMath.dot(codes, codes));
+    }
+
+    /**
+     * Rebuild from stored codes and scale.
+     */
+    public static Int8Vector of(byte[] codes, float scale) {
+        return new Int8Vector(codes, scale);
+    }
+
+    public int dimension() {
+        return codes.length;
+    }
+
+    public byte[] codes() {
+        return codes;
+    }
+
+    public float scale() {
+        return scale;
+    }
+
+    public float dot(float[] query) {
+        return VectorMath.dot(query, codes) * scale;
+    }
+
+    public float dot(Int8Vector other) {
+        return VectorMath.dot(codes, other.codes) * scale * other.scale;
+    }
+
+    public float cosine(float[] query) {
+        return cosine(query, VectorMath.norm(query));
+    }
+
+    /**
+     * Cosine with the query's norm computed once by the caller, for scoring one query against many vectors.
+     */
+    public float cosine(float[] query, float queryNorm) {
+        if (query.length != codes.length) return 0f;
+        return queryNorm == 0 || norm == 0 ? 0f : dot(query) / (queryNorm * norm);
+    }
+
+    public float cosine(Int8Vector other) {
+        if (other.codes.length != codes.length) return 0f;
+        return norm == 0 || other.norm == 0 ? 0f : dot(other) / (norm * other.norm);
+    }
+
+    public float[] decode() {
+        float[] v = new float[codes.length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = codes[i] * scale;
+        }
+        return v;
+    }
+
+    // Codes plus scale and cached norm
+    public long bytes() {
+        return codes.length + 8L;
+    }
+}
@@ -0,0 +1,18 @@
+package com.Pubudu.RoleAI.util.vector;
+
+/**
+ * Inner loops behind VectorMath; arrays have equal length (checked by the caller). Application code goes
+ * through VectorMath; the implementations are exposed (VectorMath.scalarKernels/simdKernels) for benchmarks.
+ */
+public interface Kernels {
+
+    String name();
+
+    float dot(float[] a, float[] b);
+
+    float l2Squared(float[] a, float[] b);
+
+    int dot(byte[] a, byte[] b);
+
+    float dot(float[] a, byte[] b);
+}
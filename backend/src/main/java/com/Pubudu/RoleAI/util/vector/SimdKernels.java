@@ -0,0 +1,100 @@
+package com.Pubudu.RoleAI.util.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels at the CPU's preferred width (256 bits on AVX2, 512 on AVX-512), with a scalar tail.
+ * Only loaded when the JVM runs with --add-modules jdk.incubator.vector; see VectorMath.
+ */
+final class SimdKernels implements Kernels {
+
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+    // As many byte lanes as there are int/float lanes, widened lane by lane; null when that would be
+    // narrower than the smallest vector shape (128-bit hardware), where the byte kernels stay scalar
+    private static final VectorSpecies<Byte> B_FOR_I = byteSpecies(I.length());
+    private static final VectorSpecies<Byte> B_FOR_F = byteSpecies(F.length());
+
+    private final ScalarKernels scalar = new ScalarKernels();
+
+    private static VectorSpecies<Byte> byteSpecies(int lanes) {
+        return lanes * 8 < 64 ? null : VectorSpecies.of(byte.class, VectorShape.forBitSize(lanes * 8));
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + F.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(F);
+        int i = 0;
+        int bound = F.loopBound(a.length);
+        for (; i < bound; i += F.length()) {
+            acc = FloatVector.fromArray(F, a, i).fma(FloatVector.fromArray(F, b, i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float l2Squared(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(F);
+        int i = 0;
+        int bound = F.loopBound(a.length);
+        for (; i < bound; i += F.length()) {
+            FloatVector d = FloatVector.fromArray(F, a, i).sub(FloatVector.fromArray(F, b, i));
+            acc = d.fma(d, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            float d = a[i] - b[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    public int dot(byte[] a, byte[] b) {
+        if (B_FOR_I == null) return scalar.dot(a, b);
+        IntVector acc = IntVector.zero(I);
+        int i = 0;
+        int bound = B_FOR_I.loopBound(a.length);
+        for (; i < bound; i += B_FOR_I.length()) {
+            IntVector va = (IntVector) ByteVector.fromArray(B_FOR_I, a, i).castShape(I, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(B_FOR_I, b, i).castShape(I, 0);
+            acc = acc.add(va.mul(vb));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] a, byte[] b) {
+        if (B_FOR_F == null) return scalar.dot(a, b);
+        FloatVector acc = FloatVector.zero(F);
+        int i = 0;
+        int bound = B_FOR_F.loopBound(a.length);
+        for (; i < bound; i += B_FOR_F.length()) {
+            FloatVector vb = (FloatVector) ByteVector.fromArray(B_FOR_F, b, i).castShape(F, 0);
+            acc = FloatVector.fromArray(F, a, i).fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
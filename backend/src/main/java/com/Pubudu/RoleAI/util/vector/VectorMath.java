@@ -0,0 +1,110 @@
+package com.Pubudu.RoleAI.util.vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Similarity math on embedding vectors: dot product, cosine and L2 on float[], plus the int8 kernels used by
+ * Int8Vector. Runs on the JDK Vector API (SIMD) when the JVM was started with --add-modules jdk.incubator.vector,
+ * on plain loops otherwise; -Dvector.simd=false forces the scalar kernels.
+ */
+public final class VectorMath {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorMath.class);
+
+    private static final Kernels KERNELS = load();
+
+    private VectorMath() {}
+
+    private static Kernels load() {
+        if (Boolean.parseBoolean(System.getProperty("vector.simd", "true"))) {
+            try {
+                Kernels simd = simdKernels();
+                logger.info("Vector math on {} kernels", simd.name());
+                return simd;
+            } catch (Throwable e) { // NoClassDefFoundError when the incubator module is not in the boot layer
+                logger.info("Vector API not available ({}), using scalar vector math. Start the JVM with "
+                        + "--add-modules jdk.incubator.vector to enable SIMD.", e.toString());
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * The plain-loop kernels, whatever VectorMath itself runs on; for benchmarks comparing the two.
+     */
+    public static Kernels scalarKernels() {
+        return new ScalarKernels();
+    }
+
+    /**
+     * The Vector API kernels, whatever VectorMath itself runs on; NoClassDefFoundError when the JVM was
+     * started without --add-modules jdk.incubator.vector.
+     */
+    public static Kernels simdKernels() {
+        try {
+            // By name, so this class still loads without the incubator module
+            return (Kernels) Class.forName("com.Pubudu.RoleAI.util.vector.SimdKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the SIMD kernels", e);
+        }
+    }
+
+    /**
+     * "simd-256", "simd-512" or "scalar".
+     */
+    public static String implementation() {
+        return KERNELS.name();
+    }
+
+    public static float dot(float[] a, float[] b) {
+        checkLength(a.length, b.length);
+        return KERNELS.dot(a, b);
+    }
+
+    public static float norm(float[] a) {
+        return (float) Math.sqrt(KERNELS.dot(a, a));
+    }
+
+    /**
+     * Cosine similarity; 0 for vectors of different length or zero norm.
+     */
+    public static float cosine(float[] a, float[] b) {
+        if (a.length != b.length) return 0f;
+        float normA = KERNELS.dot(a, a);
+        float normB = KERNELS.dot(b, b);
+        if (normA == 0 || normB == 0) return 0f;
+        return (float) (KERNELS.dot(a, b) / Math.sqrt((double) normA * normB));
+    }
+
+    public static float l2Squared(float[] a, float[] b) {
+        checkLength(a.length, b.length);
+        return KERNELS.l2Squared(a, b);
+    }
+
+    public static float l2(float[] a, float[] b) {
+        return (float) Math.sqrt(l2Squared(a, b));
+    }
+
+    /**
+     * Exact integer dot product of two int8 vectors (no overflow below ~133k dimensions).
+     */
+    public static int dot(byte[] a, byte[] b) {
+        checkLength(a.length, b.length);
+        return KERNELS.dot(a, b);
+    }
+
+    /**
+     * Dot product of a float query with int8 codes, before applying the codes' scale.
+     */
+    public static float dot(float[] a, byte[] b) {
+        checkLength(a.length, b.length);
+        return KERNELS.dot(a, b);
+    }
+
+    private static void checkLength(int a, int b) {
+        if (a != b) {
+            throw new IllegalArgumentException("Vector dimensions differ: " + a + " vs " + b);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.Pubudu.RoleAI.bench;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks on the test classpath (classes named *Benchmark). Skipped unless -Dbench=true:
+ *   ./mvnw test -Dtest=BenchmarkRunnerTest -Dbench=true [-Dbench.include=EmbeddingBenchmark]
+ */
+@EnabledIfSystemProperty(named = "bench", matches = "true")
+@Tag("bench")
+class BenchmarkRunnerTest {
+
+    @Test
+    void run() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("bench.include", "com\\.Pubudu\\.RoleAI\\..*Benchmark"))
+                .shouldFailOnError(true)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.Pubudu.RoleAI.bench;
+
+import com.Pubudu.RoleAI.service.EmbeddingService;
+import com.Pubudu.RoleAI.service.embedding.EmbeddingProvider;
+import com.Pubudu.RoleAI.service.embedding.LexicalEmbeddingProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding path per request: the old mock's double -> String -> double round trip against the same mock
+ * producing float[] directly (like for like) and the lexical provider, plus the explicit storage
+ * serialization that is still used when a vector has to be written as text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmbeddingBenchmark {
+
+    private final LexicalEmbeddingProvider lexical = new LexicalEmbeddingProvider(1024);
+    private final String text = "Senior backend engineer who reviews Spring Boot pull requests and explains trade-offs";
+    private float[] vector;
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        vector = lexical.embed(text, EmbeddingProvider.Purpose.QUERY);
+        stored = EmbeddingService.toStorageString(vector);
+    }
+
+    // What generateEmbeddingArray used to do on every chat request and role write
+    @Benchmark
+    public double[] legacyStringRoundTrip() {
+        Random random = new Random(text.hashCode());
+        double[] embedding = new double[1024];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = random.nextGaussian() * 0.1;
+        }
+        String s = Arrays.toString(embedding).replaceAll("[\\[\\]\\s]", "");
+        String[] parts = s.split(",");
+        double[] result = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Double.parseDouble(parts[i].trim());
+        }
+        return result;
+    }
+
+    // The same Gaussian mock producing float[] directly: legacyStringRoundTrip minus the String round trip
+    @Benchmark
+    public float[] mockGaussianFloats() {
+        Random random = new Random(text.hashCode());
+        float[] embedding = new float[1024];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = (float) (random.nextGaussian() * 0.1);
+        }
+        return embedding;
+    }
+
+    @Benchmark
+    public float[] lexicalEmbed() {
+        return lexical.embed(text, EmbeddingProvider.Purpose.QUERY);
+    }
+
+    @Benchmark
+    public double cosine() {
+        return EmbeddingService.cosine(vector, vector);
+    }
+
+    @Benchmark
+    public String toStorageString() {
+        return EmbeddingService.toStorageString(vector);
+    }
+
+    @Benchmark
+    public float[] parseStorageString() {
+        return EmbeddingService.parseEmbedding(stored);
+    }
+}
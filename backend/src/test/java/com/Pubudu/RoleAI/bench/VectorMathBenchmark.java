@@ -0,0 +1,136 @@
+package com.Pubudu.RoleAI.bench;
+
+import com.Pubudu.RoleAI.util.vector.Float16Vector;
+import com.Pubudu.RoleAI.util.vector.Int8Quantizer;
+import com.Pubudu.RoleAI.util.vector.Int8Vector;
+import com.Pubudu.RoleAI.util.vector.Kernels;
+import com.Pubudu.RoleAI.util.vector.VectorMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One query scored against 1000 stored vectors (a local search or rerank pass): scalar and SIMD float32
+ * kernels, int8 codes (float query x int8, and int8 x int8) and float16.
+ * Both kernel implementations are called directly, whichever one VectorMath picked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorMathBenchmark {
+
+    private static final int VECTORS = 1000;
+
+    @Param({"384", "1024"})
+    private int dimension;
+
+    private final Kernels scalar = VectorMath.scalarKernels();
+    private final Kernels simd = VectorMath.simdKernels();
+
+    private float[] query;
+    private Int8Vector queryInt8;
+    private float[][] vectors;
+    private Int8Vector[] int8;
+    private Float16Vector[] fp16;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        query = unit(random);
+        vectors = new float[VECTORS][];
+        int8 = new Int8Vector[VECTORS];
+        fp16 = new Float16Vector[VECTORS];
+        Int8Quantizer quantizer = Int8Quantizer.perVector();
+        for (int i = 0; i < VECTORS; i++) {
+            vectors[i] = unit(random);
+            int8[i] = quantizer.quantize(vectors[i]);
+            fp16[i] = Float16Vector.of(vectors[i]);
+        }
+        queryInt8 = quantizer.quantize(query);
+    }
+
+    private float[] unit(Random random) {
+        float[] v = new float[dimension];
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            v[i] = (float) random.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        for (int i = 0; i < dimension; i++) {
+            v[i] /= (float) Math.sqrt(norm);
+        }
+        return v;
+    }
+
+    @Benchmark
+    public float scalarFloat32() {
+        float best = -1;
+        for (float[] v : vectors) best = Math.max(best, scalar.dot(query, v));
+        return best;
+    }
+
+    @Benchmark
+    public float simdFloat32() {
+        float best = -1;
+        for (float[] v : vectors) best = Math.max(best, simd.dot(query, v));
+        return best;
+    }
+
+    @Benchmark
+    public float scalarL2() {
+        float best = Float.MAX_VALUE;
+        for (float[] v : vectors) best = Math.min(best, scalar.l2Squared(query, v));
+        return best;
+    }
+
+    @Benchmark
+    public float simdL2() {
+        float best = Float.MAX_VALUE;
+        for (float[] v : vectors) best = Math.min(best, simd.l2Squared(query, v));
+        return best;
+    }
+
+    @Benchmark
+    public float simdFloat32xInt8() {
+        float best = -1;
+        for (Int8Vector v : int8) best = Math.max(best, simd.dot(query, v.codes()) * v.scale());
+        return best;
+    }
+
+    @Benchmark
+    public float simdInt8xInt8() {
+        float best = -1;
+        byte[] q = queryInt8.codes();
+        for (Int8Vector v : int8) best = Math.max(best, simd.dot(q, v.codes()) * v.scale());
+        return best;
+    }
+
+    @Benchmark
+    public float scalarInt8xInt8() {
+        float best = -1;
+        byte[] q = queryInt8.codes();
+        for (Int8Vector v : int8) best = Math.max(best, scalar.dot(q, v.codes()) * v.scale());
+        return best;
+    }
+
+    @Benchmark
+    public float float16() {
+        float best = -1;
+        for (Float16Vector v : fp16) best = Math.max(best, v.dot(query));
+        return best;
+    }
+}
@@ -0,0 +1,139 @@
+package com.Pubudu.RoleAI.loadtest;
+
+import com.Pubudu.RoleAI.entity.ModelConfig;
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.entity.User;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.repository.UserRepository;
+import com.Pubudu.RoleAI.service.ModelConfigService;
+import com.Pubudu.RoleAI.util.JwtUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end load test of the chat endpoints against local Gemini and Pinecone stubs: no API keys, no network.
+ * Runs the real app (security, JPA, limiter, retries, RAG retrieval) on H2 by default, or on a scratch
+ * Postgres via DB_URL / DB_USERNAME / DB_PASSWORD and -Dspring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect.
+ *
+ * Skipped unless -Dloadtest=true:
+ *   ./mvnw test -Dtest=ChatLoadTest -Dloadtest=true -Dloadtest.concurrency=64 -Dloadtest.requests=5000
+ * Stub knobs: -Dloadtest.gemini.latency-ms, .jitter-ms, .error-rate, .error-status, .payload-chars, .stream-chunks
+ * and the same under loadtest.pinecone (payload-chars = description size, matches = matches per query).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@Tag("load")
+class ChatLoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 32);
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 2000);
+    private static final int WARMUP = Integer.getInteger("loadtest.warmup", 200);
+    // Fail the run when more than this share of requests fail (stub-injected errors included)
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+
+    private static GeminiStubServer gemini;
+    private static PineconeStubServer pinecone;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private ModelConfigService modelConfigService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private LoadDriver driver;
+    private Long roleId;
+    private Long modelConfigId;
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        try {
+            gemini = new GeminiStubServer(StubBehavior.fromSystemProperties("loadtest.gemini"));
+            pinecone = new PineconeStubServer(StubBehavior.fromSystemProperties("loadtest.pinecone").latencyMs(
+                    Long.getLong("loadtest.pinecone.latency-ms", 10)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("gemini.api.url", gemini::apiUrl);
+        registry.add("pinecone.host", pinecone::host);
+        // Stubs speak plain HTTP/1.1
+        registry.add("http.client.http2", () -> "false");
+        // Every request is distinct anyway; keep the cache from flattering the numbers
+        registry.add("chat.response-cache.enabled", () -> "false");
+        // Background work that would only add noise
+        registry.add("jobs.worker.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopStubs() {
+        if (gemini != null) gemini.close();
+        if (pinecone != null) pinecone.close();
+    }
+
+    @BeforeEach
+    void fixtures() {
+        User user = new User();
+        user.setEmail("load-" + UUID.randomUUID() + "@example.com");
+        user.setFullName("Load Test");
+        user.setPassword("unused");
+        user.setEnabled(true);
+        user = userRepository.save(user);
+
+        Role role = roleRepository.save(new Role("Load tester", "A role used by the load test harness.", user.getId()));
+        roleId = role.getId();
+        ModelConfig mc = modelConfigService.create(user.getId(), "GEMINI", "gemini-stub", "Gemini stub", "stub-api-key", null, null);
+        modelConfigId = mc.getId();
+
+        driver = new LoadDriver("http://127.0.0.1:" + port, jwtUtil.generateToken(user));
+    }
+
+    @Test
+    void generate() throws InterruptedException {
+        LoadDriver.Report report = driver.run(new LoadDriver.Scenario("POST /api/chat/generate", "/api/chat/generate", false,
+                i -> chatBody(i)), CONCURRENCY, REQUESTS, WARMUP);
+        print(report);
+        assertTrue(report.errorRate() <= MAX_ERROR_RATE, "error rate " + report.errorRate());
+    }
+
+    @Test
+    void stream() throws InterruptedException {
+        LoadDriver.Report report = driver.run(new LoadDriver.Scenario("POST /api/chat/generate/stream", "/api/chat/generate/stream", true,
+                i -> chatBody(i)), CONCURRENCY, REQUESTS, WARMUP);
+        print(report);
+        assertTrue(report.errorRate() <= MAX_ERROR_RATE, "error rate " + report.errorRate());
+    }
+
+    // Distinct message per request so nothing is served from single-flight or caches
+    private String chatBody(int i) {
+        return "{\"roleId\":" + roleId + ",\"modelConfigId\":" + modelConfigId
+                + ",\"message\":\"Load test question number " + i + " - what would you do?\"}";
+    }
+
+    private void print(LoadDriver.Report report) {
+        System.out.println(report);
+        System.out.printf("gemini stub: %d requests, %d injected errors (%s)%n", gemini.requests(), gemini.injectedErrors(), gemini.behavior());
+        System.out.printf("pinecone stub: %d requests, %d injected errors (%s)%n", pinecone.requests(), pinecone.injectedErrors(), pinecone.behavior());
+    }
+}
@@ -0,0 +1,113 @@
+package com.Pubudu.RoleAI.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Gemini REST API: models/{model}:generateContent and
+ * models/{model}:streamGenerateContent?alt=sse, answering with filler text of the configured size, and
+ * cachedContents create/patch/delete kept in memory. Everything else (batches) is 404, which the app
+ * treats as "feature unavailable".
+ */
+public class GeminiStubServer extends StubServer {
+
+    private final Set<String> cachedContents = ConcurrentHashMap.newKeySet();
+    private final AtomicLong nextCacheId = new AtomicLong();
+    private volatile String lastGenerateBody = "";
+
+    public GeminiStubServer(StubBehavior behavior) throws IOException {
+        super(behavior);
+    }
+
+    // Value for gemini.api.url
+    public String apiUrl() {
+        return "http://127.0.0.1:" + port() + "/v1beta/models/";
+    }
+
+    // Names of the cachedContents entries that exist right now
+    public Set<String> cachedContents() {
+        return Set.copyOf(cachedContents);
+    }
+
+    // Request body of the most recent generateContent call
+    public String lastGenerateBody() {
+        return lastGenerateBody;
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String path, byte[] body) throws IOException {
+        int cachedAt = path.indexOf("/cachedContents");
+        if (cachedAt >= 0) {
+            cachedContent(exchange, path.substring(cachedAt + 1));
+        } else if (path.endsWith(":generateContent")) {
+            lastGenerateBody = new String(body, StandardCharsets.UTF_8);
+            StubBehavior.sleep(behavior.nextLatencyMs());
+            String text = StubBehavior.filler(behavior.getPayloadChars());
+            sendJson(exchange, 200, response(text, "STOP", body.length / 4, text.length() / 4));
+        } else if (path.endsWith(":streamGenerateContent")) {
+            stream(exchange, body);
+        } else {
+            notFound(exchange);
+        }
+    }
+
+    // POST cachedContents creates, PATCH/DELETE cachedContents/{id} refresh or drop an existing entry
+    private void cachedContent(HttpExchange exchange, String name) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (name.equals("cachedContents") && method.equals("POST")) {
+            String created = "cachedContents/stub-" + nextCacheId.incrementAndGet();
+            cachedContents.add(created);
+            sendJson(exchange, 200, Map.of("name", created));
+        } else if (method.equals("PATCH") && cachedContents.contains(name)) {
+            sendJson(exchange, 200, Map.of("name", name));
+        } else if (method.equals("DELETE") && cachedContents.remove(name)) {
+            sendJson(exchange, 200, Map.of());
+        } else {
+            notFound(exchange);
+        }
+    }
+
+    // SSE: the latency is spread over the chunks, so time to first token is latency / chunks
+    private void stream(HttpExchange exchange, byte[] body) throws IOException {
+        int chunks = behavior.getStreamChunks();
+        String text = StubBehavior.filler(behavior.getPayloadChars());
+        long perChunk = behavior.nextLatencyMs() / chunks;
+        int size = Math.max(1, (text.length() + chunks - 1) / chunks);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0); // chunked
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < chunks; i++) {
+                StubBehavior.sleep(perChunk);
+                int from = Math.min(text.length(), i * size);
+                String part = text.substring(from, Math.min(text.length(), from + size));
+                boolean last = i == chunks - 1;
+                Map<String, Object> chunk = response(part, last ? "STOP" : null, body.length / 4, text.length() / 4);
+                out.write(utf8("data: " + objectMapper.writeValueAsString(chunk) + "\r\n\r\n"));
+                out.flush();
+            }
+        }
+    }
+
+    private Map<String, Object> response(String text, String finishReason, int promptTokens, int outputTokens) {
+        Map<String, Object> candidate = finishReason == null
+                ? Map.of("content", Map.of("role", "model", "parts", List.of(Map.of("text", text))), "index", 0)
+                : Map.of("content", Map.of("role", "model", "parts", List.of(Map.of("text", text))), "index", 0,
+                        "finishReason", finishReason);
+        return Map.of(
+                "candidates", List.of(candidate),
+                "usageMetadata", Map.of(
+                        "promptTokenCount", promptTokens,
+                        "candidatesTokenCount", outputTokens,
+                        "totalTokenCount", promptTokens + outputTokens),
+                "modelVersion", "gemini-stub");
+    }
+}
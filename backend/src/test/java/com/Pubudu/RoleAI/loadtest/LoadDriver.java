@@ -0,0 +1,170 @@
+package com.Pubudu.RoleAI.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop load generator: a fixed number of virtual users each send the next request as soon as
+ * their previous one finished, until the request budget is spent. Records end-to-end latency per request
+ * and, for SSE endpoints, time to the first event.
+ */
+public class LoadDriver {
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String bearerToken;
+
+    public LoadDriver(String baseUrl, String bearerToken) {
+        this.baseUrl = baseUrl;
+        this.bearerToken = bearerToken;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * A named request mix: body(i) gives the JSON body of the i-th request; streaming scenarios read SSE.
+     */
+    public record Scenario(String name, String path, boolean streaming, IntFunction<String> body) {}
+
+    public Report run(Scenario scenario, int concurrency, int requests, int warmupRequests) throws InterruptedException {
+        if (warmupRequests > 0) {
+            execute(scenario, Math.min(concurrency, warmupRequests), warmupRequests);
+        }
+        return execute(scenario, concurrency, requests);
+    }
+
+    private Report execute(Scenario scenario, int concurrency, int requests) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        Recorder recorder = new Recorder(requests);
+        long started = System.nanoTime();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < concurrency; u++) {
+                users.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        send(scenario, i, recorder);
+                    }
+                });
+            }
+        } // close() waits for all virtual users
+        long elapsedNanos = System.nanoTime() - started;
+        return recorder.report(scenario.name(), concurrency, elapsedNanos);
+    }
+
+    private void send(Scenario scenario, int i, Recorder recorder) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + scenario.path()))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .header("Accept", scenario.streaming() ? "text/event-stream" : "application/json")
+                .header("Authorization", "Bearer " + bearerToken)
+                .POST(HttpRequest.BodyPublishers.ofString(scenario.body().apply(i)))
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            long firstEvent = -1;
+            boolean errorEvent = false;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (scenario.streaming() && line.startsWith("event:")) {
+                        if (firstEvent < 0) firstEvent = System.nanoTime() - start;
+                        if (line.contains("error")) errorEvent = true;
+                    }
+                }
+            }
+            long total = System.nanoTime() - start;
+            int status = response.statusCode();
+            // An SSE endpoint answers 200 even when it ends with an "error" event
+            recorder.record(errorEvent ? "sse-error" : String.valueOf(status), status / 100 == 2 && !errorEvent, total, firstEvent);
+        } catch (IOException e) {
+            recorder.record(e.getClass().getSimpleName(), false, System.nanoTime() - start, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Throughput and latency percentiles of one run. Latencies in milliseconds, successful requests only.
+     */
+    public record Report(String scenario, int concurrency, int requests, int succeeded, Map<String, Integer> outcomes,
+                         double seconds, double throughput, double p50, double p95, double p99, double max,
+                         double firstEventP50, double firstEventP95) {
+
+        public double errorRate() {
+            return requests == 0 ? 0 : 1.0 - (double) succeeded / requests;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%n=== %s: %d requests, concurrency %d ===%n", scenario, requests, concurrency));
+            sb.append(String.format("throughput  %.1f req/s over %.2fs%n", throughput, seconds));
+            sb.append(String.format("latency ms  p50 %.1f  p95 %.1f  p99 %.1f  max %.1f%n", p50, p95, p99, max));
+            if (firstEventP50 >= 0) {
+                sb.append(String.format("first event p50 %.1f  p95 %.1f%n", firstEventP50, firstEventP95));
+            }
+            sb.append(String.format("outcomes    %s (error rate %.2f%%)%n", outcomes, errorRate() * 100));
+            return sb.toString();
+        }
+    }
+
+    private static final class Recorder {
+        private final List<Long> latencies;
+        private final List<Long> firstEvents;
+        private final Map<String, Integer> outcomes = new TreeMap<>();
+        private int total;
+        private int succeeded;
+
+        Recorder(int expected) {
+            latencies = new ArrayList<>(expected);
+            firstEvents = new ArrayList<>(expected);
+        }
+
+        synchronized void record(String outcome, boolean success, long nanos, long firstEventNanos) {
+            total++;
+            outcomes.merge(outcome, 1, Integer::sum);
+            if (!success) return;
+            succeeded++;
+            latencies.add(nanos);
+            if (firstEventNanos >= 0) firstEvents.add(firstEventNanos);
+        }
+
+        synchronized Report report(String scenario, int concurrency, long elapsedNanos) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            long[] first = firstEvents.stream().mapToLong(Long::longValue).sorted().toArray();
+            double seconds = elapsedNanos / 1e9;
+            return new Report(scenario, concurrency, total, succeeded, new TreeMap<>(outcomes), seconds,
+                    seconds > 0 ? succeeded / seconds : 0,
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6,
+                    first.length == 0 ? -1 : percentile(first, 50), first.length == 0 ? -1 : percentile(first, 95));
+        }
+
+        // Nearest-rank percentile in milliseconds
+        private static double percentile(long[] sorted, int p) {
+            if (sorted.length == 0) return 0;
+            int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.Pubudu.RoleAI.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local stand-in for a Pinecone index host: /query answers with the configured number of matches
+ * (descriptions of payload-chars length), /vectors/upsert and /vectors/delete acknowledge,
+ * /describe_index_stats reports an empty index, and /embed (the inference API) answers with a vector per
+ * input derived from its text.
+ */
+public class PineconeStubServer extends StubServer {
+
+    private final List<Integer> embedBatches = new CopyOnWriteArrayList<>();
+
+    public PineconeStubServer(StubBehavior behavior) throws IOException {
+        super(behavior);
+    }
+
+    // Value for pinecone.host
+    public String host() {
+        return "http://127.0.0.1:" + port();
+    }
+
+    // Value for embedding.remote.url
+    public String embedUrl() {
+        return host() + "/embed";
+    }
+
+    // Number of inputs in each /embed call answered so far, in arrival order
+    public List<Integer> embedBatches() {
+        return List.copyOf(embedBatches);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String path, byte[] body) throws IOException {
+        StubBehavior.sleep(behavior.nextLatencyMs());
+        switch (path) {
+            case "/query" -> query(exchange, body);
+            case "/vectors/upsert" -> {
+                JsonNode vectors = objectMapper.readTree(body).path("vectors");
+                sendJson(exchange, 200, Map.of("upsertedCount", vectors.isArray() ? vectors.size() : 0));
+            }
+            case "/vectors/delete" -> sendJson(exchange, 200, Map.of());
+            case "/embed" -> embed(exchange, body);
+            case "/describe_index_stats" -> sendJson(exchange, 200, Map.of(
+                    "dimension", 1024, "indexFullness", 0.0, "totalVectorCount", 0, "namespaces", Map.of()));
+            default -> notFound(exchange);
+        }
+    }
+
+    private void query(HttpExchange exchange, byte[] body) throws IOException {
+        JsonNode request = objectMapper.readTree(body);
+        int topK = request.path("topK").asInt(behavior.getMatches());
+        String namespace = request.path("namespace").asText("");
+        String userId = namespace.startsWith("user_") ? namespace.substring(5) : "0";
+        String description = StubBehavior.filler(behavior.getPayloadChars());
+
+        List<Map<String, Object>> matches = new ArrayList<>();
+        for (int i = 0; i < Math.min(topK, behavior.getMatches()); i++) {
+            matches.add(Map.of(
+                    "id", "role_" + (i + 1),
+                    "score", 0.9 - i * 0.05,
+                    "metadata", Map.of(
+                            "type", "role",
+                            "roleName", "Stub role " + (i + 1),
+                            "description", description,
+                            "userId", userId)));
+        }
+        sendJson(exchange, 200, Map.of("matches", matches, "namespace", namespace));
+    }
+
+    private void embed(HttpExchange exchange, byte[] body) throws IOException {
+        JsonNode request = objectMapper.readTree(body);
+        int dimension = request.path("parameters").path("dimension").asInt(1024);
+        JsonNode inputs = request.path("inputs");
+        embedBatches.add(inputs.size());
+
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (JsonNode input : inputs) {
+            Random random = new Random(input.path("text").asText().hashCode());
+            List<Double> values = new ArrayList<>(dimension);
+            for (int i = 0; i < dimension; i++) values.add(random.nextGaussian());
+            data.add(Map.of("vector_type", "dense", "values", values));
+        }
+        sendJson(exchange, 200, Map.of("model", request.path("model").asText(), "data", data));
+    }
+}
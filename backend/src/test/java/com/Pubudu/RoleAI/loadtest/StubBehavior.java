@@ -0,0 +1,80 @@
+package com.Pubudu.RoleAI.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a stub server answers: simulated latency, injected errors and payload sizes. Fields are volatile so a
+ * test can change them between (or during) load runs.
+ */
+public class StubBehavior {
+
+    private volatile long latencyMs = 50;
+    private volatile long jitterMs = 0;
+    private volatile double errorRate = 0;
+    private volatile int errorStatus = 503;
+    private volatile int payloadChars = 800;
+    private volatile int streamChunks = 8;
+    private volatile int matches = 5;
+
+    /**
+     * Defaults overridden from system properties, e.g. -Dloadtest.gemini.latency-ms=200 for prefix "loadtest.gemini".
+     */
+    public static StubBehavior fromSystemProperties(String prefix) {
+        StubBehavior b = new StubBehavior();
+        b.latencyMs = Long.getLong(prefix + ".latency-ms", b.latencyMs);
+        b.jitterMs = Long.getLong(prefix + ".jitter-ms", b.jitterMs);
+        b.errorRate = Double.parseDouble(System.getProperty(prefix + ".error-rate", String.valueOf(b.errorRate)));
+        b.errorStatus = Integer.getInteger(prefix + ".error-status", b.errorStatus);
+        b.payloadChars = Integer.getInteger(prefix + ".payload-chars", b.payloadChars);
+        b.streamChunks = Integer.getInteger(prefix + ".stream-chunks", b.streamChunks);
+        b.matches = Integer.getInteger(prefix + ".matches", b.matches);
+        return b;
+    }
+
+    public StubBehavior latencyMs(long latencyMs) { this.latencyMs = latencyMs; return this; }
+    public StubBehavior jitterMs(long jitterMs) { this.jitterMs = jitterMs; return this; }
+    public StubBehavior errorRate(double errorRate) { this.errorRate = errorRate; return this; }
+    public StubBehavior errorStatus(int errorStatus) { this.errorStatus = errorStatus; return this; }
+    public StubBehavior payloadChars(int payloadChars) { this.payloadChars = payloadChars; return this; }
+    public StubBehavior streamChunks(int streamChunks) { this.streamChunks = streamChunks; return this; }
+    public StubBehavior matches(int matches) { this.matches = matches; return this; }
+
+    public long getLatencyMs() { return latencyMs; }
+    public int getErrorStatus() { return errorStatus; }
+    public int getPayloadChars() { return payloadChars; }
+    public int getStreamChunks() { return Math.max(1, streamChunks); }
+    public int getMatches() { return matches; }
+
+    // Latency of one response, base plus uniform jitter
+    long nextLatencyMs() {
+        long jitter = jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0;
+        return latencyMs + jitter;
+    }
+
+    boolean shouldFail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Deterministic filler text of the given length
+    static String filler(int chars) {
+        String words = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor ";
+        StringBuilder sb = new StringBuilder(chars);
+        while (sb.length() < chars) sb.append(words);
+        return sb.substring(0, chars);
+    }
+
+    @Override
+    public String toString() {
+        return "latency=" + latencyMs + "ms(+" + jitterMs + ") errors=" + errorRate + "@" + errorStatus
+                + " payload=" + payloadChars + " chunks=" + streamChunks + " matches=" + matches;
+    }
+}
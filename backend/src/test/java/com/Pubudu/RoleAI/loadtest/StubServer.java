@@ -0,0 +1,101 @@
+package com.Pubudu.RoleAI.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal local HTTP server (JDK HttpServer, one virtual thread per exchange) for the API stubs.
+ */
+abstract class StubServer implements AutoCloseable {
+
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+    protected final StubBehavior behavior;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    protected StubServer(StubBehavior behavior) throws IOException {
+        this.behavior = behavior;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/", this::dispatch);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    protected abstract void handle(HttpExchange exchange, String path, byte[] body) throws IOException;
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public StubBehavior behavior() {
+        return behavior;
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            if (behavior.shouldFail()) {
+                injectedErrors.incrementAndGet();
+                StubBehavior.sleep(behavior.nextLatencyMs() / 4);
+                int status = behavior.getErrorStatus();
+                if (status == 429) exchange.getResponseHeaders().add("Retry-After", "1");
+                sendJson(exchange, status, Map.of("error", Map.of("code", status, "message", "Injected stub error", "status", "UNAVAILABLE")));
+                return;
+            }
+            try {
+                handle(exchange, exchange.getRequestURI().getPath(), body);
+            } catch (RuntimeException e) {
+                sendJson(exchange, 500, Map.of("error", Map.of("code", 500, "message", String.valueOf(e.getMessage()))));
+            }
+        }
+    }
+
+    protected void sendJson(HttpExchange exchange, int status, Object payload) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(payload);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    protected void notFound(HttpExchange exchange) throws IOException {
+        sendJson(exchange, 404, Map.of("error", Map.of("code", 404, "message", "Not found: " + exchange.getRequestURI().getPath())));
+    }
+
+    protected static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,77 @@
+package com.Pubudu.RoleAI.loadtest;
+
+import com.Pubudu.RoleAI.util.GeminiResponseParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The stubs must keep answering in the shapes the app parses, or load numbers silently measure error paths.
+ */
+class StubServersTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final GeminiResponseParser parser = new GeminiResponseParser();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void geminiGenerateContentParses() throws Exception {
+        try (GeminiStubServer gemini = new GeminiStubServer(new StubBehavior().latencyMs(0).payloadChars(120))) {
+            HttpResponse<String> response = post(gemini.apiUrl() + "gemini-stub:generateContent?key=k", "{\"contents\":[]}");
+            assertEquals(200, response.statusCode());
+            GeminiResponseParser.GeminiReply reply = parser.parse(response.body());
+            assertEquals(120, reply.text().length());
+            assertEquals("STOP", reply.finishReason());
+            assertTrue(reply.usage().candidatesTokens() > 0);
+        }
+    }
+
+    @Test
+    void geminiStreamChunksAddUpToPayload() throws Exception {
+        try (GeminiStubServer gemini = new GeminiStubServer(new StubBehavior().latencyMs(0).payloadChars(100).streamChunks(4))) {
+            HttpResponse<String> response = post(gemini.apiUrl() + "gemini-stub:streamGenerateContent?alt=sse&key=k", "{}");
+            String text = Arrays.stream(response.body().split("\r\n\r\n"))
+                    .filter(event -> event.startsWith("data: "))
+                    .map(event -> parser.parse(event.substring(6)).text())
+                    .collect(Collectors.joining());
+            assertEquals(100, text.length());
+        }
+    }
+
+    @Test
+    void pineconeQueryReturnsMatchesWithMetadata() throws Exception {
+        try (PineconeStubServer pinecone = new PineconeStubServer(new StubBehavior().latencyMs(0).matches(3))) {
+            HttpResponse<String> response = post(pinecone.host() + "/query", "{\"topK\":5,\"namespace\":\"user_7\",\"vector\":[0.1]}");
+            JsonNode matches = objectMapper.readTree(response.body()).path("matches");
+            assertEquals(3, matches.size());
+            assertEquals("7", matches.get(0).path("metadata").path("userId").asText());
+        }
+    }
+
+    @Test
+    void injectedErrorsUseConfiguredStatus() throws Exception {
+        try (GeminiStubServer gemini = new GeminiStubServer(new StubBehavior().latencyMs(0).errorRate(1.0).errorStatus(429))) {
+            HttpResponse<String> response = post(gemini.apiUrl() + "gemini-stub:generateContent", "{}");
+            assertEquals(429, response.statusCode());
+            assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+            assertEquals(1, gemini.injectedErrors());
+        }
+    }
+
+    private HttpResponse<String> post(String url, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,34 @@
+package com.Pubudu.RoleAI.repository;
+
+import com.Pubudu.RoleAI.entity.EmbeddingCacheEntry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * insertIfAbsent is plain SQL, so it runs on H2 as on Postgres: the first vector for a key wins.
+ */
+@SpringBootTest
+@TestPropertySource(properties = "jobs.worker.enabled=false")
+class EmbeddingCacheRepositoryTest {
+
+    @Autowired
+    private EmbeddingCacheRepository repository;
+
+    @Test
+    void insertIfAbsentKeepsTheFirstRow() {
+        String key = "0".repeat(63) + "1";
+        assertEquals(1, repository.insertIfAbsent(key, "pinecone", "m", 2, new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, LocalDateTime.now()));
+        assertEquals(0, repository.insertIfAbsent(key, "pinecone", "m", 2, new byte[8], LocalDateTime.now()));
+
+        EmbeddingCacheEntry row = repository.findById(key).orElseThrow();
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, row.getVector());
+        assertEquals("pinecone", row.getProvider());
+    }
+}
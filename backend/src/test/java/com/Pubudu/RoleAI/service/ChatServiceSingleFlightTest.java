@@ -0,0 +1,124 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.dto.RoleDTO;
+import com.Pubudu.RoleAI.entity.ModelConfig;
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.entity.User;
+import com.Pubudu.RoleAI.loadtest.GeminiStubServer;
+import com.Pubudu.RoleAI.loadtest.StubBehavior;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * generateAndPersist single-flight: identical concurrent requests share one provider call, and a failed
+ * call leaves nothing behind, so the next identical request goes out again.
+ */
+@SpringBootTest
+class ChatServiceSingleFlightTest {
+
+    private static GeminiStubServer gemini;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private ModelConfigService modelConfigService;
+
+    private RoleDTO role;
+    private Long modelConfigId;
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        try {
+            gemini = new GeminiStubServer(new StubBehavior().latencyMs(300).payloadChars(40));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("gemini.api.url", gemini::apiUrl);
+        registry.add("http.client.http2", () -> "false");
+        // Only the single-flight map may merge requests here
+        registry.add("chat.response-cache.enabled", () -> "false");
+        registry.add("jobs.worker.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        if (gemini != null) gemini.close();
+    }
+
+    @BeforeEach
+    void fixtures() {
+        User user = new User();
+        user.setEmail("flight-" + UUID.randomUUID() + "@example.com");
+        user.setFullName("Single Flight");
+        user.setPassword("unused");
+        user.setEnabled(true);
+        user = userRepository.save(user);
+        Role saved = roleRepository.save(new Role("Pilot", "Flies one flight at a time.", user.getId()));
+        role = new RoleDTO(saved.getId(), saved.getName(), saved.getDescription(), user.getId());
+        ModelConfig mc = modelConfigService.create(user.getId(), "GEMINI", "gemini-stub", "Gemini stub", "stub-api-key", null, null);
+        modelConfigId = mc.getId();
+    }
+
+    @AfterEach
+    void resetStub() {
+        gemini.behavior().errorRate(0).latencyMs(300);
+    }
+
+    @Test
+    void concurrentIdenticalRequestsMakeOneProviderCall() {
+        long before = gemini.requests();
+        List<String> replies = Flux.range(0, 8)
+                .flatMap(i -> Mono.defer(() -> chatService.generateAndPersist(role, "Same question?", null, modelConfigId, null)))
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertEquals(8, replies.size());
+        assertEquals(1, replies.stream().distinct().count());
+        assertEquals(1, gemini.requests() - before);
+
+        // Done flights are forgotten: the same request later is a new call
+        chatService.generateAndPersist(role, "Same question?", null, modelConfigId, null).block(Duration.ofSeconds(30));
+        assertEquals(2, gemini.requests() - before);
+    }
+
+    @Test
+    void failedFlightIsRemoved() {
+        // 400 is not retried, so the failure is one provider call
+        gemini.behavior().latencyMs(0).errorRate(1.0).errorStatus(400);
+        long before = gemini.requests();
+        assertThrows(RuntimeException.class,
+                () -> chatService.generateAndPersist(role, "Fails once?", null, modelConfigId, null).block(Duration.ofSeconds(30)));
+        assertEquals(1, gemini.requests() - before);
+
+        gemini.behavior().errorRate(0);
+        String reply = chatService.generateAndPersist(role, "Fails once?", null, modelConfigId, null).block(Duration.ofSeconds(30));
+        assertEquals(40, reply.length());
+        assertEquals(2, gemini.requests() - before);
+    }
+}
@@ -0,0 +1,167 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.dto.RoleDTO;
+import com.Pubudu.RoleAI.entity.ModelConfig;
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.entity.User;
+import com.Pubudu.RoleAI.loadtest.GeminiStubServer;
+import com.Pubudu.RoleAI.loadtest.StubBehavior;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.repository.UserRepository;
+import com.Pubudu.RoleAI.service.llm.GeminiProvider;
+import com.Pubudu.RoleAI.service.llm.LlmRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Context caching against the Gemini stub: the entry is created in the background, referenced by name from
+ * the next generateContent, and deleted on Gemini when the role is updated or deleted.
+ */
+@SpringBootTest
+class GeminiContextCacheServiceTest {
+
+    private static GeminiStubServer gemini;
+
+    @Autowired
+    private GeminiProvider geminiProvider;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private ModelConfigService modelConfigService;
+
+    @Autowired
+    private GeminiContextCacheService contextCacheService;
+
+    private User user;
+    private ModelConfig modelConfig;
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        try {
+            gemini = new GeminiStubServer(new StubBehavior().latencyMs(0).payloadChars(40));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("gemini.api.url", gemini::apiUrl);
+        registry.add("http.client.http2", () -> "false");
+        // Every role prompt qualifies
+        registry.add("gemini.context-cache.min-tokens", () -> "1");
+        registry.add("jobs.worker.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        if (gemini != null) gemini.close();
+    }
+
+    @BeforeEach
+    void fixtures() {
+        user = new User();
+        user.setEmail("cache-" + UUID.randomUUID() + "@example.com");
+        user.setFullName("Cache Test");
+        user.setPassword("unused");
+        user.setEnabled(true);
+        user = userRepository.save(user);
+        modelConfig = modelConfigService.create(user.getId(), "GEMINI", "gemini-stub", "Gemini stub", "stub-api-key", null, null);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void createdReferencedAndDroppedOnUpdate() {
+        RoleDTO role = role("Librarian", "Answers questions about the catalogue.");
+        String name = cacheAfterFirstCall(role);
+
+        geminiProvider.generate(request(role)).block(Duration.ofSeconds(10));
+        assertTrue(gemini.lastGenerateBody().contains("\"cachedContent\":\"" + name + "\""), gemini.lastGenerateBody());
+
+        RoleDTO changed = new RoleDTO(role.getName(), "Answers questions about the catalogue and opening hours.");
+        assertTrue(roleService.updateRole(role.getId(), changed).isPresent());
+        await(() -> !gemini.cachedContents().contains(name), "cache entry deleted after update");
+
+        // The next call is sent uncached and starts a new entry for the new text
+        RoleDTO updated = new RoleDTO(role.getId(), changed.getName(), changed.getDescription(), user.getId());
+        geminiProvider.generate(request(updated)).block(Duration.ofSeconds(10));
+        assertFalse(gemini.lastGenerateBody().contains("cachedContent"));
+        await(() -> gemini.cachedContents().stream().anyMatch(n -> !n.equals(name)), "new cache entry created");
+    }
+
+    @Test
+    void droppedOnDelete() {
+        RoleDTO role = role("Archivist", "Keeps the records in order.");
+        String name = cacheAfterFirstCall(role);
+
+        assertTrue(roleService.deleteRole(role.getId()));
+        await(() -> !gemini.cachedContents().contains(name), "cache entry deleted after delete");
+    }
+
+    // The first call goes out uncached and creates the entry in the background
+    private String cacheAfterFirstCall(RoleDTO role) {
+        Set<String> before = gemini.cachedContents();
+        geminiProvider.generate(request(role)).block(Duration.ofSeconds(10));
+        assertFalse(gemini.lastGenerateBody().contains("cachedContent"));
+        await(() -> gemini.cachedContents().size() > before.size(), "cache entry created");
+        // The stub has it before the service does: wait for the create to finish recording it
+        Set<?> inFlight = (Set<?>) ReflectionTestUtils.getField(contextCacheService, "inFlight");
+        await(inFlight::isEmpty, "cache entry recorded");
+        List<String> created = gemini.cachedContents().stream().filter(n -> !before.contains(n)).toList();
+        assertEquals(1, created.size());
+        return created.get(0);
+    }
+
+    private RoleDTO role(String name, String description) {
+        Role saved = roleRepository.save(new Role(name, description, user.getId()));
+        return new RoleDTO(saved.getId(), saved.getName(), saved.getDescription(), user.getId());
+    }
+
+    private LlmRequest request(RoleDTO role) {
+        return new LlmRequest(modelConfig.getId(), "stub-api-key", "gemini-stub", null, role,
+                "You are " + role.getName() + ". " + role.getDescription(), "", List.of(), "Hello?");
+    }
+
+    private static void await(BooleanSupplier condition, String what) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for: " + what);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
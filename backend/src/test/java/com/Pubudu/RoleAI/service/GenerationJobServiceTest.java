@@ -0,0 +1,189 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.GenerationJob;
+import com.Pubudu.RoleAI.entity.GenerationJob.Mode;
+import com.Pubudu.RoleAI.entity.GenerationJob.Status;
+import com.Pubudu.RoleAI.repository.GenerationJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The job lease on H2: claim, complete, fail and reclaim, results from a worker that lost its lease
+ * being dropped, the reclaim cap, and SKIP LOCKED keeping a concurrent claim off locked rows.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "jobs.worker.enabled=false",
+        "jobs.max-attempts=2",
+        "jobs.retry.base-delay-ms=60000"
+})
+class GenerationJobServiceTest {
+
+    @Autowired
+    private GenerationJobService jobService;
+
+    @Autowired
+    private GenerationJobRepository jobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void emptyQueue() {
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void claimThenCompleteByTheHolder() {
+        GenerationJob job = submit();
+        List<GenerationJob> claimed = jobService.claim(Mode.ONLINE, 10, "w1");
+        assertEquals(1, claimed.size());
+        GenerationJob running = reload(job);
+        assertEquals(Status.RUNNING, running.getStatus());
+        assertEquals("w1", running.getLockedBy());
+        assertEquals(1, running.getAttempts());
+        assertTrue(running.getLockedUntil().isAfter(LocalDateTime.now()));
+
+        // Leased: nobody else gets it, and a non-holder's result is dropped
+        assertTrue(jobService.claim(Mode.ONLINE, 10, "w2").isEmpty());
+        jobService.complete(job.getId(), "w2", "wrong reply");
+        assertEquals(Status.RUNNING, reload(job).getStatus());
+
+        jobService.complete(job.getId(), "w1", "reply");
+        GenerationJob done = reload(job);
+        assertEquals(Status.SUCCEEDED, done.getStatus());
+        assertEquals("reply", done.getReply());
+        assertNull(done.getLockedBy());
+        assertNotNull(done.getFinishedAt());
+    }
+
+    @Test
+    void retryableFailureRequeuesWithBackoff() {
+        GenerationJob job = submit();
+        jobService.claim(Mode.ONLINE, 10, "w1");
+        jobService.fail(job.getId(), "w2", "not mine", true); // ignored
+        assertEquals(Status.RUNNING, reload(job).getStatus());
+
+        jobService.fail(job.getId(), "w1", "503 from provider", true);
+        GenerationJob queued = reload(job);
+        assertEquals(Status.QUEUED, queued.getStatus());
+        assertEquals("503 from provider", queued.getError());
+        assertNull(queued.getLockedBy());
+        assertTrue(queued.getNextRunAt().isAfter(LocalDateTime.now().plusSeconds(30)));
+        assertTrue(jobService.claim(Mode.ONLINE, 10, "w1").isEmpty(), "not due before its backoff");
+
+        // Due again: second and last attempt, whose failure is final
+        queued.setNextRunAt(LocalDateTime.now().minusSeconds(1));
+        jobRepository.save(queued);
+        assertEquals(1, jobService.claim(Mode.ONLINE, 10, "w1").size());
+        jobService.fail(job.getId(), "w1", "503 again", true);
+        GenerationJob failed = reload(job);
+        assertEquals(Status.FAILED, failed.getStatus());
+        assertEquals(2, failed.getAttempts());
+    }
+
+    @Test
+    void nonRetryableFailureIsFinal() {
+        GenerationJob job = submit();
+        jobService.claim(Mode.ONLINE, 10, "w1");
+        jobService.fail(job.getId(), "w1", "bad request", false);
+        assertEquals(Status.FAILED, reload(job).getStatus());
+        assertEquals(1, reload(job).getAttempts());
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedUpToTheCap() {
+        GenerationJob job = submit();
+        jobService.claim(Mode.ONLINE, 10, "w1");
+        expireLease(job);
+
+        // w1 went quiet: w2 takes over, and w1's late result no longer counts
+        assertEquals(1, jobService.claim(Mode.ONLINE, 10, "w2").size());
+        GenerationJob reclaimed = reload(job);
+        assertEquals("w2", reclaimed.getLockedBy());
+        assertEquals(2, reclaimed.getAttempts());
+        jobService.complete(job.getId(), "w1", "late reply");
+        assertEquals(Status.RUNNING, reload(job).getStatus());
+
+        // Lost again on its last attempt: failed instead of claimed a third time
+        expireLease(job);
+        assertTrue(jobService.claim(Mode.ONLINE, 10, "w3").isEmpty());
+        GenerationJob failed = reload(job);
+        assertEquals(Status.FAILED, failed.getStatus());
+        assertEquals(2, failed.getAttempts());
+        assertTrue(failed.getError().contains("lease expired"));
+    }
+
+    @Test
+    void concurrentClaimNeitherWaitsNorTakesLockedJobs() throws Exception {
+        for (int i = 0; i < 4; i++) submit();
+        CountDownLatch claimedFirst = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        // The first worker keeps its claim transaction (and row locks) open while the second one claims
+        CompletableFuture<List<GenerationJob>> first = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            List<GenerationJob> jobs = jobService.claim(Mode.ONLINE, 2, "w1");
+            claimedFirst.countDown();
+            await(secondDone);
+            return jobs;
+        }));
+        assertTrue(claimedFirst.await(10, TimeUnit.SECONDS));
+        long started = System.nanoTime();
+        List<GenerationJob> second = jobService.claim(Mode.ONLINE, 10, "w2");
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        secondDone.countDown();
+
+        Set<String> firstIds = ids(first.get(10, TimeUnit.SECONDS));
+        assertEquals(2, firstIds.size());
+        // Postgres hands w2 the other two jobs; H2 locks every row the ORDER BY ... LIMIT scan touched,
+        // so there w2 gets none. Either way it must not wait for w1 or take w1's jobs.
+        assertTrue(waitedMs < 2000, "second claim waited " + waitedMs + "ms");
+        assertTrue(ids(second).stream().noneMatch(firstIds::contains));
+        for (String id : firstIds) {
+            assertEquals("w1", jobRepository.findById(id).orElseThrow().getLockedBy());
+        }
+    }
+
+    private GenerationJob submit() {
+        return jobService.submit(1L, 1L, "question", "m", null, null, Mode.ONLINE);
+    }
+
+    private GenerationJob reload(GenerationJob job) {
+        return jobRepository.findById(job.getId()).orElseThrow();
+    }
+
+    private void expireLease(GenerationJob job) {
+        GenerationJob current = reload(job);
+        current.setLockedUntil(LocalDateTime.now().minusSeconds(1));
+        jobRepository.save(current);
+    }
+
+    private static Set<String> ids(List<GenerationJob> jobs) {
+        return jobs.stream().map(GenerationJob::getId).collect(Collectors.toSet());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.Pubudu.RoleAI.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays, joins of in-flight calls, failures that are not remembered, and the entry cap.
+ */
+class IdempotencyServiceTest {
+
+    private final IdempotencyService service = new IdempotencyService();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    IdempotencyServiceTest() {
+        ReflectionTestUtils.setField(service, "ttlSeconds", 600L);
+        ReflectionTestUtils.setField(service, "maxEntries", 10_000);
+    }
+
+    @Test
+    void sameKeyReplaysTheFirstReply() {
+        assertEquals("reply 1", service.execute("user", "k", "body", this::work).block());
+        assertEquals("reply 1", service.execute("user", "k", "body", this::work).block());
+        assertEquals(1, calls.get());
+
+        // Keys are per scope
+        assertEquals("reply 2", service.execute("other-user", "k", "body", this::work).block());
+    }
+
+    @Test
+    void sameKeyWithDifferentPayloadIsRejected() {
+        service.execute("user", "k", "body", this::work).block();
+        assertThrows(IdempotencyService.KeyReusedException.class,
+                () -> service.execute("user", "k", "another body", this::work).block());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void concurrentRequestsMakeOneCall() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> replies = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                replies.add(executor.submit(() -> {
+                    start.await();
+                    return service.execute("user", "k", "body",
+                            () -> work().delayElement(Duration.ofMillis(100))).block();
+                }));
+            }
+            start.countDown();
+            for (Future<String> reply : replies) {
+                assertEquals("reply 1", reply.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void failureIsNotRememberedButANewerEntryIsKept() {
+        // A failure is dropped, so the client's retry with the same key runs again
+        assertThrows(RuntimeException.class, () -> service.execute("user", "k", "body", this::failure).block());
+        assertEquals("reply 2", service.execute("user", "k", "body", this::work).block());
+
+        // A slow call outlives its TTL, a retry replaces it, and then the slow call fails:
+        // only the slow call's own entry may go
+        ReflectionTestUtils.setField(service, "ttlSeconds", 0L);
+        Sinks.One<String> slow = Sinks.one();
+        Mono<String> first = service.execute("user", "k2", "body", slow::asMono);
+        first.subscribe(r -> {}, e -> {});
+        ReflectionTestUtils.setField(service, "ttlSeconds", 600L);
+        assertEquals("reply 3", service.execute("user", "k2", "body", this::work).block());
+
+        slow.tryEmitError(new IllegalStateException("late failure"));
+        assertEquals("reply 3", service.execute("user", "k2", "body", this::work).block());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void maxEntriesIsEnforcedOldestFirst() throws InterruptedException {
+        ReflectionTestUtils.setField(service, "maxEntries", 10);
+        for (int i = 0; i < 25; i++) {
+            Thread.sleep(2); // distinct expiry times, so "oldest" is well defined
+            service.execute("user", "k" + i, "body", this::work).block();
+            assertTrue(entries().size() <= 10, "entries: " + entries().size());
+        }
+        // The newest key is still remembered, the oldest was forgotten and runs again
+        int before = calls.get();
+        service.execute("user", "k24", "body", this::work).block();
+        assertEquals(before, calls.get());
+        service.execute("user", "k0", "body", this::work).block();
+        assertEquals(before + 1, calls.get());
+    }
+
+    private Mono<String> work() {
+        return Mono.fromSupplier(() -> "reply " + calls.incrementAndGet());
+    }
+
+    private Mono<String> failure() {
+        return Mono.fromSupplier(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("provider down");
+        });
+    }
+
+    private Map<?, ?> entries() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(service, "entries");
+    }
+}
@@ -0,0 +1,183 @@
+package com.Pubudu.RoleAI.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AIMD driven with synthetic outcomes and latencies, round-robin hand-out across users, and rejection when
+ * the queue is full or a waiter runs out of time.
+ */
+class LlmConcurrencyLimiterTest {
+
+    private static final Long KEY = 1L;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final LlmConcurrencyLimiter limiter = new LlmConcurrencyLimiter(registry);
+
+    LlmConcurrencyLimiterTest() {
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", 8);
+        ReflectionTestUtils.setField(limiter, "minLimit", 1);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 64);
+        ReflectionTestUtils.setField(limiter, "maxQueue", 200);
+        ReflectionTestUtils.setField(limiter, "maxWaitMs", 20_000L);
+        ReflectionTestUtils.setField(limiter, "latencyTolerance", 2.0);
+    }
+
+    @Test
+    void rateLimitHalvesDownToTheMinimum() {
+        LlmConcurrencyLimiter.KeyLimiter key = limiter.limiter(KEY);
+        assertEquals(8, key.limit());
+        double[] expected = {4, 2, 1, 1};
+        for (double limit : expected) {
+            LlmConcurrencyLimiter.Permit permit = take(key);
+            permit.failed(WebClientResponseException.create(HttpStatus.TOO_MANY_REQUESTS.value(), "Too Many Requests", null, null, null));
+            key.release(permit, SignalType.ON_ERROR);
+            assertEquals(limit, key.limit(), 1e-9);
+        }
+    }
+
+    @Test
+    void otherFailuresAndCancelsLeaveTheLimitAlone() {
+        LlmConcurrencyLimiter.KeyLimiter key = limiter.limiter(KEY);
+        LlmConcurrencyLimiter.Permit failed = take(key);
+        failed.failed(WebClientResponseException.create(503, "Unavailable", null, null, null));
+        key.release(failed, SignalType.ON_ERROR);
+        key.release(take(key), SignalType.CANCEL);
+        assertEquals(8, key.limit(), 1e-9);
+        assertEquals(0, key.inFlight());
+    }
+
+    @Test
+    void steadyLatencyGrowsAndRisingLatencyTrims() {
+        LlmConcurrencyLimiter.KeyLimiter key = limiter.limiter(KEY);
+        // Additive increase: +1/limit per success, so about +1 per limit's worth of calls
+        double expected = 8;
+        for (int i = 0; i < 8; i++) {
+            complete(key, 100);
+            expected += 1.0 / expected;
+            assertEquals(expected, key.limit(), 1e-9);
+        }
+        assertTrue(key.limit() > 8.9 && key.limit() < 9.1, "limit " + key.limit());
+
+        // Well above the 100ms baseline: trimmed by 10% per call
+        complete(key, 400);
+        assertEquals(expected * 0.9, key.limit(), 1e-9);
+        double beforeFast = key.limit();
+
+        // Back near the baseline: growing again
+        complete(key, 110);
+        assertTrue(key.limit() > beforeFast);
+    }
+
+    @Test
+    void latencyTrimsStopAtTheMinimum() {
+        ReflectionTestUtils.setField(limiter, "initialLimit", 2);
+        LlmConcurrencyLimiter.KeyLimiter key = limiter.limiter(KEY);
+        complete(key, 10);
+        // The baseline drifts towards sustained latency, but not within ten calls
+        for (int i = 0; i < 10; i++) complete(key, 10_000);
+        assertEquals(1, key.limit(), 1e-9);
+    }
+
+    @Test
+    void waitersAreServedRoundRobinAcrossUsers() {
+        ReflectionTestUtils.setField(limiter, "initialLimit", 1);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 1);
+        List<Long> order = new CopyOnWriteArrayList<>();
+        List<Sinks.One<String>> calls = new ArrayList<>();
+
+        // User 1 holds the only permit and queues three more; users 2 and 3 queue one each
+        Long[] users = {1L, 1L, 1L, 1L, 2L, 3L};
+        for (Long user : users) {
+            Sinks.One<String> call = Sinks.one();
+            calls.add(call);
+            limiter.withPermit(KEY, user, () -> {
+                order.add(user);
+                return call.asMono();
+            }).subscribe(r -> {}, e -> {});
+        }
+        assertEquals(List.of(1L), order);
+        assertEquals(5, limiter.limiter(KEY).queued());
+
+        // Each completion frees the single permit for the next waiter in round-robin order
+        for (int i = 0; i < 5; i++) {
+            Sinks.One<String> running = calls.get(runningIndex(users, order, i));
+            running.tryEmitValue("done");
+        }
+        assertEquals(List.of(1L, 1L, 2L, 3L, 1L, 1L), order);
+        assertEquals(0, limiter.limiter(KEY).queued());
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() {
+        ReflectionTestUtils.setField(limiter, "initialLimit", 1);
+        ReflectionTestUtils.setField(limiter, "maxQueue", 2);
+        Sinks.One<String> held = Sinks.one();
+        limiter.withPermit(KEY, 1L, held::asMono).subscribe(r -> {}, e -> {});
+        limiter.withPermit(KEY, 2L, () -> Mono.just("queued")).subscribe(r -> {}, e -> {});
+        limiter.withPermit(KEY, 3L, () -> Mono.just("queued")).subscribe(r -> {}, e -> {});
+
+        assertThrows(LlmConcurrencyLimiter.LimiterRejectedException.class,
+                () -> limiter.withPermit(KEY, 4L, () -> Mono.just("rejected")).block(Duration.ofSeconds(1)));
+        assertEquals(1.0, registry.counter("chat.limiter.rejected").count());
+        assertEquals(2, limiter.limiter(KEY).queued());
+    }
+
+    @Test
+    void waiterPastMaxWaitIsRejectedAndLeavesTheQueue() {
+        ReflectionTestUtils.setField(limiter, "initialLimit", 1);
+        ReflectionTestUtils.setField(limiter, "maxWaitMs", 50L);
+        Sinks.One<String> held = Sinks.one();
+        limiter.withPermit(KEY, 1L, held::asMono).subscribe(r -> {}, e -> {});
+
+        assertThrows(LlmConcurrencyLimiter.LimiterRejectedException.class,
+                () -> limiter.withPermit(KEY, 2L, () -> Mono.just("late")).block(Duration.ofSeconds(5)));
+        assertEquals(0, limiter.limiter(KEY).queued());
+        assertEquals(1.0, registry.counter("chat.limiter.rejected").count());
+
+        // The permit still goes back when the holder finishes
+        held.tryEmitValue("done");
+        assertEquals(0, limiter.limiter(KEY).inFlight());
+    }
+
+    // A permit counted as in flight, whose outcome the test then reports itself
+    private static LlmConcurrencyLimiter.Permit take(LlmConcurrencyLimiter.KeyLimiter key) {
+        key.acquire(0L).block(Duration.ofSeconds(1));
+        return new LlmConcurrencyLimiter.Permit(0);
+    }
+
+    private static void complete(LlmConcurrencyLimiter.KeyLimiter key, long latencyMs) {
+        LlmConcurrencyLimiter.Permit permit = take(key);
+        permit.firstResponseAt = latencyMs;
+        key.release(permit, SignalType.ON_COMPLETE);
+    }
+
+    // Index into calls of the i-th call to have started
+    private static int runningIndex(Long[] users, List<Long> order, int i) {
+        Long user = order.get(i);
+        int seen = 0;
+        for (int j = 0; j <= i; j++) {
+            if (order.get(j).equals(user)) seen++;
+        }
+        for (int j = 0; j < users.length; j++) {
+            if (users[j].equals(user) && --seen == 0) return j;
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,218 @@
+package com.Pubudu.RoleAI.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Retries, the circuit breaker and hedging, all on virtual time: LlmResilience reads Reactor's clock, so
+ * waits of seconds take none and the breaker's cool-down is stepped exactly.
+ */
+class LlmResilienceTest {
+
+    private static final String ENDPOINT = "https://llm.example/v1/models/m";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final LlmResilience resilience = new LlmResilience(registry);
+    private VirtualTimeScheduler time;
+
+    @BeforeEach
+    void virtualTime() {
+        time = VirtualTimeScheduler.getOrSet();
+        ReflectionTestUtils.setField(resilience, "maxAttempts", 3);
+        ReflectionTestUtils.setField(resilience, "baseDelayMs", 500L);
+        ReflectionTestUtils.setField(resilience, "maxDelayMs", 8000L);
+        ReflectionTestUtils.setField(resilience, "failureThreshold", 3);
+        ReflectionTestUtils.setField(resilience, "openMs", 30_000L);
+        ReflectionTestUtils.setField(resilience, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(resilience, "hedgeMinDelayMs", 100L);
+        ReflectionTestUtils.setField(resilience, "hedgeMinSamples", 20);
+    }
+
+    @AfterEach
+    void realTime() {
+        VirtualTimeScheduler.reset();
+    }
+
+    @Test
+    void retryWaitsExactlyForRetryAfter() {
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<Mono<String>> call = () -> attempts.incrementAndGet() == 1
+                ? Mono.error(status(429, "7", ""))
+                : Mono.just("ok");
+
+        StepVerifier.withVirtualTime(() -> resilience.withRetry(call, Long.MAX_VALUE))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(6999))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext("ok")
+                .verifyComplete();
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void retryWaitsForGeminiRetryInfoInTheBody() {
+        AtomicInteger attempts = new AtomicInteger();
+        String body = "{\"error\":{\"code\":429,\"details\":[{\"@type\":\"type.googleapis.com/google.rpc.RetryInfo\",\"retryDelay\": \"2.5s\"}]}}";
+        Supplier<Mono<String>> call = () -> attempts.incrementAndGet() == 1
+                ? Mono.error(status(429, null, body))
+                : Mono.just("ok");
+
+        StepVerifier.withVirtualTime(() -> resilience.withRetry(call, Long.MAX_VALUE))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(2499))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext("ok")
+                .verifyComplete();
+    }
+
+    @Test
+    void noRetryPastTheDeadlineOrForClientErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        // Retry-After of a minute against a ten-second deadline: fail now rather than sleep past it
+        StepVerifier.withVirtualTime(() -> resilience.withRetry(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.<String>error(status(429, "60", ""));
+                }, time.now(TimeUnit.MILLISECONDS) + 10_000))
+                .expectSubscription()
+                .verifyError(WebClientResponseException.TooManyRequests.class);
+        assertEquals(1, attempts.get());
+
+        attempts.set(0);
+        StepVerifier.withVirtualTime(() -> resilience.withRetry(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.<String>error(status(400, null, ""));
+                }, Long.MAX_VALUE))
+                .expectSubscription()
+                .verifyError(WebClientResponseException.BadRequest.class);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void retriesStopAtMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+        StepVerifier.withVirtualTime(() -> resilience.withRetry(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.<String>error(status(503, "1", ""));
+                }, Long.MAX_VALUE))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(10))
+                .verifyError(WebClientResponseException.ServiceUnavailable.class);
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, registry.counter("chat.resilience.retries").count());
+    }
+
+    @Test
+    void breakerOpensThenLetsOneTrialThrough() {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> failing = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(status(503, null, ""));
+        });
+
+        // Client errors say nothing about the provider and don't count
+        assertThrows(WebClientResponseException.class, () -> resilience.guard(ENDPOINT, Mono.error(status(400, null, ""))).block());
+        for (int i = 0; i < 3; i++) {
+            assertThrows(WebClientResponseException.class, () -> resilience.guard(ENDPOINT, failing).block());
+        }
+        assertEquals(3, calls.get());
+
+        // Open: fails fast without calling
+        assertThrows(LlmResilience.CircuitOpenException.class, () -> resilience.guard(ENDPOINT, failing).block());
+        time.advanceTimeBy(Duration.ofMillis(29_999));
+        assertThrows(LlmResilience.CircuitOpenException.class, () -> resilience.guard(ENDPOINT, failing).block());
+        assertEquals(3, calls.get());
+        assertEquals(2.0, registry.counter("chat.resilience.short_circuited").count());
+
+        // Half-open: one trial at a time, and its failure opens the breaker again
+        time.advanceTimeBy(Duration.ofMillis(1));
+        Sinks.One<String> trial = Sinks.one();
+        Mono<String> trialResult = resilience.guard(ENDPOINT, trial.asMono()).cache();
+        trialResult.subscribe(r -> {}, e -> {});
+        assertThrows(LlmResilience.CircuitOpenException.class, () -> resilience.guard(ENDPOINT, Mono.just("second")).block());
+        trial.tryEmitError(status(503, null, ""));
+        assertThrows(LlmResilience.CircuitOpenException.class, () -> resilience.guard(ENDPOINT, Mono.just("reopened")).block());
+
+        // After another cool-down a successful trial closes it
+        time.advanceTimeBy(Duration.ofMillis(30_000));
+        assertEquals("trial", resilience.guard(ENDPOINT, Mono.just("trial")).block());
+        assertEquals("closed", resilience.guard(ENDPOINT, Mono.just("closed")).block());
+        assertEquals("closed again", resilience.guard(ENDPOINT, Mono.just("closed again")).block());
+    }
+
+    @Test
+    void hedgeStartsAtTheRecordedP95() {
+        recordLatencies(300, 19);
+        // Too few samples to trust a p95: no hedge
+        AtomicInteger calls = new AtomicInteger();
+        StepVerifier.withVirtualTime(() -> resilience.hedged(ENDPOINT, slowFirst(calls)))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(5))
+                .thenCancel()
+                .verify();
+        assertEquals(1, calls.get());
+
+        recordLatencies(300, 1);
+        calls.set(0);
+        StepVerifier.withVirtualTime(() -> resilience.hedged(ENDPOINT, slowFirst(calls)))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(299))
+                .then(() -> assertEquals(1, calls.get()))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext("hedge")
+                .verifyComplete();
+        assertEquals(2, calls.get());
+        assertEquals(1.0, registry.counter("chat.resilience.hedges").count());
+    }
+
+    @Test
+    void hedgeNeverStartsBeforeTheMinimumDelay() {
+        ReflectionTestUtils.setField(resilience, "hedgeMinDelayMs", 1000L);
+        recordLatencies(300, 20);
+        AtomicInteger calls = new AtomicInteger();
+        StepVerifier.withVirtualTime(() -> resilience.hedged(ENDPOINT, slowFirst(calls)))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(999))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext("hedge")
+                .verifyComplete();
+    }
+
+    // Successful guarded calls of the given virtual latency, feeding the endpoint's LatencyWindow
+    private void recordLatencies(long ms, int count) {
+        time = VirtualTimeScheduler.getOrSet(); // a finished StepVerifier resets virtual time
+        for (int i = 0; i < count; i++) {
+            resilience.guard(ENDPOINT, Mono.just("x").delayElement(Duration.ofMillis(ms))).subscribe();
+            time.advanceTimeBy(Duration.ofMillis(ms));
+        }
+    }
+
+    // First attempt hangs, the hedge answers at once
+    private static Supplier<Mono<String>> slowFirst(AtomicInteger calls) {
+        return () -> calls.incrementAndGet() == 1 ? Mono.never() : Mono.just("hedge");
+    }
+
+    private static WebClientResponseException status(int status, String retryAfter, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) headers.add("Retry-After", retryAfter);
+        return WebClientResponseException.create(status, "status " + status, headers,
+                body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,139 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.TokenUsage;
+import com.Pubudu.RoleAI.repository.TokenUsageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Quota checks at the daily limit (locally and across nodes via the flushed table) and exact totals when
+ * record() races flush().
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        "jobs.worker.enabled=false",
+        "usage.quota.daily-tokens=1000",
+        "usage.quota.overrides=900001:0",
+        // Flushes happen when the test says so
+        "usage.flush-interval-ms=3600000"
+})
+class TokenUsageServiceTest {
+
+    @Autowired
+    private TokenUsageService usageService;
+
+    @Autowired
+    private TokenUsageRepository usageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void quotaTripsAtTheDailyLimit() {
+        Long userId = newUserId();
+        usageService.record(userId, 1L, 1L, 600, 399, 0);
+        assertDoesNotThrow(() -> usageService.checkQuota(userId));
+
+        usageService.record(userId, 1L, 1L, 0, 1, 0);
+        TokenUsageService.QuotaExceededException e =
+                assertThrows(TokenUsageService.QuotaExceededException.class, () -> usageService.checkQuota(userId));
+        assertTrue(e.getRetryAfterSeconds() > 0 && e.getRetryAfterSeconds() <= 86_400);
+
+        // Still tripped once the usage is in the table and the total is reloaded from there
+        usageService.flush();
+        assertEquals(1000, usageService.tokensToday(userId));
+        assertThrows(TokenUsageService.QuotaExceededException.class, () -> usageService.checkQuota(userId));
+    }
+
+    @Test
+    void overrideOfZeroIsUnlimited() {
+        Long unlimited = 900001L;
+        usageService.record(unlimited, 1L, 1L, 5000, 5000, 0);
+        assertDoesNotThrow(() -> usageService.checkQuota(unlimited));
+    }
+
+    @Test
+    void usageFlushedByAnotherNodeCountsAfterTheNextFlush() {
+        Long userId = newUserId();
+        TokenUsageService otherNode = new TokenUsageService(usageRepository, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(otherNode, "defaultDailyQuota", 1000L);
+        ReflectionTestUtils.setField(otherNode, "quotaOverrides", "");
+
+        usageService.checkQuota(userId); // this node starts tracking the user
+        usageService.record(userId, 1L, 1L, 300, 0, 0);
+        otherNode.record(userId, 2L, 1L, 700, 0, 0);
+        otherNode.flush();
+        assertDoesNotThrow(() -> usageService.checkQuota(userId), "other node's usage not seen before a flush");
+
+        usageService.flush();
+        assertEquals(1000, usageService.tokensToday(userId));
+        assertThrows(TokenUsageService.QuotaExceededException.class, () -> usageService.checkQuota(userId));
+    }
+
+    @Test
+    void concurrentRecordsAndFlushesPersistTheExactSum() throws Exception {
+        Long userId = newUserId();
+        int threads = 8;
+        int perThread = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean recording = new AtomicBoolean(true);
+        try {
+            // Flushes keep running while the counters move, so every delta boundary is exercised
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (recording.get()) usageService.flush();
+                return null;
+            });
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long roleId = t % 2 + 1;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) usageService.record(userId, roleId, 7L, 3, 2, 1);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) writer.get();
+            recording.set(false);
+            flusher.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        usageService.flush();
+
+        long calls = (long) threads * perThread;
+        List<TokenUsage> rows = usageRepository.findByUserIdAndUsageDateOrderByModelConfigIdAscRoleIdAsc(userId, LocalDate.now());
+        assertEquals(2, rows.size(), "one row per role");
+        assertEquals(calls * 3, rows.stream().mapToLong(TokenUsage::getPromptTokens).sum());
+        assertEquals(calls * 2, rows.stream().mapToLong(TokenUsage::getOutputTokens).sum());
+        assertEquals(calls, rows.stream().mapToLong(TokenUsage::getCachedTokens).sum());
+        assertEquals(calls, rows.stream().mapToLong(TokenUsage::getCalls).sum());
+        assertEquals(calls * 5, usageService.tokensToday(userId));
+    }
+
+    private static Long newUserId() {
+        return ThreadLocalRandom.current().nextLong(1_000_000, Long.MAX_VALUE);
+    }
+}
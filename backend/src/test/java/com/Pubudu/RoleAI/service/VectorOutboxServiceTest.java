@@ -0,0 +1,190 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.entity.VectorOutboxEvent;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.repository.VectorOutboxRepository;
+import com.Pubudu.RoleAI.service.vector.RecordingVectorStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The outbox flush against a recording store: coalescing several edits into one upsert, backoff after a failed
+ * write, an event committed after the flush read its events staying queued, and no second claim on a role
+ * whose event is leased.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        // Own database: flushers of other cached test contexts must not consume these events
+        "spring.datasource.url=jdbc:h2:mem:vector-outbox-test",
+        "vector.store=recording",
+        "jobs.worker.enabled=false",
+        // Flushes happen when the test says so
+        "vector.outbox.flush-interval-ms=3600000",
+        "vector.outbox.retry.base-delay-ms=60000"
+})
+class VectorOutboxServiceTest {
+
+    @TestConfiguration
+    static class StoreConfig {
+        @Bean
+        RecordingVectorStore recordingVectorStore() {
+            return new RecordingVectorStore();
+        }
+    }
+
+    @Autowired
+    private VectorOutboxService outboxService;
+
+    @Autowired
+    private VectorOutboxRepository outboxRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private RecordingVectorStore store;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private static final AtomicLong users = new AtomicLong(1000);
+    private Long userId;
+
+    @BeforeEach
+    void reset() {
+        outboxRepository.deleteAll();
+        store.reset();
+        userId = users.incrementAndGet();
+    }
+
+    @Test
+    void severalEditsBecomeOneUpsert() {
+        Role role = saveRole("Tutor", "Math");
+        enqueue(role);
+        role.setDescription("Math and physics");
+        role = roleRepository.save(role);
+        enqueue(role);
+        role.setDescription("Math, physics and chemistry");
+        role = roleRepository.save(role);
+        enqueue(role);
+
+        outboxService.flush();
+
+        assertEquals(List.of(new RecordingVectorStore.Call("upsert", namespace(), List.of(vectorId(role)))), store.calls());
+        assertEquals("Math, physics and chemistry", store.namespace(namespace()).get(vectorId(role)).metadata().get("description"));
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    void deletedRoleBecomesADelete() {
+        Role role = saveRole("Temp", "Short-lived");
+        enqueue(role);
+        roleRepository.delete(role);
+        enqueue(role);
+
+        outboxService.flush();
+
+        assertEquals(List.of(new RecordingVectorStore.Call("delete", namespace(), List.of(vectorId(role)))), store.calls());
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    void failedWriteBacksOff() {
+        Role role = saveRole("Chef", "Cooking");
+        enqueue(role);
+        store.failAfter(0);
+        LocalDateTime before = LocalDateTime.now();
+
+        outboxService.flush();
+
+        VectorOutboxEvent event = outboxRepository.findAll().get(0);
+        assertEquals(1, event.getAttempts());
+        assertTrue(event.getNextAttemptAt().isAfter(before.plusSeconds(59)), "next attempt " + event.getNextAttemptAt());
+        assertTrue(event.getLastError().contains("Injected failure"), event.getLastError());
+
+        // Not due yet: the next flush leaves it alone even though the store is back
+        store.reset();
+        outboxService.flush();
+        assertTrue(store.calls().isEmpty());
+        assertEquals(1, outboxRepository.count());
+    }
+
+    @Test
+    void eventCommittedAfterTheReadStaysQueued() {
+        Role role = saveRole("Coach", "Running");
+        enqueue(role);
+        // Commits while the flush is writing, i.e. after it read the role's events
+        store.onUpsert(call -> {
+            store.onUpsert(c -> {});
+            enqueue(role);
+        });
+
+        outboxService.flush();
+
+        List<VectorOutboxEvent> left = outboxRepository.findAll();
+        assertEquals(1, left.size(), "the late event is not deleted with the ones the flush read");
+        assertEquals(role.getId(), left.get(0).getRoleId());
+        assertEquals(0, left.get(0).getAttempts());
+
+        // It becomes the role's head and gets its own upsert
+        outboxService.flush();
+        assertEquals(2, store.calls().size());
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    void roleWithALeasedEventIsNotClaimedAgain() {
+        Role busy = saveRole("Busy", "Being flushed elsewhere");
+        Role idle = saveRole("Idle", "Waiting");
+        // Committed out of id order: the higher id was claimed (leased) before the lower one became visible
+        VectorOutboxEvent lower = enqueue(busy);
+        VectorOutboxEvent leased = enqueue(busy);
+        leased.setNextAttemptAt(LocalDateTime.now().plusMinutes(1));
+        outboxRepository.save(leased);
+        VectorOutboxEvent other = enqueue(idle);
+
+        List<VectorOutboxEvent> claimed = transactionTemplate.execute(status -> outboxRepository.lockDueHeads(LocalDateTime.now(), 10));
+        Set<Long> ids = claimed.stream().map(VectorOutboxEvent::getId).collect(Collectors.toSet());
+        assertEquals(Set.of(other.getId()), ids, "lower id " + lower.getId() + " must wait for the leased event");
+    }
+
+    private Role saveRole(String name, String description) {
+        Role role = new Role();
+        role.setUserId(userId);
+        role.setName(name);
+        role.setDescription(description);
+        return roleRepository.save(role);
+    }
+
+    private VectorOutboxEvent enqueue(Role role) {
+        transactionTemplate.executeWithoutResult(status -> outboxService.enqueue(role.getUserId(), role.getId()));
+        return outboxRepository.findAll().stream()
+                .filter(e -> e.getRoleId().equals(role.getId()))
+                .reduce((a, b) -> b.getId() > a.getId() ? b : a)
+                .orElseThrow();
+    }
+
+    private String namespace() {
+        return RoleVectorService.namespace(0, userId);
+    }
+
+    private static String vectorId(Role role) {
+        return RoleVectorService.vectorId(role.getId());
+    }
+}
@@ -0,0 +1,265 @@
+package com.Pubudu.RoleAI.service;
+
+import com.Pubudu.RoleAI.entity.ReindexJob;
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.repository.ReindexJobRepository;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.service.vector.RecordingVectorStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The reindex job against a recording store, in batches of two with two in flight: a failed batch and a resume
+ * that adds up to every role in the new generation, cancel and takeover stopping the run at its next checkpoint,
+ * checkpoints in id order when a later batch finishes first, and the recorded identity of generation 0.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+        // Own database: the job rows and roles of other cached test contexts stay out of it
+        "spring.datasource.url=jdbc:h2:mem:vector-reindex-test",
+        "vector.store=recording",
+        "jobs.worker.enabled=false",
+        "vector.reindex.batch-size=2",
+        "vector.reindex.parallelism=2",
+        "vector.reindex.max-retries=0",
+        // Resumes and refreshes happen when the test says so
+        "vector.reindex.resume-check-ms=3600000",
+        "vector.reindex.state-refresh-ms=3600000",
+        "vector.outbox.flush-interval-ms=3600000"
+})
+class VectorReindexServiceTest {
+
+    @TestConfiguration
+    static class StoreConfig {
+        @Bean
+        RecordingVectorStore recordingVectorStore() {
+            return new RecordingVectorStore();
+        }
+    }
+
+    @Autowired
+    private VectorReindexService reindexService;
+
+    @Autowired
+    private RoleVectorService roleVectorService;
+
+    @Autowired
+    private ReindexJobRepository jobRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private RecordingVectorStore store;
+
+    private static final AtomicLong users = new AtomicLong(2000);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Long userId;
+
+    @BeforeEach
+    void reset() {
+        jobRepository.deleteAll();
+        roleRepository.deleteAll();
+        store.reset();
+        roleVectorService.refreshGenerations(); // records generation 0 again
+        userId = users.incrementAndGet();
+    }
+
+    @AfterEach
+    void releaseBlockedBatches() throws Exception {
+        release.countDown();
+        awaitIdle();
+    }
+
+    @Test
+    void failedBatchThenResumeWritesEveryRoleOnce() throws Exception {
+        List<Role> roles = saveRoles(10); // five batches
+        store.failAfter(3);
+
+        ReindexJob started = reindexService.start();
+        awaitIdle();
+
+        ReindexJob failed = job(started);
+        assertEquals(ReindexJob.Status.FAILED, failed.getStatus());
+        assertTrue(failed.getError().contains("Injected failure"), failed.getError());
+        // The fourth batch failed; the cursor is at the end of a batch before it, and the count matches it
+        Set<Long> batchEnds = Set.of(0L, roles.get(1).getId(), roles.get(3).getId(), roles.get(5).getId());
+        assertTrue(batchEnds.contains(failed.getCursorRoleId()), "cursor " + failed.getCursorRoleId());
+        assertEquals(roles.stream().filter(r -> r.getId() <= failed.getCursorRoleId()).count(), failed.getRolesWritten());
+        assertEquals(0, roleVectorService.activeGeneration().number());
+
+        store.failAfter(Integer.MAX_VALUE);
+        reindexService.resume();
+        reindexService.resumeAbandoned();
+        awaitIdle();
+
+        ReindexJob completed = job(started);
+        assertEquals(ReindexJob.Status.COMPLETED, completed.getStatus());
+        assertEquals(roles.get(9).getId(), completed.getCursorRoleId());
+        assertEquals(10, completed.getRolesWritten());
+        assertNull(completed.getError());
+        assertEquals(vectorIds(roles), store.namespace(RoleVectorService.namespace(1, userId)).keySet());
+        assertEquals(1, roleVectorService.activeGeneration().number());
+    }
+
+    @Test
+    void cancelStopsTheRunAtTheNextCheckpoint() throws Exception {
+        saveRoles(6);
+        CountDownLatch writing = blockUpserts(call -> true);
+
+        ReindexJob started = reindexService.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        reindexService.cancel();
+        release.countDown();
+        awaitIdle();
+
+        ReindexJob cancelled = job(started);
+        assertEquals(ReindexJob.Status.CANCELLED, cancelled.getStatus());
+        assertEquals(0, cancelled.getCursorRoleId());
+        assertEquals(0, cancelled.getRolesWritten());
+        assertNull(cancelled.getError());
+        roleVectorService.refreshGenerations();
+        assertEquals(0, roleVectorService.activeGeneration().number());
+        assertNull(roleVectorService.buildingGeneration());
+    }
+
+    @Test
+    void runTakenOverByAnotherNodeStopsWithoutTouchingTheRow() throws Exception {
+        saveRoles(6);
+        CountDownLatch writing = blockUpserts(call -> true);
+
+        ReindexJob started = reindexService.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        // As if this node's lease ran out and another node's resume check claimed the job
+        ReindexJob row = job(started);
+        row.setLockedBy("other-node");
+        row.setLockedUntil(LocalDateTime.now().plusMinutes(2));
+        jobRepository.save(row);
+        release.countDown();
+        awaitIdle();
+
+        ReindexJob after = job(started);
+        assertEquals(ReindexJob.Status.RUNNING, after.getStatus());
+        assertEquals("other-node", after.getLockedBy());
+        assertEquals(0, after.getCursorRoleId());
+        assertEquals(0, after.getRolesWritten());
+    }
+
+    @Test
+    void laterBatchFinishingFirstDoesNotMoveTheCursor() throws Exception {
+        List<Role> roles = saveRoles(6);
+        String first = RoleVectorService.vectorId(roles.get(0).getId());
+        String third = RoleVectorService.vectorId(roles.get(2).getId());
+        blockUpserts(call -> call.ids().contains(first));
+
+        ReindexJob started = reindexService.start();
+        // The second batch is written while the first is held up
+        awaitTrue(() -> store.calls().stream().anyMatch(call -> call.ids().contains(third)));
+        Thread.sleep(200);
+        ReindexJob waiting = job(started);
+        assertEquals(0, waiting.getCursorRoleId());
+        assertEquals(0, waiting.getRolesWritten());
+
+        release.countDown();
+        awaitIdle();
+        ReindexJob completed = job(started);
+        assertEquals(ReindexJob.Status.COMPLETED, completed.getStatus());
+        assertEquals(roles.get(5).getId(), completed.getCursorRoleId());
+        assertEquals(6, completed.getRolesWritten());
+    }
+
+    @Test
+    void generationZeroIsRecordedWithThisNodesEmbeddingConfig() {
+        ReindexJob original = jobRepository.findByStoreIdAndGeneration("recording", 0).orElseThrow();
+        assertEquals(ReindexJob.Status.COMPLETED, original.getStatus());
+        assertEquals(embeddingService.providerId(), original.getProvider());
+        assertEquals(embeddingService.model(), original.getModel());
+        assertEquals(embeddingService.dimension(), original.getDimension());
+
+        RoleVectorService.Generation active = roleVectorService.activeGeneration();
+        assertTrue(active.builtWith(embeddingService));
+        assertFalse(new RoleVectorService.Generation(0, active.provider(), "another-model", active.dimension()).builtWith(embeddingService));
+        assertFalse(new RoleVectorService.Generation(0, active.provider(), active.model(), active.dimension() + 1).builtWith(embeddingService));
+
+        // Recorded once; a reindex builds generation 1 on top of it
+        roleVectorService.refreshGenerations();
+        assertEquals(1, jobRepository.count());
+        assertEquals(1, reindexService.start().getGeneration());
+    }
+
+    private List<Role> saveRoles(int count) {
+        List<Role> roles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Role role = new Role();
+            role.setUserId(userId);
+            role.setName("Role " + i);
+            role.setDescription("Description " + i);
+            roles.add(roleRepository.save(role));
+        }
+        return roles;
+    }
+
+    // Upserts matching the filter wait for release; the returned latch opens once one of them is waiting
+    private CountDownLatch blockUpserts(Predicate<RecordingVectorStore.Call> filter) {
+        CountDownLatch writing = new CountDownLatch(1);
+        store.onUpsert(call -> {
+            if (!filter.test(call)) return;
+            writing.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return writing;
+    }
+
+    private ReindexJob job(ReindexJob job) {
+        return jobRepository.findById(job.getId()).orElseThrow();
+    }
+
+    private static Set<String> vectorIds(List<Role> roles) {
+        return roles.stream().map(r -> RoleVectorService.vectorId(r.getId())).collect(Collectors.toSet());
+    }
+
+    // Until the job this node runs has returned
+    private void awaitIdle() throws InterruptedException {
+        AtomicReference<?> current = (AtomicReference<?>) ReflectionTestUtils.getField(reindexService, "current");
+        awaitTrue(() -> current.get() == null);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(20);
+        }
+    }
+}
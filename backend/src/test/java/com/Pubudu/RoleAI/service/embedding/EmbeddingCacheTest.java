@@ -0,0 +1,174 @@
+package com.Pubudu.RoleAI.service.embedding;
+
+import com.Pubudu.RoleAI.entity.EmbeddingCacheEntry;
+import com.Pubudu.RoleAI.repository.EmbeddingCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The byte-bounded LRU, hit and miss counting, and the table tier: partial hits merged back in order
+ * (duplicate texts included) and only DOCUMENT vectors persisted.
+ */
+class EmbeddingCacheTest {
+
+    private static final int DIMENSION = 4;
+    // Per-entry estimate of EmbeddingCache.entryBytes for a DIMENSION vector
+    private static final long ENTRY_BYTES = 4L * DIMENSION + 2L * 64 + 96;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EmbeddingCacheRepository repository = mock(EmbeddingCacheRepository.class);
+    private final EmbeddingCache cache = new EmbeddingCache(repository, registry);
+    private final FakeProvider provider = new FakeProvider();
+
+    EmbeddingCacheTest() {
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxBytes", 3 * ENTRY_BYTES);
+        ReflectionTestUtils.setField(cache, "dbEnabled", false);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedPastTheByteBudget() {
+        get("a");
+        get("b");
+        get("c");
+        assertEquals(3, cache.size());
+        assertEquals(3 * ENTRY_BYTES, cache.currentBytes());
+
+        get("a"); // now b is the least recently used
+        get("d");
+        assertEquals(3, cache.size());
+        assertEquals(3 * ENTRY_BYTES, cache.currentBytes());
+        assertEquals(1.0, registry.counter("embedding.cache.evictions").count());
+
+        provider.calls.clear();
+        get("a");
+        get("c");
+        get("d");
+        assertEquals(List.of(), provider.calls, "a, c and d still cached");
+        get("b");
+        assertEquals(List.of(List.of("b")), provider.calls, "b was evicted");
+    }
+
+    @Test
+    void vectorLargerThanTheBudgetIsNotCached() {
+        ReflectionTestUtils.setField(cache, "maxBytes", ENTRY_BYTES - 1);
+        get("a");
+        get("a");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.currentBytes());
+        assertEquals(2, provider.calls.size());
+    }
+
+    @Test
+    void hitsAndMissesAreCounted() {
+        get("a");
+        get("a");
+        cache.getAll(provider, EmbeddingProvider.Purpose.QUERY, List.of("a", "b", "c"));
+        assertEquals(2.0, registry.counter("embedding.cache.hits", "tier", "memory").count());
+        assertEquals(3.0, registry.counter("embedding.cache.misses").count());
+        assertEquals(0.4, cache.hitRatio(), 1e-9);
+
+        // Purpose is part of the key
+        cache.get(provider, EmbeddingProvider.Purpose.DOCUMENT, "a");
+        assertEquals(4.0, registry.counter("embedding.cache.misses").count());
+    }
+
+    @Test
+    void partialTableHitIsMergedInOrderWithDuplicates() throws Exception {
+        ReflectionTestUtils.setField(cache, "dbEnabled", true);
+        EmbeddingProvider.Purpose purpose = EmbeddingProvider.Purpose.DOCUMENT;
+        float[] stored = {9, 9, 9, 9};
+        EmbeddingCacheEntry row = new EmbeddingCacheEntry();
+        row.setCacheKey(EmbeddingCache.key(provider, purpose, "x"));
+        row.setVector(EmbeddingCache.toBytes(stored));
+        when(repository.findAllById(any())).thenReturn(List.of(row));
+
+        List<float[]> vectors = cache.getAll(provider, purpose, List.of("x", "y", "x", "z", "y"));
+
+        // x from the table for both its positions; y and z embedded once each, in one call
+        assertArrayEquals(stored, vectors.get(0));
+        assertSame(vectors.get(0), vectors.get(2));
+        assertArrayEquals(FakeProvider.vector("y"), vectors.get(1));
+        assertSame(vectors.get(1), vectors.get(4));
+        assertArrayEquals(FakeProvider.vector("z"), vectors.get(3));
+        assertEquals(List.of(List.of("y", "z")), provider.calls);
+        assertEquals(2.0, registry.counter("embedding.cache.hits", "tier", "db").count());
+        assertEquals(3.0, registry.counter("embedding.cache.misses").count());
+
+        // Table hits are promoted to memory, and only the embedded texts are written back
+        cache.shutdown();
+        verify(repository).insertIfAbsent(eq(EmbeddingCache.key(provider, purpose, "y")), eq("fake"), eq("fake-v1"), eq(DIMENSION), any(), any());
+        verify(repository).insertIfAbsent(eq(EmbeddingCache.key(provider, purpose, "z")), eq("fake"), eq("fake-v1"), eq(DIMENSION), any(), any());
+        verify(repository, times(2)).insertIfAbsent(anyString(), anyString(), anyString(), anyInt(), any(), any());
+        provider.calls.clear();
+        cache.getAll(provider, purpose, List.of("x", "y", "z"));
+        assertEquals(List.of(), provider.calls);
+        verify(repository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void queryVectorsStayOutOfTheTable() throws Exception {
+        ReflectionTestUtils.setField(cache, "dbEnabled", true);
+        when(repository.findAllById(any())).thenReturn(List.of());
+        cache.get(provider, EmbeddingProvider.Purpose.QUERY, "one-off chat message");
+        cache.shutdown();
+        verify(repository, never()).findAllById(any());
+        verify(repository, never()).insertIfAbsent(anyString(), anyString(), anyString(), anyInt(), any(), any());
+    }
+
+    @Test
+    void failedTableLookupFallsBackToTheProvider() {
+        ReflectionTestUtils.setField(cache, "dbEnabled", true);
+        when(repository.findAllById(any())).thenThrow(new IllegalStateException("database down"));
+        List<float[]> vectors = cache.getAll(provider, EmbeddingProvider.Purpose.DOCUMENT, List.of("a", "b"));
+        assertArrayEquals(FakeProvider.vector("b"), vectors.get(1));
+        assertEquals(List.of(List.of("a", "b")), provider.calls);
+    }
+
+    private float[] get(String text) {
+        return cache.get(provider, EmbeddingProvider.Purpose.QUERY, text);
+    }
+
+    // Remote-looking provider with vectors derived from the text; records the texts of every call
+    private static class FakeProvider implements EmbeddingProvider {
+        final List<List<String>> calls = new ArrayList<>();
+
+        static float[] vector(String text) {
+            float h = text.hashCode();
+            return new float[]{h, text.length(), 1, -h};
+        }
+
+        @Override public String id() { return "fake"; }
+        @Override public String model() { return "fake-v1"; }
+        @Override public int dimension() { return DIMENSION; }
+
+        @Override
+        public float[] embed(String text, Purpose purpose) {
+            calls.add(List.of(text));
+            return vector(text);
+        }
+
+        @Override
+        public List<float[]> embedAll(List<String> texts, Purpose purpose) {
+            calls.add(List.copyOf(texts));
+            return texts.stream().map(FakeProvider::vector).toList();
+        }
+    }
+}
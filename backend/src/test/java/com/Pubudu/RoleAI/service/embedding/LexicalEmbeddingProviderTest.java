@@ -0,0 +1,80 @@
+package com.Pubudu.RoleAI.service.embedding;
+
+import com.Pubudu.RoleAI.service.EmbeddingService;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Texts sharing words or stems score well above unrelated ones; vectors are deterministic, unit length,
+ * and zero for an empty text.
+ */
+class LexicalEmbeddingProviderTest {
+
+    private final LexicalEmbeddingProvider provider = new LexicalEmbeddingProvider(1024);
+
+    @Test
+    void sharedWordsScoreWellAboveUnrelatedTexts() {
+        float[] query = embed("Help me plan a hiking trip in the mountains");
+        double related = EmbeddingService.cosine(query, embed("Mountain hiking guide who plans trips and trails"));
+        double unrelated = EmbeddingService.cosine(query, embed("Tax accountant for small business bookkeeping"));
+        assertTrue(related > 0.2, "related " + related);
+        assertTrue(Math.abs(unrelated) < 0.05, "unrelated " + unrelated);
+    }
+
+    @Test
+    void sharedStemsAndTyposStillMatch() {
+        // No word in common, only stems ("cook", "recipe"); then one shared word plus a misspelled one
+        double stems = EmbeddingService.cosine(embed("cooking recipes"), embed("cook a recipe"));
+        double typo = EmbeddingService.cosine(embed("photography tutor"), embed("photograpy tutor"));
+        double unrelated = EmbeddingService.cosine(embed("cooking recipes"), embed("fix my bicycle"));
+        assertTrue(stems > 0.1, "stems " + stems);
+        assertTrue(Math.abs(unrelated) < 0.05, "unrelated " + unrelated);
+        assertTrue(typo > 0.4, "typo " + typo);
+    }
+
+    @Test
+    void commonWordsCarryLittleWeight() {
+        // Only stop words in common
+        double stopWords = EmbeddingService.cosine(embed("what is the best way to learn chess"),
+                embed("what is the best way to bake bread"));
+        double topic = EmbeddingService.cosine(embed("learn chess openings"), embed("chess openings to learn"));
+        assertTrue(topic > stopWords + 0.3, "topic " + topic + " vs stop words " + stopWords);
+    }
+
+    @Test
+    void sameTextAlwaysGivesTheSameVector() {
+        String text = "A friendly Spanish tutor for beginners";
+        float[] first = embed(text);
+        assertArrayEquals(first, embed(text));
+        assertArrayEquals(first, new LexicalEmbeddingProvider(1024).embed(text, EmbeddingProvider.Purpose.DOCUMENT));
+        // Case and punctuation don't change the features
+        assertArrayEquals(first, embed("a FRIENDLY spanish tutor, for beginners!"));
+    }
+
+    @Test
+    void vectorsAreUnitLength() {
+        for (String text : new String[]{"x", "hello", "Interview coach for software engineers", "the the the"}) {
+            float[] v = embed(text);
+            assertEquals(1024, v.length);
+            double norm = 0;
+            for (float x : v) norm += (double) x * x;
+            assertEquals(1.0, Math.sqrt(norm), 1e-5, text);
+        }
+    }
+
+    @Test
+    void emptyTextIsTheZeroVector() {
+        for (String text : new String[]{"", null, "  ?! ..."}) {
+            float[] v = embed(text);
+            assertEquals(1024, v.length);
+            for (float x : v) assertEquals(0f, x);
+        }
+    }
+
+    private float[] embed(String text) {
+        return provider.embed(text, EmbeddingProvider.Purpose.QUERY);
+    }
+}
@@ -0,0 +1,130 @@
+package com.Pubudu.RoleAI.service.embedding;
+
+import com.Pubudu.RoleAI.loadtest.PineconeStubServer;
+import com.Pubudu.RoleAI.loadtest.StubBehavior;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Micro-batching against a stub /embed endpoint: concurrent embed() calls go out as one request, each caller
+ * gets its own vector back, and a failed request fails every caller in the batch.
+ */
+class PineconeInferenceEmbeddingProviderTest {
+
+    private static final int DIMENSION = 16;
+    private static final int CALLERS = 10;
+
+    private final StubBehavior behavior = new StubBehavior().latencyMs(0);
+    private final PineconeStubServer stub;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PineconeInferenceEmbeddingProvider provider;
+
+    PineconeInferenceEmbeddingProviderTest() throws IOException {
+        stub = new PineconeStubServer(behavior);
+        provider = new PineconeInferenceEmbeddingProvider(new RestTemplate(), registry);
+        ReflectionTestUtils.setField(provider, "apiKey", "stub-api-key");
+        ReflectionTestUtils.setField(provider, "url", stub.embedUrl());
+        ReflectionTestUtils.setField(provider, "model", "llama-text-embed-v2");
+        ReflectionTestUtils.setField(provider, "dimension", DIMENSION);
+        ReflectionTestUtils.setField(provider, "maxBatch", 96);
+        // Long enough for every caller to join the first text's batch
+        ReflectionTestUtils.setField(provider, "lingerMs", 500L);
+        ReflectionTestUtils.setField(provider, "concurrency", 2);
+        ReflectionTestUtils.setField(provider, "timeoutMs", 10_000L);
+    }
+
+    @AfterEach
+    void stop() {
+        provider.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void concurrentCallsGoOutAsOneBatch() throws Exception {
+        List<Future<float[]>> results = embedConcurrently(EmbeddingProvider.Purpose.QUERY);
+
+        List<float[]> vectors = new ArrayList<>();
+        for (Future<float[]> result : results) vectors.add(result.get());
+        assertEquals(List.of(CALLERS), stub.embedBatches());
+        assertEquals(1, registry.summary("embedding.remote.batch.size").count());
+        assertEquals(CALLERS, registry.summary("embedding.remote.batch.size").totalAmount());
+
+        // Each caller gets the vector of its own text, not a neighbour's
+        for (int i = 0; i < CALLERS; i++) {
+            assertEquals(DIMENSION, vectors.get(i).length);
+            assertArrayEquals(provider.embedAll(List.of(text(i)), EmbeddingProvider.Purpose.QUERY).get(0), vectors.get(i));
+            for (int j = 0; j < i; j++) {
+                assertFalse(Arrays.equals(vectors.get(i), vectors.get(j)));
+            }
+        }
+    }
+
+    @Test
+    void failedCallFailsTheWholeBatch() throws Exception {
+        behavior.errorRate(1.0).errorStatus(503);
+        List<Future<float[]>> results = embedConcurrently(EmbeddingProvider.Purpose.DOCUMENT);
+
+        for (Future<float[]> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, result::get);
+            assertInstanceOf(PineconeInferenceEmbeddingProvider.EmbeddingException.class, e.getCause());
+        }
+        assertEquals(1, stub.requests());
+
+        // The provider recovers once the backend does
+        behavior.errorRate(0);
+        assertEquals(DIMENSION, provider.embed("after the outage", EmbeddingProvider.Purpose.DOCUMENT).length);
+    }
+
+    @Test
+    void embedAllSplitsIntoFullBatches() {
+        ReflectionTestUtils.setField(provider, "maxBatch", 4);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) texts.add(text(i));
+
+        assertEquals(CALLERS, provider.embedAll(texts, EmbeddingProvider.Purpose.DOCUMENT).size());
+        assertEquals(List.of(4, 4, 2), stub.embedBatches());
+    }
+
+    // CALLERS threads released at once, each embedding its own text
+    private List<Future<float[]>> embedConcurrently(EmbeddingProvider.Purpose purpose) {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<float[]>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                String text = text(i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return provider.embed(text, purpose);
+                }));
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        return results;
+    }
+
+    private static String text(int i) {
+        return "message number " + i;
+    }
+}
@@ -0,0 +1,166 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The embedded store's on-disk format (mmap'd slots plus JSON-lines log) must come back exactly as written,
+ * survive a write torn by a crash and a compaction, and its HNSW search must find what brute force finds.
+ */
+class EmbeddedNamespaceTest {
+
+    private static final int DIM = 8;
+    // Exact search only, no compaction unless a test asks for it
+    private static final EmbeddedVectorStore.Settings EXACT = new EmbeddedVectorStore.Settings(Integer.MAX_VALUE, 16, 100, 64, 1024);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void upsertDeleteReopenRoundTrip() {
+        try (EmbeddedNamespace ns = open(EXACT)) {
+            ns.upsert(List.of(record("a", axis(0), "role"), record("b", axis(1), "role"), record("c", axis(2), "other")));
+            ns.upsert(List.of(record("b", axis(3), "role"))); // replaces b
+            ns.delete(List.of("c", "missing"));
+            assertEquals(2, ns.size());
+        }
+        try (EmbeddedNamespace ns = open(EXACT)) {
+            assertEquals(2, ns.size());
+            VectorMatch b = ns.query(axis(3), 1, Map.of()).get(0);
+            assertEquals("b", b.id());
+            assertEquals(1f, b.score(), 1e-6);
+            assertEquals("role", b.metadata().get("type"));
+            assertEquals(Set.of("a", "b"), ids(ns.query(axis(0), 10, Map.of())));
+            assertTrue(ns.query(axis(2), 10, Map.of("type", "other")).isEmpty());
+        }
+    }
+
+    @Test
+    void tornLastLogLineIsDroppedAndLaterWritesSurvive() throws Exception {
+        try (EmbeddedNamespace ns = open(EXACT)) {
+            ns.upsert(List.of(record("a", axis(0), "role"), record("b", axis(1), "role")));
+        }
+        // Crash halfway through appending a line
+        Files.writeString(dir.resolve("ns.log"), "{\"op\":\"put\",\"slot\":2,\"id\":\"x\",\"meta",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (EmbeddedNamespace ns = open(EXACT)) {
+            assertEquals(Set.of("a", "b"), ids(ns.query(axis(0), 10, Map.of())));
+            ns.upsert(List.of(record("c", axis(2), "role")));
+        }
+        // The write after recovery must not have been glued onto the torn fragment
+        try (EmbeddedNamespace ns = open(EXACT)) {
+            assertEquals(Set.of("a", "b", "c"), ids(ns.query(axis(0), 10, Map.of())));
+            assertEquals("c", ns.query(axis(2), 1, Map.of()).get(0).id());
+        }
+    }
+
+    @Test
+    void compactionThenReopen() throws Exception {
+        EmbeddedVectorStore.Settings compacting = new EmbeddedVectorStore.Settings(Integer.MAX_VALUE, 16, 100, 64, 4);
+        try (EmbeddedNamespace ns = open(compacting)) {
+            List<VectorRecord> records = new ArrayList<>();
+            for (int i = 0; i < DIM; i++) records.add(record("r" + i, axis(i), "role"));
+            ns.upsert(records);
+            // Rewrite everything twice: retired slots outnumber live ones, which compacts
+            ns.upsert(records);
+            ns.upsert(records);
+            ns.delete(List.of("r7"));
+            assertEquals(DIM - 1, ns.size());
+        }
+        assertFalse(Files.exists(dir.resolve("ns.0.vec")), "old generation should be gone after compaction");
+        assertTrue(Files.readAllLines(dir.resolve("ns.log")).get(0).contains("\"generation\":1"));
+
+        try (EmbeddedNamespace ns = open(compacting)) {
+            assertEquals(DIM - 1, ns.size());
+            for (int i = 0; i < DIM - 1; i++) {
+                VectorMatch best = ns.query(axis(i), 1, Map.of()).get(0);
+                assertEquals("r" + i, best.id());
+                assertEquals(1f, best.score(), 1e-6);
+            }
+            assertTrue(ids(ns.query(axis(7), 10, Map.of())).stream().noneMatch("r7"::equals));
+            ns.upsert(List.of(record("new", axis(7), "role")));
+        }
+        try (EmbeddedNamespace ns = open(compacting)) {
+            assertEquals(DIM, ns.size());
+            assertEquals("new", ns.query(axis(7), 1, Map.of()).get(0).id());
+        }
+    }
+
+    @Test
+    void hnswRecallWithTypeFilterMatchesBruteForce() {
+        int dim = 32;
+        int count = 3000;
+        Random random = new Random(11);
+        List<VectorRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new VectorRecord("v" + i, gaussian(random, dim), Map.of("type", i % 2 == 0 ? "role" : "other")));
+        }
+        EmbeddedVectorStore.Settings hnsw = new EmbeddedVectorStore.Settings(500, 16, 100, 64, 1024);
+        EmbeddedVectorStore.Settings exact = new EmbeddedVectorStore.Settings(Integer.MAX_VALUE, 16, 100, 64, 1024);
+        try (EmbeddedNamespace graph = new EmbeddedNamespace("graph", dir, dim, hnsw);
+             EmbeddedNamespace brute = new EmbeddedNamespace("brute", dir, dim, exact)) {
+            graph.upsert(records);
+            brute.upsert(records);
+            assertTrue(graph.indexed());
+            assertFalse(brute.indexed());
+
+            Map<String, String> roles = Map.of("type", "role");
+            int k = 10;
+            int queries = 200;
+            int found = 0;
+            for (int q = 0; q < queries; q++) {
+                float[] query = gaussian(random, dim);
+                List<VectorMatch> approximate = graph.query(query, k, roles);
+                assertEquals(k, approximate.size());
+                assertTrue(approximate.stream().allMatch(m -> "role".equals(m.metadata().get("type"))));
+                Set<String> truth = ids(brute.query(query, k, roles));
+                for (VectorMatch m : approximate) {
+                    if (truth.contains(m.id())) found++;
+                }
+            }
+            double recall = (double) found / (queries * k);
+            assertTrue(recall >= 0.9, "filtered recall@10 was " + recall);
+        }
+    }
+
+    private EmbeddedNamespace open(EmbeddedVectorStore.Settings settings) {
+        return new EmbeddedNamespace("ns", dir, DIM, settings);
+    }
+
+    private static VectorRecord record(String id, float[] values, String type) {
+        return new VectorRecord(id, values, Map.of("type", type));
+    }
+
+    private static float[] axis(int i) {
+        float[] v = new float[DIM];
+        v[i] = 1f;
+        return v;
+    }
+
+    private static float[] gaussian(Random random, int dim) {
+        float[] v = new float[dim];
+        for (int i = 0; i < dim; i++) v[i] = (float) random.nextGaussian();
+        return v;
+    }
+
+    private static Set<String> ids(List<VectorMatch> matches) {
+        return matches.stream().map(VectorMatch::id).collect(Collectors.toCollection(HashSet::new));
+    }
+}
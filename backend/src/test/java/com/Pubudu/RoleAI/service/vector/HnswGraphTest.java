@@ -0,0 +1,87 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The graph on its own: recall against an exact scan, results best first, and the accept predicate.
+ */
+class HnswGraphTest {
+
+    private static final int DIM = 48;
+    private static final int COUNT = 4000;
+
+    private final float[][] vectors = new float[COUNT][];
+    private final HnswGraph graph;
+
+    HnswGraphTest() {
+        Random random = new Random(3);
+        graph = new HnswGraph(16, 100, node -> vectors[node]);
+        for (int i = 0; i < COUNT; i++) {
+            vectors[i] = unit(random);
+            graph.insert(i);
+        }
+    }
+
+    @Test
+    void recallAgainstExactScan() {
+        Random random = new Random(5);
+        int k = 10;
+        int queries = 200;
+        int found = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = unit(random);
+            List<HnswGraph.Candidate> approximate = graph.search(query, k, 64, node -> true);
+            assertEquals(k, approximate.size());
+            for (int i = 1; i < approximate.size(); i++) {
+                assertTrue(approximate.get(i - 1).score() >= approximate.get(i).score(), "results must be best first");
+            }
+            Set<Integer> truth = exactTopK(query, k);
+            for (HnswGraph.Candidate c : approximate) {
+                if (truth.contains(c.node())) found++;
+            }
+        }
+        double recall = (double) found / (queries * k);
+        assertTrue(recall >= 0.95, "recall@10 was " + recall);
+    }
+
+    @Test
+    void rejectedNodesAreNeverReturned() {
+        Random random = new Random(9);
+        for (int q = 0; q < 50; q++) {
+            List<HnswGraph.Candidate> results = graph.search(unit(random), 10, 64, node -> node % 3 == 0);
+            assertTrue(results.stream().allMatch(c -> c.node() % 3 == 0));
+        }
+    }
+
+    private Set<Integer> exactTopK(float[] query, int k) {
+        return IntStream.range(0, COUNT)
+                .boxed()
+                .sorted((a, b) -> Float.compare(dot(query, vectors[b]), dot(query, vectors[a])))
+                .limit(k)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static float[] unit(Random random) {
+        float[] v = new float[DIM];
+        for (int i = 0; i < DIM; i++) v[i] = (float) random.nextGaussian();
+        double norm = Math.sqrt(dot(v, v));
+        for (int i = 0; i < DIM; i++) v[i] /= (float) norm;
+        return v;
+    }
+}
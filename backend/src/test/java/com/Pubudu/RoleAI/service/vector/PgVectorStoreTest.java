@@ -0,0 +1,201 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import com.Pubudu.RoleAI.dto.RoleDTO;
+import com.Pubudu.RoleAI.entity.Role;
+import com.Pubudu.RoleAI.entity.User;
+import com.Pubudu.RoleAI.repository.RoleRepository;
+import com.Pubudu.RoleAI.repository.UserRepository;
+import com.Pubudu.RoleAI.service.EmbeddingService;
+import com.Pubudu.RoleAI.service.PgVectorBackfillService;
+import com.Pubudu.RoleAI.service.RoleService;
+import com.Pubudu.RoleAI.service.RoleVectorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PgVectorStore on a real pgvector database: vectors written, searched and cleared with their role rows, a
+ * failed vector write rolling the role back, and the backfill of roles without a vector. Needs Docker;
+ * skipped without it.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class PgVectorStoreTest {
+
+    private static final Map<String, String> ROLES = Map.of("type", "role");
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    @DynamicPropertySource
+    static void pgvectorProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        registry.add("vector.store", () -> "pgvector");
+        registry.add("pinecone.index.dimension", () -> "256");
+        // The test runs the backfill itself
+        registry.add("vector.pgvector.backfill.enabled", () -> "false");
+        registry.add("jobs.worker.enabled", () -> "false");
+    }
+
+    @Autowired
+    private PgVectorStore store;
+
+    @Autowired
+    private PgVectorBackfillService backfillService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void fixtures() {
+        user = new User();
+        user.setEmail("pgvector-" + UUID.randomUUID() + "@example.com");
+        user.setFullName("pgvector Test");
+        user.setPassword("unused");
+        user.setEnabled(true);
+        user = userRepository.save(user);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void vectorFollowsTheRoleThroughCreateUpdateAndDelete() {
+        RoleDTO chef = roleService.createRole(role("Chef", "Italian cooking recipes and kitchen tips"));
+        RoleDTO coach = roleService.createRole(role("Coach", "Marathon running training plans"));
+        assertNotNull(embedding(chef.getId()));
+
+        List<VectorMatch> matches = store.query(namespace(), query("italian recipes"), 5, ROLES);
+        assertEquals(List.of(vectorId(chef), vectorId(coach)), matches.stream().map(VectorMatch::id).toList());
+        assertEquals("Chef", matches.get(0).metadata().get("roleName"));
+        assertEquals(String.valueOf(user.getId()), matches.get(0).metadata().get("userId"));
+        assertTrue(matches.get(0).score() > matches.get(1).score());
+
+        // Edited text: the vector moves with it
+        roleService.updateRole(coach.getId(), role("Coach", "Italian pasta recipes for athletes"));
+        assertEquals(vectorId(coach), store.query(namespace(), query("pasta for athletes"), 1, ROLES).get(0).id());
+
+        // Filters, and other users' namespaces
+        assertEquals(List.of(vectorId(chef)), store.query(namespace(), query("recipes"), 5, Map.of("roleName", "Chef"))
+                .stream().map(VectorMatch::id).toList());
+        assertTrue(store.query("user_" + (user.getId() + 1_000_000), query("recipes"), 5, ROLES).isEmpty());
+
+        // delete() clears the vector but keeps the row; deleting the role removes both
+        store.delete(namespace(), List.of(vectorId(chef)));
+        assertNull(embedding(chef.getId()));
+        assertEquals(List.of(vectorId(coach)), store.query(namespace(), query("recipes"), 5, ROLES).stream().map(VectorMatch::id).toList());
+        assertTrue(roleService.deleteRole(coach.getId()));
+        assertTrue(store.query(namespace(), query("recipes"), 5, ROLES).isEmpty());
+    }
+
+    @Test
+    void failedVectorWriteRollsBackTheRole() {
+        long before = roleRepository.count();
+        float[] invalid = new float[256];
+        Arrays.fill(invalid, Float.NaN); // pgvector rejects NaN, so the UPDATE itself fails
+
+        assertThrows(VectorStore.VectorStoreException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            Role saved = roleRepository.saveAndFlush(entity("Doomed", "Never committed"));
+            store.upsert(namespace(), List.of(RoleVectorService.roleRecord(saved.getId(), user.getId(), "Doomed", "Never committed", invalid)));
+        }));
+        assertEquals(before, roleRepository.count());
+    }
+
+    @Test
+    void backfillEmbedsRolesWithoutAVectorAndLeavesTheOthers() {
+        // Rows written around RoleService, as if they predated the switch to pgvector
+        Role first = roleRepository.save(entity("Gardener", "Growing tomatoes and herbs"));
+        Role second = roleRepository.save(entity("Mechanic", "Car engine repairs"));
+        Role third = roleRepository.save(entity("Astronomer", "Telescopes and the night sky"));
+        float[] manual = query("something else entirely");
+        store.upsert(namespace(), List.of(RoleVectorService.roleRecord(third.getId(), user.getId(), "Astronomer", "", manual)));
+        assertNull(embedding(first.getId()));
+
+        assertTrue(backfillService.backfill() >= 2);
+        assertNotNull(embedding(first.getId()));
+        assertNotNull(embedding(second.getId()));
+        assertEquals("role_" + first.getId(), store.query(namespace(), query("tomatoes herbs"), 1, ROLES).get(0).id());
+        // Already had a vector: not overwritten
+        assertEquals(1.0, store.query(namespace(), manual, 1, Map.of("roleName", "Astronomer")).get(0).score(), 1e-4);
+
+        assertEquals(0, backfillService.backfill());
+    }
+
+    private RoleDTO role(String name, String description) {
+        RoleDTO dto = new RoleDTO();
+        dto.setName(name);
+        dto.setDescription(description);
+        return dto;
+    }
+
+    private Role entity(String name, String description) {
+        Role role = new Role();
+        role.setUserId(user.getId());
+        role.setName(name);
+        role.setDescription(description);
+        return role;
+    }
+
+    private float[] query(String text) {
+        return embeddingService.embed(text);
+    }
+
+    private String namespace() {
+        return RoleVectorService.namespace(0, user.getId());
+    }
+
+    private static String vectorId(RoleDTO role) {
+        return RoleVectorService.vectorId(role.getId());
+    }
+
+    private String embedding(Long roleId) {
+        return jdbcTemplate.queryForObject("SELECT embedding::text FROM roles WHERE id = ?", String.class, roleId);
+    }
+}
@@ -0,0 +1,97 @@
+package com.Pubudu.RoleAI.service.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-memory VectorStore for service tests (vector.store=recording): keeps the records per namespace and a log
+ * of every upsert and delete call, and can be told to fail writes or to run a hook inside an upsert.
+ */
+public class RecordingVectorStore implements VectorStore {
+
+    public record Call(String op, String namespace, List<String> ids) {}
+
+    private final Map<String, Map<String, VectorRecord>> namespaces = new ConcurrentHashMap<>();
+    private final List<Call> calls = new CopyOnWriteArrayList<>();
+    private volatile int failAfter = Integer.MAX_VALUE;
+    private volatile Consumer<Call> onUpsert = call -> {};
+
+    @Override
+    public String id() {
+        return "recording";
+    }
+
+    @Override
+    public void upsert(String namespace, List<VectorRecord> records) {
+        Call call = new Call("upsert", namespace, records.stream().map(VectorRecord::id).toList());
+        onUpsert.accept(call); // outside the lock, so a hook blocking one upsert does not hold up the others
+        synchronized (this) {
+            checkFailure(call);
+            Map<String, VectorRecord> stored = namespaces.computeIfAbsent(namespace, k -> new ConcurrentHashMap<>());
+            for (VectorRecord record : records) stored.put(record.id(), record);
+            calls.add(call);
+        }
+    }
+
+    @Override
+    public synchronized void delete(String namespace, List<String> ids) {
+        Call call = new Call("delete", namespace, List.copyOf(ids));
+        checkFailure(call);
+        Map<String, VectorRecord> stored = namespaces.get(namespace);
+        if (stored != null) ids.forEach(stored::remove);
+        calls.add(call);
+    }
+
+    @Override
+    public List<VectorMatch> query(String namespace, float[] vector, int topK, Map<String, String> filter) {
+        return List.of();
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        return Map.of("namespaces", namespaces.keySet());
+    }
+
+    private void checkFailure(Call call) {
+        if (failAfter <= 0) throw new VectorStoreException("Injected failure on " + call.op() + " into " + call.namespace());
+        failAfter--;
+    }
+
+    /**
+     * Writes succeed n more times, then every write fails until reset().
+     */
+    public void failAfter(int n) {
+        failAfter = n;
+    }
+
+    /**
+     * Runs inside each upsert, before it is applied (and before an injected failure).
+     */
+    public void onUpsert(Consumer<Call> hook) {
+        onUpsert = hook;
+    }
+
+    public Map<String, VectorRecord> namespace(String namespace) {
+        return namespaces.getOrDefault(namespace, Map.of());
+    }
+
+    public List<Call> calls() {
+        return new ArrayList<>(calls);
+    }
+
+    public synchronized void reset() {
+        namespaces.clear();
+        calls.clear();
+        failAfter = Integer.MAX_VALUE;
+        onUpsert = call -> {};
+    }
+}
@@ -0,0 +1,97 @@
+package com.Pubudu.RoleAI.util.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SimdKernels must agree with ScalarKernels for every length, so the scalar tail after the last full vector
+ * is covered, and on 128-bit hardware, where the byte kernels fall back to the scalar loops.
+ */
+class SimdKernelsTest {
+
+    @Test
+    void matchesScalarAtPreferredWidth() {
+        check(new SimdKernels());
+    }
+
+    // -XX:MaxVectorSize=16 makes the preferred species 128-bit, as on SSE/NEON-only machines
+    @Test
+    void matchesScalarAt128Bits() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(List.of(java, "-XX:MaxVectorSize=16", "--add-modules", "jdk.incubator.vector",
+                "-cp", System.getProperty("java.class.path"), At128Bits.class.getName()))
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "128-bit check timed out");
+        assertEquals(0, process.exitValue(), output);
+    }
+
+    public static class At128Bits {
+        public static void main(String[] args) {
+            SimdKernels simd = new SimdKernels();
+            assertEquals("simd-128", simd.name());
+            check(simd);
+        }
+    }
+
+    static void check(SimdKernels simd) {
+        ScalarKernels scalar = new ScalarKernels();
+        Random random = new Random(7);
+        // Past two full vectors of the widest species (16 float lanes, 64 byte lanes) plus every tail length
+        for (int n = 0; n <= 2 * 64 + 17; n++) {
+            float[] a = floats(random, n);
+            float[] b = floats(random, n);
+            byte[] x = bytes(random, n);
+            byte[] y = bytes(random, n);
+
+            // Different summation order: float results agree up to rounding, scaled by the terms' magnitude
+            assertEquals(scalar.dot(a, b), simd.dot(a, b), tolerance(a, b), "dot(float, float) n=" + n);
+            assertEquals(scalar.l2Squared(a, b), simd.l2Squared(a, b), tolerance(a, b), "l2Squared n=" + n);
+            assertEquals(scalar.dot(a, y), simd.dot(a, y), tolerance(a, toFloats(y)), "dot(float, byte) n=" + n);
+            // Integer sums are exact
+            assertEquals(scalar.dot(x, y), simd.dot(x, y), "dot(byte, byte) n=" + n);
+        }
+
+        // Extreme codes: -128 * -128 summed over many lanes must not overflow the widened lanes
+        byte[] min = new byte[1000];
+        Arrays.fill(min, Byte.MIN_VALUE);
+        assertEquals(scalar.dot(min, min), simd.dot(min, min));
+        assertEquals(1000 * 128 * 128, simd.dot(min, min));
+    }
+
+    private static float tolerance(float[] a, float[] b) {
+        double magnitude = 0;
+        for (int i = 0; i < a.length; i++) {
+            magnitude += Math.abs((double) a[i] * b[i]) + (double) (a[i] - b[i]) * (a[i] - b[i]);
+        }
+        return (float) (1e-5 * magnitude + 1e-6);
+    }
+
+    private static float[] floats(Random random, int n) {
+        float[] v = new float[n];
+        for (int i = 0; i < n; i++) v[i] = (float) random.nextGaussian();
+        return v;
+    }
+
+    private static byte[] bytes(Random random, int n) {
+        byte[] v = new byte[n];
+        random.nextBytes(v);
+        return v;
+    }
+
+    private static float[] toFloats(byte[] v) {
+        float[] f = new float[v.length];
+        for (int i = 0; i < v.length; i++) f[i] = v[i];
+        return f;
+    }
+}